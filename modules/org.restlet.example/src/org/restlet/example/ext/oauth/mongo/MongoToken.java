@@ -64,6 +64,12 @@ public class MongoToken implements ServerToken, OAuthResourceDefs {
         return false;
     }
 
+    public int getRemainingPeriod() {
+        int currentTime = (int) (System.currentTimeMillis() / 1000);
+        int elapsedTime = currentTime - getTimestamp();
+        return Math.max(0, getExpirePeriod() - elapsedTime);
+    }
+
     public int getTimestamp() {
         return ((Number) token.get(TIMESTAMP)).intValue();
     }
@@ -66,6 +66,7 @@ public class AtomConverter extends ConverterHelper {
 
         if (VARIANT_ATOM.isCompatible(source)) {
             result = addObjectClass(result, Feed.class);
+            result = addObjectClass(result, FeedIterator.class);
         } else if (VARIANT_ATOMPUB_SERVICE.isCompatible(source)) {
             result = addObjectClass(result, Service.class);
         }
@@ -118,7 +119,8 @@ public class AtomConverter extends ConverterHelper {
         float result = -1.0F;
 
         if (target != null) {
-            if (Feed.class.isAssignableFrom(target)) {
+            if (Feed.class.isAssignableFrom(target)
+                    || FeedIterator.class.isAssignableFrom(target)) {
                 if (MediaType.APPLICATION_ATOM.isCompatible(source
                         .getMediaType())) {
                     result = 1.0F;
@@ -146,6 +148,8 @@ public class AtomConverter extends ConverterHelper {
 
         if (Feed.class.isAssignableFrom(target)) {
             result = new Feed(source);
+        } else if (FeedIterator.class.isAssignableFrom(target)) {
+            result = new FeedIterator(source);
         } else if (Service.class.isAssignableFrom(target)) {
             result = new Service(source);
         }
@@ -168,7 +172,8 @@ public class AtomConverter extends ConverterHelper {
     @Override
     public <T> void updatePreferences(List<Preference<MediaType>> preferences,
             Class<T> entity) {
-        if (Feed.class.isAssignableFrom(entity)) {
+        if (Feed.class.isAssignableFrom(entity)
+                || FeedIterator.class.isAssignableFrom(entity)) {
             updatePreferences(preferences, MediaType.APPLICATION_ATOM, 1.0F);
         } else if (Service.class.isAssignableFrom(entity)) {
             updatePreferences(preferences,
@@ -612,13 +612,26 @@ public class Feed extends SaxRepresentation {
             Text.writeElement(writer, getUpdated(), ATOM_NAMESPACE, "updated");
         }
 
+        writeEntries(writer);
+        writer.endElement(ATOM_NAMESPACE, "feed");
+    }
+
+    /**
+     * Writes the entries of the feed as XML elements using the given SAX
+     * writer. Called by {@link #writeElement(XmlWriter)} after the feed
+     * metadata, it can be overridden to write entries that aren't held in
+     * memory.
+     * 
+     * @param writer
+     *            The SAX writer.
+     * @throws SAXException
+     */
+    protected void writeEntries(XmlWriter writer) throws SAXException {
         if (getEntries() != null) {
             for (final Entry entry : getEntries()) {
                 entry.writeElement(writer);
             }
         }
-
-        writer.endElement(ATOM_NAMESPACE, "feed");
     }
 
 }
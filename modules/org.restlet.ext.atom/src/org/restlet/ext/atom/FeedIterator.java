@@ -0,0 +1,362 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.ext.atom;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.restlet.ext.atom.internal.FeedContentReader;
+import org.restlet.representation.Representation;
+import org.restlet.resource.ResourceException;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.AttributesImpl;
+
+/**
+ * Iterator over the entries of an Atom feed document that pulls the XML
+ * content with a StAX reader. Contrary to {@link Feed#Feed(Representation)},
+ * entries are parsed one at a time and aren't kept in the parsed
+ * {@link Feed}, so that memory consumption doesn't depend on the size of the
+ * feed.<br>
+ * <br>
+ * The feed metadata located before the first entry is available via
+ * {@link #getFeed()} as soon as {@link #hasNext()} has been called. Entries can
+ * also be consumed by a {@link FeedReader} callback, notified of each parsed
+ * entry via {@link FeedReader#endEntry(Entry)}, by calling {@link #parse()}.
+ * 
+ * @author Thierry Boileau
+ */
+public class FeedIterator implements Iterator<Entry>, Closeable {
+
+    /**
+     * Feed reader that detaches each entry from the parsed feed and keeps it
+     * for the iterator.
+     */
+    private class EntryCollector extends FeedReader {
+
+        /**
+         * Constructor.
+         * 
+         * @param feedReader
+         *            Additional feed reader that will receive all events.
+         */
+        public EntryCollector(FeedReader feedReader) {
+            super(feedReader);
+        }
+
+        @Override
+        public void endEntry(Entry entry) {
+            if (getFeed().getEntries().remove(entry)) {
+                nextEntry = entry;
+            }
+
+            super.endEntry(entry);
+        }
+    }
+
+    /** Indicates if the document has been closed. */
+    private volatile boolean closed;
+
+    /** The SAX content reader building the feed and its entries. */
+    private final FeedContentReader contentReader;
+
+    /** The feed receiving the metadata. */
+    private final Feed feed;
+
+    /** The next entry to return. */
+    private volatile Entry nextEntry;
+
+    /** The StAX reader. */
+    private final XMLStreamReader reader;
+
+    /** The character reader of the feed document. */
+    private final Reader source;
+
+    /**
+     * Constructor.
+     * 
+     * @param xmlFeed
+     *            The XML feed document.
+     * @throws IOException
+     */
+    public FeedIterator(Representation xmlFeed) throws IOException {
+        this(xmlFeed, null);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param xmlFeed
+     *            The XML feed document.
+     * @param feedReader
+     *            Custom feed reader notified of all parsing events.
+     * @throws IOException
+     */
+    public FeedIterator(Representation xmlFeed, FeedReader feedReader)
+            throws IOException {
+        this.feed = new Feed();
+        this.contentReader = new FeedContentReader(this.feed,
+                new EntryCollector(feedReader));
+        this.source = xmlFeed.getReader();
+
+        try {
+            XMLInputFactory factory = XMLInputFactory.newInstance();
+            factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE,
+                    Boolean.TRUE);
+            factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+            factory.setProperty(
+                    XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES,
+                    Boolean.FALSE);
+
+            this.reader = factory.createXMLStreamReader(this.source);
+            this.contentReader.startDocument();
+        } catch (XMLStreamException e) {
+            this.source.close();
+            throw new IOException("Unable to read the Atom feed document: "
+                    + e.getMessage(), e);
+        } catch (SAXException e) {
+            this.source.close();
+            throw new IOException("Unable to read the Atom feed document: "
+                    + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Closes the StAX reader and the underlying character reader.
+     */
+    public void close() throws IOException {
+        if (!this.closed) {
+            this.closed = true;
+
+            try {
+                this.reader.close();
+            } catch (XMLStreamException e) {
+                throw new IOException(
+                        "Unable to close the Atom feed document: "
+                                + e.getMessage(), e);
+            } finally {
+                this.source.close();
+            }
+        }
+    }
+
+    /**
+     * Returns the feed holding the metadata parsed so far. Its list of entries
+     * remains empty.
+     * 
+     * @return The feed holding the metadata parsed so far.
+     */
+    public Feed getFeed() {
+        return feed;
+    }
+
+    /**
+     * Returns true if another entry is available. The document is read until
+     * the next entry is complete or the end of the document is reached, in
+     * which case the document is closed.
+     * 
+     * @return True if another entry is available.
+     * @throws ResourceException
+     *             If the document can't be read.
+     */
+    public boolean hasNext() {
+        try {
+            readEntry();
+        } catch (Exception e) {
+            throw new ResourceException(e);
+        }
+
+        return this.nextEntry != null;
+    }
+
+    /**
+     * Returns the next entry.
+     * 
+     * @return The next entry.
+     * @throws NoSuchElementException
+     *             If no other entry is available.
+     */
+    public Entry next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        Entry result = this.nextEntry;
+        this.nextEntry = null;
+        return result;
+    }
+
+    /**
+     * Reads the whole document. Parsed entries are only transmitted to the
+     * custom feed reader then discarded.
+     * 
+     * @throws IOException
+     */
+    public void parse() throws IOException {
+        try {
+            while (hasNext()) {
+                next();
+            }
+        } catch (ResourceException e) {
+            throw new IOException("Unable to read the Atom feed document: "
+                    + e.getMessage(), e.getCause());
+        }
+    }
+
+    /**
+     * Transmits the StAX events to the content reader until an entry has been
+     * parsed or the end of the document is reached.
+     * 
+     * @throws IOException
+     * @throws SAXException
+     * @throws XMLStreamException
+     */
+    private void readEntry() throws IOException, SAXException,
+            XMLStreamException {
+        while (!this.closed && (this.nextEntry == null)
+                && this.reader.hasNext()) {
+            switch (this.reader.next()) {
+            case XMLStreamConstants.START_ELEMENT:
+                startElement();
+                break;
+            case XMLStreamConstants.END_ELEMENT:
+                this.contentReader.endElement(toString(this.reader
+                        .getNamespaceURI()), this.reader.getLocalName(),
+                        toQName(this.reader.getPrefix(),
+                                this.reader.getLocalName()));
+
+                for (int i = 0; i < this.reader.getNamespaceCount(); i++) {
+                    this.contentReader.endPrefixMapping(toString(this.reader
+                            .getNamespacePrefix(i)));
+                }
+                break;
+            case XMLStreamConstants.CHARACTERS:
+            case XMLStreamConstants.CDATA:
+            case XMLStreamConstants.SPACE:
+                this.contentReader.characters(
+                        this.reader.getTextCharacters(),
+                        this.reader.getTextStart(),
+                        this.reader.getTextLength());
+                break;
+            case XMLStreamConstants.END_DOCUMENT:
+                this.contentReader.endDocument();
+                close();
+                break;
+            default:
+                break;
+            }
+        }
+    }
+
+    /**
+     * Not supported.
+     * 
+     * @throws UnsupportedOperationException
+     */
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Transmits the current start element event and its namespace
+     * declarations to the content reader.
+     * 
+     * @throws SAXException
+     */
+    private void startElement() throws SAXException {
+        for (int i = 0; i < this.reader.getNamespaceCount(); i++) {
+            this.contentReader.startPrefixMapping(
+                    toString(this.reader.getNamespacePrefix(i)),
+                    toString(this.reader.getNamespaceURI(i)));
+        }
+
+        AttributesImpl attributes = new AttributesImpl();
+
+        for (int i = 0; i < this.reader.getAttributeCount(); i++) {
+            attributes.addAttribute(
+                    toString(this.reader.getAttributeNamespace(i)),
+                    this.reader.getAttributeLocalName(i),
+                    toQName(this.reader.getAttributePrefix(i),
+                            this.reader.getAttributeLocalName(i)),
+                    this.reader.getAttributeType(i),
+                    this.reader.getAttributeValue(i));
+        }
+
+        this.contentReader.startElement(
+                toString(this.reader.getNamespaceURI()),
+                this.reader.getLocalName(),
+                toQName(this.reader.getPrefix(), this.reader.getLocalName()),
+                attributes);
+    }
+
+    /**
+     * Returns the qualified name of an element or attribute.
+     * 
+     * @param prefix
+     *            The namespace prefix, if any.
+     * @param localName
+     *            The local name.
+     * @return The qualified name.
+     */
+    private String toQName(String prefix, String localName) {
+        String result = localName;
+
+        if ((prefix != null) && (prefix.length() > 0)) {
+            result = prefix + ":" + localName;
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the given value or an empty string if it is null, as expected
+     * by SAX content handlers.
+     * 
+     * @param value
+     *            The value.
+     * @return The given value or an empty string.
+     */
+    private String toString(String value) {
+        return (value == null) ? "" : value;
+    }
+
+}
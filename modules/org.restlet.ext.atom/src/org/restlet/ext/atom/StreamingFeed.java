@@ -0,0 +1,104 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.ext.atom;
+
+import java.util.Iterator;
+
+import org.restlet.ext.xml.XmlWriter;
+import org.xml.sax.SAXException;
+
+/**
+ * Atom feed whose entries are pulled from an iterator while the feed document
+ * is written. Each entry is serialized directly to the output stream then
+ * released, so that large feeds can be returned without holding all their
+ * entries in memory. The feed metadata is set as usual on the instance.<br>
+ * <br>
+ * As the iterator can only be consumed once, this representation is
+ * transient.
+ * 
+ * @author Jerome Louvel
+ */
+public class StreamingFeed extends Feed {
+
+    /** The iterator over the entries to write. */
+    private volatile Iterator<Entry> entryIterator;
+
+    /**
+     * Constructor.
+     * 
+     * @param entryIterator
+     *            The iterator over the entries to write.
+     */
+    public StreamingFeed(Iterator<Entry> entryIterator) {
+        super();
+        this.entryIterator = entryIterator;
+        setTransient(true);
+    }
+
+    /**
+     * Returns the iterator over the entries to write.
+     * 
+     * @return The iterator over the entries to write.
+     */
+    public Iterator<Entry> getEntryIterator() {
+        return entryIterator;
+    }
+
+    /**
+     * Sets the iterator over the entries to write.
+     * 
+     * @param entryIterator
+     *            The iterator over the entries to write.
+     */
+    public void setEntryIterator(Iterator<Entry> entryIterator) {
+        this.entryIterator = entryIterator;
+    }
+
+    /**
+     * Writes the entries held by the feed, if any, then the entries provided
+     * by the iterator.
+     */
+    @Override
+    protected void writeEntries(XmlWriter writer) throws SAXException {
+        super.writeEntries(writer);
+
+        if (getEntryIterator() != null) {
+            while (getEntryIterator().hasNext()) {
+                getEntryIterator().next().writeElement(writer);
+            }
+        }
+    }
+
+}
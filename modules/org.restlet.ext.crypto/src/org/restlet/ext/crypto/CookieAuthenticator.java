@@ -34,8 +34,12 @@
 package org.restlet.ext.crypto;
 
 import java.security.GeneralSecurityException;
+import java.util.LinkedHashMap;
+import java.util.Map;
 import java.util.logging.Level;
 
+import javax.crypto.Cipher;
+
 import org.restlet.Context;
 import org.restlet.Request;
 import org.restlet.Response;
@@ -77,19 +81,75 @@ import org.restlet.security.ChallengeAuthenticator;
  * Note that credentials, both identifier and secret, are stored in a cookie in
  * an encrypted manner. The default encryption algorithm is AES but can be
  * changed with {@link #setEncryptAlgorithm(String)}. It is also strongly
- * recommended to
+ * recommended to<br>
+ * <br>
+ * To avoid decrypting the same cookie on each request, the decoded credentials
+ * are cached by cookie value, during {@link #getMaxCookieAge()} seconds at most
+ * when it is positive. The size of this cache can be set with
+ * {@link #setCredentialsCacheSize(int)}, zero disabling it. The ciphers
+ * initialized with the encryption key are also reused by each thread.
  * 
  * @author Remi Dewitte
  * @author Jerome Louvel
  */
 public class CookieAuthenticator extends ChallengeAuthenticator {
 
+    /**
+     * Cipher initialized for a given algorithm and secret key.
+     */
+    private static class CachedCipher {
+
+        /** The cryptographic algorithm. */
+        private final String algorithm;
+
+        /** The initialized cipher. */
+        private final Cipher cipher;
+
+        /** The secret key, compared by identity. */
+        private final byte[] secretKey;
+
+        private CachedCipher(String algorithm, byte[] secretKey, Cipher cipher) {
+            this.algorithm = algorithm;
+            this.cipher = cipher;
+            this.secretKey = secretKey;
+        }
+    }
+
+    /**
+     * Credentials decoded from a cookie value, with the time they were cached.
+     */
+    private static class CachedCredentials {
+
+        /** The time the credentials were cached. */
+        private final long cacheTime;
+
+        /** The decoded credentials. */
+        private final ChallengeResponse credentials;
+
+        private CachedCredentials(ChallengeResponse credentials, long cacheTime) {
+            this.cacheTime = cacheTime;
+            this.credentials = credentials;
+        }
+    }
+
     /** The name of the cookie that stores log info. */
     private volatile String cookieName;
 
+    /** The decoded credentials, by cookie value, in least recently used order. */
+    private final Map<String, CachedCredentials> credentialsCache;
+
+    /** The maximum number of decoded credentials cached. */
+    private volatile int credentialsCacheSize;
+
+    /** The ciphers used by each thread to decrypt the log info cookie value. */
+    private final ThreadLocal<CachedCipher> decryptCiphers;
+
     /** The name of the algorithm used to encrypt the log info cookie value. */
     private volatile String encryptAlgorithm;
 
+    /** The ciphers used by each thread to encrypt the log info cookie value. */
+    private final ThreadLocal<CachedCipher> encryptCiphers;
+
     /**
      * The secret key for the algorithm used to encrypt the log info cookie
      * value.
@@ -143,13 +203,26 @@ public class CookieAuthenticator extends ChallengeAuthenticator {
             byte[] encryptSecretKey) {
         super(context, optional, ChallengeScheme.HTTP_COOKIE, realm);
         this.cookieName = "Credentials";
+        this.credentialsCacheSize = 1000;
+        this.credentialsCache = new LinkedHashMap<String, CachedCredentials>(
+                16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(
+                    Map.Entry<String, CachedCredentials> eldest) {
+                return size() > getCredentialsCacheSize();
+            }
+        };
         this.interceptingLogin = true;
         this.interceptingLogout = true;
         this.identifierFormName = "login";
         this.loginPath = "/login";
         this.logoutPath = "/logout";
         this.secretFormName = "password";
+        this.decryptCiphers = new ThreadLocal<CachedCipher>();
         this.encryptAlgorithm = "AES";
+        this.encryptCiphers = new ThreadLocal<CachedCipher>();
         this.encryptSecretKey = encryptSecretKey;
         this.maxCookieAge = -1;
         this.redirectQueryName = "targetUri";
@@ -302,8 +375,119 @@ public class CookieAuthenticator extends ChallengeAuthenticator {
         sb.append('/');
         sb.append(isb);
 
-        return Base64.encode(CryptoUtils.encrypt(getEncryptAlgorithm(),
-                getEncryptSecretKey(), sb.toString()), false);
+        return Base64.encode(
+                doFinal(Cipher.ENCRYPT_MODE, sb.toString().getBytes()), false);
+    }
+
+    /**
+     * Removes all the cached credentials.
+     */
+    public void clearCredentialsCache() {
+        synchronized (this.credentialsCache) {
+            this.credentialsCache.clear();
+        }
+    }
+
+    /**
+     * Copies cached credentials so that they can be modified by the caller.
+     * 
+     * @param credentials
+     *            The cached credentials.
+     * @return The copied credentials.
+     */
+    private ChallengeResponse copy(ChallengeResponse credentials) {
+        ChallengeResponse result = new ChallengeResponse(
+                credentials.getScheme());
+        result.setRawValue(credentials.getRawValue());
+        result.setTimeIssued(credentials.getTimeIssued());
+        result.setIdentifier(credentials.getIdentifier());
+
+        if (credentials.getSecret() != null) {
+            result.setSecret(credentials.getSecret().clone());
+        }
+
+        return result;
+    }
+
+    /**
+     * Decrypts the credentials stored in a cookie into a proper
+     * {@link ChallengeResponse} object.
+     * 
+     * @param cookieValue
+     *            The credentials to decode from cookie value.
+     * @return The credentials as a proper challenge response.
+     */
+    private ChallengeResponse decodeCredentials(String cookieValue) {
+        // 1) Decode Base64 string
+        byte[] encrypted = Base64.decode(cookieValue);
+
+        if (encrypted == null) {
+            getLogger().warning(
+                    "Cannot decode cookie credentials : " + cookieValue);
+        }
+
+        // 2) Decrypt the credentials
+        try {
+            String decrypted = new String(doFinal(Cipher.DECRYPT_MODE,
+                    encrypted));
+
+            // 3) Parse the decrypted cookie value
+            int lastSlash = decrypted.lastIndexOf('/');
+            String[] indexes = decrypted.substring(lastSlash + 1).split(",");
+            int identifierIndex = Integer.parseInt(indexes[0]);
+            int secretIndex = Integer.parseInt(indexes[1]);
+
+            // 4) Create the challenge response
+            ChallengeResponse cr = new ChallengeResponse(getScheme());
+            cr.setRawValue(cookieValue);
+            cr.setTimeIssued(Long.parseLong(decrypted.substring(0,
+                    identifierIndex)));
+            cr.setIdentifier(decrypted.substring(identifierIndex + 1,
+                    secretIndex));
+            cr.setSecret(decrypted.substring(secretIndex + 1, lastSlash));
+            return cr;
+        } catch (Exception e) {
+            getLogger().log(Level.INFO, "Unable to decrypt cookie credentials",
+                    e);
+            return null;
+        }
+    }
+
+    /**
+     * Encrypts or decrypts a bytes array with the cipher of the current thread.
+     * The cipher is initialized again when the encryption algorithm or secret
+     * key changed.
+     * 
+     * @param mode
+     *            The processing mode, either {@link Cipher#DECRYPT_MODE} or
+     *            {@link Cipher#ENCRYPT_MODE}.
+     * @param what
+     *            The byte array to process.
+     * @return The processed byte array.
+     * @throws GeneralSecurityException
+     */
+    private byte[] doFinal(int mode, byte[] what)
+            throws GeneralSecurityException {
+        ThreadLocal<CachedCipher> ciphers = (mode == Cipher.ENCRYPT_MODE) ? this.encryptCiphers
+                : this.decryptCiphers;
+        String algorithm = getEncryptAlgorithm();
+        byte[] secretKey = getEncryptSecretKey();
+        CachedCipher cached = ciphers.get();
+
+        if ((cached == null) || (cached.secretKey != secretKey)
+                || !cached.algorithm.equals(algorithm)) {
+            cached = new CachedCipher(algorithm, secretKey,
+                    CryptoUtils.createCipher(algorithm, secretKey, mode));
+            ciphers.set(cached);
+        }
+
+        try {
+            // The cipher is reset by doFinal() and can be reused
+            return cached.cipher.doFinal(what);
+        } catch (GeneralSecurityException e) {
+            ciphers.remove();
+            throw e;
+        }
     }
 
     /**
@@ -349,6 +533,16 @@ public class CookieAuthenticator extends ChallengeAuthenticator {
         return credentialsCookie;
     }
 
+    /**
+     * Returns the maximum number of decoded credentials cached. By default, it
+     * is 1000.
+     * 
+     * @return The maximum number of decoded credentials cached.
+     */
+    public int getCredentialsCacheSize() {
+        return credentialsCacheSize;
+    }
+
     /**
      * Returns the name of the algorithm used to encrypt the log info cookie
      * value. By default, it returns "AES".
@@ -544,46 +738,45 @@ public class CookieAuthenticator extends ChallengeAuthenticator {
 
     /**
      * Decodes the credentials stored in a cookie into a proper
-     * {@link ChallengeResponse} object.
+     * {@link ChallengeResponse} object. Previously decoded cookie values are
+     * taken from the credentials cache.
      * 
      * @param cookieValue
      *            The credentials to decode from cookie value.
      * @return The credentials as a proper challenge response.
      */
     protected ChallengeResponse parseCredentials(String cookieValue) {
-        // 1) Decode Base64 string
-        byte[] encrypted = Base64.decode(cookieValue);
-
-        if (encrypted == null) {
-            getLogger().warning(
-                    "Cannot decode cookie credentials : " + cookieValue);
+        ChallengeResponse result = null;
+
+        if (getCredentialsCacheSize() > 0) {
+            synchronized (this.credentialsCache) {
+                CachedCredentials cached = this.credentialsCache
+                        .get(cookieValue);
+
+                if (cached != null) {
+                    if ((getMaxCookieAge() > 0)
+                            && (System.currentTimeMillis() - cached.cacheTime > getMaxCookieAge() * 1000L)) {
+                        this.credentialsCache.remove(cookieValue);
+                    } else {
+                        result = copy(cached.credentials);
+                    }
+                }
+            }
         }
 
-        // 2) Decrypt the credentials
-        try {
-            String decrypted = CryptoUtils.decrypt(getEncryptAlgorithm(),
-                    getEncryptSecretKey(), encrypted);
+        if (result == null) {
+            result = decodeCredentials(cookieValue);
 
-            // 3) Parse the decrypted cookie value
-            int lastSlash = decrypted.lastIndexOf('/');
-            String[] indexes = decrypted.substring(lastSlash + 1).split(",");
-            int identifierIndex = Integer.parseInt(indexes[0]);
-            int secretIndex = Integer.parseInt(indexes[1]);
-
-            // 4) Create the challenge response
-            ChallengeResponse cr = new ChallengeResponse(getScheme());
-            cr.setRawValue(cookieValue);
-            cr.setTimeIssued(Long.parseLong(decrypted.substring(0,
-                    identifierIndex)));
-            cr.setIdentifier(decrypted.substring(identifierIndex + 1,
-                    secretIndex));
-            cr.setSecret(decrypted.substring(secretIndex + 1, lastSlash));
-            return cr;
-        } catch (Exception e) {
-            getLogger().log(Level.INFO, "Unable to decrypt cookie credentials",
-                    e);
-            return null;
+            if ((result != null) && (getCredentialsCacheSize() > 0)) {
+                synchronized (this.credentialsCache) {
+                    this.credentialsCache.put(cookieValue,
+                            new CachedCredentials(copy(result), System
+                                    .currentTimeMillis()));
+                }
+            }
         }
+
+        return result;
     }
 
     /**
@@ -596,6 +789,21 @@ public class CookieAuthenticator extends ChallengeAuthenticator {
         this.cookieName = cookieName;
     }
 
+    /**
+     * Sets the maximum number of decoded credentials cached. Zero disables the
+     * cache.
+     * 
+     * @param credentialsCacheSize
+     *            The maximum number of decoded credentials cached.
+     */
+    public void setCredentialsCacheSize(int credentialsCacheSize) {
+        this.credentialsCacheSize = credentialsCacheSize;
+
+        if (credentialsCacheSize <= 0) {
+            clearCredentialsCache();
+        }
+    }
+
     /**
      * Sets the name of the algorithm used to encrypt the log info cookie value.
      * 
@@ -605,6 +813,7 @@ public class CookieAuthenticator extends ChallengeAuthenticator {
      */
     public void setEncryptAlgorithm(String secretAlgorithm) {
         this.encryptAlgorithm = secretAlgorithm;
+        clearCredentialsCache();
     }
 
     /**
@@ -617,6 +826,7 @@ public class CookieAuthenticator extends ChallengeAuthenticator {
      */
     public void setEncryptSecretKey(byte[] secretKey) {
         this.encryptSecretKey = secretKey;
+        clearCredentialsCache();
     }
 
     /**
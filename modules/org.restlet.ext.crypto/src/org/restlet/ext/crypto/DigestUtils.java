@@ -37,6 +37,8 @@ import java.io.UnsupportedEncodingException;
 import java.security.InvalidKeyException;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.HashMap;
+import java.util.Map;
 
 import javax.crypto.Mac;
 import javax.crypto.spec.SecretKeySpec;
@@ -60,6 +62,17 @@ public class DigestUtils {
      */
     private static final char[] HEXDIGITS = "0123456789abcdef".toCharArray();
 
+    /**
+     * The MAC instances of each thread, by algorithm. They are initialized
+     * with the secret key on each use, so that no key material is kept.
+     */
+    private static final ThreadLocal<Map<String, Mac>> MACS = new ThreadLocal<Map<String, Mac>>() {
+        @Override
+        protected Map<String, Mac> initialValue() {
+            return new HashMap<String, Mac>();
+        }
+    };
+
     /**
      * Returns the digest of the target string. Target is decoded to bytes using
      * the US-ASCII charset. Supports MD5 and SHA-1 algorithms.
@@ -94,6 +107,32 @@ public class DigestUtils {
         throw new IllegalArgumentException("Unsupported algorithm.");
     };
 
+    /**
+     * Returns a MAC initialized with the given secret key, reusing the
+     * instance of the current thread for this algorithm when available.
+     * 
+     * @param algorithm
+     *            The MAC algorithm.
+     * @param secretKey
+     *            The secret key.
+     * @return The initialized MAC.
+     * @throws NoSuchAlgorithmException
+     * @throws InvalidKeyException
+     */
+    private static Mac getMac(String algorithm, byte[] secretKey)
+            throws NoSuchAlgorithmException, InvalidKeyException {
+        Map<String, Mac> macs = MACS.get();
+        Mac result = macs.get(algorithm);
+
+        if (result == null) {
+            result = Mac.getInstance(algorithm);
+            macs.put(algorithm, result);
+        }
+
+        result.init(new SecretKeySpec(secretKey, algorithm));
+        return result;
+    }
+
     /**
      * Converts a source string to its HMAC/SHA-1 value.
      * 
@@ -107,12 +146,8 @@ public class DigestUtils {
         byte[] result = null;
 
         try {
-            // Create the HMAC/SHA1 key
-            SecretKeySpec signingKey = new SecretKeySpec(secretKey, "HmacSHA1");
-
-            // Create the message authentication code (MAC)
-            Mac mac = Mac.getInstance("HmacSHA1");
-            mac.init(signingKey);
+            // Get the message authentication code (MAC)
+            Mac mac = getMac("HmacSHA1", secretKey);
 
             // Compute the HMAC value
             result = mac.doFinal(source.getBytes());
@@ -155,13 +190,8 @@ public class DigestUtils {
         byte[] result = null;
 
         try {
-            // Create the HMAC/SHA256 key
-            SecretKeySpec signingKey = new SecretKeySpec(secretKey,
-                    "HmacSHA256");
-
-            // Create the message authentication code (MAC)
-            Mac mac = Mac.getInstance("HmacSHA256");
-            mac.init(signingKey);
+            // Get the message authentication code (MAC)
+            Mac mac = getMac("HmacSHA256", secretKey);
 
             // Compute the HMAC value
             result = mac.doFinal(source.getBytes("UTF-8"));
@@ -62,7 +62,7 @@ public final class CryptoUtils {
      * @return The new cipher.
      * @throws GeneralSecurityException
      */
-    private static Cipher createCipher(String algorithm, byte[] secretKey,
+    public static Cipher createCipher(String algorithm, byte[] secretKey,
             int mode) throws GeneralSecurityException {
         Cipher cipher = Cipher.getInstance(algorithm);
         cipher.init(mode, new SecretKeySpec(secretKey, algorithm));
@@ -0,0 +1,332 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.ext.fileupload;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import org.restlet.data.Status;
+import org.restlet.engine.io.IoUtils;
+import org.restlet.ext.fileupload.internal.MultipartParser;
+import org.restlet.ext.fileupload.internal.PartSpool;
+import org.restlet.representation.Representation;
+import org.restlet.resource.ResourceException;
+import org.restlet.util.ReadingListener;
+
+/**
+ * Listener parsing a multipart entity as its bytes are received by the NIO
+ * connector. Unlike {@link MultipartReader}, no thread waits for a slow client:
+ * the entity is registered with {@link Representation#setListener} and each
+ * chunk of bytes is parsed when it is selected. The content of each part is
+ * directly spooled, in memory or in a temporary file depending on its size,
+ * then passed to {@link #onPart(Representation)}.<br>
+ * <br>
+ * When the maximum part or entity size is exceeded or when the entity is
+ * malformed, the {@link #onError(IOException)} method is called and the rest
+ * of the entity is drained and ignored. For size limits, the cause of the
+ * exception is a {@link ResourceException} with the
+ * {@link Status#CLIENT_ERROR_REQUEST_ENTITY_TOO_LARGE} status.<br>
+ * <br>
+ * The entity must be selectable, see {@link Representation#isSelectable()}.
+ * 
+ * @author Jerome Louvel
+ */
+public abstract class MultipartListener extends ReadingListener {
+
+    /** Indicates if an error occurred. */
+    private volatile boolean failed;
+
+    /** Indicates if the spool files are written through memory mapping. */
+    private volatile boolean memoryMapped;
+
+    /** The multipart entity. */
+    private final Representation multipart;
+
+    /** The multipart parser. */
+    private final MultipartParser parser;
+
+    /** The spool of the current part. */
+    private volatile PartSpool spool;
+
+    /** The directory of the spool files. */
+    private volatile File spoolDirectory;
+
+    /** The maximum size of a part kept in memory. */
+    private volatile int spoolThreshold;
+
+    /** Indicates if reading has started. */
+    private volatile boolean started;
+
+    /**
+     * Constructor.
+     * 
+     * @param multipart
+     *            The multipart entity to read.
+     * @throws IOException
+     */
+    public MultipartListener(Representation multipart) throws IOException {
+        this(multipart, IoUtils.BUFFER_SIZE);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param multipart
+     *            The multipart entity to read.
+     * @param bufferSize
+     *            The size of the reading and parsing buffers, which also
+     *            limits the length of a part header line.
+     * @throws IOException
+     */
+    public MultipartListener(Representation multipart, int bufferSize)
+            throws IOException {
+        super(multipart, bufferSize);
+        String boundary = MultipartParser
+                .getBoundary(multipart.getMediaType());
+
+        if (boundary == null) {
+            throw new IllegalArgumentException(
+                    "The multipart entity has no boundary parameter");
+        }
+
+        this.multipart = multipart;
+        this.parser = new MultipartParser(boundary, bufferSize);
+        this.spoolThreshold = MultipartReader.DEFAULT_SPOOL_THRESHOLD;
+    }
+
+    /**
+     * Reports an error and discards the current part.
+     * 
+     * @param e
+     *            The error.
+     */
+    private void fail(IOException e) {
+        this.failed = true;
+
+        if (this.spool != null) {
+            this.spool.delete();
+            this.spool = null;
+        }
+
+        onError(e);
+    }
+
+    /**
+     * Returns the maximum size of a part content, or -1 if unlimited.
+     * 
+     * @return The maximum size of a part content.
+     */
+    public long getMaxPartSize() {
+        return this.parser.getMaxPartSize();
+    }
+
+    /**
+     * Returns the maximum size of the whole entity, or -1 if unlimited.
+     * 
+     * @return The maximum size of the whole entity.
+     */
+    public long getMaxSize() {
+        return this.parser.getMaxSize();
+    }
+
+    /**
+     * Returns the directory of the spool files. Null by default, meaning the
+     * default temporary directory is used.
+     * 
+     * @return The directory of the spool files.
+     */
+    public File getSpoolDirectory() {
+        return spoolDirectory;
+    }
+
+    /**
+     * Returns the maximum size of a part kept in memory. Larger parts are
+     * spooled to a temporary file. By default, it is 10 KB.
+     * 
+     * @return The maximum size of a part kept in memory.
+     */
+    public int getSpoolThreshold() {
+        return spoolThreshold;
+    }
+
+    /**
+     * Indicates if the spool files are written through memory-mapped file
+     * regions instead of file channel writes. False by default.
+     * 
+     * @return True if the spool files are written through memory mapping.
+     */
+    public boolean isMemoryMapped() {
+        return memoryMapped;
+    }
+
+    /**
+     * Callback invoked when the whole entity has been successfully parsed. By
+     * default, it does nothing.
+     */
+    protected void onCompleted() {
+    }
+
+    @Override
+    protected final void onContent(ByteBuffer byteBuffer) {
+        if (!this.failed) {
+            try {
+                if (!this.started) {
+                    long size = this.multipart.getSize();
+
+                    if ((getMaxSize() >= 0) && (size > getMaxSize())) {
+                        throw new ResourceException(
+                                Status.CLIENT_ERROR_REQUEST_ENTITY_TOO_LARGE,
+                                "The multipart entity exceeds the maximum size of "
+                                        + getMaxSize() + " bytes");
+                    }
+
+                    this.started = true;
+                }
+
+                while (!this.failed && byteBuffer.hasRemaining()) {
+                    this.parser.feed(byteBuffer);
+                    parse();
+                }
+            } catch (IOException e) {
+                fail(e);
+            } catch (ResourceException e) {
+                fail(new IOException(e.getMessage(), e));
+            }
+        }
+    }
+
+    @Override
+    protected final void onEnd() {
+        if (!this.failed) {
+            this.parser.setEndOfInput(true);
+
+            try {
+                parse();
+                onCompleted();
+            } catch (IOException e) {
+                fail(e);
+            } catch (ResourceException e) {
+                fail(new IOException(e.getMessage(), e));
+            }
+        }
+    }
+
+    /**
+     * Callback invoked when a part has been fully received. The temporary
+     * file of a spooled part is deleted when the part is released.
+     * 
+     * @param part
+     *            The received part.
+     */
+    protected abstract void onPart(Representation part);
+
+    /**
+     * Handles the parsing events of the buffered bytes.
+     * 
+     * @throws IOException
+     */
+    private void parse() throws IOException {
+        int event = this.parser.next();
+
+        while ((event != MultipartParser.NEED_INPUT)
+                && (event != MultipartParser.END)) {
+            if (event == MultipartParser.PART_START) {
+                this.spool = new PartSpool(getSpoolThreshold(),
+                        getSpoolDirectory(), isMemoryMapped());
+            } else if (event == MultipartParser.CONTENT) {
+                this.spool.write(this.parser.getContent());
+            } else {
+                Representation part = this.spool.toRepresentation(this.parser
+                        .getHeaders());
+                this.spool = null;
+                onPart(part);
+            }
+
+            event = this.parser.next();
+        }
+    }
+
+    /**
+     * Sets the maximum size of a part content, or -1 if unlimited.
+     * 
+     * @param maxPartSize
+     *            The maximum size of a part content.
+     */
+    public void setMaxPartSize(long maxPartSize) {
+        this.parser.setMaxPartSize(maxPartSize);
+    }
+
+    /**
+     * Sets the maximum size of the whole entity, or -1 if unlimited.
+     * 
+     * @param maxSize
+     *            The maximum size of the whole entity.
+     */
+    public void setMaxSize(long maxSize) {
+        this.parser.setMaxSize(maxSize);
+    }
+
+    /**
+     * Indicates if the spool files are written through memory-mapped file
+     * regions instead of file channel writes.
+     * 
+     * @param memoryMapped
+     *            True if the spool files are written through memory mapping.
+     */
+    public void setMemoryMapped(boolean memoryMapped) {
+        this.memoryMapped = memoryMapped;
+    }
+
+    /**
+     * Sets the directory of the spool files.
+     * 
+     * @param spoolDirectory
+     *            The directory of the spool files.
+     */
+    public void setSpoolDirectory(File spoolDirectory) {
+        this.spoolDirectory = spoolDirectory;
+    }
+
+    /**
+     * Sets the maximum size of a part kept in memory.
+     * 
+     * @param spoolThreshold
+     *            The maximum size of a part kept in memory.
+     */
+    public void setSpoolThreshold(int spoolThreshold) {
+        this.spoolThreshold = spoolThreshold;
+    }
+
+}
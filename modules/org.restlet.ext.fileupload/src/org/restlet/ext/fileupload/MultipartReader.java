@@ -0,0 +1,454 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.ext.fileupload;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.restlet.data.MediaType;
+import org.restlet.data.Status;
+import org.restlet.engine.header.HeaderUtils;
+import org.restlet.engine.io.IoUtils;
+import org.restlet.engine.io.NbChannelInputStream;
+import org.restlet.ext.fileupload.internal.MultipartParser;
+import org.restlet.ext.fileupload.internal.PartSpool;
+import org.restlet.representation.ReadableRepresentation;
+import org.restlet.representation.Representation;
+import org.restlet.resource.ResourceException;
+
+/**
+ * Streaming reader of multipart entities such as "multipart/form-data". Unlike
+ * {@link RestletFileUpload}, it directly works on the entity's
+ * {@link ReadableByteChannel} and doesn't require any intermediary storage.
+ * Parts are returned one at a time by {@link #nextPart()} as representations
+ * lazily reading their content from the entity. Moving to the next part skips
+ * the unread content of the previous one.<br>
+ * <br>
+ * Parts can also be stored with {@link #spool(Representation)} or
+ * {@link #readParts()}. Small parts are kept in memory while larger ones are
+ * spooled to temporary files that are deleted when the returned
+ * representations are released.<br>
+ * <br>
+ * The maximum sizes of a part and of the whole entity are checked as bytes
+ * arrive, throwing a {@link ResourceException} with the
+ * {@link Status#CLIENT_ERROR_REQUEST_ENTITY_TOO_LARGE} status as soon as they
+ * are exceeded. When the entity size is announced, the maximum entity size is
+ * checked before reading anything.<br>
+ * <br>
+ * Note that this reader blocks the calling thread while waiting for the
+ * client. With the NIO connector, use a {@link MultipartListener} instead.<br>
+ * <br>
+ * Concurrency note: instances of this class are not thread-safe.
+ * 
+ * @author Jerome Louvel
+ */
+public class MultipartReader {
+
+    /**
+     * Channel reading the content of the current part.
+     */
+    private class PartChannel implements ReadableByteChannel {
+
+        /** Indicates if the end of the part has been reached. */
+        private volatile boolean ended;
+
+        /** Indicates if the channel is open. */
+        private volatile boolean open = true;
+
+        public void close() throws IOException {
+            this.open = false;
+        }
+
+        public boolean isOpen() {
+            return this.open;
+        }
+
+        public int read(ByteBuffer target) throws IOException {
+            int result = 0;
+
+            if (this.ended || (currentChannel != this)) {
+                result = -1;
+            } else {
+                while ((result == 0) && target.hasRemaining()) {
+                    if ((content != null) && content.hasRemaining()) {
+                        result = Math.min(content.remaining(),
+                                target.remaining());
+                        int limit = content.limit();
+                        content.limit(content.position() + result);
+                        target.put(content);
+                        content.limit(limit);
+                    } else if (readEvent() == MultipartParser.CONTENT) {
+                        content = parser.getContent();
+                    } else {
+                        content = null;
+                        this.ended = true;
+                        result = -1;
+                    }
+                }
+            }
+
+            return result;
+        }
+    }
+
+    /** The default maximum size of a part kept in memory. */
+    public static final int DEFAULT_SPOOL_THRESHOLD = 10240;
+
+    /** The channel reading the multipart entity. */
+    private final ReadableByteChannel channel;
+
+    /** The unread content of the current part. */
+    private volatile ByteBuffer content;
+
+    /** The channel of the current part. */
+    private volatile PartChannel currentChannel;
+
+    /** Indicates if the spool files are written through memory mapping. */
+    private volatile boolean memoryMapped;
+
+    /** The multipart entity. */
+    private final Representation multipart;
+
+    /** The multipart parser. */
+    private final MultipartParser parser;
+
+    /** Indicates if reading has started. */
+    private volatile boolean started;
+
+    /** The directory of the spool files. */
+    private volatile File spoolDirectory;
+
+    /** The maximum size of a part kept in memory. */
+    private volatile int spoolThreshold;
+
+    /**
+     * Constructor.
+     * 
+     * @param multipart
+     *            The multipart entity to read.
+     * @throws IOException
+     */
+    public MultipartReader(Representation multipart) throws IOException {
+        this(multipart, IoUtils.BUFFER_SIZE);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param multipart
+     *            The multipart entity to read.
+     * @param bufferSize
+     *            The size of the parsing buffer, which also limits the length
+     *            of a part header line.
+     * @throws IOException
+     */
+    @SuppressWarnings("resource")
+    public MultipartReader(Representation multipart, int bufferSize)
+            throws IOException {
+        String boundary = MultipartParser
+                .getBoundary(multipart.getMediaType());
+
+        if (boundary == null) {
+            throw new IllegalArgumentException(
+                    "The multipart entity has no boundary parameter");
+        }
+
+        ReadableByteChannel channel = multipart.getChannel();
+
+        if (multipart.isSelectable()) {
+            // Wait for the non-blocking channel to become readable
+            channel = IoUtils.getChannel(new NbChannelInputStream(channel));
+        }
+
+        this.channel = channel;
+        this.multipart = multipart;
+        this.parser = new MultipartParser(boundary, bufferSize);
+        this.spoolThreshold = DEFAULT_SPOOL_THRESHOLD;
+    }
+
+    /**
+     * Returns the maximum size of a part content, or -1 if unlimited.
+     * 
+     * @return The maximum size of a part content.
+     */
+    public long getMaxPartSize() {
+        return this.parser.getMaxPartSize();
+    }
+
+    /**
+     * Returns the maximum size of the whole entity, or -1 if unlimited.
+     * 
+     * @return The maximum size of the whole entity.
+     */
+    public long getMaxSize() {
+        return this.parser.getMaxSize();
+    }
+
+    /**
+     * Returns the directory of the spool files. Null by default, meaning the
+     * default temporary directory is used.
+     * 
+     * @return The directory of the spool files.
+     */
+    public File getSpoolDirectory() {
+        return spoolDirectory;
+    }
+
+    /**
+     * Returns the maximum size of a part kept in memory. Larger parts are
+     * spooled to a temporary file. By default, it is 10 KB.
+     * 
+     * @return The maximum size of a part kept in memory.
+     */
+    public int getSpoolThreshold() {
+        return spoolThreshold;
+    }
+
+    /**
+     * Indicates if the spool files are written through memory-mapped file
+     * regions instead of file channel writes. False by default.
+     * 
+     * @return True if the spool files are written through memory mapping.
+     */
+    public boolean isMemoryMapped() {
+        return memoryMapped;
+    }
+
+    /**
+     * Returns the next part, skipping the unread content of the current one.
+     * The returned representation lazily reads its content from the entity,
+     * until this method is called again.
+     * 
+     * @return The next part or null if all the parts have been read.
+     * @throws IOException
+     */
+    public Representation nextPart() throws IOException {
+        Representation result = null;
+        int event = 0;
+
+        if (!this.started) {
+            long size = this.multipart.getSize();
+
+            if ((getMaxSize() >= 0) && (size > getMaxSize())) {
+                throw new ResourceException(
+                        Status.CLIENT_ERROR_REQUEST_ENTITY_TOO_LARGE,
+                        "The multipart entity exceeds the maximum size of "
+                                + getMaxSize() + " bytes");
+            }
+
+            this.started = true;
+        }
+
+        this.content = null;
+
+        if ((this.currentChannel == null) || !this.currentChannel.ended) {
+            event = readEvent();
+
+            while ((event == MultipartParser.CONTENT)
+                    || (event == MultipartParser.PART_END)) {
+                event = readEvent();
+            }
+        } else {
+            event = readEvent();
+        }
+
+        this.currentChannel = null;
+
+        if (event == MultipartParser.PART_START) {
+            this.currentChannel = new PartChannel();
+            result = new ReadableRepresentation(this.currentChannel,
+                    MediaType.TEXT_PLAIN);
+            HeaderUtils.extractEntityHeaders(this.parser.getHeaders(), result);
+        }
+
+        return result;
+    }
+
+    /**
+     * Reads and stores all the remaining parts.
+     * 
+     * @return The list of stored parts.
+     * @throws IOException
+     * @see #spool(Representation)
+     */
+    public List<Representation> readParts() throws IOException {
+        List<Representation> result = new ArrayList<Representation>();
+
+        try {
+            for (Representation part = nextPart(); part != null; part = nextPart()) {
+                result.add(spool(part));
+            }
+        } catch (IOException e) {
+            release(result);
+            throw e;
+        } catch (RuntimeException e) {
+            release(result);
+            throw e;
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the next parsing event, reading the entity as needed.
+     * 
+     * @return The next parsing event.
+     * @throws IOException
+     */
+    private int readEvent() throws IOException {
+        int result = this.parser.next();
+
+        while (result == MultipartParser.NEED_INPUT) {
+            this.parser.fill(this.channel);
+            result = this.parser.next();
+        }
+
+        return result;
+    }
+
+    /**
+     * Releases stored parts after a failure.
+     * 
+     * @param parts
+     *            The stored parts.
+     */
+    private void release(List<Representation> parts) {
+        for (Representation part : parts) {
+            part.release();
+        }
+    }
+
+    /**
+     * Sets the maximum size of a part content, or -1 if unlimited.
+     * 
+     * @param maxPartSize
+     *            The maximum size of a part content.
+     */
+    public void setMaxPartSize(long maxPartSize) {
+        this.parser.setMaxPartSize(maxPartSize);
+    }
+
+    /**
+     * Sets the maximum size of the whole entity, or -1 if unlimited.
+     * 
+     * @param maxSize
+     *            The maximum size of the whole entity.
+     */
+    public void setMaxSize(long maxSize) {
+        this.parser.setMaxSize(maxSize);
+    }
+
+    /**
+     * Indicates if the spool files are written through memory-mapped file
+     * regions instead of file channel writes.
+     * 
+     * @param memoryMapped
+     *            True if the spool files are written through memory mapping.
+     */
+    public void setMemoryMapped(boolean memoryMapped) {
+        this.memoryMapped = memoryMapped;
+    }
+
+    /**
+     * Sets the directory of the spool files.
+     * 
+     * @param spoolDirectory
+     *            The directory of the spool files.
+     */
+    public void setSpoolDirectory(File spoolDirectory) {
+        this.spoolDirectory = spoolDirectory;
+    }
+
+    /**
+     * Sets the maximum size of a part kept in memory.
+     * 
+     * @param spoolThreshold
+     *            The maximum size of a part kept in memory.
+     */
+    public void setSpoolThreshold(int spoolThreshold) {
+        this.spoolThreshold = spoolThreshold;
+    }
+
+    /**
+     * Stores the unread content of the current part, in memory or in a
+     * temporary file depending on its size. The content is directly written
+     * from the parsing buffer.
+     * 
+     * @param part
+     *            The current part, as returned by {@link #nextPart()}.
+     * @return The stored part, with the same metadata.
+     * @throws IOException
+     */
+    public Representation spool(Representation part) throws IOException {
+        if ((this.currentChannel == null)
+                || (part.getChannel() != this.currentChannel)) {
+            throw new IllegalArgumentException(
+                    "Only the current part can be spooled");
+        }
+
+        Representation result = null;
+        PartSpool spool = new PartSpool(getSpoolThreshold(),
+                getSpoolDirectory(), isMemoryMapped());
+
+        try {
+            if (!this.currentChannel.ended) {
+                if (this.content != null) {
+                    spool.write(this.content);
+                }
+
+                for (int event = readEvent(); event == MultipartParser.CONTENT; event = readEvent()) {
+                    spool.write(this.parser.getContent());
+                }
+
+                this.content = null;
+                this.currentChannel.ended = true;
+            }
+
+            result = spool.toRepresentation(this.parser.getHeaders());
+        } catch (IOException e) {
+            spool.delete();
+            throw e;
+        } catch (RuntimeException e) {
+            spool.delete();
+            throw e;
+        }
+
+        return result;
+    }
+
+}
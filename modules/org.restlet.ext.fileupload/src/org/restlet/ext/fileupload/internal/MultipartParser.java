@@ -0,0 +1,508 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.ext.fileupload.internal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.Charset;
+
+import org.restlet.data.Header;
+import org.restlet.data.MediaType;
+import org.restlet.data.Status;
+import org.restlet.engine.header.HeaderReader;
+import org.restlet.engine.util.StringUtils;
+import org.restlet.resource.ResourceException;
+import org.restlet.util.Series;
+
+/**
+ * Incremental parser of multipart entities (RFC 2046). The entity bytes are
+ * either read from a channel with {@link #fill(ReadableByteChannel)} or pushed
+ * with {@link #feed(ByteBuffer)} into a fixed size buffer. The {@link #next()}
+ * method then returns the next parsing event, in the manner of a StAX reader.
+ * Part content is exposed as views on the internal buffer, so it is never
+ * copied before reaching its final destination.<br>
+ * <br>
+ * Boundary delimiters are located with the Boyer-Moore-Horspool algorithm.
+ * When no delimiter is found, all the content bytes that can't be the start of
+ * a delimiter are returned at once, the remaining tail being kept in the
+ * buffer until more bytes arrive.<br>
+ * <br>
+ * Concurrency note: instances of this class are not thread-safe.
+ * 
+ * @author Jerome Louvel
+ */
+public class MultipartParser {
+
+    /** Event indicating that content of the current part is available. */
+    public static final int CONTENT = 2;
+
+    /** Event indicating that the closing delimiter has been reached. */
+    public static final int END = 4;
+
+    /** Event indicating that more bytes are needed to continue parsing. */
+    public static final int NEED_INPUT = 0;
+
+    /** Event indicating that the current part has been fully parsed. */
+    public static final int PART_END = 3;
+
+    /** Event indicating that the headers of a new part have been parsed. */
+    public static final int PART_START = 1;
+
+    /** State before the first delimiter. */
+    private static final int STATE_PREAMBLE = 0;
+
+    /** State after a delimiter, before the line break or the close marker. */
+    private static final int STATE_DELIMITER = 1;
+
+    /** State inside the headers of a part. */
+    private static final int STATE_HEADERS = 2;
+
+    /** State inside the content of a part. */
+    private static final int STATE_CONTENT = 3;
+
+    /** State after the closing delimiter. */
+    private static final int STATE_EPILOGUE = 4;
+
+    /** The character set used to decode part headers. */
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+    /**
+     * Returns the boundary parameter of a multipart media type.
+     * 
+     * @param mediaType
+     *            The multipart media type.
+     * @return The boundary or null.
+     */
+    public static String getBoundary(MediaType mediaType) {
+        return (mediaType == null) ? null : mediaType.getParameters()
+                .getFirstValue("boundary", true);
+    }
+
+    /** The backing array of the buffer. */
+    private final byte[] array;
+
+    /** The internal buffer, always ready for reading. */
+    private final ByteBuffer buffer;
+
+    /** The view on the internal buffer exposing the current content. */
+    private final ByteBuffer content;
+
+    /** The delimiter, including the leading line break. */
+    private final byte[] delimiter;
+
+    /** Indicates if the end of the input has been reached. */
+    private volatile boolean endOfInput;
+
+    /** The headers of the current part. */
+    private final Series<Header> headers;
+
+    /** The maximum size of a part content, or -1 if unlimited. */
+    private volatile long maxPartSize;
+
+    /** The maximum size of the whole entity, or -1 if unlimited. */
+    private volatile long maxSize;
+
+    /** The content size of the current part. */
+    private volatile long partSize;
+
+    /** The skip table of the delimiter search. */
+    private final int[] skips;
+
+    /** The parsing state. */
+    private volatile int state;
+
+    /** The number of entity bytes received. */
+    private volatile long totalSize;
+
+    /**
+     * Constructor.
+     * 
+     * @param boundary
+     *            The multipart boundary.
+     * @param bufferSize
+     *            The size of the internal buffer, which also limits the length
+     *            of a part header line.
+     */
+    public MultipartParser(String boundary, int bufferSize) {
+        if ((boundary == null) || (boundary.length() == 0)) {
+            throw new IllegalArgumentException(
+                    "The multipart boundary can't be empty");
+        }
+
+        this.delimiter = StringUtils.getLatin1Bytes("\r\n--" + boundary);
+        this.skips = new int[256];
+
+        for (int i = 0; i < this.skips.length; i++) {
+            this.skips[i] = this.delimiter.length;
+        }
+
+        for (int i = 0; i < this.delimiter.length - 1; i++) {
+            this.skips[this.delimiter[i] & 0xff] = this.delimiter.length - 1
+                    - i;
+        }
+
+        this.array = new byte[Math.max(bufferSize, 4 * this.delimiter.length)];
+        this.buffer = ByteBuffer.wrap(this.array);
+        this.content = ByteBuffer.wrap(this.array);
+        this.headers = new Series<Header>(Header.class);
+        this.maxPartSize = -1;
+        this.maxSize = -1;
+        this.state = STATE_PREAMBLE;
+
+        // The first delimiter may not be preceded by a line break
+        this.buffer.put((byte) '\r').put((byte) '\n').flip();
+    }
+
+    /**
+     * Counts the bytes received and checks the maximum size.
+     * 
+     * @param count
+     *            The number of bytes received.
+     */
+    private void count(int count) {
+        this.totalSize += count;
+
+        if ((this.maxSize >= 0) && (this.totalSize > this.maxSize)) {
+            throw new ResourceException(
+                    Status.CLIENT_ERROR_REQUEST_ENTITY_TOO_LARGE,
+                    "The multipart entity exceeds the maximum size of "
+                            + this.maxSize + " bytes");
+        }
+    }
+
+    /**
+     * Copies as many bytes as possible from a source buffer into the internal
+     * buffer. It invalidates the view returned by {@link #getContent()}.
+     * 
+     * @param source
+     *            The source buffer.
+     * @return The number of bytes copied.
+     */
+    public int feed(ByteBuffer source) {
+        this.buffer.compact();
+        int result = Math.min(source.remaining(), this.buffer.remaining());
+
+        if (result < source.remaining()) {
+            int limit = source.limit();
+            source.limit(source.position() + result);
+            this.buffer.put(source);
+            source.limit(limit);
+        } else {
+            this.buffer.put(source);
+        }
+
+        this.buffer.flip();
+        count(result);
+        return result;
+    }
+
+    /**
+     * Reads bytes from a source channel into the internal buffer. It
+     * invalidates the view returned by {@link #getContent()}.
+     * 
+     * @param source
+     *            The source channel.
+     * @return The number of bytes read or -1 if the end was reached.
+     * @throws IOException
+     */
+    public int fill(ReadableByteChannel source) throws IOException {
+        int result;
+        this.buffer.compact();
+
+        try {
+            result = source.read(this.buffer);
+        } finally {
+            this.buffer.flip();
+        }
+
+        if (result == -1) {
+            this.endOfInput = true;
+        } else {
+            count(result);
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns a view on the content returned by the last {@link #CONTENT}
+     * event. It is only valid until the next call to {@link #next()},
+     * {@link #fill(ReadableByteChannel)} or {@link #feed(ByteBuffer)}.
+     * 
+     * @return A view on the content.
+     */
+    public ByteBuffer getContent() {
+        return this.content;
+    }
+
+    /**
+     * Returns the headers of the current part. They are valid until the next
+     * {@link #PART_START} event.
+     * 
+     * @return The headers of the current part.
+     */
+    public Series<Header> getHeaders() {
+        return this.headers;
+    }
+
+    /**
+     * Returns the maximum size of a part content, or -1 if unlimited.
+     * 
+     * @return The maximum size of a part content.
+     */
+    public long getMaxPartSize() {
+        return maxPartSize;
+    }
+
+    /**
+     * Returns the maximum size of the whole entity, or -1 if unlimited.
+     * 
+     * @return The maximum size of the whole entity.
+     */
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Returns the index of the next delimiter in the buffer.
+     * 
+     * @param from
+     *            The index to start from.
+     * @return The index of the delimiter or -1.
+     */
+    private int indexOfDelimiter(int from) {
+        int last = this.delimiter.length - 1;
+        int max = this.buffer.limit() - this.delimiter.length;
+        int i = from;
+
+        while (i <= max) {
+            int j = last;
+
+            while (this.array[i + j] == this.delimiter[j]) {
+                if (j == 0) {
+                    return i;
+                }
+
+                j--;
+            }
+
+            i += this.skips[this.array[i + last] & 0xff];
+        }
+
+        return -1;
+    }
+
+    /**
+     * Returns the index of the next line break in the buffer.
+     * 
+     * @param from
+     *            The index to start from.
+     * @return The index of the line break or -1.
+     */
+    private int indexOfLineBreak(int from) {
+        for (int i = from, max = this.buffer.limit() - 1; i < max; i++) {
+            if ((this.array[i] == '\r') && (this.array[i + 1] == '\n')) {
+                return i;
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Indicates if the end of the input has been reached.
+     * 
+     * @return True if the end of the input has been reached.
+     */
+    public boolean isEndOfInput() {
+        return endOfInput;
+    }
+
+    /**
+     * Parses the buffered bytes and returns the next event.
+     * 
+     * @return The next event.
+     * @throws IOException
+     *             If the entity is malformed or truncated.
+     */
+    public int next() throws IOException {
+        int result = -1;
+        int position = this.buffer.position();
+        int limit = this.buffer.limit();
+
+        while (result == -1) {
+            switch (this.state) {
+            case STATE_PREAMBLE: {
+                int index = indexOfDelimiter(position);
+
+                if (index == -1) {
+                    // Discard the preamble, except a potential delimiter start
+                    position = Math.max(position, limit - this.delimiter.length
+                            + 1);
+                    result = NEED_INPUT;
+                } else {
+                    position = index + this.delimiter.length;
+                    this.state = STATE_DELIMITER;
+                }
+
+                break;
+            }
+            case STATE_DELIMITER:
+                if (limit - position < 2) {
+                    result = NEED_INPUT;
+                } else if ((this.array[position] == '-')
+                        && (this.array[position + 1] == '-')) {
+                    position = limit;
+                    this.state = STATE_EPILOGUE;
+                } else if ((this.array[position] == '\r')
+                        && (this.array[position + 1] == '\n')) {
+                    position += 2;
+                    this.headers.clear();
+                    this.state = STATE_HEADERS;
+                } else if ((this.array[position] == ' ')
+                        || (this.array[position] == '\t')) {
+                    // Skip the transport padding
+                    position++;
+                } else {
+                    throw new IOException("Invalid multipart delimiter");
+                }
+
+                break;
+            case STATE_HEADERS: {
+                int index = indexOfLineBreak(position);
+
+                if (index == position) {
+                    position += 2;
+                    this.partSize = 0;
+                    this.state = STATE_CONTENT;
+                    result = PART_START;
+                } else if (index != -1) {
+                    Header header = HeaderReader.readHeader(new String(
+                            this.array, position, index - position, UTF_8));
+
+                    if (header != null) {
+                        this.headers.add(header);
+                    }
+
+                    position = index + 2;
+                } else if ((position == 0) && (limit == this.array.length)) {
+                    throw new IOException(
+                            "Multipart header line exceeding the buffer size of "
+                                    + this.array.length + " bytes");
+                } else {
+                    result = NEED_INPUT;
+                }
+
+                break;
+            }
+            case STATE_CONTENT: {
+                int index = indexOfDelimiter(position);
+                int end = (index == -1) ? Math.max(position, limit
+                        - this.delimiter.length + 1) : index;
+
+                if (end > position) {
+                    this.partSize += end - position;
+
+                    if ((this.maxPartSize >= 0)
+                            && (this.partSize > this.maxPartSize)) {
+                        throw new ResourceException(
+                                Status.CLIENT_ERROR_REQUEST_ENTITY_TOO_LARGE,
+                                "A multipart part exceeds the maximum size of "
+                                        + this.maxPartSize + " bytes");
+                    }
+
+                    this.content.clear();
+                    this.content.limit(end).position(position);
+                    position = end;
+                    result = CONTENT;
+                } else if (index != -1) {
+                    position = index + this.delimiter.length;
+                    this.state = STATE_DELIMITER;
+                    result = PART_END;
+                } else {
+                    result = NEED_INPUT;
+                }
+
+                break;
+            }
+            default:
+                // Ignore the epilogue
+                position = limit;
+                result = END;
+                break;
+            }
+        }
+
+        this.buffer.position(position);
+
+        if ((result == NEED_INPUT) && this.endOfInput) {
+            throw new IOException("Multipart entity truncated");
+        }
+
+        return result;
+    }
+
+    /**
+     * Sets the end of input flag. Used when bytes are pushed with
+     * {@link #feed(ByteBuffer)}.
+     * 
+     * @param endOfInput
+     *            True if the end of the input has been reached.
+     */
+    public void setEndOfInput(boolean endOfInput) {
+        this.endOfInput = endOfInput;
+    }
+
+    /**
+     * Sets the maximum size of a part content, or -1 if unlimited.
+     * 
+     * @param maxPartSize
+     *            The maximum size of a part content.
+     */
+    public void setMaxPartSize(long maxPartSize) {
+        this.maxPartSize = maxPartSize;
+    }
+
+    /**
+     * Sets the maximum size of the whole entity, or -1 if unlimited.
+     * 
+     * @param maxSize
+     *            The maximum size of the whole entity.
+     */
+    public void setMaxSize(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+}
@@ -0,0 +1,264 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.ext.fileupload.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.restlet.data.Header;
+import org.restlet.data.MediaType;
+import org.restlet.engine.header.HeaderUtils;
+import org.restlet.representation.ByteArrayRepresentation;
+import org.restlet.representation.FileRepresentation;
+import org.restlet.representation.Representation;
+import org.restlet.util.Series;
+
+/**
+ * Storage of a multipart part content. The content is kept in memory until it
+ * exceeds a threshold, then it is spooled to a temporary file with
+ * {@link FileChannel} writes or through memory-mapped regions of the file.
+ * 
+ * @author Jerome Louvel
+ */
+public class PartSpool {
+
+    /** The size of the file regions mapped in memory. */
+    private static final int MAPPING_SIZE = 1024 * 1024;
+
+    /** The in-memory content. */
+    private volatile byte[] bytes;
+
+    /** The file channel. */
+    private volatile FileChannel channel;
+
+    /** The number of in-memory bytes. */
+    private volatile int count;
+
+    /** The directory of the temporary files. */
+    private final File directory;
+
+    /** The temporary file. */
+    private volatile File file;
+
+    /** The size of the content written to the file. */
+    private volatile long filePosition;
+
+    /** Indicates if the file is written through memory-mapped regions. */
+    private final boolean mapped;
+
+    /** The current memory-mapped file region. */
+    private volatile MappedByteBuffer mapping;
+
+    /** The maximum size of the in-memory content. */
+    private final int threshold;
+
+    /**
+     * Constructor.
+     * 
+     * @param threshold
+     *            The maximum size of the in-memory content.
+     * @param directory
+     *            The directory of the temporary files or null for the default
+     *            temporary directory.
+     * @param mapped
+     *            Indicates if the file is written through memory-mapped
+     *            regions.
+     */
+    public PartSpool(int threshold, File directory, boolean mapped) {
+        this.directory = directory;
+        this.mapped = mapped;
+        this.threshold = threshold;
+    }
+
+    /**
+     * Closes the file channel, if any.
+     * 
+     * @throws IOException
+     */
+    private void close() throws IOException {
+        if (this.channel != null) {
+            this.mapping = null;
+            this.channel.close();
+        }
+    }
+
+    /**
+     * Discards the content and deletes the temporary file, if any.
+     */
+    public void delete() {
+        try {
+            close();
+        } catch (IOException e) {
+            // Ignore
+        }
+
+        if (this.file != null) {
+            this.file.delete();
+            this.file = null;
+        }
+
+        this.bytes = null;
+    }
+
+    /**
+     * Creates the temporary file and moves the in-memory content into it.
+     * 
+     * @throws IOException
+     */
+    @SuppressWarnings("resource")
+    private void open() throws IOException {
+        this.file = File.createTempFile("restlet-upload-", ".tmp",
+                this.directory);
+        this.channel = new RandomAccessFile(this.file, "rw").getChannel();
+
+        if (this.count > 0) {
+            writeFile(ByteBuffer.wrap(this.bytes, 0, this.count));
+        }
+
+        this.bytes = null;
+        this.count = 0;
+    }
+
+    /**
+     * Completes the spooling and returns the content as a representation
+     * whose metadata are extracted from the part headers. The temporary file
+     * is automatically deleted when the representation is released.
+     * 
+     * @param headers
+     *            The part headers.
+     * @return The part representation.
+     * @throws IOException
+     */
+    public Representation toRepresentation(Series<Header> headers)
+            throws IOException {
+        Representation result;
+
+        if (this.channel == null) {
+            result = new ByteArrayRepresentation((this.bytes == null) ? new byte[0]
+                    : this.bytes, 0, this.count);
+            result.setSize(this.count);
+        } else {
+            if (this.mapped) {
+                this.channel.truncate(this.filePosition);
+            }
+
+            close();
+            FileRepresentation fileRepresentation = new FileRepresentation(
+                    this.file, null);
+            fileRepresentation.setAutoDeleting(true);
+            fileRepresentation.setDisposition(null);
+            result = fileRepresentation;
+        }
+
+        // Parts without content type default to plain text (RFC 2046)
+        result.setMediaType(MediaType.TEXT_PLAIN);
+        HeaderUtils.extractEntityHeaders(headers, result);
+        return result;
+    }
+
+    /**
+     * Appends content.
+     * 
+     * @param content
+     *            The content to append.
+     * @throws IOException
+     */
+    public void write(ByteBuffer content) throws IOException {
+        int length = content.remaining();
+
+        if ((this.channel == null) && (this.count + length <= this.threshold)) {
+            if ((this.bytes == null) || (this.count + length > this.bytes.length)) {
+                byte[] bytes = new byte[Math.min(this.threshold, Math.max(
+                        this.count + length, 2 * this.count + 1024))];
+
+                if (this.count > 0) {
+                    System.arraycopy(this.bytes, 0, bytes, 0, this.count);
+                }
+
+                this.bytes = bytes;
+            }
+
+            content.get(this.bytes, this.count, length);
+            this.count += length;
+        } else {
+            if (this.channel == null) {
+                open();
+            }
+
+            writeFile(content);
+        }
+    }
+
+    /**
+     * Writes content to the temporary file.
+     * 
+     * @param content
+     *            The content to write.
+     * @throws IOException
+     */
+    private void writeFile(ByteBuffer content) throws IOException {
+        if (this.mapped) {
+            while (content.hasRemaining()) {
+                if ((this.mapping == null) || !this.mapping.hasRemaining()) {
+                    this.mapping = this.channel.map(
+                            FileChannel.MapMode.READ_WRITE, this.filePosition,
+                            MAPPING_SIZE);
+                }
+
+                int length = Math.min(content.remaining(),
+                        this.mapping.remaining());
+
+                if (length < content.remaining()) {
+                    int limit = content.limit();
+                    content.limit(content.position() + length);
+                    this.mapping.put(content);
+                    content.limit(limit);
+                } else {
+                    this.mapping.put(content);
+                }
+
+                this.filePosition += length;
+            }
+        } else {
+            while (content.hasRemaining()) {
+                this.filePosition += this.channel.write(content);
+            }
+        }
+    }
+
+}
@@ -47,6 +47,7 @@ import org.apache.http.conn.ClientConnectionManager;
 import org.apache.http.conn.params.ConnManagerParams;
 import org.apache.http.conn.params.ConnPerRouteBean;
 import org.apache.http.conn.params.ConnRoutePNames;
+import org.apache.http.conn.routing.HttpRoute;
 import org.apache.http.conn.scheme.PlainSocketFactory;
 import org.apache.http.conn.scheme.Scheme;
 import org.apache.http.conn.scheme.SchemeRegistry;
@@ -54,13 +55,16 @@ import org.apache.http.conn.ssl.SSLSocketFactory;
 import org.apache.http.conn.ssl.X509HostnameVerifier;
 import org.apache.http.cookie.CookieSpecRegistry;
 import org.apache.http.impl.client.DefaultHttpClient;
-import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
+import org.apache.http.impl.conn.PoolingClientConnectionManager;
 import org.apache.http.params.BasicHttpParams;
 import org.apache.http.params.HttpConnectionParams;
 import org.apache.http.params.HttpParams;
+import org.apache.http.pool.ConnPoolControl;
+import org.apache.http.pool.PoolStats;
 import org.restlet.Client;
 import org.restlet.Request;
 import org.restlet.data.Protocol;
+import org.restlet.data.Reference;
 import org.restlet.engine.Engine;
 import org.restlet.engine.adapter.ClientCall;
 import org.restlet.engine.ssl.DefaultSslContextFactory;
@@ -87,6 +91,21 @@ import org.restlet.ext.httpclient.internal.IgnoreCookieSpecFactory;
  * <th>Description</th>
  * </tr>
  * <tr>
+ * <td>connectionLeaseTimeout</td>
+ * <td>long</td>
+ * <td>0</td>
+ * <td>The maximum time, in milliseconds, to wait for a connection to be leased
+ * from the pool. A timeout of zero is interpreted as an infinite timeout.</td>
+ * </tr>
+ * <tr>
+ * <td>connectionTimeToLive</td>
+ * <td>long</td>
+ * <td>-1</td>
+ * <td>The maximum time, in milliseconds, a pooled connection can live, after
+ * which it is closed instead of being reused. A negative or zero value means
+ * that connections can live forever.</td>
+ * </tr>
+ * <tr>
  * <td>followRedirects</td>
  * <td>boolean</td>
  * <td>false</td>
@@ -115,6 +134,14 @@ import org.restlet.ext.httpclient.internal.IgnoreCookieSpecFactory;
  * host.</td>
  * </tr>
  * <tr>
+ * <td>maxConnectionsPerRoute</td>
+ * <td>String</td>
+ * <td>null</td>
+ * <td>Overrides the maximum number of connections for a given host, for
+ * example "https://api.example.com=50". This parameter can be repeated.
+ * Malformed values are logged and ignored.</td>
+ * </tr>
+ * <tr>
  * <td>maxTotalConnections</td>
  * <td>int</td>
  * <td>20 (uses HttpClient's default)</td>
@@ -140,6 +167,13 @@ import org.restlet.ext.httpclient.internal.IgnoreCookieSpecFactory;
  * stopping the connector.</td>
  * </tr>
  * <tr>
+ * <td>staleCheckingEnabled</td>
+ * <td>boolean</td>
+ * <td>true</td>
+ * <td>Indicates if pooled connections should be checked for staleness before
+ * being reused, at the cost of a short read attempt.</td>
+ * </tr>
+ * <tr>
  * <td>socketTimeout</td>
  * <td>int</td>
  * <td>0</td>
@@ -180,7 +214,11 @@ import org.restlet.ext.httpclient.internal.IgnoreCookieSpecFactory;
  * </tr>
  * </table>
  * For the default SSL parameters see the Javadocs of the
- * {@link DefaultSslContextFactory} class.
+ * {@link DefaultSslContextFactory} class.<br>
+ * <br>
+ * Connections are kept in a pool with per route limits, whose statistics are
+ * available via the {@link #getPoolStats()} and
+ * {@link #getPoolStats(HttpRoute)} methods.
  * 
  * @see <a href= "http://hc.apache.org/httpcomponents-client/tutorial/html/"
  *      >Apache HTTP Client tutorial</a>
@@ -251,6 +289,10 @@ public class HttpClientHelper extends
         HttpClientParams.setAuthenticating(params, false);
         HttpClientParams.setRedirecting(params, isFollowRedirects());
         HttpClientParams.setCookiePolicy(params, "ignore");
+        HttpClientParams.setConnectionManagerTimeout(params,
+                getConnectionLeaseTimeout());
+        HttpConnectionParams.setStaleCheckingEnabled(params,
+                isStaleCheckingEnabled());
         HttpConnectionParams.setTcpNoDelay(params, getTcpNoDelay());
         HttpConnectionParams.setConnectionTimeout(params,
                 getSocketConnectTimeoutMs());
@@ -331,8 +373,9 @@ public class HttpClientHelper extends
     }
 
     /**
-     * Creates the connection manager. By default, it creates a thread safe
-     * connection manager.
+     * Creates the connection manager. By default, it creates a pooling
+     * connection manager with the configured time to live, total limit and per
+     * route limits.
      * 
      * @param params
      *            The configuration parameters.
@@ -342,7 +385,77 @@ public class HttpClientHelper extends
      */
     protected ClientConnectionManager createClientConnectionManager(
             HttpParams params, SchemeRegistry schemeRegistry) {
-        return new ThreadSafeClientConnManager(params, schemeRegistry);
+        // The newer PoolingHttpClientConnectionManager can't be plugged into
+        // the DefaultHttpClient configured by this helper
+        PoolingClientConnectionManager result = new PoolingClientConnectionManager(
+                schemeRegistry, getConnectionTimeToLive(),
+                TimeUnit.MILLISECONDS);
+        result.setMaxTotal(getMaxTotalConnections());
+        result.setDefaultMaxPerRoute(getMaxConnectionsPerHost());
+
+        for (String value : getHelpedParameters().getValuesArray(
+                "maxConnectionsPerRoute")) {
+            int index = value.lastIndexOf('=');
+
+            try {
+                if (index == -1) {
+                    throw new IllegalArgumentException("Missing limit");
+                }
+
+                Reference reference = new Reference(value.substring(0, index)
+                        .trim());
+                int max = Integer.parseInt(value.substring(index + 1).trim());
+
+                if (reference.getSchemeProtocol() == null) {
+                    throw new IllegalArgumentException("Unknown scheme");
+                }
+
+                result.setMaxPerRoute(getRoute(reference), max);
+
+                // Requests may target the default port implicitly or not
+                int defaultPort = reference.getSchemeProtocol()
+                        .getDefaultPort();
+
+                if (reference.getHostPort() == -1) {
+                    reference.setHostPort(defaultPort);
+                    result.setMaxPerRoute(getRoute(reference), max);
+                } else if (reference.getHostPort() == defaultPort) {
+                    reference.setHostPort(null);
+                    result.setMaxPerRoute(getRoute(reference), max);
+                }
+            } catch (IllegalArgumentException e) {
+                getLogger().log(
+                        Level.WARNING,
+                        "Ignoring the invalid maxConnectionsPerRoute parameter: "
+                                + value, e);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the maximum time, in milliseconds, to wait for a connection to
+     * be leased from the pool. A timeout of zero is interpreted as an infinite
+     * timeout.
+     * 
+     * @return The connection lease timeout.
+     */
+    public long getConnectionLeaseTimeout() {
+        return Long.parseLong(getHelpedParameters().getFirstValue(
+                "connectionLeaseTimeout", "0"));
+    }
+
+    /**
+     * Returns the maximum time, in milliseconds, a pooled connection can live,
+     * after which it is closed instead of being reused. A negative or zero
+     * value means that connections can live forever.
+     * 
+     * @return The connection time to live.
+     */
+    public long getConnectionTimeToLive() {
+        return Long.parseLong(getHelpedParameters().getFirstValue(
+                "connectionTimeToLive", "-1"));
     }
 
     /**
@@ -414,6 +527,51 @@ public class HttpClientHelper extends
                 "maxTotalConnections", "20"));
     }
 
+    /**
+     * Returns the statistics of the whole connection pool, or null if the
+     * connection manager doesn't expose them or if the connector isn't started.
+     * 
+     * @return The statistics of the whole connection pool.
+     */
+    public PoolStats getPoolStats() {
+        ConnPoolControl<HttpRoute> pool = getPoolControl();
+        return (pool == null) ? null : pool.getTotalStats();
+    }
+
+    /**
+     * Returns the statistics of the connections pooled for a given route, or
+     * null if the connection manager doesn't expose them or if the connector
+     * isn't started.
+     * 
+     * @param route
+     *            The route.
+     * @return The statistics of the connections pooled for the route.
+     * @see #getRoute(Reference)
+     */
+    public PoolStats getPoolStats(HttpRoute route) {
+        ConnPoolControl<HttpRoute> pool = getPoolControl();
+        return (pool == null) ? null : pool.getStats(route);
+    }
+
+    /**
+     * Returns the connection manager as a pool control, or null if the
+     * connection manager doesn't expose one.
+     * 
+     * @return The connection manager as a pool control.
+     */
+    @SuppressWarnings("unchecked")
+    private ConnPoolControl<HttpRoute> getPoolControl() {
+        ConnPoolControl<HttpRoute> result = null;
+
+        if ((this.httpClient != null)
+                && (this.httpClient.getConnectionManager() instanceof ConnPoolControl)) {
+            result = (ConnPoolControl<HttpRoute>) this.httpClient
+                    .getConnectionManager();
+        }
+
+        return result;
+    }
+
     /**
      * Returns the host name of the HTTP proxy, if specified.
      * 
@@ -446,6 +604,27 @@ public class HttpClientHelper extends
         return getHelpedParameters().getFirstValue("retryHandler", null);
     }
 
+    /**
+     * Returns the route used to reach the host of a given reference, taking
+     * the configured proxy into account. As for the routes of the requests,
+     * the port is left undefined when the reference has no explicit port.
+     * 
+     * @param reference
+     *            The reference, such as "https://api.example.com".
+     * @return The route used to reach the host of the reference.
+     */
+    public HttpRoute getRoute(Reference reference) {
+        String scheme = reference.getSchemeProtocol().getSchemeName();
+        HttpHost target = new HttpHost(reference.getHostDomain(),
+                reference.getHostPort(), scheme);
+        boolean secure = Protocol.HTTPS.equals(reference.getSchemeProtocol());
+        String httpProxyHost = getProxyHost();
+
+        return (httpProxyHost == null) ? new HttpRoute(target, null, secure)
+                : new HttpRoute(target, null, new HttpHost(httpProxyHost,
+                        getProxyPort()), secure);
+    }
+
     /**
      * Returns the socket timeout value. A timeout of zero is interpreted as an
      * infinite timeout.
@@ -490,6 +669,17 @@ public class HttpClientHelper extends
                 "followRedirects", "false"));
     }
 
+    /**
+     * Indicates if pooled connections should be checked for staleness before
+     * being reused.
+     * 
+     * @return True if pooled connections should be checked for staleness.
+     */
+    public boolean isStaleCheckingEnabled() {
+        return Boolean.parseBoolean(getHelpedParameters().getFirstValue(
+                "staleCheckingEnabled", "true"));
+    }
+
     /**
      * Sets the idle connections reaper.
      * 
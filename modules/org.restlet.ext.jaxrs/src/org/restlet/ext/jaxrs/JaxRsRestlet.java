@@ -35,8 +35,6 @@ package org.restlet.ext.jaxrs;
 
 import static org.restlet.ext.jaxrs.internal.util.AlgorithmUtil.addPathVarsToMap;
 import static org.restlet.ext.jaxrs.internal.util.AlgorithmUtil.getBestMethod;
-import static org.restlet.ext.jaxrs.internal.util.AlgorithmUtil.getFirstByNoOfLiteralCharsNoOfCapturingGroups;
-import static org.restlet.ext.jaxrs.internal.util.AlgorithmUtil.removeNotSupportedHttpMethod;
 import static org.restlet.ext.jaxrs.internal.util.Util.copyResponseHeaders;
 import static org.restlet.ext.jaxrs.internal.util.Util.getMediaType;
 import static org.restlet.ext.jaxrs.internal.util.Util.getSupportedCharSet;
@@ -849,17 +847,15 @@ public class JaxRsRestlet extends Restlet {
         // (a)
         ResourceObject resObj = resObjAndRemPath.resourceObject;
         RemainingPath u = resObjAndRemPath.u;
-        // (a) 1
+        // (a) 1 and (a) 2: only the methods supporting the given method
         ResourceClass resourceClass = resObj.getResourceClass();
-        Collection<ResourceMethod> resourceMethods = resourceClass
-                .getMethodsForPath(u);
-        if (resourceMethods.isEmpty())
-            excHandler.resourceMethodNotFound();// NICE (resourceClass, u);
-        // (a) 2: remove methods not support the given method
         boolean alsoGet = httpMethod.equals(Method.HEAD);
-        removeNotSupportedHttpMethod(resourceMethods, httpMethod, alsoGet);
+        Collection<ResourceMethod> resourceMethods = resourceClass
+                .getMethodsForPath(u, httpMethod, alsoGet);
         if (resourceMethods.isEmpty()) {
             Set<Method> allowedMethods = resourceClass.getAllowedMethods(u);
+            if (allowedMethods.isEmpty())
+                excHandler.resourceMethodNotFound();// NICE (resourceClass, u);
             if (httpMethod.equals(Method.OPTIONS)) {
                 callContext.getResponse().getAllowedMethods()
                         .addAll(allowedMethods);
@@ -918,30 +914,12 @@ public class JaxRsRestlet extends Restlet {
     private RroRemPathAndMatchedPath identifyRootResource(RemainingPath u)
             throws WebApplicationException, RequestHandledException {
         // 1. Identify the root resource class:
-        // (a)
-        // c: Set<Class>: root resource classes
-        // e: Set<RegExp>
-        // Map<UriTemplateRegExp, Class> eAndCs = new HashMap();
-        Collection<RootResourceClass> eAndCs = new ArrayList<RootResourceClass>();
-        // (a) and (b) and (c) Filter E
-        for (RootResourceClass rootResourceClass : this.resourceClasses.roots()) {
-            // Map.Entry<UriTemplateRegExp, Class> eAndC = eAndCIter.next();
-            // UriTemplateRegExp regExp = eAndC.getKey();
-            // Class clazz = eAndC.getValue();
-            PathRegExp rrcPathRegExp = rootResourceClass.getPathRegExp();
-            MatchingResult matchingResult = rrcPathRegExp.match(u);
-            if (matchingResult == null)
-                continue; // doesn't match
-            if (matchingResult.getFinalCapturingGroup().isEmptyOrSlash())
-                eAndCs.add(rootResourceClass);
-            else if (rootResourceClass.hasSubResourceMethodsOrLocators())
-                eAndCs.add(rootResourceClass);
-        }
+        // (a) to (e) Filter E and sort it, using the precomputed table
+        RootResourceClass tClass = this.resourceClasses.getRootMatchingTable()
+                .getFirstMatching(u);
         // (d)
-        if (eAndCs.isEmpty())
+        if (tClass == null)
             excHandler.rootResourceNotFound();
-        // (e) and (f)
-        RootResourceClass tClass = getFirstByNoOfLiteralCharsNoOfCapturingGroups(eAndCs);
         // (f)
         PathRegExp rMatch = tClass.getPathRegExp();
         MatchingResult matchResult = rMatch.match(u);
@@ -1106,27 +1084,13 @@ public class JaxRsRestlet extends Restlet {
             if (u.isEmptyOrSlash()) {
                 return new ResObjAndRemPath(o, u);
             }
-            // (b) Set C = class ofO,E = {}
-            Collection<ResourceMethodOrLocator> eWithMethod = new ArrayList<ResourceMethodOrLocator>();
-            // (c) and (d) Filter E: remove members do not match U or final
-            // match not empty
-            for (ResourceMethodOrLocator methodOrLocator : resClass
-                    .getResourceMethodsAndLocators()) {
-                PathRegExp pathRegExp = methodOrLocator.getPathRegExp();
-                MatchingResult matchingResult = pathRegExp.match(u);
-                if (matchingResult == null)
-                    continue;
-                if (matchingResult.getFinalCapturingGroup().isEmptyOrSlash())
-                    eWithMethod.add(methodOrLocator);
-                // the following is added by Stephan (is not in spec 2008-03-06)
-                else if (methodOrLocator instanceof SubResourceLocator)
-                    eWithMethod.add(methodOrLocator);
-            }
+            // (b) to (g) Filter E, sort it and use its first member, using
+            // the precomputed table of C = class of O
+            ResourceMethodOrLocator firstMeth = resClass
+                    .getMethodOrLocatorTable().getFirstMatching(u);
             // (e) If E is empty -> HTTP 404
-            if (eWithMethod.isEmpty())
+            if (firstMeth == null)
                 excHandler.resourceNotFound();// NICE (o.getClass(), u);
-            // (f) and (g) sort E, use first member of E
-            ResourceMethodOrLocator firstMeth = getFirstByNoOfLiteralCharsNoOfCapturingGroups(eWithMethod);
 
             PathRegExp rMatch = firstMeth.getPathRegExp();
             MatchingResult matchingResult = rMatch.match(u);
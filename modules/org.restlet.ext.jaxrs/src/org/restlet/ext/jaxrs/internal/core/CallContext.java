@@ -204,6 +204,14 @@ public class CallContext implements javax.ws.rs.core.Request, HttpHeaders,
 
     private Map<String, Cookie> cookies;
 
+    /**
+     * The form read from the entity, shared by all &#64;FormParams of the
+     * call. Lazy initialization by getter.
+     * 
+     * @see #getEntityForm()
+     */
+    private Form entityForm;
+
     private Locale language;
 
     /** contains the current value of the ancestor resources */
@@ -223,6 +231,14 @@ public class CallContext implements javax.ws.rs.core.Request, HttpHeaders,
 
     private List<PathSegment> pathSegmentsEncoded = null;
 
+    /**
+     * The encoded query of the request, shared by all &#64;QueryParams of the
+     * call. Lazy initialization by getter.
+     * 
+     * @see #getQueryForm()
+     */
+    private Form queryForm;
+
     private MultivaluedMap<String, String> queryParametersDecoded;
 
     private MultivaluedMap<String, String> queryParametersEncoded;
@@ -744,6 +760,25 @@ public class CallContext implements javax.ws.rs.core.Request, HttpHeaders,
         return this.cookies;
     }
 
+    /**
+     * Returns the form read from the entity of the request. The entity is
+     * only read once, the form is then shared by the &#64;FormParams of the
+     * call.
+     * 
+     * @return the form read from the entity, empty if no entity is available.
+     */
+    public Form getEntityForm() {
+        if (this.entityForm == null) {
+            final Representation entity = this.request.getEntity();
+            if ((entity != null) && entity.isAvailable()) {
+                this.entityForm = new Form(entity);
+            } else {
+                this.entityForm = new Form();
+            }
+        }
+        return this.entityForm;
+    }
+
     /**
      * @see HttpHeaders#getLanguage()
      */
@@ -984,6 +1019,20 @@ public class CallContext implements javax.ws.rs.core.Request, HttpHeaders,
         return this.pathSegmentsEncoded;
     }
 
+    /**
+     * Returns the encoded query of the request as a form. It is parsed once,
+     * then shared by the &#64;QueryParams of the call.
+     * 
+     * @return the encoded query of the request as a form.
+     */
+    public Form getQueryForm() {
+        if (this.queryForm == null) {
+            this.queryForm = Converter.toFormEncoded(this.request
+                    .getResourceRef().getQuery());
+        }
+        return this.queryForm;
+    }
+
     /**
      * Get the URI query parameters of the current request. All sequences of
      * escaped octets are decoded, equivalent to
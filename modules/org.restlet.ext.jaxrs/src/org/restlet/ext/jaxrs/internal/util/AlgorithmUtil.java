@@ -175,7 +175,7 @@ public class AlgorithmUtil {
      * Sorts the ResourceMethods by it's number of non default regular
      * expressions
      */
-    private static Comparator<ResourceMethod> COMP = new Comparator<ResourceMethod>() {
+    public static final Comparator<ResourceMethod> COMP = new Comparator<ResourceMethod>() {
         public int compare(ResourceMethod rm1, ResourceMethod rm2) {
             int nndre1 = rm1.getPathRegExp().getNoNonDefCaprGroups();
             int nndre2 = rm2.getPathRegExp().getNoNonDefCaprGroups();
@@ -193,8 +193,11 @@ public class AlgorithmUtil {
      * See JSR-311 Spec, section 2.6, Part 3b+c. <br>
      * Never returns null.
      * 
-     * @param unsortedResourceMethods
-     *                the resourceMethods that provide the required mediaType
+     * @param resourceMethods
+     *                the resourceMethods that provide the required mediaType,
+     *                already sorted with {@link #COMP}, as returned by
+     *                {@link org.restlet.ext.jaxrs.internal.wrappers.ResourceClass#getMethodsForPath(RemainingPath, Method, boolean)}
+     *                .
      * @param givenMediaType
      *                The MediaType of the given entity.
      * @param accMediaTypes
@@ -205,12 +208,9 @@ public class AlgorithmUtil {
      *         type in the request, or null
      */
     public static ResourceMethod getBestMethod(
-            Collection<ResourceMethod> unsortedResourceMethods,
+            Collection<ResourceMethod> resourceMethods,
             MediaType givenMediaType, SortedMetadata<MediaType> accMediaTypes,
             Method requHttpMethod) {
-        final Collection<ResourceMethod> resourceMethods;
-        resourceMethods = new SortedOrderedBag<ResourceMethod>(COMP, 
-                unsortedResourceMethods);
         // 3 b+c
         SortedMetadata<MediaType> givenMediaTypes;
         if (givenMediaType != null) {
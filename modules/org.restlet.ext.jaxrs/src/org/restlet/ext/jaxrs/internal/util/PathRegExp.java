@@ -140,8 +140,32 @@ public class PathRegExp {
         }
     }
 
+    /**
+     * Returns the literal start of the given regular expression, i.e. the
+     * characters before the first capturing group or '.' meta character.
+     * 
+     * @param pathPattern
+     *            the regular expression created from a path template.
+     * @return the literal start of the regular expression.
+     */
+    private static String getLiteralPrefix(CharSequence pathPattern) {
+        int end = 0;
+        while ((end < pathPattern.length()) && (pathPattern.charAt(end) != '(')
+                && (pathPattern.charAt(end) != '.')) {
+            end++;
+        }
+        return pathPattern.subSequence(0, end).toString();
+    }
+
     private final boolean emptyOrSlash;
 
+    /**
+     * The literal start of the regular expression, i.e. the characters before
+     * the first capturing group or regular expression meta character. Every
+     * path matched by this regular expression starts with it.
+     */
+    private final String literalPrefix;
+
     /** Contains the number of literal chars in this Regular Expression */
     private final Integer noLitChars;
 
@@ -232,6 +256,7 @@ public class PathRegExp {
         pathPattern.append("(.*)");
 
         this.pattern = Pattern.compile(pathPattern.toString());
+        this.literalPrefix = getLiteralPrefix(pathPattern);
         this.emptyOrSlash = Util.isEmptyOrSlash(pathTemplate);
         if (l > 0) {
             if (pathTemplate.charAt(0) != '/') {
@@ -262,6 +287,16 @@ public class PathRegExp {
         return this.pattern.pattern().equals(otherRegExp.pattern.pattern());
     }
 
+    /**
+     * Returns the literal start of this regular expression. Every path matched
+     * by it starts with this prefix, that could be empty.
+     * 
+     * @return the literal start of this regular expression.
+     */
+    public String getLiteralPrefix() {
+        return this.literalPrefix;
+    }
+
     /**
      * @return the number of capturing groups with regular expressions that are
      *         not the default.
@@ -325,6 +360,9 @@ public class PathRegExp {
      */
     public MatchingResult match(RemainingPath remainingPath) {
         String givenPath = remainingPath.getWithoutParams();
+        if (!givenPath.startsWith(this.literalPrefix)) {
+            return null;
+        }
         Matcher matcher = pattern.matcher(givenPath);
         if (!matcher.matches()) {
             return null;
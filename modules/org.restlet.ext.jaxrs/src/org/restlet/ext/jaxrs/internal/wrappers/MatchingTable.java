@@ -0,0 +1,208 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.ext.jaxrs.internal.wrappers;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.restlet.ext.jaxrs.internal.util.MatchingResult;
+import org.restlet.ext.jaxrs.internal.util.PathRegExp;
+import org.restlet.ext.jaxrs.internal.util.RemainingPath;
+
+/**
+ * Precomputed matching table of root resource classes or of resource methods
+ * and sub resource locators. The members are sorted once as required by
+ * JSR-311-Spec, Section 3.7.2, Part 1e and 2f, and indexed in a trie by the
+ * literal prefixes of their {@link PathRegExp}s, so that only the regular
+ * expressions of members whose literal prefix starts the remaining path are
+ * evaluated for a request. Instances are immutable.
+ * 
+ * @author Stephan Koops
+ * @param <R>
+ *            the type of the members.
+ */
+public class MatchingTable<R extends RrcOrRml> {
+
+    /**
+     * A node of the literal prefix trie.
+     */
+    private static class Node {
+
+        /** The child nodes, by next literal character. */
+        private final Map<Character, Node> children = new HashMap<Character, Node>();
+
+        /** The ranks of the members whose literal prefix ends here. */
+        private final List<Integer> ranks = new ArrayList<Integer>();
+    }
+
+    /**
+     * Sorts the members using the number of literal characters as the primary
+     * key, the number of capturing groups as the secondary key, the number of
+     * capturing groups with non-default regular expressions as the tertiary
+     * key (all in descending order), and resource methods ahead of sub
+     * resource locators as the quaternary key.
+     */
+    private static final Comparator<RrcOrRml> COMP = new Comparator<RrcOrRml>() {
+        public int compare(RrcOrRml r1, RrcOrRml r2) {
+            PathRegExp p1 = r1.getPathRegExp();
+            PathRegExp p2 = r2.getPathRegExp();
+            int result = p2.getNoOfLiteralChars() - p1.getNoOfLiteralChars();
+            if (result == 0) {
+                result = p2.getNoOfCapturingGroups()
+                        - p1.getNoOfCapturingGroups();
+            }
+            if (result == 0) {
+                result = p2.getNoNonDefCaprGroups()
+                        - p1.getNoNonDefCaprGroups();
+            }
+            if (result == 0) {
+                result = getSourceKey(r1) - getSourceKey(r2);
+            }
+            return result;
+        }
+    };
+
+    /**
+     * Returns the quaternary sort key of a member.
+     * 
+     * @param rrcOrRml
+     * @return 1 for sub resource locators, 0 otherwise.
+     */
+    private static int getSourceKey(RrcOrRml rrcOrRml) {
+        return (rrcOrRml instanceof SubResourceLocator) ? 1 : 0;
+    }
+
+    /** The sorted members. */
+    private final List<R> members;
+
+    /** The root node of the literal prefix trie. */
+    private final Node root;
+
+    /**
+     * Creates a new matching table. The given members are sorted stable, so
+     * that members with equal sort keys keep their order.
+     * 
+     * @param members
+     *            the root resource classes or the resource methods and sub
+     *            resource locators.
+     */
+    public MatchingTable(Collection<? extends R> members) {
+        List<R> sorted = new ArrayList<R>(members);
+        Collections.sort(sorted, COMP);
+        this.members = Collections.unmodifiableList(sorted);
+        this.root = new Node();
+
+        for (int rank = 0; rank < sorted.size(); rank++) {
+            String prefix = sorted.get(rank).getPathRegExp()
+                    .getLiteralPrefix();
+            Node node = this.root;
+
+            for (int i = 0; i < prefix.length(); i++) {
+                Node child = node.children.get(prefix.charAt(i));
+                if (child == null) {
+                    child = new Node();
+                    node.children.put(prefix.charAt(i), child);
+                }
+                node = child;
+            }
+
+            node.ranks.add(rank);
+        }
+    }
+
+    /**
+     * Returns the first member in sort order that matches the given remaining
+     * path and is accepted by {@link #isAccepted(RrcOrRml, MatchingResult)}.
+     * 
+     * @param remainingPath
+     *            the remaining path to match.
+     * @return the best matching member, or null, if no one matches.
+     */
+    public R getFirstMatching(RemainingPath remainingPath) {
+        String path = remainingPath.getWithoutParams();
+        int bestRank = Integer.MAX_VALUE;
+        Node node = this.root;
+
+        for (int i = 0; node != null; i++) {
+            for (Integer rank : node.ranks) {
+                if (rank.intValue() < bestRank) {
+                    R member = this.members.get(rank.intValue());
+                    MatchingResult matchingResult = member.getPathRegExp()
+                            .match(remainingPath);
+                    if ((matchingResult != null)
+                            && isAccepted(member, matchingResult)) {
+                        bestRank = rank.intValue();
+                    }
+                }
+            }
+
+            node = (i < path.length()) ? node.children.get(path.charAt(i))
+                    : null;
+        }
+
+        return (bestRank == Integer.MAX_VALUE) ? null : this.members
+                .get(bestRank);
+    }
+
+    /**
+     * Returns the members, sorted as required by the request matching
+     * algorithm.
+     * 
+     * @return the sorted members.
+     */
+    public List<R> getMembers() {
+        return this.members;
+    }
+
+    /**
+     * Indicates if the given matching member could handle the remaining path.
+     * By default, the final capturing group must be empty or '/'.
+     * 
+     * @param member
+     *            the member matching the remaining path.
+     * @param matchingResult
+     *            the result of the matching.
+     * @return true, if the member is accepted.
+     */
+    protected boolean isAccepted(R member, MatchingResult matchingResult) {
+        return matchingResult.getFinalCapturingGroup().isEmptyOrSlash();
+    }
+
+}
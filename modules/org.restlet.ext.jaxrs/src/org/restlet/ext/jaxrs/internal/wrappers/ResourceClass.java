@@ -59,6 +59,8 @@ import org.restlet.ext.jaxrs.internal.exceptions.IllegalParamTypeException;
 import org.restlet.ext.jaxrs.internal.exceptions.IllegalPathOnClassException;
 import org.restlet.ext.jaxrs.internal.exceptions.IllegalPathOnMethodException;
 import org.restlet.ext.jaxrs.internal.exceptions.MissingAnnotationException;
+import org.restlet.ext.jaxrs.internal.util.AlgorithmUtil;
+import org.restlet.ext.jaxrs.internal.util.MatchingResult;
 import org.restlet.ext.jaxrs.internal.util.PathRegExp;
 import org.restlet.ext.jaxrs.internal.util.RemainingPath;
 import org.restlet.ext.jaxrs.internal.wrappers.provider.ExtensionBackwardMapping;
@@ -79,6 +81,13 @@ public class ResourceClass extends AbstractJaxRsWrapper {
      */
     private final Map<RemainingPath, Set<org.restlet.data.Method>> allowedMethods = new HashMap<RemainingPath, Set<org.restlet.data.Method>>();
 
+    /**
+     * The resource methods supporting GET or HEAD, sorted as required to
+     * choose the best method. (It is initialized in method.)
+     * {@link #initMatchingTables()}
+     */
+    private volatile List<ResourceMethod> headOrGetMethods;
+
     protected final Class<?> jaxRsClass;
 
     /**
@@ -87,6 +96,12 @@ public class ResourceClass extends AbstractJaxRsWrapper {
      */
     private final boolean leaveEncoded;
 
+    /**
+     * The matching table of the resource methods and sub resource locators.
+     * (It is initialized in method.) {@link #initMatchingTables()}
+     */
+    private volatile MatchingTable<ResourceMethodOrLocator> methodOrLocatorTable;
+
     /**
      * The resource methods of this resource class. (It is initialized in
      * method.)
@@ -101,6 +116,13 @@ public class ResourceClass extends AbstractJaxRsWrapper {
      */
     private final Collection<ResourceMethodOrLocator> resourceMethodsAndLocators = new ArrayList<ResourceMethodOrLocator>();
 
+    /**
+     * The resource methods by HTTP method, sorted as required to choose the
+     * best method. (It is initialized in method.)
+     * {@link #initMatchingTables()}
+     */
+    private volatile Map<org.restlet.data.Method, List<ResourceMethod>> resourceMethodsByHttpMethod;
+
     /**
      * The sub resource locators of this resource class. (It is initialized in
      * method.)
@@ -329,6 +351,58 @@ public class ResourceClass extends AbstractJaxRsWrapper {
         return resourceMethods;
     }
 
+    /**
+     * Return the resource methods for the given path, supporting the given
+     * HTTP method. The returned methods are sorted as required by
+     * {@link AlgorithmUtil#getBestMethod(Collection, org.restlet.data.MediaType, org.restlet.ext.jaxrs.internal.util.SortedMetadata, org.restlet.data.Method)}
+     * .
+     * 
+     * @param remainingPath
+     *                the path
+     * @param httpMethod
+     *                the HTTP method of the request
+     * @param alsoGet
+     *                if true, also methods supporting GET are returned. It is
+     *                intended to be used for HEAD requests.
+     * @return The list of ResourceMethods
+     */
+    public List<ResourceMethod> getMethodsForPath(RemainingPath remainingPath,
+            org.restlet.data.Method httpMethod, boolean alsoGet) {
+        final List<ResourceMethod> candidates;
+        if (alsoGet && httpMethod.equals(org.restlet.data.Method.HEAD)) {
+            candidates = this.headOrGetMethods;
+        } else {
+            candidates = this.resourceMethodsByHttpMethod.get(httpMethod);
+        }
+        final List<ResourceMethod> resourceMethods = new ArrayList<ResourceMethod>();
+        if (candidates != null) {
+            for (final ResourceMethod method : candidates) {
+                final PathRegExp methodPath = method.getPathRegExp();
+                if (remainingPath.isEmptyOrSlash()) {
+                    if (methodPath.isEmptyOrSlash()) {
+                        resourceMethods.add(method);
+                    }
+                } else {
+                    if (methodPath.matchesWithEmpty(remainingPath)) {
+                        resourceMethods.add(method);
+                    }
+                }
+            }
+        }
+        return resourceMethods;
+    }
+
+    /**
+     * Returns the matching table of the sub resource methods and sub resource
+     * locators. A sub resource locator is also accepted, if the final
+     * capturing group is not empty.
+     * 
+     * @return the matching table of the sub resource methods and locators.
+     */
+    public MatchingTable<ResourceMethodOrLocator> getMethodOrLocatorTable() {
+        return this.methodOrLocatorTable;
+    }
+
     /**
      * @return returns the name of the wrapped class
      */
@@ -370,6 +444,43 @@ public class ResourceClass extends AbstractJaxRsWrapper {
         return !this.resourceMethodsAndLocators.isEmpty();
     }
 
+    /**
+     * Precomputes the tables used for the request matching, after the resource
+     * methods and sub resource locators are initialized.
+     */
+    private void initMatchingTables() {
+        this.methodOrLocatorTable = new MatchingTable<ResourceMethodOrLocator>(
+                this.resourceMethodsAndLocators) {
+            @Override
+            protected boolean isAccepted(ResourceMethodOrLocator member,
+                    MatchingResult matchingResult) {
+                return super.isAccepted(member, matchingResult)
+                        || (member instanceof SubResourceLocator);
+            }
+        };
+        final Map<org.restlet.data.Method, List<ResourceMethod>> byHttpMethod = new HashMap<org.restlet.data.Method, List<ResourceMethod>>();
+        final List<ResourceMethod> headOrGet = new ArrayList<ResourceMethod>();
+        for (final ResourceMethod method : this.resourceMethods) {
+            List<ResourceMethod> methods = byHttpMethod.get(method
+                    .getHttpMethod());
+            if (methods == null) {
+                methods = new ArrayList<ResourceMethod>();
+                byHttpMethod.put(method.getHttpMethod(), methods);
+            }
+            methods.add(method);
+            if (method.isHttpMethodSupported(org.restlet.data.Method.HEAD,
+                    true)) {
+                headOrGet.add(method);
+            }
+        }
+        for (final List<ResourceMethod> methods : byHttpMethod.values()) {
+            Collections.sort(methods, AlgorithmUtil.COMP);
+        }
+        Collections.sort(headOrGet, AlgorithmUtil.COMP);
+        this.resourceMethodsByHttpMethod = byHttpMethod;
+        this.headOrGetMethods = headOrGet;
+    }
+
     private void initResourceMethodsAndLocators(
             ThreadLocalizedContext tlContext, JaxRsProviders jaxRsProviders,
             ExtensionBackwardMapping extensionBackwardMapping, Logger logger)
@@ -447,6 +558,7 @@ public class ResourceClass extends AbstractJaxRsWrapper {
                         + ". Ignoring this method. (" + e.getMessage() + ")");
             }
         }
+        initMatchingTables();
     }
 
     /**
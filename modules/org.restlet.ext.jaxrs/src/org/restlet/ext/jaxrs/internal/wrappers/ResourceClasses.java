@@ -52,6 +52,7 @@ import org.restlet.ext.jaxrs.internal.exceptions.IllegalPathParamTypeException;
 import org.restlet.ext.jaxrs.internal.exceptions.InjectException;
 import org.restlet.ext.jaxrs.internal.exceptions.MissingAnnotationException;
 import org.restlet.ext.jaxrs.internal.exceptions.MissingConstructorException;
+import org.restlet.ext.jaxrs.internal.util.MatchingResult;
 import org.restlet.ext.jaxrs.internal.util.PathRegExp;
 import org.restlet.ext.jaxrs.internal.wrappers.provider.ExtensionBackwardMapping;
 import org.restlet.ext.jaxrs.internal.wrappers.provider.JaxRsProviders;
@@ -71,6 +72,12 @@ public class ResourceClasses {
 
     private final Map<Class<?>, ResourceClass> resourceClasses = new HashMap<Class<?>, ResourceClass>();
 
+    /**
+     * The matching table of the root resource classes, recomputed each time a
+     * root resource class is added.
+     */
+    private volatile MatchingTable<RootResourceClass> rootMatchingTable;
+
     /**
      * This set must only changed by adding a root resource class to this
      * JaxRsRestlet.
@@ -95,6 +102,7 @@ public class ResourceClasses {
         this.jaxRsProviders = jaxRsProviders;
         this.extensionBackwardMapping = extensionBackwardMapping;
         this.logger = logger;
+        updateRootMatchingTable();
     }
 
     /**
@@ -166,6 +174,7 @@ public class ResourceClasses {
             }
         }
         rootResourceClasses.add(newRrc);
+        updateRootMatchingTable();
         return true;
     }
 
@@ -250,6 +259,7 @@ public class ResourceClasses {
             }
         }
         rootResourceClasses.add(newRrc);
+        updateRootMatchingTable();
         return true;
     }
 
@@ -334,10 +344,36 @@ public class ResourceClasses {
                 this.extensionBackwardMapping, Context.getCurrentLogger());
     }
 
+    /**
+     * Returns the matching table of the root resource classes. A root resource
+     * class is accepted, if the final capturing group is empty or '/', or if it
+     * has sub resource methods or locators.
+     * 
+     * @return the matching table of the root resource classes.
+     */
+    public MatchingTable<RootResourceClass> getRootMatchingTable() {
+        return this.rootMatchingTable;
+    }
+
     /**
      * @return the wrapped root resource classes
      */
     public Iterable<RootResourceClass> roots() {
         return this.rootResourceClasses;
     }
+
+    /**
+     * Recomputes the matching table of the root resource classes.
+     */
+    private synchronized void updateRootMatchingTable() {
+        this.rootMatchingTable = new MatchingTable<RootResourceClass>(
+                this.rootResourceClasses) {
+            @Override
+            protected boolean isAccepted(RootResourceClass rrc,
+                    MatchingResult matchingResult) {
+                return super.isAccepted(rrc, matchingResult)
+                        || rrc.hasSubResourceMethodsOrLocators();
+            }
+        };
+    }
 }
@@ -38,6 +38,7 @@ import java.lang.reflect.AccessibleObject;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.lang.reflect.ParameterizedType;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
@@ -120,6 +121,12 @@ public class ParameterList {
          */
         protected final Class<Collection<?>> collType;
 
+        /**
+         * The static methods of {@link #convertTo} accepting a String, in the
+         * order they are tried for a conversion. They are looked up once.
+         */
+        private final Method[] conversionMethods;
+
         /**
          * The class to convert to. If this object getter represents an *Param
          * annotated parameter, and it should be to an array or collection of
@@ -139,6 +146,12 @@ public class ParameterList {
          */
         protected final boolean isArray;
 
+        /**
+         * The constructor of {@link #convertTo} accepting a String, or null.
+         * It is looked up once.
+         */
+        private final Constructor<?> stringConstructor;
+
         protected final ThreadLocalizedContext tlContext;
 
         @SuppressWarnings({ "unchecked", "rawtypes" })
@@ -169,6 +182,10 @@ public class ParameterList {
                 this.collType = null;
                 this.isArray = false;
             }
+            this.stringConstructor = ConstructorUtils
+                    .getMatchingAccessibleConstructor(this.convertTo,
+                            STRING_PARAM_TYPES);
+            this.conversionMethods = getConversionMethods(this.convertTo);
         }
 
         protected Object convertParamValue(String firstHeader)
@@ -237,26 +254,20 @@ public class ParameterList {
                 value = defaultValue.value();
             }
 
-            try {
-                return ConstructorUtils.invokeConstructor(convertTo, value);
-            } catch (Exception e) {
-                handleExceptionOnInvocation(value, e);
-            }
-
-            // fixes for:
-            // https://github.com/restlet/restlet-framework-java/issues/645
-            try {
-                return MethodUtils.invokeStaticMethod(convertTo,
-                        convertTo.isEnum() ? "fromString" : "valueOf", value);
-            } catch (Exception e) {
-                handleExceptionOnInvocation(value, e);
+            if (this.stringConstructor != null) {
+                try {
+                    return this.stringConstructor.newInstance(value);
+                } catch (Exception e) {
+                    handleExceptionOnInvocation(value, e);
+                }
             }
 
-            try {
-                return MethodUtils.invokeStaticMethod(convertTo,
-                        convertTo.isEnum() ? "valueOf" : "fromString", value);
-            } catch (Exception e) {
-                handleExceptionOnInvocation(value, e);
+            for (final Method conversionMethod : this.conversionMethods) {
+                try {
+                    return conversionMethod.invoke(null, value);
+                } catch (Exception e) {
+                    handleExceptionOnInvocation(value, e);
+                }
             }
 
             throw ConvertParameterException
@@ -581,8 +592,6 @@ public class ParameterList {
 
         private final FormParam formParam;
 
-        private static Form form;
-
         FormParamGetter(FormParam formParam, DefaultValue defaultValue,
                 Class<?> convToCl, Type convToGen,
                 ThreadLocalizedContext tlContext, boolean leaveEncoded) {
@@ -592,12 +601,7 @@ public class ParameterList {
 
         @Override
         public Object getParamValue() {
-            Representation entity = this.tlContext.get().getRequest()
-                    .getEntity();
-            if (entity != null && entity.isAvailable()) {
-                form = new Form(entity);
-            }
-
+            final Form form = this.tlContext.get().getEntityForm();
             final String paramName = this.formParam.value();
             try {
                 return super.getParamValue(form, paramName);
@@ -808,10 +812,7 @@ public class ParameterList {
 
         @Override
         public Object getParamValue() {
-            final Reference resourceRef = this.tlContext.get().getRequest()
-                    .getResourceRef();
-            final String queryString = resourceRef.getQuery();
-            final Form form = Converter.toFormEncoded(queryString);
+            final Form form = this.tlContext.get().getQueryForm();
             final String paramName = this.queryParam.value();
             try {
                 return super.getParamValue(form, paramName);
@@ -864,6 +865,10 @@ public class ParameterList {
     private static final Logger localLogger = org.restlet.Context
             .getCurrentLogger();
 
+    /** The parameter types of a String constructor or conversion method. */
+    private static final Class<?>[] STRING_PARAM_TYPES = new Class<?>[] {
+            String.class };
+
     private static final Collection<Class<? extends Annotation>> VALID_ANNOTATIONS = createValidAnnotations();
 
     /**
@@ -911,6 +916,34 @@ public class ParameterList {
         return null;
     }
 
+    /**
+     * Returns the public static methods of the given class accepting a String
+     * and that could convert it, in the order to try them: "valueOf", then
+     * "fromString", or the reverse for enums (see
+     * https://github.com/restlet/restlet-framework-java/issues/645).
+     * 
+     * @param convertTo
+     *            the class to convert to.
+     * @return the conversion methods, never null.
+     */
+    static Method[] getConversionMethods(Class<?> convertTo) {
+        final String[] names;
+        if (convertTo.isEnum()) {
+            names = new String[] { "fromString", "valueOf" };
+        } else {
+            names = new String[] { "valueOf", "fromString" };
+        }
+        final List<Method> methods = new ArrayList<Method>(names.length);
+        for (final String name : names) {
+            final Method method = MethodUtils.getMatchingAccessibleMethod(
+                    convertTo, name, STRING_PARAM_TYPES);
+            if ((method != null) && Modifier.isStatic(method.getModifiers())) {
+                methods.add(method);
+            }
+        }
+        return methods.toArray(new Method[methods.size()]);
+    }
+
     /**
      * Returns true, if one of the annotations is &#64;{@link Encoded}
      */
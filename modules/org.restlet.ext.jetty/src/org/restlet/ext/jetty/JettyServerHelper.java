@@ -213,6 +213,16 @@ import org.restlet.ext.jetty.internal.JettyServerCall;
  * allowed for the service to shutdown</td>
  * </tr>
  * </table>
+ * <br>
+ * Once started, the state of the thread pool and of the low resource monitor
+ * can be observed via methods such as {@link #getThreadPoolThreads()},
+ * {@link #getThreadPoolIdleThreads()}, {@link #getThreadPoolQueueSize()} or
+ * {@link #isLowOnResources()}.<br>
+ * <br>
+ * Responses that aren't automatically committed (see
+ * {@link org.restlet.Response#setAutoCommitting(boolean)}) suspend the Jetty
+ * request, releasing its thread until {@link org.restlet.Response#commit()} is
+ * invoked. Their entity is then written using Jetty's asynchronous write path.
  * 
  * @see <a href="http://www.eclipse.org/jetty/">Jetty home page</a>
  * @author Jerome Louvel
@@ -556,6 +566,18 @@ public abstract class JettyServerHelper extends
                 "http.responseHeaderSize", "8192"));
     }
 
+    /**
+     * Returns the Jetty low resource monitor, if the server was created and
+     * low resource monitoring is enabled.
+     * 
+     * @return The Jetty low resource monitor or null.
+     */
+    private LowResourceMonitor getLowResourceMonitor() {
+        org.eclipse.jetty.server.Server server = this.wrappedServer;
+        return (server == null) ? null : server
+                .getBean(LowResourceMonitor.class);
+    }
+
     /**
      * Low resource monitor idle timeout in milliseconds. Defaults to 1000.
      * <p>
@@ -626,6 +648,44 @@ public abstract class JettyServerHelper extends
                 "lowResource.threads", "true"));
     }
 
+    /**
+     * Returns the reasons why the server is currently low on resources, as
+     * reported by the low resource monitor.
+     * 
+     * @return The low resources reasons or null if not low on resources or if
+     *         the monitor is disabled.
+     */
+    public String getLowResourcesReasons() {
+        LowResourceMonitor monitor = getLowResourceMonitor();
+        return (monitor == null) ? null : monitor.getLowResourcesReasons();
+    }
+
+    /**
+     * Returns the Jetty queued thread pool, if the server was created with it.
+     * 
+     * @return The Jetty queued thread pool or null.
+     */
+    private QueuedThreadPool getQueuedThreadPool() {
+        org.eclipse.jetty.server.Server server = this.wrappedServer;
+
+        if ((server != null)
+                && (server.getThreadPool() instanceof QueuedThreadPool)) {
+            return (QueuedThreadPool) server.getThreadPool();
+        }
+
+        return null;
+    }
+
+    /**
+     * Returns the current number of idle threads in the thread pool.
+     * 
+     * @return The current number of idle threads or -1 if unknown.
+     */
+    public int getThreadPoolIdleThreads() {
+        QueuedThreadPool threadPool = getQueuedThreadPool();
+        return (threadPool == null) ? -1 : threadPool.getIdleThreads();
+    }
+
     /**
      * Thread pool idle timeout in milliseconds. Defaults to 60000.
      * <p>
@@ -658,6 +718,17 @@ public abstract class JettyServerHelper extends
                 "threadPool.minThreads", "8"));
     }
 
+    /**
+     * Returns the current number of jobs waiting for a thread in the thread
+     * pool queue.
+     * 
+     * @return The current number of queued jobs or -1 if unknown.
+     */
+    public int getThreadPoolQueueSize() {
+        QueuedThreadPool threadPool = getQueuedThreadPool();
+        return (threadPool == null) ? -1 : threadPool.getQueueSize();
+    }
+
     /**
      * Thread pool stop timeout in milliseconds. Defaults to 5000.
      * <p>
@@ -670,6 +741,16 @@ public abstract class JettyServerHelper extends
                 "threadPool.stopTimeout", "5000"));
     }
 
+    /**
+     * Returns the current number of threads in the thread pool.
+     * 
+     * @return The current number of threads or -1 if unknown.
+     */
+    public int getThreadPoolThreads() {
+        QueuedThreadPool threadPool = getQueuedThreadPool();
+        return (threadPool == null) ? -1 : threadPool.getThreads();
+    }
+
     /**
      * Thread pool threads priority. Defaults to {@link Thread#NORM_PRIORITY}.
      * 
@@ -692,6 +773,27 @@ public abstract class JettyServerHelper extends
         return this.wrappedServer;
     }
 
+    /**
+     * Indicates if the server is currently low on resources, as reported by
+     * the low resource monitor.
+     * 
+     * @return True if the server is low on resources.
+     */
+    public boolean isLowOnResources() {
+        LowResourceMonitor monitor = getLowResourceMonitor();
+        return (monitor != null) && monitor.isLowOnResources();
+    }
+
+    /**
+     * Indicates if the thread pool is currently low on threads.
+     * 
+     * @return True if the thread pool is low on threads.
+     */
+    public boolean isThreadPoolLowOnThreads() {
+        QueuedThreadPool threadPool = getQueuedThreadPool();
+        return (threadPool != null) && threadPool.isLowOnThreads();
+    }
+
     /**
      * Sets the wrapped Jetty server.
      * 
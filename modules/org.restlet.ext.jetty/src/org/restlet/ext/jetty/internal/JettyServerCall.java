@@ -43,13 +43,23 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.logging.Level;
 
+import javax.servlet.AsyncContext;
+
 import org.eclipse.jetty.io.EofException;
 import org.eclipse.jetty.server.HttpChannel;
+import org.eclipse.jetty.server.Request;
+import org.eclipse.jetty.util.Callback;
 import org.restlet.Response;
 import org.restlet.Server;
 import org.restlet.data.Header;
 import org.restlet.data.Status;
 import org.restlet.engine.adapter.ServerCall;
+import org.restlet.engine.connector.ConnectorHelper;
+import org.restlet.representation.OutputRepresentation;
+import org.restlet.representation.Representation;
+import org.restlet.representation.WritableRepresentation;
+import org.restlet.representation.WriterRepresentation;
+import org.restlet.service.ConnectorService;
 import org.restlet.util.Series;
 
 /**
@@ -84,6 +94,18 @@ public class JettyServerCall extends ServerCall {
 
     @Override
     public void complete() {
+        // When the entity is written asynchronously, the completion is
+        // triggered by the write callback instead
+        if (!this.asyncWriting) {
+            completeResponse();
+        }
+    }
+
+    /**
+     * Flushes and closes the response, then completes the asynchronous
+     * context if the call was switched into asynchronous mode.
+     */
+    private void completeResponse() {
         // Flush the response
         try {
             getChannel().getResponse().flushBuffer();
@@ -97,6 +119,13 @@ public class JettyServerCall extends ServerCall {
         } catch (IOException ex) {
             getLogger().log(Level.FINE, "Unable to complete the response", ex);
         }
+
+        AsyncContext context = this.asyncContext;
+
+        if (context != null) {
+            this.asyncContext = null;
+            context.complete();
+        }
     }
 
     @Override
@@ -248,6 +277,24 @@ public class JettyServerCall extends ServerCall {
         return null;
     }
 
+    /**
+     * Indicates if the given entity can be written through the Jetty
+     * asynchronous write path. This is the case for entities exposing their
+     * content as a stream, when the call was switched into asynchronous mode.
+     * Entities that need to write their content themselves are excluded as
+     * they would require an additional thread to feed the stream.
+     * 
+     * @param entity
+     *            The entity to test.
+     * @return True if the given entity can be written asynchronously.
+     */
+    private boolean isAsyncWritable(Representation entity) {
+        return (this.asyncContext != null) && (entity != null)
+                && !(entity instanceof OutputRepresentation)
+                && !(entity instanceof WriterRepresentation)
+                && !(entity instanceof WritableRepresentation);
+    }
+
     /**
      * Indicates if the request was made using a confidential mean.<br>
      * 
@@ -264,6 +311,28 @@ public class JettyServerCall extends ServerCall {
                 || super.isConnectionBroken(exception);
     }
 
+    /**
+     * Invoked when the asynchronous write of the response entity is done,
+     * successfully or not. Releases the entity and completes the call.
+     * 
+     * @param entity
+     *            The response entity written.
+     * @param connectorService
+     *            The connector service to call back.
+     */
+    private void onAsyncWritten(Representation entity,
+            ConnectorService connectorService) {
+        try {
+            entity.release();
+
+            if (connectorService != null) {
+                connectorService.afterSend(entity);
+            }
+        } finally {
+            completeResponse();
+        }
+    }
+
     @Override
     public void sendResponse(Response response) throws IOException {
         // Add call headers
@@ -288,10 +357,99 @@ public class JettyServerCall extends ServerCall {
         } else {
             // Send the response entity
             getChannel().getResponse().setStatus(getStatusCode());
-            super.sendResponse(response);
+
+            if (isAsyncWritable(response.getEntity())) {
+                sendResponseAsync(response);
+            } else {
+                super.sendResponse(response);
+            }
         }
     }
 
+    /**
+     * Sends the response entity using the Jetty asynchronous write path. The
+     * content is copied by Jetty using buffers from its connector's
+     * {@link org.eclipse.jetty.io.ByteBufferPool}, without holding the current
+     * thread. The call is completed once the entity is fully written.
+     * 
+     * @param response
+     *            The response to send.
+     * @throws IOException
+     */
+    private void sendResponseAsync(Response response) throws IOException {
+        final Representation entity = response.getEntity();
+        final ConnectorService connectorService = ConnectorHelper
+                .getConnectorService();
+
+        if (connectorService != null) {
+            connectorService.beforeSend(entity);
+        }
+
+        InputStream entityStream = null;
+
+        try {
+            entityStream = entity.getStream();
+        } finally {
+            if (entityStream == null) {
+                entity.release();
+
+                if (connectorService != null) {
+                    connectorService.afterSend(entity);
+                }
+            }
+        }
+
+        if (entityStream != null) {
+            this.asyncWriting = true;
+            getChannel().getResponse().getHttpOutput()
+                    .sendContent(entityStream, new Callback() {
+                        public void failed(Throwable x) {
+                            getLogger()
+                                    .log(Level.INFO,
+                                            "Unable to asynchronously write the response entity",
+                                            x);
+                            onAsyncWritten(entity, connectorService);
+                        }
+
+                        public void succeeded() {
+                            onAsyncWritten(entity, connectorService);
+                        }
+                    });
+        }
+    }
+
+    /**
+     * Switches the Jetty request into asynchronous mode. The asynchronous
+     * timeout is disabled as the application decides when the response is
+     * committed.
+     * 
+     * @return True if the call was switched into asynchronous mode.
+     */
+    @Override
+    public boolean startAsync() {
+        boolean result = false;
+        Request request = getChannel().getRequest();
+
+        if (request.isAsyncSupported() && !request.isAsyncStarted()) {
+            try {
+                this.asyncContext = request.startAsync();
+                this.asyncContext.setTimeout(0);
+                result = true;
+            } catch (IllegalStateException ise) {
+                getLogger().log(Level.FINE,
+                        "Unable to start the asynchronous Jetty request", ise);
+            }
+        }
+
+        return result;
+    }
+
+    /** The asynchronous context, if the call was switched into it. */
+    private volatile AsyncContext asyncContext;
+
+    /** Indicates if the response entity is being written asynchronously. */
+    private volatile boolean asyncWriting;
+
     /** The wrapped Jetty HTTP channel. */
     private final HttpChannel<?> channel;
 
@@ -295,11 +295,7 @@ public abstract class BaseHelper<T extends Connector> extends
         result.setRejectedExecutionHandler(new RejectedExecutionHandler() {
             public void rejectedExecution(Runnable r,
                     ThreadPoolExecutor executor) {
-                getLogger().warning(
-                        "Unable to run the following "
-                                + (isClientSide() ? "client-side"
-                                        : "server-side") + " task: " + r);
-                traceWorkerService();
+                onRejected(r, false);
             }
         });
 
@@ -378,6 +374,8 @@ public abstract class BaseHelper<T extends Connector> extends
                     && !getWorkerService().isShutdown()
                     && getController().isRunning()) {
                 getWorkerService().execute(task);
+            } else {
+                onRejected(task, true);
             }
         } catch (Exception e) {
             getLogger().log(
@@ -752,6 +750,28 @@ public abstract class BaseHelper<T extends Connector> extends
         }
     }
 
+    /**
+     * Called when a task couldn't be executed by the worker service. By
+     * default, it logs a warning when the worker service rejected the task and
+     * ignores the tasks skipped because the connector is overloaded or
+     * stopped.
+     * 
+     * @param task
+     *            The rejected task.
+     * @param skipped
+     *            True if the task was skipped without being submitted to the
+     *            worker service.
+     */
+    protected void onRejected(Runnable task, boolean skipped) {
+        if (!skipped) {
+            getLogger().warning(
+                    "Unable to run the following "
+                            + (isClientSide() ? "client-side" : "server-side")
+                            + " task: " + task);
+            traceWorkerService();
+        }
+    }
+
     @Override
     public void start() throws Exception {
         super.start();
@@ -49,6 +49,8 @@ import org.restlet.data.Status;
 import org.restlet.ext.nio.internal.connection.Connection;
 import org.restlet.ext.nio.internal.controller.ConnectionController;
 import org.restlet.ext.nio.internal.state.ConnectionState;
+import org.restlet.ext.nio.internal.way.ClientOutboundWay;
+import org.restlet.representation.Representation;
 
 /**
  * Base client helper based on NIO non blocking sockets. Here is the list of
@@ -62,6 +64,15 @@ import org.restlet.ext.nio.internal.state.ConnectionState;
  * <th>Description</th>
  * </tr>
  * <tr>
+ * <td>pipeliningDepth</td>
+ * <td>int</td>
+ * <td>4</td>
+ * <td>Maximum number of requests sent on a connection and still awaiting their
+ * response. Only used when the "pipeliningConnections" parameter is enabled.
+ * Only requests with idempotent methods and repeatable entities are
+ * pipelined.</td>
+ * </tr>
+ * <tr>
  * <td>proxyHost</td>
  * <td>String</td>
  * <td>System property "http.proxyHost"</td>
@@ -87,6 +98,9 @@ public abstract class ClientConnectionHelper extends ConnectionHelper<Client> {
 
     protected static final String CONNECTOR_LATCH = "org.restlet.engine.connector.latch";
 
+    /** Attribute marking a request that was already replayed once. */
+    protected static final String CONNECTOR_REPLAYED = "org.restlet.engine.connector.replayed";
+
     /**
      * Constructor.
      * 
@@ -236,7 +250,9 @@ public abstract class ClientConnectionHelper extends ConnectionHelper<Client> {
         // port
         int hostConnectionCount = 0;
         int bestScore = Integer.MAX_VALUE;
+        int bestPipelineScore = Integer.MAX_VALUE;
         boolean foundConn = false;
+        Connection<Client> pipelineConn = null;
 
         // Determine the target host domain and port of the request.
         InetSocketAddress socketAddress = getSocketAddress(request);
@@ -270,6 +286,15 @@ public abstract class ClientConnectionHelper extends ConnectionHelper<Client> {
                             result = currConn;
                         }
 
+                        // Prefer busy connections that can accept the request
+                        // in their pipeline over new connections.
+                        if ((bestPipelineScore > currScore)
+                                && ((ClientOutboundWay) currConn
+                                        .getOutboundWay()).canPipeline(request)) {
+                            bestPipelineScore = currScore;
+                            pipelineConn = currConn;
+                        }
+
                         hostConnectionCount++;
                     }
                 }
@@ -282,6 +307,12 @@ public abstract class ClientConnectionHelper extends ConnectionHelper<Client> {
                         Level.FINE,
                         "Reusing an existing client connection to: "
                                 + socketAddress);
+            } else if (pipelineConn != null) {
+                result = pipelineConn;
+                getLogger().log(
+                        Level.FINE,
+                        "Pipelining request on an existing client connection to: "
+                                + socketAddress);
             } else if ((getMaxTotalConnections() != -1)
                     && (getConnections().size() >= getMaxTotalConnections())) {
                 if (result == null) {
@@ -326,6 +357,17 @@ public abstract class ClientConnectionHelper extends ConnectionHelper<Client> {
         return result;
     }
 
+    /**
+     * Returns the maximum number of requests sent on a connection and still
+     * awaiting their response when pipelining is enabled.
+     * 
+     * @return The maximum number of pipelined requests per connection.
+     */
+    public int getPipeliningDepth() {
+        return Integer.parseInt(getHelpedParameters().getFirstValue(
+                "pipeliningDepth", "4"));
+    }
+
     /**
      * Returns the host name of the HTTP proxy, if specified.
      * 
@@ -474,11 +516,75 @@ public abstract class ClientConnectionHelper extends ConnectionHelper<Client> {
                 "controllerDaemon", "true"));
     }
 
+    /**
+     * Indicates if the given request can be sent on a connection before the
+     * responses to the previous requests are received. By default, only
+     * requests with an idempotent method and a repeatable entity can be
+     * pipelined, and only if the "pipeliningConnections" parameter is enabled.
+     * 
+     * @param request
+     *            The request to test.
+     * @return True if the request can be pipelined.
+     */
+    public boolean isPipelinable(Request request) {
+        return isPipeliningConnections() && (request != null)
+                && (request.getMethod() != null)
+                && request.getMethod().isIdempotent()
+                && isRepeatable(request.getEntity());
+    }
+
     @Override
     public boolean isProxying() {
         return getProxyHost() != null;
     }
 
+    /**
+     * Indicates if the given request entity can be sent several times. Only
+     * entities that are not transient, or that are empty, are repeatable.
+     * 
+     * @param entity
+     *            The request entity or null.
+     * @return True if the entity can be sent several times.
+     */
+    protected boolean isRepeatable(Representation entity) {
+        return (entity == null) || !entity.isTransient() || entity.isEmpty();
+    }
+
+    /**
+     * Replays a request whose response couldn't be received because its
+     * connection was lost, typically because it was pipelined behind a request
+     * whose response closed the connection. Only idempotent requests are
+     * replayed, only once, and only if their entity is repeatable or wasn't
+     * consumed yet.
+     * 
+     * @param response
+     *            The response whose request should be replayed.
+     * @return True if the request was replayed.
+     */
+    public boolean replay(Response response) {
+        boolean result = false;
+        Request request = (response == null) ? null : response.getRequest();
+
+        if ((request != null) && (request.getMethod() != null)
+                && request.getMethod().isIdempotent()
+                && (isRepeatable(request.getEntity()) || request.getEntity()
+                        .isAvailable())
+                && (request.getAttributes().get(CONNECTOR_REPLAYED) == null)
+                && getHelped().isStarted()) {
+            if (getLogger().isLoggable(Level.FINE)) {
+                getLogger().log(Level.FINE,
+                        "Replaying client request on a new connection: "
+                                + request);
+            }
+
+            request.getAttributes().put(CONNECTOR_REPLAYED, Boolean.TRUE);
+            addOutboundMessage(response);
+            result = true;
+        }
+
+        return result;
+    }
+
     @Override
     public void start() throws Exception {
         getLogger().info("Starting the internal " + getProtocols() + " client");
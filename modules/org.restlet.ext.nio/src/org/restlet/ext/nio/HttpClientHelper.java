@@ -33,16 +33,72 @@
 
 package org.restlet.ext.nio;
 
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SocketChannel;
+
 import org.restlet.Client;
 import org.restlet.data.Protocol;
 import org.restlet.ext.nio.internal.connection.Connection;
+import org.restlet.ext.nio.internal.controller.ConnectionController;
+import org.restlet.ext.nio.internal.http2.Http2ClientSession;
+import org.restlet.ext.nio.internal.way.Http2ClientInboundWay;
+import org.restlet.ext.nio.internal.way.Http2ClientOutboundWay;
 import org.restlet.ext.nio.internal.way.HttpClientInboundWay;
 import org.restlet.ext.nio.internal.way.HttpClientOutboundWay;
 import org.restlet.ext.nio.internal.way.InboundWay;
 import org.restlet.ext.nio.internal.way.OutboundWay;
 
 /**
- * HTTP client helper based on NIO blocking sockets.
+ * HTTP client helper based on NIO blocking sockets. Connections can use
+ * cleartext HTTP/2 (RFC 7540) with prior knowledge that the server supports
+ * it, multiplexing concurrent requests on a single connection per host. Here
+ * is the list of additional parameters that are supported. They should be set
+ * in the Client's context before it is started:
+ * <table>
+ * <tr>
+ * <th>Parameter name</th>
+ * <th>Value type</th>
+ * <th>Default value</th>
+ * <th>Description</th>
+ * </tr>
+ * <tr>
+ * <td>http2Connections</td>
+ * <td>boolean</td>
+ * <td>false</td>
+ * <td>Indicates if new connections directly use HTTP/2, without upgrade. Not
+ * used when a proxy is configured.</td>
+ * </tr>
+ * <tr>
+ * <td>http2HeaderTableSize</td>
+ * <td>int</td>
+ * <td>4096</td>
+ * <td>The maximum size of the HPACK dynamic table used to decode response
+ * headers.</td>
+ * </tr>
+ * <tr>
+ * <td>http2InitialWindowSize</td>
+ * <td>int</td>
+ * <td>65535</td>
+ * <td>The initial flow control window of each stream, limiting the response
+ * entity bytes that the server can send before the application consumes
+ * them.</td>
+ * </tr>
+ * <tr>
+ * <td>http2MaxConcurrentStreams</td>
+ * <td>int</td>
+ * <td>100</td>
+ * <td>The maximum number of concurrent streams that the server can open. As
+ * server push is disabled, it is only used to size the connection flow
+ * control window.</td>
+ * </tr>
+ * <tr>
+ * <td>http2MaxFrameSize</td>
+ * <td>int</td>
+ * <td>16384</td>
+ * <td>The maximum size of the frame payloads that the server can send.</td>
+ * </tr>
+ * </table>
  * 
  * @author Jerome Louvel
  */
@@ -59,6 +115,25 @@ public class HttpClientHelper extends ClientConnectionHelper {
         getProtocols().add(Protocol.HTTP);
     }
 
+    @Override
+    public Connection<Client> checkout(SocketChannel socketChannel,
+            ConnectionController controller, InetSocketAddress socketAddress)
+            throws IOException {
+        Connection<Client> result = super.checkout(socketChannel, controller,
+                socketAddress);
+
+        if (isHttp2Connections() && !isProxying()) {
+            // Replace the ways by HTTP/2 ones sharing a new session
+            Http2ClientSession session = new Http2ClientSession(result, this);
+            result.upgrade(new Http2ClientInboundWay(result,
+                    getInboundBufferSize(), session),
+                    new Http2ClientOutboundWay(result,
+                            getOutboundBufferSize(), session));
+        }
+
+        return result;
+    }
+
     @Override
     public InboundWay createInboundWay(Connection<Client> connection,
             int bufferSize) {
@@ -71,4 +146,59 @@ public class HttpClientHelper extends ClientConnectionHelper {
         return new HttpClientOutboundWay(connection, bufferSize);
     }
 
+    /**
+     * Returns the maximum size of the HPACK dynamic table used to decode
+     * response headers. Defaults to 4096.
+     * 
+     * @return The maximum size of the HPACK dynamic table.
+     */
+    public int getHttp2HeaderTableSize() {
+        return Integer.parseInt(getHelpedParameters().getFirstValue(
+                "http2HeaderTableSize", "4096"));
+    }
+
+    /**
+     * Returns the initial flow control window of each HTTP/2 stream. Defaults
+     * to 65535.
+     * 
+     * @return The initial flow control window of each HTTP/2 stream.
+     */
+    public int getHttp2InitialWindowSize() {
+        return Integer.parseInt(getHelpedParameters().getFirstValue(
+                "http2InitialWindowSize", "65535"));
+    }
+
+    /**
+     * Returns the maximum number of concurrent streams that the server can
+     * open. Defaults to 100.
+     * 
+     * @return The maximum number of concurrent streams.
+     */
+    public int getHttp2MaxConcurrentStreams() {
+        return Integer.parseInt(getHelpedParameters().getFirstValue(
+                "http2MaxConcurrentStreams", "100"));
+    }
+
+    /**
+     * Returns the maximum size of the frame payloads that the server can send.
+     * Defaults to 16384.
+     * 
+     * @return The maximum size of the received frame payloads.
+     */
+    public int getHttp2MaxFrameSize() {
+        return Integer.parseInt(getHelpedParameters().getFirstValue(
+                "http2MaxFrameSize", "16384"));
+    }
+
+    /**
+     * Indicates if new connections directly use HTTP/2, with prior knowledge
+     * of the server support. Defaults to false.
+     * 
+     * @return True if new connections directly use HTTP/2.
+     */
+    public boolean isHttp2Connections() {
+        return Boolean.parseBoolean(getHelpedParameters().getFirstValue(
+                "http2Connections", "false"));
+    }
+
 }
@@ -42,13 +42,59 @@ import org.restlet.Server;
 import org.restlet.data.Protocol;
 import org.restlet.ext.nio.internal.connection.Connection;
 import org.restlet.ext.nio.internal.request.HttpInboundRequest;
+import org.restlet.ext.nio.internal.way.Http2ServerInboundWay;
 import org.restlet.ext.nio.internal.way.HttpServerInboundWay;
 import org.restlet.ext.nio.internal.way.HttpServerOutboundWay;
 import org.restlet.ext.nio.internal.way.InboundWay;
 import org.restlet.ext.nio.internal.way.OutboundWay;
 
 /**
- * HTTP server helper based on NIO blocking sockets.
+ * HTTP server helper based on NIO blocking sockets. Cleartext connections can
+ * be upgraded to HTTP/2 (RFC 7540), either via the "Upgrade: h2c" mechanism or
+ * when the client directly sends the HTTP/2 connection preface. Here is the
+ * list of additional parameters that are supported. They should be set in the
+ * Server's context before it is started:
+ * <table>
+ * <tr>
+ * <th>Parameter name</th>
+ * <th>Value type</th>
+ * <th>Default value</th>
+ * <th>Description</th>
+ * </tr>
+ * <tr>
+ * <td>http2Connections</td>
+ * <td>boolean</td>
+ * <td>false</td>
+ * <td>Indicates if connections can be upgraded to HTTP/2.</td>
+ * </tr>
+ * <tr>
+ * <td>http2HeaderTableSize</td>
+ * <td>int</td>
+ * <td>4096</td>
+ * <td>The maximum size of the HPACK dynamic table used to decode request
+ * headers.</td>
+ * </tr>
+ * <tr>
+ * <td>http2InitialWindowSize</td>
+ * <td>int</td>
+ * <td>65535</td>
+ * <td>The initial flow control window of each stream, limiting the request
+ * entity bytes that the client can send before the application consumes
+ * them.</td>
+ * </tr>
+ * <tr>
+ * <td>http2MaxConcurrentStreams</td>
+ * <td>int</td>
+ * <td>100</td>
+ * <td>The maximum number of concurrent streams per HTTP/2 connection.</td>
+ * </tr>
+ * <tr>
+ * <td>http2MaxFrameSize</td>
+ * <td>int</td>
+ * <td>16384</td>
+ * <td>The maximum size of the frame payloads that the client can send.</td>
+ * </tr>
+ * </table>
  * 
  * @author Jerome Louvel
  */
@@ -82,32 +128,37 @@ public class HttpServerHelper extends ServerConnectionHelper {
             throws IOException {
         boolean result = false;
 
-        // Check if the response is indeed the next one to be written
-        // for this connection
-        HttpServerInboundWay inboundWay = (HttpServerInboundWay) connection
-                .getInboundWay();
-        Response nextResponse = inboundWay.getMessages().peek();
-
-        if (nextResponse != null) {
-            if (nextResponse.getRequest() == response.getRequest()) {
-                result = true;
-            } else {
-                boolean found = false;
-
-                for (Iterator<Response> iterator = inboundWay.getMessages()
-                        .iterator(); iterator.hasNext() && !found;) {
-                    Response next = iterator.next();
-                    found = next.getRequest() == response.getRequest();
-                }
-
-                if (!found) {
-                    throw new IOException(
-                            "Can't find the parent request in the list of inbound messages.");
+        if (connection.getInboundWay() instanceof Http2ServerInboundWay) {
+            // Streams are multiplexed, responses can be sent in any order
+            result = true;
+        } else {
+            // Check if the response is indeed the next one to be written
+            // for this connection
+            HttpServerInboundWay inboundWay = (HttpServerInboundWay) connection
+                    .getInboundWay();
+            Response nextResponse = inboundWay.getMessages().peek();
+
+            if (nextResponse != null) {
+                if (nextResponse.getRequest() == response.getRequest()) {
+                    result = true;
+                } else {
+                    boolean found = false;
+
+                    for (Iterator<Response> iterator = inboundWay.getMessages()
+                            .iterator(); iterator.hasNext() && !found;) {
+                        Response next = iterator.next();
+                        found = next.getRequest() == response.getRequest();
+                    }
+
+                    if (!found) {
+                        throw new IOException(
+                                "Can't find the parent request in the list of inbound messages.");
+                    }
                 }
+            } else {
+                throw new IOException(
+                        "Can't find the parent request in the empty list of inbound messages.");
             }
-        } else {
-            throw new IOException(
-                    "Can't find the parent request in the empty list of inbound messages.");
         }
 
         return result;
@@ -132,4 +183,58 @@ public class HttpServerHelper extends ServerConnectionHelper {
                 resourceUri, protocol);
     }
 
+    /**
+     * Returns the maximum size of the HPACK dynamic table used to decode
+     * request headers. Defaults to 4096.
+     * 
+     * @return The maximum size of the HPACK dynamic table.
+     */
+    public int getHttp2HeaderTableSize() {
+        return Integer.parseInt(getHelpedParameters().getFirstValue(
+                "http2HeaderTableSize", "4096"));
+    }
+
+    /**
+     * Returns the initial flow control window of each HTTP/2 stream. Defaults
+     * to 65535.
+     * 
+     * @return The initial flow control window of each HTTP/2 stream.
+     */
+    public int getHttp2InitialWindowSize() {
+        return Integer.parseInt(getHelpedParameters().getFirstValue(
+                "http2InitialWindowSize", "65535"));
+    }
+
+    /**
+     * Returns the maximum number of concurrent streams per HTTP/2 connection.
+     * Defaults to 100.
+     * 
+     * @return The maximum number of concurrent streams.
+     */
+    public int getHttp2MaxConcurrentStreams() {
+        return Integer.parseInt(getHelpedParameters().getFirstValue(
+                "http2MaxConcurrentStreams", "100"));
+    }
+
+    /**
+     * Returns the maximum size of the frame payloads that the client can send.
+     * Defaults to 16384.
+     * 
+     * @return The maximum size of the received frame payloads.
+     */
+    public int getHttp2MaxFrameSize() {
+        return Integer.parseInt(getHelpedParameters().getFirstValue(
+                "http2MaxFrameSize", "16384"));
+    }
+
+    /**
+     * Indicates if connections can be upgraded to HTTP/2. Defaults to false.
+     * 
+     * @return True if connections can be upgraded to HTTP/2.
+     */
+    public boolean isHttp2Connections() {
+        return Boolean.parseBoolean(getHelpedParameters().getFirstValue(
+                "http2Connections", "false"));
+    }
+
 }
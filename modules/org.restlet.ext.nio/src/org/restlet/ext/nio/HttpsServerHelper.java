@@ -140,6 +140,17 @@ public class HttpsServerHelper extends HttpServerHelper {
         return sslContext;
     }
 
+    /**
+     * Returns false as HTTP/2 over TLS requires the ALPN extension, which
+     * isn't supported by the SSL engine of the JVM.
+     * 
+     * @return False.
+     */
+    @Override
+    public boolean isHttp2Connections() {
+        return false;
+    }
+
     /**
      * Sets the SSL context.
      * 
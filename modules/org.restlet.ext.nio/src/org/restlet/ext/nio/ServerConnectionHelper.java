@@ -39,12 +39,20 @@ import java.net.ServerSocket;
 import java.net.SocketAddress;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
+import java.util.Arrays;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.logging.Level;
 
 import org.restlet.Request;
 import org.restlet.Response;
 import org.restlet.Server;
+import org.restlet.data.Reference;
 import org.restlet.data.Status;
+import org.restlet.engine.metrics.ConnectorMetrics;
+import org.restlet.engine.metrics.MetricsUtils;
+import org.restlet.ext.nio.internal.admission.AdmissionController;
+import org.restlet.ext.nio.internal.admission.ConcurrencyLimit;
 import org.restlet.ext.nio.internal.connection.Connection;
 import org.restlet.ext.nio.internal.controller.ConnectionController;
 import org.restlet.ext.nio.internal.controller.ServerConnectionController;
@@ -78,12 +86,106 @@ import org.restlet.ext.nio.internal.request.InboundRequest;
  * <td>Enable/disable the SO_REUSEADDR socket option. See
  * java.io.ServerSocket#reuseAddress property for additional details.</td>
  * </tr>
+ * <tr>
+ * <td>admissionControl</td>
+ * <td>boolean</td>
+ * <td>false</td>
+ * <td>Indicates if calls must be admitted before being handled by a worker
+ * thread. Rejected calls are answered with a 503 status and a "Retry-After"
+ * header without reaching the application. Requires worker threads.</td>
+ * </tr>
+ * <tr>
+ * <td>admissionLimit</td>
+ * <td>String</td>
+ * <td>gradient</td>
+ * <td>Algorithm adapting the maximum number of calls handled concurrently:
+ * "fixed", "aimd" (additive increase, multiplicative decrease) or "gradient"
+ * (based on the ratio between the long and short term latencies).</td>
+ * </tr>
+ * <tr>
+ * <td>admissionInitialLimit</td>
+ * <td>int</td>
+ * <td>maxThreads</td>
+ * <td>Initial maximum number of calls handled concurrently.</td>
+ * </tr>
+ * <tr>
+ * <td>admissionMinLimit</td>
+ * <td>int</td>
+ * <td>1</td>
+ * <td>Lower bound of the adaptive concurrency limit.</td>
+ * </tr>
+ * <tr>
+ * <td>admissionMaxLimit</td>
+ * <td>int</td>
+ * <td>1000</td>
+ * <td>Upper bound of the adaptive concurrency limit.</td>
+ * </tr>
+ * <tr>
+ * <td>admissionTargetLatencyMs</td>
+ * <td>int</td>
+ * <td>0</td>
+ * <td>Latency above which a call is considered as a congestion signal by the
+ * adaptive concurrency limit. Calls answered with a 503 status are always
+ * congestion signals. Use '0' to ignore latency.</td>
+ * </tr>
+ * <tr>
+ * <td>maxQueueTimeMs</td>
+ * <td>int</td>
+ * <td>0</td>
+ * <td>Maximum time for a call to wait for a worker thread. Calls waiting
+ * longer are rejected as their client has likely given up. Use '0' for an
+ * unlimited wait.</td>
+ * </tr>
+ * <tr>
+ * <td>bulkheadMaxConcurrency</td>
+ * <td>int</td>
+ * <td>0</td>
+ * <td>Maximum number of calls handled concurrently for a given virtual host
+ * or application, see {@link #getBulkheadKey(Request)}. Use '0' to disable
+ * bulkheads.</td>
+ * </tr>
+ * <tr>
+ * <td>bulkheadKey</td>
+ * <td>String</td>
+ * <td>null</td>
+ * <td>Key of a bulkhead, for example "www.example.com:8080/app". When set,
+ * only the configured keys have their own bulkhead, the other calls sharing a
+ * common one. Otherwise, a bulkhead is created for each key met, up to a
+ * bounded number, evicting the least recently used idle ones. This parameter
+ * can be repeated.</td>
+ * </tr>
+ * <tr>
+ * <td>bulkheadPathSegments</td>
+ * <td>int</td>
+ * <td>0</td>
+ * <td>Number of leading path segments distinguishing bulkheads in addition to
+ * the host, typically 1 when applications are attached under distinct path
+ * prefixes.</td>
+ * </tr>
+ * <tr>
+ * <td>retryAfterMs</td>
+ * <td>int</td>
+ * <td>1000</td>
+ * <td>Delay suggested to the clients of rejected calls.</td>
+ * </tr>
  * </table>
  * 
  * @author Jerome Louvel
  */
 public abstract class ServerConnectionHelper extends ConnectionHelper<Server> {
 
+    /**
+     * The name of the server context attribute exposing the admission
+     * controller for monitoring.
+     */
+    public static final String ADMISSION_CONTROLLER = "org.restlet.ext.nio.admissionController";
+
+    /** The admission controller. */
+    private volatile AdmissionController admissionController;
+
+    /** The connector metrics registered in the server context. */
+    private volatile ConnectorMetrics connectorMetrics;
+
     /** The server socket channel. */
     private volatile ServerSocketChannel serverSocketChannel;
 
@@ -100,6 +202,16 @@ public abstract class ServerConnectionHelper extends ConnectionHelper<Server> {
         getAttributes().put("ephemeralPort", -1);
     }
 
+    @Override
+    public void addOutboundMessage(Response response) {
+        if (getAdmissionController() != null) {
+            // Release the permits once the response is committed
+            getAdmissionController().onCommitted(response);
+        }
+
+        super.addOutboundMessage(response);
+    }
+
     /**
      * Indicates if the connection can handle the given response at this point
      * in time.
@@ -115,6 +227,51 @@ public abstract class ServerConnectionHelper extends ConnectionHelper<Server> {
     protected abstract boolean canHandle(Connection<Server> connection,
             Response response) throws IOException;
 
+    /**
+     * Creates the admission controller.
+     * 
+     * @return The admission controller.
+     */
+    protected AdmissionController createAdmissionController() {
+        ConcurrencyLimit limit = new ConcurrencyLimit(getAdmissionLimit(),
+                getAdmissionInitialLimit(), getAdmissionMinLimit(),
+                getAdmissionMaxLimit(), TimeUnit.MILLISECONDS
+                        .toNanos(getAdmissionTargetLatencyMs()));
+        return new AdmissionController(this, limit, getMaxQueueTimeMs(),
+                getBulkheadMaxConcurrency(), Arrays.asList(getBulkheadKeys()),
+                getRetryAfterMs());
+    }
+
+    /**
+     * Creates the connector metrics exposed to the metrics service of the
+     * parent component.
+     * 
+     * @return The connector metrics.
+     */
+    protected ConnectorMetrics createConnectorMetrics() {
+        return new ConnectorMetrics() {
+            public int getActiveCount() {
+                ThreadPoolExecutor workers = getWorkerService();
+                return (workers == null) ? 0 : workers.getActiveCount();
+            }
+
+            public int getConnectionCount() {
+                return getConnections().size();
+            }
+
+            public String getName() {
+                return getHelped().getProtocols().get(0).getName() + ":"
+                        + getHelped().getActualPort();
+            }
+
+            public int getQueueDepth() {
+                ThreadPoolExecutor workers = getWorkerService();
+                return getInboundMessages().size()
+                        + ((workers == null) ? 0 : workers.getQueue().size());
+            }
+        };
+    }
+
     @Override
     public Connection<Server> createConnection(SocketChannel socketChannel,
             ConnectionController controller, InetSocketAddress socketAddress)
@@ -232,11 +389,170 @@ public abstract class ServerConnectionHelper extends ConnectionHelper<Server> {
         }
     }
 
+    /**
+     * Returns the admission controller, or null if admission control is
+     * disabled. It exposes counters for monitoring and is also available as
+     * the {@link #ADMISSION_CONTROLLER} attribute of the server context.
+     * 
+     * @return The admission controller.
+     */
+    public AdmissionController getAdmissionController() {
+        return admissionController;
+    }
+
+    /**
+     * Returns the initial maximum number of calls handled concurrently.
+     * Defaults to the maximum number of worker threads.
+     * 
+     * @return The initial maximum number of calls handled concurrently.
+     */
+    public int getAdmissionInitialLimit() {
+        return Integer.parseInt(getHelpedParameters().getFirstValue(
+                "admissionInitialLimit", Integer.toString(getMaxThreads())));
+    }
+
+    /**
+     * Returns the algorithm adapting the maximum number of calls handled
+     * concurrently.
+     * 
+     * @return The algorithm adapting the concurrency limit.
+     * @see ConcurrencyLimit
+     */
+    public String getAdmissionLimit() {
+        return getHelpedParameters().getFirstValue("admissionLimit",
+                ConcurrencyLimit.ALGORITHM_GRADIENT);
+    }
+
+    /**
+     * Returns the upper bound of the adaptive concurrency limit.
+     * 
+     * @return The upper bound of the adaptive concurrency limit.
+     */
+    public int getAdmissionMaxLimit() {
+        return Integer.parseInt(getHelpedParameters().getFirstValue(
+                "admissionMaxLimit", "1000"));
+    }
+
+    /**
+     * Returns the lower bound of the adaptive concurrency limit.
+     * 
+     * @return The lower bound of the adaptive concurrency limit.
+     */
+    public int getAdmissionMinLimit() {
+        return Integer.parseInt(getHelpedParameters().getFirstValue(
+                "admissionMinLimit", "1"));
+    }
+
+    /**
+     * Returns the latency above which a call is considered as a congestion
+     * signal by the adaptive concurrency limit.
+     * 
+     * @return The target latency in milliseconds or 0.
+     */
+    public int getAdmissionTargetLatencyMs() {
+        return Integer.parseInt(getHelpedParameters().getFirstValue(
+                "admissionTargetLatencyMs", "0"));
+    }
+
+    /**
+     * Returns the key of the bulkhead isolating a call. By default, it is the
+     * host identifier of the request, matching the virtual host, followed by
+     * the number of leading path segments given by the "bulkheadPathSegments"
+     * parameter, matching the application when applications are attached
+     * under distinct path prefixes.
+     * 
+     * @param request
+     *            The request to isolate.
+     * @return The bulkhead key.
+     */
+    public String getBulkheadKey(Request request) {
+        StringBuilder result = new StringBuilder();
+        Reference hostRef = request.getHostRef();
+
+        if ((hostRef != null) && (hostRef.getHostDomain() != null)) {
+            result.append(hostRef.getHostDomain().toLowerCase());
+
+            if (hostRef.getHostPort() != -1) {
+                result.append(':').append(hostRef.getHostPort());
+            }
+        }
+
+        int segments = getBulkheadPathSegments();
+        String path = (request.getResourceRef() == null) ? null : request
+                .getResourceRef().getPath();
+
+        if ((segments > 0) && (path != null)) {
+            int end = 0;
+
+            for (int i = 0; (i < segments) && (end != -1); i++) {
+                end = path.indexOf('/', end + 1);
+            }
+
+            result.append((end == -1) ? path : path.substring(0, end));
+        }
+
+        return result.toString();
+    }
+
+    /**
+     * Returns the configured bulkhead keys. When empty, a bulkhead is created
+     * for each key met.
+     * 
+     * @return The configured bulkhead keys.
+     */
+    public String[] getBulkheadKeys() {
+        return getHelpedParameters().getValuesArray("bulkheadKey");
+    }
+
+    /**
+     * Returns the maximum number of calls handled concurrently per bulkhead,
+     * or 0 if bulkheads are disabled.
+     * 
+     * @return The maximum number of calls handled concurrently per bulkhead.
+     */
+    public int getBulkheadMaxConcurrency() {
+        return Integer.parseInt(getHelpedParameters().getFirstValue(
+                "bulkheadMaxConcurrency", "0"));
+    }
+
+    /**
+     * Returns the number of leading path segments distinguishing bulkheads in
+     * addition to the host.
+     * 
+     * @return The number of leading path segments of the bulkhead keys.
+     */
+    public int getBulkheadPathSegments() {
+        return Integer.parseInt(getHelpedParameters().getFirstValue(
+                "bulkheadPathSegments", "0"));
+    }
+
     @Override
     public ServerConnectionController getController() {
         return (ServerConnectionController) super.getController();
     }
 
+    /**
+     * Returns the maximum time for a call to wait for a worker thread before
+     * being rejected, or 0 for an unlimited wait.
+     * 
+     * @return The maximum queue time in milliseconds.
+     */
+    public int getMaxQueueTimeMs() {
+        return Integer.parseInt(getHelpedParameters().getFirstValue(
+                "maxQueueTimeMs", "0"));
+    }
+
+    /**
+     * Returns the delay suggested to the clients of rejected calls.
+     * 
+     * @return The delay suggested to the clients of rejected calls, in
+     *         milliseconds.
+     */
+    public int getRetryAfterMs() {
+        return Integer.parseInt(getHelpedParameters().getFirstValue(
+                "retryAfterMs", "1000"));
+    }
+
     /**
      * Returns the server socket channel.
      * 
@@ -263,7 +579,15 @@ public abstract class ServerConnectionHelper extends ConnectionHelper<Server> {
 
     @Override
     protected void handleInbound(Response response) {
-        handleInbound(response, false);
+        if ((response != null) && (getAdmissionController() != null)) {
+            Runnable task = getAdmissionController().admit(response);
+
+            if (task != null) {
+                execute(task);
+            }
+        } else {
+            handleInbound(response, false);
+        }
     }
 
     @Override
@@ -271,6 +595,17 @@ public abstract class ServerConnectionHelper extends ConnectionHelper<Server> {
         handleOutbound(response, true);
     }
 
+    /**
+     * Indicates if calls must be admitted before being handled by a worker
+     * thread.
+     * 
+     * @return True if admission control is enabled.
+     */
+    public boolean isAdmissionControl() {
+        return Boolean.parseBoolean(getHelpedParameters().getFirstValue(
+                "admissionControl", "false"));
+    }
+
     @Override
     public boolean isControllerDaemon() {
         return Boolean.parseBoolean(getHelpedParameters().getFirstValue(
@@ -294,6 +629,15 @@ public abstract class ServerConnectionHelper extends ConnectionHelper<Server> {
                 "reuseAddress", "true"));
     }
 
+    @Override
+    protected void onRejected(Runnable task, boolean skipped) {
+        if ((getAdmissionController() == null)
+                || !getController().isRunning()
+                || !getAdmissionController().reject(task)) {
+            super.onRejected(task, skipped);
+        }
+    }
+
     /**
      * Sets the ephemeral port in the attributes map if necessary.
      * 
@@ -326,6 +670,20 @@ public abstract class ServerConnectionHelper extends ConnectionHelper<Server> {
         // Sets the ephemeral port is necessary
         setEphemeralPort(this.serverSocketChannel.socket());
 
+        if (isAdmissionControl() && hasWorkerThreads()) {
+            this.admissionController = createAdmissionController();
+
+            if (getHelped().getContext() != null) {
+                getHelped().getContext().getAttributes()
+                        .put(ADMISSION_CONTROLLER, this.admissionController);
+            }
+        }
+
+        // Expose the connector state to the metrics service
+        this.connectorMetrics = createConnectorMetrics();
+        MetricsUtils.addConnector(getHelped().getContext(),
+                this.connectorMetrics);
+
         // Start the controller
         getLogger().info(
                 "Starting the internal " + getProtocols() + " server on port "
@@ -352,6 +710,12 @@ public abstract class ServerConnectionHelper extends ConnectionHelper<Server> {
         // Stop the controller
         super.stop();
 
+        if (this.connectorMetrics != null) {
+            MetricsUtils.removeConnector(getHelped().getContext(),
+                    this.connectorMetrics);
+            this.connectorMetrics = null;
+        }
+
         // Close the server socket channel
         if (getServerSocketChannel() != null) {
             getServerSocketChannel().close();
@@ -360,4 +724,15 @@ public abstract class ServerConnectionHelper extends ConnectionHelper<Server> {
         // Clear the ephemeral port
         getAttributes().put("ephemeralPort", -1);
     }
+
+    @Override
+    public void traceWorkerService() {
+        super.traceWorkerService();
+
+        if ((getAdmissionController() != null)
+                && getLogger().isLoggable(Level.FINE)) {
+            getLogger().fine(getAdmissionController().toString());
+        }
+    }
+
 }
@@ -0,0 +1,473 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.ext.nio.internal.admission;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.restlet.Response;
+import org.restlet.data.Status;
+import org.restlet.engine.Engine;
+import org.restlet.ext.nio.ServerConnectionHelper;
+
+/**
+ * Admission control of the inbound calls of a server connector. When a call
+ * is dispatched by the controller thread, it checks that the bulkhead of the
+ * call target and the adaptive {@link ConcurrencyLimit} have a free permit.
+ * Admitted calls keep their permits while waiting for a worker thread, so
+ * that the observed latency includes the queuing delay, and until their
+ * response is committed, including when it is committed later by an
+ * asynchronous processing. When a worker thread picks an admitted call, it
+ * checks that the call didn't wait longer than the maximum queue time.<br>
+ * <br>
+ * Bulkheads are only created for the configured keys when there are some,
+ * the other calls sharing a common bulkhead. Otherwise, a bounded number of
+ * bulkheads is kept, the least recently used idle ones being evicted.<br>
+ * <br>
+ * Rejected calls, including those the worker service couldn't accept, are
+ * cheaply answered with a {@link Status#SERVER_ERROR_SERVICE_UNAVAILABLE}
+ * status and a "Retry-After" header, without invoking the application.
+ * Counters are maintained for monitoring.
+ * 
+ * @author Jerome Louvel
+ */
+public class AdmissionController {
+
+    /**
+     * Worker task handling an admitted call.
+     */
+    private class AdmissionTask implements Runnable {
+
+        /** The time when the call was admitted, in nanoseconds. */
+        private final long admissionTime;
+
+        /** The bulkhead of the call or null. */
+        private final Bulkhead bulkhead;
+
+        /** The response to handle. */
+        private final Response response;
+
+        /**
+         * Constructor.
+         * 
+         * @param response
+         *            The response to handle.
+         * @param bulkhead
+         *            The bulkhead of the call or null.
+         */
+        public AdmissionTask(Response response, Bulkhead bulkhead) {
+            this.admissionTime = System.nanoTime();
+            this.bulkhead = bulkhead;
+            this.response = response;
+        }
+
+        /**
+         * Releases the permits of the call. Use
+         * {@link AdmissionController#release(Response, boolean)} so that they
+         * are released only once.
+         * 
+         * @param congested
+         *            True if the call indicated congestion.
+         */
+        private void release(boolean congested) {
+            limit.release(System.nanoTime() - this.admissionTime, congested);
+
+            if (this.bulkhead != null) {
+                this.bulkhead.release();
+            }
+        }
+
+        public void run() {
+            try {
+                handle(this);
+            } finally {
+                Engine.clearThreadLocalVariables();
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "Handle admitted inbound messages";
+        }
+    }
+
+    /** The maximum number of bulkheads, beyond which they are shared. */
+    private static final int MAX_BULKHEADS = 1024;
+
+    /** The key of the shared bulkhead. */
+    private static final String SHARED_BULKHEAD = "*";
+
+    /** The response attribute holding the task of an admitted call. */
+    private static final String TASK_ATTRIBUTE = "org.restlet.ext.nio.admissionTask";
+
+    /** The number of admitted calls. */
+    private final AtomicLong admittedCount;
+
+    /** The keys of the bulkheads, or an empty set for any key. */
+    private final Set<String> bulkheadKeys;
+
+    /** The maximum number of calls per bulkhead, or 0. */
+    private final int bulkheadMaxConcurrency;
+
+    /** The bulkheads, in least recently used order. */
+    private final Map<String, Bulkhead> bulkheads;
+
+    /** The parent server helper. */
+    private final ServerConnectionHelper helper;
+
+    /** The adaptive concurrency limit. */
+    private final ConcurrencyLimit limit;
+
+    /** The maximum time for a call to wait for a worker, or 0. */
+    private final long maxQueueTime;
+
+    /** The number of calls rejected by a bulkhead. */
+    private final AtomicLong rejectedBulkheadCount;
+
+    /** The number of calls rejected by the concurrency limit. */
+    private final AtomicLong rejectedLimitCount;
+
+    /** The number of calls rejected because of an overload. */
+    private final AtomicLong rejectedOverloadCount;
+
+    /** The number of calls rejected after the maximum queue time. */
+    private final AtomicLong rejectedQueueTimeCount;
+
+    /** The delay suggested to rejected clients, in milliseconds. */
+    private final int retryAfterMs;
+
+    /**
+     * Constructor.
+     * 
+     * @param helper
+     *            The parent server helper.
+     * @param limit
+     *            The adaptive concurrency limit.
+     * @param maxQueueTimeMs
+     *            The maximum time for a call to wait for a worker thread, in
+     *            milliseconds, or 0.
+     * @param bulkheadMaxConcurrency
+     *            The maximum number of calls handled concurrently per
+     *            bulkhead, or 0.
+     * @param bulkheadKeys
+     *            The keys of the bulkheads, or an empty collection for any
+     *            key.
+     * @param retryAfterMs
+     *            The delay suggested to rejected clients, in milliseconds.
+     */
+    public AdmissionController(ServerConnectionHelper helper,
+            ConcurrencyLimit limit, int maxQueueTimeMs,
+            int bulkheadMaxConcurrency, Collection<String> bulkheadKeys,
+            int retryAfterMs) {
+        this.admittedCount = new AtomicLong();
+        this.bulkheadKeys = new HashSet<String>(bulkheadKeys);
+        this.bulkheadMaxConcurrency = bulkheadMaxConcurrency;
+        this.bulkheads = new LinkedHashMap<String, Bulkhead>(16, 0.75f, true);
+        this.helper = helper;
+        this.limit = limit;
+        this.maxQueueTime = TimeUnit.MILLISECONDS.toNanos(maxQueueTimeMs);
+        this.rejectedBulkheadCount = new AtomicLong();
+        this.rejectedLimitCount = new AtomicLong();
+        this.rejectedOverloadCount = new AtomicLong();
+        this.rejectedQueueTimeCount = new AtomicLong();
+        this.retryAfterMs = retryAfterMs;
+    }
+
+    /**
+     * Admits or rejects an inbound call. Called by the controller thread.
+     * 
+     * @param response
+     *            The response to handle.
+     * @return The worker task handling the admitted call or null if the call
+     *         was rejected.
+     */
+    public Runnable admit(Response response) {
+        Runnable result = null;
+        Bulkhead bulkhead = null;
+
+        if (this.bulkheadMaxConcurrency > 0) {
+            bulkhead = getBulkhead(this.helper.getBulkheadKey(response
+                    .getRequest()));
+        }
+
+        if ((bulkhead != null) && !bulkhead.tryAcquire()) {
+            this.rejectedBulkheadCount.incrementAndGet();
+            reject(response, "Maximum concurrency of " + bulkhead.getName()
+                    + " reached");
+        } else if (!this.limit.tryAcquire()) {
+            if (bulkhead != null) {
+                bulkhead.release();
+            }
+
+            this.rejectedLimitCount.incrementAndGet();
+            reject(response, "Concurrency limit reached");
+        } else {
+            this.admittedCount.incrementAndGet();
+            AdmissionTask task = new AdmissionTask(response, bulkhead);
+            response.getAttributes().put(TASK_ATTRIBUTE, task);
+            result = task;
+        }
+
+        return result;
+    }
+
+    /**
+     * Evicts the least recently used bulkhead without calls in progress.
+     * 
+     * @return True if a bulkhead was evicted.
+     */
+    private boolean evictIdleBulkhead() {
+        boolean result = false;
+
+        for (Iterator<Bulkhead> iter = this.bulkheads.values().iterator(); !result
+                && iter.hasNext();) {
+            if (iter.next().getActive() == 0) {
+                iter.remove();
+                result = true;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the number of admitted calls.
+     * 
+     * @return The number of admitted calls.
+     */
+    public long getAdmittedCount() {
+        return this.admittedCount.get();
+    }
+
+    /**
+     * Returns the bulkhead of a given key, creating it if needed. Keys that
+     * aren't configured share a common bulkhead.
+     * 
+     * @param key
+     *            The bulkhead key.
+     * @return The bulkhead.
+     */
+    private Bulkhead getBulkhead(String key) {
+        if (!this.bulkheadKeys.isEmpty() && !this.bulkheadKeys.contains(key)) {
+            key = SHARED_BULKHEAD;
+        }
+
+        synchronized (this.bulkheads) {
+            Bulkhead result = this.bulkheads.get(key);
+
+            if ((result == null) && (this.bulkheads.size() >= MAX_BULKHEADS)
+                    && !evictIdleBulkhead()) {
+                // Share a bulkhead to keep the memory bounded
+                key = SHARED_BULKHEAD;
+                result = this.bulkheads.get(key);
+            }
+
+            if (result == null) {
+                result = new Bulkhead(key, this.bulkheadMaxConcurrency);
+                this.bulkheads.put(key, result);
+            }
+
+            return result;
+        }
+    }
+
+    /**
+     * Returns a snapshot of the bulkheads.
+     * 
+     * @return A snapshot of the bulkheads.
+     */
+    public List<Bulkhead> getBulkheads() {
+        synchronized (this.bulkheads) {
+            return new ArrayList<Bulkhead>(this.bulkheads.values());
+        }
+    }
+
+    /**
+     * Returns the adaptive concurrency limit.
+     * 
+     * @return The adaptive concurrency limit.
+     */
+    public ConcurrencyLimit getLimit() {
+        return limit;
+    }
+
+    /**
+     * Returns the number of calls rejected by a bulkhead.
+     * 
+     * @return The number of calls rejected by a bulkhead.
+     */
+    public long getRejectedBulkheadCount() {
+        return this.rejectedBulkheadCount.get();
+    }
+
+    /**
+     * Returns the number of calls rejected by the concurrency limit.
+     * 
+     * @return The number of calls rejected by the concurrency limit.
+     */
+    public long getRejectedLimitCount() {
+        return this.rejectedLimitCount.get();
+    }
+
+    /**
+     * Returns the number of calls rejected because the connector was
+     * overloaded or the worker service was saturated after their admission.
+     * 
+     * @return The number of calls rejected because of an overload.
+     */
+    public long getRejectedOverloadCount() {
+        return this.rejectedOverloadCount.get();
+    }
+
+    /**
+     * Returns the number of calls rejected after waiting longer than the
+     * maximum queue time.
+     * 
+     * @return The number of calls rejected after the maximum queue time.
+     */
+    public long getRejectedQueueTimeCount() {
+        return this.rejectedQueueTimeCount.get();
+    }
+
+    /**
+     * Handles an admitted call in a worker thread, unless it waited longer
+     * than the maximum queue time.
+     * 
+     * @param task
+     *            The worker task.
+     */
+    private void handle(AdmissionTask task) {
+        Response response = task.response;
+
+        if ((this.maxQueueTime > 0)
+                && (System.nanoTime() - task.admissionTime > this.maxQueueTime)) {
+            release(response, true);
+            this.rejectedQueueTimeCount.incrementAndGet();
+            reject(response, "Maximum queue time exceeded");
+        } else {
+            // The permits are released when the response is committed
+            this.helper.doHandleInbound(response);
+        }
+    }
+
+    /**
+     * Releases the permits of an admitted call once its response is
+     * committed. Calls answered with a
+     * {@link Status#SERVER_ERROR_SERVICE_UNAVAILABLE} status indicate
+     * congestion.
+     * 
+     * @param response
+     *            The committed response.
+     */
+    public void onCommitted(Response response) {
+        release(response, Status.SERVER_ERROR_SERVICE_UNAVAILABLE
+                .equals(response.getStatus()));
+    }
+
+    /**
+     * Rejects a call with a {@link Status#SERVER_ERROR_SERVICE_UNAVAILABLE}
+     * status and a "Retry-After" header, without invoking the application.
+     * 
+     * @param response
+     *            The response to reject.
+     * @param reason
+     *            The rejection reason.
+     */
+    private void reject(Response response, String reason) {
+        response.setStatus(Status.SERVER_ERROR_SERVICE_UNAVAILABLE, reason);
+        response.setRetryAfter(new Date(System.currentTimeMillis()
+                + this.retryAfterMs));
+        response.setCommitted(true);
+        this.helper.addOutboundMessage(response);
+    }
+
+    /**
+     * Rejects a worker task returned by {@link #admit(Response)} that couldn't
+     * be executed because of an overload.
+     * 
+     * @param task
+     *            The worker task.
+     * @return True if the task was rejected, false if it isn't an admission
+     *         task.
+     */
+    public boolean reject(Runnable task) {
+        boolean result = (task instanceof AdmissionTask);
+
+        if (result) {
+            AdmissionTask admissionTask = (AdmissionTask) task;
+            release(admissionTask.response, true);
+            this.rejectedOverloadCount.incrementAndGet();
+            reject(admissionTask.response, "Connector overloaded");
+        }
+
+        return result;
+    }
+
+    /**
+     * Releases the permits of an admitted call, if they weren't released yet.
+     * 
+     * @param response
+     *            The response of the call.
+     * @param congested
+     *            True if the call indicated congestion.
+     */
+    private void release(Response response, boolean congested) {
+        Object task = response.getAttributes().remove(TASK_ATTRIBUTE);
+
+        if (task instanceof AdmissionTask) {
+            ((AdmissionTask) task).release(congested);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "Admission control: limit " + this.limit.getInFlight() + "/"
+                + this.limit.getLimit() + " in flight, "
+                + getAdmittedCount() + " admitted, "
+                + getRejectedOverloadCount() + " rejected (overload), "
+                + getRejectedQueueTimeCount() + " rejected (queue time), "
+                + getRejectedBulkheadCount() + " rejected (bulkhead), "
+                + getRejectedLimitCount() + " rejected (limit)";
+    }
+
+}
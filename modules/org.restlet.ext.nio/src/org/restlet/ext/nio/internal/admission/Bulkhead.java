@@ -0,0 +1,145 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.ext.nio.internal.admission;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Isolates the calls of a group, such as a virtual host or an application, by
+ * limiting the number of them handled concurrently. This prevents a slow
+ * group from using all the worker threads at the expense of the others.
+ * 
+ * @author Jerome Louvel
+ */
+public class Bulkhead {
+
+    /** The number of calls currently handled. */
+    private final AtomicInteger active;
+
+    /** The maximum number of calls handled concurrently. */
+    private final int maxConcurrency;
+
+    /** The bulkhead name. */
+    private final String name;
+
+    /** The number of rejected calls. */
+    private final AtomicLong rejectedCount;
+
+    /**
+     * Constructor.
+     * 
+     * @param name
+     *            The bulkhead name.
+     * @param maxConcurrency
+     *            The maximum number of calls handled concurrently.
+     */
+    public Bulkhead(String name, int maxConcurrency) {
+        this.active = new AtomicInteger();
+        this.maxConcurrency = maxConcurrency;
+        this.name = name;
+        this.rejectedCount = new AtomicLong();
+    }
+
+    /**
+     * Returns the number of calls currently handled.
+     * 
+     * @return The number of calls currently handled.
+     */
+    public int getActive() {
+        return this.active.get();
+    }
+
+    /**
+     * Returns the maximum number of calls handled concurrently.
+     * 
+     * @return The maximum number of calls handled concurrently.
+     */
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * Returns the bulkhead name.
+     * 
+     * @return The bulkhead name.
+     */
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Returns the number of rejected calls.
+     * 
+     * @return The number of rejected calls.
+     */
+    public long getRejectedCount() {
+        return this.rejectedCount.get();
+    }
+
+    /**
+     * Releases a call permit.
+     */
+    public void release() {
+        this.active.decrementAndGet();
+    }
+
+    @Override
+    public String toString() {
+        return getName() + " (" + getActive() + "/" + getMaxConcurrency()
+                + " active, " + getRejectedCount() + " rejected)";
+    }
+
+    /**
+     * Tries to acquire a call permit.
+     * 
+     * @return True if the call can be handled.
+     */
+    public boolean tryAcquire() {
+        boolean result = false;
+        int current = this.active.get();
+
+        while (!result && (current < this.maxConcurrency)) {
+            result = this.active.compareAndSet(current, current + 1);
+            current = this.active.get();
+        }
+
+        if (!result) {
+            this.rejectedCount.incrementAndGet();
+        }
+
+        return result;
+    }
+
+}
@@ -0,0 +1,292 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.ext.nio.internal.admission;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Limit of the number of calls handled concurrently, adapted to the observed
+ * latency. Three algorithms are supported:
+ * <ul>
+ * <li>"fixed": the limit never changes.</li>
+ * <li>"aimd": additive increase, multiplicative decrease. The limit grows by
+ * one every time a full window of calls completes without congestion and is
+ * reduced by 10% on congestion, meaning a call exceeding the target latency
+ * or rejected by the application. The limit is reduced at most once per
+ * window of calls, as the calls completing just after a reduction were
+ * admitted under the previous limit.</li>
+ * <li>"gradient": the limit follows the ratio between the long term and the
+ * short term average latencies. When the recent latency rises above the
+ * usual one, queues are building up and the limit shrinks, otherwise it grows
+ * by the square root of the current limit.</li>
+ * </ul>
+ * The limit only grows when at least half of it is used, so that an idle
+ * server doesn't inflate it.
+ * 
+ * @author Jerome Louvel
+ */
+public class ConcurrencyLimit {
+
+    /** The additive increase, multiplicative decrease algorithm. */
+    public static final String ALGORITHM_AIMD = "aimd";
+
+    /** The fixed limit algorithm. */
+    public static final String ALGORITHM_FIXED = "fixed";
+
+    /** The latency gradient algorithm. */
+    public static final String ALGORITHM_GRADIENT = "gradient";
+
+    /** The ratio applied to the limit on congestion. */
+    private static final double BACKOFF_RATIO = 0.9;
+
+    /** The weight of a new sample in the long term latency average. */
+    private static final double LONG_WEIGHT = 2.0 / 601;
+
+    /** The weight of a new sample in the short term latency average. */
+    private static final double SHORT_WEIGHT = 2.0 / 11;
+
+    /** The weight of a new limit in the smoothed limit. */
+    private static final double SMOOTHING = 0.2;
+
+    /** The tolerated ratio between the short and long term latencies. */
+    private static final double TOLERANCE = 1.5;
+
+    /** The limit algorithm. */
+    private final String algorithm;
+
+    /** The number of calls completed since the last reduction of the limit. */
+    private int callsSinceBackoff;
+
+    /** The number of calls currently handled. */
+    private final AtomicInteger inFlight;
+
+    /** The current limit. */
+    private volatile double limit;
+
+    /** The long term latency average, in nanoseconds. */
+    private volatile double longLatency;
+
+    /** The maximum limit. */
+    private final int maxLimit;
+
+    /** The minimum limit. */
+    private final int minLimit;
+
+    /** The short term latency average, in nanoseconds. */
+    private volatile double shortLatency;
+
+    /** The latency above which a call indicates congestion, or 0. */
+    private final long targetLatency;
+
+    /**
+     * Constructor.
+     * 
+     * @param algorithm
+     *            The limit algorithm.
+     * @param initialLimit
+     *            The initial limit.
+     * @param minLimit
+     *            The minimum limit.
+     * @param maxLimit
+     *            The maximum limit.
+     * @param targetLatency
+     *            The latency above which a call indicates congestion, in
+     *            nanoseconds, or 0.
+     */
+    public ConcurrencyLimit(String algorithm, int initialLimit, int minLimit,
+            int maxLimit, long targetLatency) {
+        if (!ALGORITHM_AIMD.equals(algorithm)
+                && !ALGORITHM_FIXED.equals(algorithm)
+                && !ALGORITHM_GRADIENT.equals(algorithm)) {
+            throw new IllegalArgumentException(
+                    "Unknown concurrency limit algorithm: " + algorithm);
+        }
+
+        this.algorithm = algorithm;
+        this.inFlight = new AtomicInteger();
+        this.maxLimit = Math.max(1, maxLimit);
+        this.callsSinceBackoff = this.maxLimit;
+        this.minLimit = Math.max(1, Math.min(minLimit, this.maxLimit));
+        this.limit = Math.max(this.minLimit,
+                Math.min(initialLimit, this.maxLimit));
+        this.targetLatency = targetLatency;
+    }
+
+    /**
+     * Reduces the limit after a congestion and starts a new window of calls.
+     * 
+     * @param limit
+     *            The current limit.
+     * @return The reduced limit.
+     */
+    private double backoff(double limit) {
+        this.callsSinceBackoff = 0;
+        return limit * BACKOFF_RATIO;
+    }
+
+    /**
+     * Returns the limit algorithm.
+     * 
+     * @return The limit algorithm.
+     */
+    public String getAlgorithm() {
+        return algorithm;
+    }
+
+    /**
+     * Returns the number of calls currently handled.
+     * 
+     * @return The number of calls currently handled.
+     */
+    public int getInFlight() {
+        return this.inFlight.get();
+    }
+
+    /**
+     * Returns the short term latency average, in nanoseconds.
+     * 
+     * @return The short term latency average.
+     */
+    public long getLatency() {
+        return (long) this.shortLatency;
+    }
+
+    /**
+     * Returns the current limit.
+     * 
+     * @return The current limit.
+     */
+    public int getLimit() {
+        return (int) this.limit;
+    }
+
+    /**
+     * Releases a call permit and adapts the limit to the call latency.
+     * 
+     * @param latency
+     *            The call latency, in nanoseconds.
+     * @param congested
+     *            True if the call indicated congestion.
+     */
+    public void release(long latency, boolean congested) {
+        int inFlight = this.inFlight.getAndDecrement();
+
+        if (!ALGORITHM_FIXED.equals(this.algorithm)) {
+            update(latency, congested
+                    || ((this.targetLatency > 0) && (latency > this.targetLatency)),
+                    inFlight);
+        }
+    }
+
+    /**
+     * Tries to acquire a call permit.
+     * 
+     * @return True if the call can be handled.
+     */
+    public boolean tryAcquire() {
+        boolean result = false;
+        int current = this.inFlight.get();
+
+        while (!result && (current < getLimit())) {
+            result = this.inFlight.compareAndSet(current, current + 1);
+            current = this.inFlight.get();
+        }
+
+        return result;
+    }
+
+    /**
+     * Updates the limit after a call.
+     * 
+     * @param latency
+     *            The call latency, in nanoseconds.
+     * @param congested
+     *            True if the call indicated congestion.
+     * @param inFlight
+     *            The number of calls handled when the call completed.
+     */
+    private synchronized void update(long latency, boolean congested,
+            int inFlight) {
+        double limit = this.limit;
+        boolean saturated = (inFlight * 2 >= limit);
+
+        if (this.callsSinceBackoff < this.maxLimit) {
+            this.callsSinceBackoff++;
+        }
+
+        if (congested && (this.callsSinceBackoff < limit)) {
+            // The limit was already reduced during the current window
+            congested = false;
+            saturated = false;
+        }
+
+        if (ALGORITHM_AIMD.equals(this.algorithm)) {
+            if (congested) {
+                limit = backoff(limit);
+            } else if (saturated) {
+                limit += 1.0 / limit;
+            }
+        } else {
+            if (this.shortLatency == 0) {
+                this.shortLatency = latency;
+                this.longLatency = latency;
+            } else {
+                this.shortLatency += (latency - this.shortLatency)
+                        * SHORT_WEIGHT;
+                this.longLatency += (latency - this.longLatency) * LONG_WEIGHT;
+
+                if (this.longLatency > 2 * this.shortLatency) {
+                    // Let the usual latency follow a lasting improvement
+                    this.longLatency *= 0.95;
+                }
+            }
+
+            if (congested) {
+                limit = backoff(limit);
+            } else {
+                double gradient = (this.shortLatency <= 0) ? 1.0 : Math.max(
+                        0.5, Math.min(1.0, TOLERANCE * this.longLatency
+                                / this.shortLatency));
+                double newLimit = limit * gradient + Math.sqrt(limit);
+
+                if (saturated || (newLimit < limit)) {
+                    limit = limit * (1 - SMOOTHING) + newLimit * SMOOTHING;
+                }
+            }
+        }
+
+        this.limit = Math.max(this.minLimit, Math.min(limit, this.maxLimit));
+    }
+
+}
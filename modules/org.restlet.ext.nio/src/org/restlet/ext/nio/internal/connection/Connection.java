@@ -112,6 +112,12 @@ public class Connection<T extends Connector> implements SelectionListener {
     /** The state of the connection. */
     private volatile ConnectionState state;
 
+    /** The inbound way replacing the default one after a protocol upgrade. */
+    private volatile InboundWay upgradedInboundWay;
+
+    /** The outbound way replacing the default one after a protocol upgrade. */
+    private volatile OutboundWay upgradedOutboundWay;
+
     /** The writable selection channel. */
     private volatile WritableSelectionChannel writableSelectionChannel;
 
@@ -148,6 +154,8 @@ public class Connection<T extends Connector> implements SelectionListener {
         this.socketChannel = null;
         this.registration = null;
         this.state = ConnectionState.CLOSED;
+        this.upgradedInboundWay = null;
+        this.upgradedOutboundWay = null;
         this.writableSelectionChannel = null;
     }
 
@@ -290,7 +298,8 @@ public class Connection<T extends Connector> implements SelectionListener {
      * @return The inbound way.
      */
     public InboundWay getInboundWay() {
-        return inboundWay;
+        return (this.upgradedInboundWay == null) ? this.inboundWay
+                : this.upgradedInboundWay;
     }
 
     /**
@@ -348,7 +357,8 @@ public class Connection<T extends Connector> implements SelectionListener {
      * @return The outbound way.
      */
     public OutboundWay getOutboundWay() {
-        return outboundWay;
+        return (this.upgradedOutboundWay == null) ? this.outboundWay
+                : this.upgradedOutboundWay;
     }
 
     /**
@@ -831,4 +841,23 @@ public class Connection<T extends Connector> implements SelectionListener {
 
         return result;
     }
+
+    /**
+     * Replaces the inbound and outbound ways after a protocol upgrade, such as
+     * a switch from HTTP/1.1 to HTTP/2. The new ways are registered with the
+     * same wakeup listener as the current ones.
+     * 
+     * @param inboundWay
+     *            The new inbound way.
+     * @param outboundWay
+     *            The new outbound way.
+     */
+    public void upgrade(InboundWay inboundWay, OutboundWay outboundWay) {
+        inboundWay.getRegistration().setWakeupListener(
+                getInboundWay().getRegistration().getWakeupListener());
+        outboundWay.getRegistration().setWakeupListener(
+                getOutboundWay().getRegistration().getWakeupListener());
+        this.upgradedInboundWay = inboundWay;
+        this.upgradedOutboundWay = outboundWay;
+    }
 }
@@ -0,0 +1,263 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.ext.nio.internal.http2;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.restlet.data.Header;
+
+/**
+ * HPACK header block decoder (RFC 7541). Decoders are stateful as they
+ * maintain the dynamic table shared by all the header blocks received on a
+ * connection. Header blocks must therefore be decoded in the order they were
+ * received.
+ * 
+ * @author Jerome Louvel
+ */
+public class HpackDecoder {
+
+    /** The character set of header strings. */
+    private static final Charset LATIN1 = Charset.forName("ISO-8859-1");
+
+    /** The maximum table size allowed by the local settings. */
+    private volatile int maxTableSize;
+
+    /** The indexing table. */
+    private final HpackTable table;
+
+    /**
+     * Constructor.
+     * 
+     * @param maxTableSize
+     *            The maximum table size allowed by the local settings.
+     */
+    public HpackDecoder(int maxTableSize) {
+        this.maxTableSize = maxTableSize;
+        this.table = new HpackTable(maxTableSize);
+    }
+
+    /**
+     * Decodes a complete header block.
+     * 
+     * @param block
+     *            The header block bytes.
+     * @param offset
+     *            The offset of the header block.
+     * @param length
+     *            The length of the header block.
+     * @return The list of decoded headers.
+     * @throws Http2Exception
+     *             If the header block can't be decoded.
+     */
+    public List<Header> decode(byte[] block, int offset, int length)
+            throws Http2Exception {
+        List<Header> result = new ArrayList<Header>();
+        int[] position = { offset };
+        int end = offset + length;
+        boolean headerFound = false;
+
+        while (position[0] < end) {
+            int b = block[position[0]] & 0xff;
+
+            if ((b & 0x80) != 0) {
+                // Indexed header field
+                int index = readInteger(block, position, end, 7);
+
+                if (index == 0) {
+                    throw new Http2Exception(Http2Constants.ERROR_COMPRESSION,
+                            "Invalid header table index: 0");
+                }
+
+                result.add(new Header(table.getName(index), table
+                        .getValue(index)));
+                headerFound = true;
+            } else if ((b & 0x40) != 0) {
+                // Literal header field with incremental indexing
+                Header header = readLiteral(block, position, end, 6);
+                table.add(header.getName(), header.getValue());
+                result.add(header);
+                headerFound = true;
+            } else if ((b & 0x20) != 0) {
+                // Dynamic table size update, only allowed first
+                if (headerFound) {
+                    throw new Http2Exception(Http2Constants.ERROR_COMPRESSION,
+                            "Table size update after a header field");
+                }
+
+                int size = readInteger(block, position, end, 5);
+
+                if (size > this.maxTableSize) {
+                    throw new Http2Exception(Http2Constants.ERROR_COMPRESSION,
+                            "Table size update exceeding the settings: "
+                                    + size);
+                }
+
+                table.setMaxSize(size);
+            } else {
+                // Literal header field without indexing or never indexed
+                result.add(readLiteral(block, position, end, 4));
+                headerFound = true;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the indexing table.
+     * 
+     * @return The indexing table.
+     */
+    public HpackTable getTable() {
+        return table;
+    }
+
+    /**
+     * Reads an integer with the given prefix size (RFC 7541, section 5.1).
+     * 
+     * @param block
+     *            The header block bytes.
+     * @param position
+     *            The current position, updated after reading.
+     * @param end
+     *            The end of the header block.
+     * @param prefix
+     *            The prefix size in bits.
+     * @return The integer read.
+     * @throws Http2Exception
+     */
+    private int readInteger(byte[] block, int[] position, int end, int prefix)
+            throws Http2Exception {
+        int mask = (1 << prefix) - 1;
+        int result = block[position[0]++] & mask;
+
+        if (result == mask) {
+            int shift = 0;
+            int b;
+
+            do {
+                if (position[0] >= end) {
+                    throw new Http2Exception(Http2Constants.ERROR_COMPRESSION,
+                            "Truncated integer in header block");
+                }
+
+                b = block[position[0]++] & 0xff;
+                result += (b & 0x7f) << shift;
+                shift += 7;
+
+                if ((shift > 28) || (result < 0)) {
+                    throw new Http2Exception(Http2Constants.ERROR_COMPRESSION,
+                            "Integer overflow in header block");
+                }
+            } while ((b & 0x80) != 0);
+        }
+
+        return result;
+    }
+
+    /**
+     * Reads a literal header field whose name is either indexed or literal.
+     * 
+     * @param block
+     *            The header block bytes.
+     * @param position
+     *            The current position, updated after reading.
+     * @param end
+     *            The end of the header block.
+     * @param prefix
+     *            The prefix size in bits of the name index.
+     * @return The header read.
+     * @throws Http2Exception
+     */
+    private Header readLiteral(byte[] block, int[] position, int end,
+            int prefix) throws Http2Exception {
+        int index = readInteger(block, position, end, prefix);
+        String name = (index == 0) ? readString(block, position, end)
+                : table.getName(index);
+        return new Header(name, readString(block, position, end));
+    }
+
+    /**
+     * Reads a string literal, Huffman encoded or not (RFC 7541, section 5.2).
+     * 
+     * @param block
+     *            The header block bytes.
+     * @param position
+     *            The current position, updated after reading.
+     * @param end
+     *            The end of the header block.
+     * @return The string read.
+     * @throws Http2Exception
+     */
+    private String readString(byte[] block, int[] position, int end)
+            throws Http2Exception {
+        if (position[0] >= end) {
+            throw new Http2Exception(Http2Constants.ERROR_COMPRESSION,
+                    "Truncated string in header block");
+        }
+
+        boolean huffman = (block[position[0]] & 0x80) != 0;
+        int length = readInteger(block, position, end, 7);
+
+        if (length > end - position[0]) {
+            throw new Http2Exception(Http2Constants.ERROR_COMPRESSION,
+                    "Truncated string in header block");
+        }
+
+        String result;
+
+        if (huffman) {
+            result = new String(Huffman.decode(block, position[0], length),
+                    LATIN1);
+        } else {
+            result = new String(block, position[0], length, LATIN1);
+        }
+
+        position[0] += length;
+        return result;
+    }
+
+    /**
+     * Sets the maximum table size allowed by the local settings.
+     * 
+     * @param maxTableSize
+     *            The maximum table size.
+     */
+    public void setMaxTableSize(int maxTableSize) {
+        this.maxTableSize = maxTableSize;
+    }
+
+}
@@ -0,0 +1,257 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.ext.nio.internal.http2;
+
+import java.io.ByteArrayOutputStream;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.restlet.data.Header;
+import org.restlet.engine.util.StringUtils;
+
+/**
+ * HPACK header block encoder (RFC 7541). Encoders are stateful as they
+ * maintain the dynamic table shared by all the header blocks sent on a
+ * connection. Header blocks must therefore be sent in the order they were
+ * encoded.
+ * 
+ * @author Jerome Louvel
+ */
+public class HpackEncoder {
+
+    /**
+     * Names of the headers whose values change too often to be worth adding to
+     * the dynamic table.
+     */
+    private static final Set<String> UNINDEXED_NAMES = new HashSet<String>();
+
+    /** Names of the headers that should never be indexed by intermediaries. */
+    private static final Set<String> SENSITIVE_NAMES = new HashSet<String>();
+
+    static {
+        UNINDEXED_NAMES.add(":path");
+        UNINDEXED_NAMES.add("content-length");
+        UNINDEXED_NAMES.add("content-range");
+        UNINDEXED_NAMES.add("date");
+        UNINDEXED_NAMES.add("etag");
+        UNINDEXED_NAMES.add("expires");
+        UNINDEXED_NAMES.add("last-modified");
+        UNINDEXED_NAMES.add("location");
+        SENSITIVE_NAMES.add("authorization");
+        SENSITIVE_NAMES.add("proxy-authorization");
+        SENSITIVE_NAMES.add("set-cookie");
+    }
+
+    /** The new table size, waiting to be signaled, or -1. */
+    private volatile int pendingMaxSize;
+
+    /** The smallest table size set since the last signal, or -1. */
+    private volatile int pendingMinSize;
+
+    /** The indexing table. */
+    private final HpackTable table;
+
+    /**
+     * Constructor.
+     * 
+     * @param maxTableSize
+     *            The maximum size of the dynamic table.
+     */
+    public HpackEncoder(int maxTableSize) {
+        this.pendingMaxSize = -1;
+        this.pendingMinSize = -1;
+        this.table = new HpackTable(maxTableSize);
+    }
+
+    /**
+     * Encodes a list of headers into a header block. Names are expected in
+     * lower case.
+     * 
+     * @param headers
+     *            The headers to encode.
+     * @return The header block.
+     */
+    public byte[] encode(List<Header> headers) {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+
+        if (this.pendingMaxSize >= 0) {
+            // Signal the table size changes first, including the smallest
+            // intermediate size that may have caused evictions
+            if (this.pendingMinSize < this.pendingMaxSize) {
+                writeInteger(result, 0x20, 5, this.pendingMinSize);
+            }
+
+            table.setMaxSize(this.pendingMaxSize);
+            writeInteger(result, 0x20, 5, this.pendingMaxSize);
+            this.pendingMaxSize = -1;
+            this.pendingMinSize = -1;
+        }
+
+        for (Header header : headers) {
+            String name = header.getName();
+            String value = (header.getValue() == null) ? "" : header
+                    .getValue();
+            int index = table.find(name, value);
+
+            if (index > 0) {
+                // Indexed header field
+                writeInteger(result, 0x80, 7, index);
+            } else if (SENSITIVE_NAMES.contains(name)) {
+                // Literal header field never indexed
+                writeLiteral(result, 0x10, 4, -index, name, value);
+            } else if (UNINDEXED_NAMES.contains(name)
+                    || (HpackTable.entrySize(name, value) > table
+                            .getMaxSize() / 2)) {
+                // Literal header field without indexing
+                writeLiteral(result, 0x00, 4, -index, name, value);
+            } else {
+                // Literal header field with incremental indexing
+                writeLiteral(result, 0x40, 6, -index, name, value);
+                table.add(name, value);
+            }
+        }
+
+        return result.toByteArray();
+    }
+
+    /**
+     * Returns the indexing table.
+     * 
+     * @return The indexing table.
+     */
+    public HpackTable getTable() {
+        return table;
+    }
+
+    /**
+     * Updates the maximum table size following a change of the peer settings.
+     * The change is signaled at the beginning of the next header block.
+     * 
+     * @param maxTableSize
+     *            The new maximum table size.
+     */
+    public void setMaxTableSize(int maxTableSize) {
+        if ((maxTableSize != table.getMaxSize())
+                || (this.pendingMaxSize >= 0)) {
+            this.pendingMaxSize = maxTableSize;
+
+            if ((this.pendingMinSize < 0)
+                    || (maxTableSize < this.pendingMinSize)) {
+                this.pendingMinSize = maxTableSize;
+            }
+        }
+    }
+
+    /**
+     * Writes an integer with the given prefix size (RFC 7541, section 5.1).
+     * 
+     * @param out
+     *            The output stream.
+     * @param flags
+     *            The bits set before the prefix.
+     * @param prefix
+     *            The prefix size in bits.
+     * @param value
+     *            The integer value.
+     */
+    private void writeInteger(ByteArrayOutputStream out, int flags,
+            int prefix, int value) {
+        int mask = (1 << prefix) - 1;
+
+        if (value < mask) {
+            out.write(flags | value);
+        } else {
+            out.write(flags | mask);
+            value -= mask;
+
+            while (value >= 0x80) {
+                out.write((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+
+            out.write(value);
+        }
+    }
+
+    /**
+     * Writes a literal header field.
+     * 
+     * @param out
+     *            The output stream.
+     * @param flags
+     *            The representation flags.
+     * @param prefix
+     *            The prefix size of the name index.
+     * @param nameIndex
+     *            The index of the header name or 0 for a literal name.
+     * @param name
+     *            The header name.
+     * @param value
+     *            The header value.
+     */
+    private void writeLiteral(ByteArrayOutputStream out, int flags,
+            int prefix, int nameIndex, String name, String value) {
+        writeInteger(out, flags, prefix, nameIndex);
+
+        if (nameIndex == 0) {
+            writeString(out, name);
+        }
+
+        writeString(out, value);
+    }
+
+    /**
+     * Writes a string literal, Huffman encoded if it saves space.
+     * 
+     * @param out
+     *            The output stream.
+     * @param value
+     *            The string value.
+     */
+    private void writeString(ByteArrayOutputStream out, String value) {
+        byte[] bytes = StringUtils.getLatin1Bytes(value);
+        int huffmanLength = Huffman.encodedLength(bytes);
+
+        if (huffmanLength < bytes.length) {
+            writeInteger(out, 0x80, 7, huffmanLength);
+            byte[] encoded = Huffman.encode(bytes);
+            out.write(encoded, 0, encoded.length);
+        } else {
+            writeInteger(out, 0x00, 7, bytes.length);
+            out.write(bytes, 0, bytes.length);
+        }
+    }
+
+}
@@ -0,0 +1,343 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.ext.nio.internal.http2;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * HPACK indexing table, combining the static table and a dynamic table (RFC
+ * 7541, section 2.3). The dynamic table is a ring buffer of entries, the most
+ * recently inserted entry having the lowest index.
+ * 
+ * @author Jerome Louvel
+ */
+public class HpackTable {
+
+    /** The static table entries, as name and value pairs. */
+    private static final String[][] STATIC_ENTRIES = { { ":authority", "" },
+            { ":method", "GET" }, { ":method", "POST" }, { ":path", "/" },
+            { ":path", "/index.html" }, { ":scheme", "http" },
+            { ":scheme", "https" }, { ":status", "200" },
+            { ":status", "204" }, { ":status", "206" }, { ":status", "304" },
+            { ":status", "400" }, { ":status", "404" }, { ":status", "500" },
+            { "accept-charset", "" }, { "accept-encoding", "gzip, deflate" },
+            { "accept-language", "" }, { "accept-ranges", "" },
+            { "accept", "" }, { "access-control-allow-origin", "" },
+            { "age", "" }, { "allow", "" }, { "authorization", "" },
+            { "cache-control", "" }, { "content-disposition", "" },
+            { "content-encoding", "" }, { "content-language", "" },
+            { "content-length", "" }, { "content-location", "" },
+            { "content-range", "" }, { "content-type", "" },
+            { "cookie", "" }, { "date", "" }, { "etag", "" },
+            { "expect", "" }, { "expires", "" }, { "from", "" },
+            { "host", "" }, { "if-match", "" }, { "if-modified-since", "" },
+            { "if-none-match", "" }, { "if-range", "" },
+            { "if-unmodified-since", "" }, { "last-modified", "" },
+            { "link", "" }, { "location", "" }, { "max-forwards", "" },
+            { "proxy-authenticate", "" }, { "proxy-authorization", "" },
+            { "range", "" }, { "referer", "" }, { "refresh", "" },
+            { "retry-after", "" }, { "server", "" }, { "set-cookie", "" },
+            { "strict-transport-security", "" },
+            { "transfer-encoding", "" }, { "user-agent", "" },
+            { "vary", "" }, { "via", "" }, { "www-authenticate", "" } };
+
+    /** The number of static table entries. */
+    public static final int STATIC_SIZE = STATIC_ENTRIES.length;
+
+    /** The index of the first static entry of each header name. */
+    private static final Map<String, Integer> STATIC_NAMES;
+
+    static {
+        STATIC_NAMES = new HashMap<String, Integer>();
+
+        for (int i = STATIC_ENTRIES.length - 1; i >= 0; i--) {
+            STATIC_NAMES.put(STATIC_ENTRIES[i][0], i + 1);
+        }
+    }
+
+    /**
+     * Returns the size of an entry as defined by RFC 7541, section 4.1.
+     * 
+     * @param name
+     *            The header name.
+     * @param value
+     *            The header value.
+     * @return The size of the entry.
+     */
+    public static int entrySize(String name, String value) {
+        return name.length() + value.length() + 32;
+    }
+
+    /** The number of dynamic entries. */
+    private volatile int count;
+
+    /** The dynamic entries ring buffer, alternating names and values. */
+    private volatile String[] entries;
+
+    /** The position of the most recent dynamic entry in the ring buffer. */
+    private volatile int head;
+
+    /** The maximum size of the dynamic table. */
+    private volatile int maxSize;
+
+    /** The current size of the dynamic table. */
+    private volatile int size;
+
+    /**
+     * Constructor.
+     * 
+     * @param maxSize
+     *            The maximum size of the dynamic table.
+     */
+    public HpackTable(int maxSize) {
+        this.count = 0;
+        this.entries = new String[32];
+        this.head = 0;
+        this.maxSize = maxSize;
+        this.size = 0;
+    }
+
+    /**
+     * Adds an entry to the dynamic table, evicting the oldest entries if
+     * needed. An entry larger than the maximum size empties the table.
+     * 
+     * @param name
+     *            The header name.
+     * @param value
+     *            The header value.
+     */
+    public void add(String name, String value) {
+        int entrySize = entrySize(name, value);
+        evict(this.maxSize - entrySize);
+
+        if (entrySize <= this.maxSize) {
+            if ((this.count + 1) * 2 > this.entries.length) {
+                String[] larger = new String[this.entries.length * 2];
+
+                for (int i = 0; i < this.count; i++) {
+                    int from = slot(i);
+                    larger[(this.count - 1 - i) * 2] = this.entries[from];
+                    larger[(this.count - 1 - i) * 2 + 1] = this.entries[from + 1];
+                }
+
+                this.entries = larger;
+                this.head = (this.count - 1) * 2;
+            }
+
+            this.head = (this.head + 2) % this.entries.length;
+            this.entries[this.head] = name;
+            this.entries[this.head + 1] = value;
+            this.count++;
+            this.size += entrySize;
+        }
+    }
+
+    /**
+     * Returns the ring buffer slot of the dynamic entry at the given index.
+     * 
+     * @param index
+     *            The index, starting at 1.
+     * @return The ring buffer slot.
+     * @throws Http2Exception
+     *             If the index is invalid.
+     */
+    private int checkDynamic(int index) throws Http2Exception {
+        int position = index - STATIC_SIZE - 1;
+
+        if (position >= this.count) {
+            throw new Http2Exception(Http2Constants.ERROR_COMPRESSION,
+                    "Invalid header table index: " + index);
+        }
+
+        return slot(position);
+    }
+
+    /**
+     * Returns the static entry at the given index.
+     * 
+     * @param index
+     *            The index, starting at 1.
+     * @return The static entry.
+     * @throws Http2Exception
+     *             If the index is invalid.
+     */
+    private String[] checkStatic(int index) throws Http2Exception {
+        if (index < 1) {
+            throw new Http2Exception(Http2Constants.ERROR_COMPRESSION,
+                    "Invalid header table index: " + index);
+        }
+
+        return STATIC_ENTRIES[index - 1];
+    }
+
+    /**
+     * Evicts the oldest entries until the table size doesn't exceed the given
+     * size.
+     * 
+     * @param targetSize
+     *            The target size.
+     */
+    private void evict(int targetSize) {
+        while ((this.count > 0) && (this.size > targetSize)) {
+            int oldest = slot(this.count - 1);
+            this.size -= entrySize(this.entries[oldest],
+                    this.entries[oldest + 1]);
+            this.entries[oldest] = null;
+            this.entries[oldest + 1] = null;
+            this.count--;
+        }
+    }
+
+    /**
+     * Returns the index of the entry matching both the given name and value,
+     * or the negated index of the first entry matching the name only, or 0 if
+     * no entry matches.
+     * 
+     * @param name
+     *            The header name.
+     * @param value
+     *            The header value.
+     * @return The matching index.
+     */
+    public int find(String name, String value) {
+        int nameIndex = 0;
+        Integer staticIndex = STATIC_NAMES.get(name);
+
+        if (staticIndex != null) {
+            nameIndex = staticIndex;
+
+            for (int i = staticIndex - 1; (i < STATIC_SIZE)
+                    && STATIC_ENTRIES[i][0].equals(name); i++) {
+                if (STATIC_ENTRIES[i][1].equals(value)) {
+                    return i + 1;
+                }
+            }
+        }
+
+        for (int i = 0; i < this.count; i++) {
+            int slot = slot(i);
+
+            if (this.entries[slot].equals(name)) {
+                if (this.entries[slot + 1].equals(value)) {
+                    return STATIC_SIZE + i + 1;
+                } else if (nameIndex == 0) {
+                    nameIndex = STATIC_SIZE + i + 1;
+                }
+            }
+        }
+
+        return -nameIndex;
+    }
+
+    /**
+     * Returns the number of dynamic entries.
+     * 
+     * @return The number of dynamic entries.
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the maximum size of the dynamic table.
+     * 
+     * @return The maximum size of the dynamic table.
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Returns the header name at the given index.
+     * 
+     * @param index
+     *            The index, starting at 1.
+     * @return The header name.
+     * @throws Http2Exception
+     *             If the index is invalid.
+     */
+    public String getName(int index) throws Http2Exception {
+        return (index <= STATIC_SIZE) ? checkStatic(index)[0]
+                : this.entries[checkDynamic(index)];
+    }
+
+    /**
+     * Returns the current size of the dynamic table.
+     * 
+     * @return The current size of the dynamic table.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Returns the header value at the given index.
+     * 
+     * @param index
+     *            The index, starting at 1.
+     * @return The header value.
+     * @throws Http2Exception
+     *             If the index is invalid.
+     */
+    public String getValue(int index) throws Http2Exception {
+        return (index <= STATIC_SIZE) ? checkStatic(index)[1]
+                : this.entries[checkDynamic(index) + 1];
+    }
+
+    /**
+     * Updates the maximum size of the dynamic table, evicting entries if
+     * needed.
+     * 
+     * @param maxSize
+     *            The new maximum size.
+     */
+    public void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+        evict(maxSize);
+    }
+
+    /**
+     * Returns the ring buffer slot of a dynamic entry.
+     * 
+     * @param position
+     *            The position of the entry, 0 being the most recent.
+     * @return The ring buffer slot.
+     */
+    private int slot(int position) {
+        int result = this.head - position * 2;
+        return (result < 0) ? result + this.entries.length : result;
+    }
+
+}
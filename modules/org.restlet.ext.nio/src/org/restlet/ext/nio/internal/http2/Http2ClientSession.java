@@ -0,0 +1,361 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.ext.nio.internal.http2;
+
+import java.io.IOException;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Queue;
+import java.util.logging.Level;
+
+import org.restlet.Client;
+import org.restlet.Response;
+import org.restlet.data.Header;
+import org.restlet.data.Status;
+import org.restlet.engine.Engine;
+import org.restlet.engine.header.HeaderConstants;
+import org.restlet.engine.header.HeaderUtils;
+import org.restlet.ext.nio.HttpClientHelper;
+import org.restlet.ext.nio.internal.connection.Connection;
+import org.restlet.ext.nio.internal.state.StreamState;
+import org.restlet.representation.EmptyRepresentation;
+import org.restlet.representation.InputRepresentation;
+import org.restlet.representation.Representation;
+import org.restlet.util.Series;
+
+/**
+ * HTTP/2 session of a client connection. Each request is sent on a new stream,
+ * opened as soon as the number of concurrent streams accepted by the server
+ * allows it. The responses are added to the helper's inbound queue as soon as
+ * their headers are received, their entity being read from the stream.
+ * 
+ * @author Jerome Louvel
+ */
+public class Http2ClientSession extends Http2Session {
+
+    /** Indicates if the session was aborted. */
+    private volatile boolean aborted;
+
+    /** The requests waiting for a stream, as their responses. */
+    private final Queue<Response> pendingRequests;
+
+    /**
+     * Constructor.
+     * 
+     * @param connection
+     *            The parent connection.
+     * @param helper
+     *            The parent helper, providing the local settings.
+     */
+    public Http2ClientSession(Connection<Client> connection,
+            HttpClientHelper helper) {
+        super(connection, helper, helper.getHttp2HeaderTableSize(), helper
+                .getHttp2InitialWindowSize(), helper
+                .getHttp2MaxConcurrentStreams(), helper.getHttp2MaxFrameSize());
+        this.pendingRequests = new LinkedList<Response>();
+    }
+
+    @Override
+    public synchronized void abort(String message) {
+        this.aborted = true;
+        super.abort(message);
+
+        while (!this.pendingRequests.isEmpty()) {
+            fail(this.pendingRequests.poll());
+        }
+    }
+
+    /**
+     * Indicates if a new request can be accepted without exceeding the number
+     * of concurrent streams accepted by the server.
+     * 
+     * @return True if a new request can be accepted.
+     */
+    public synchronized boolean canAccept() {
+        return !this.aborted && !isGoingAway()
+                && (getRequestCount() < getRemoteMaxConcurrentStreams())
+                && (getLastStreamId() < Integer.MAX_VALUE - 2);
+    }
+
+    /**
+     * Indicates if a pending request can be sent on a new stream.
+     * 
+     * @return True if a pending request can be sent on a new stream.
+     */
+    private boolean canOpenStream() {
+        return !this.pendingRequests.isEmpty() && !this.aborted
+                && !isGoingAway()
+                && (getStreams().size() < getRemoteMaxConcurrentStreams());
+    }
+
+    @Override
+    protected void closeStream(Http2Stream stream, IOException error) {
+        super.closeStream(stream, error);
+
+        if (!stream.isHeadersReceived()) {
+            // The request was refused or its response lost
+            fail(stream.getResponse());
+        }
+    }
+
+    /**
+     * Replays a request whose response can't be received anymore or reports
+     * a communication error.
+     * 
+     * @param response
+     *            The response whose request failed.
+     */
+    private void fail(Response response) {
+        if (!getHelper().replay(response)) {
+            getHelper().onOutboundError(Status.CONNECTOR_ERROR_COMMUNICATION,
+                    response);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    protected Connection<Client> getConnection() {
+        return (Connection<Client>) super.getConnection();
+    }
+
+    @Override
+    protected HttpClientHelper getHelper() {
+        return (HttpClientHelper) super.getHelper();
+    }
+
+    /**
+     * Returns the number of requests being sent or waiting for a stream.
+     * 
+     * @return The number of requests being sent or waiting for a stream.
+     */
+    public synchronized int getRequestCount() {
+        return getStreams().size() + this.pendingRequests.size();
+    }
+
+    @Override
+    public synchronized boolean hasOutput() {
+        return canOpenStream() || super.hasOutput();
+    }
+
+    @Override
+    public synchronized boolean isEmpty() {
+        return super.isEmpty() && this.pendingRequests.isEmpty();
+    }
+
+    /**
+     * Returns the next stream that can send a frame. New streams are opened
+     * first, in the order of the requests, so that their identifiers are
+     * used in increasing order.
+     * 
+     * @return The next stream that can send a frame or null.
+     */
+    @Override
+    public synchronized Http2Stream nextStream() {
+        return canOpenStream() ? openStream(this.pendingRequests.poll())
+                : super.nextStream();
+    }
+
+    @Override
+    protected void onHeaders(int streamId, List<Header> fields,
+            boolean endStream, int weight) throws Http2Exception {
+        Http2Stream stream = getStreams().get(streamId);
+
+        if (stream != null) {
+            if (stream.getState() == StreamState.HALF_CLOSED_REMOTE) {
+                throw new Http2Exception(Http2Constants.ERROR_STREAM_CLOSED,
+                        streamId, "HEADERS received on a half-closed stream");
+            } else if (!stream.isHeadersReceived()) {
+                readResponse(stream, fields, endStream);
+            } else if (!endStream) {
+                throw new Http2Exception(Http2Constants.ERROR_PROTOCOL,
+                        streamId, "Trailers without END_STREAM flag");
+            } else {
+                onInputEnded(stream);
+            }
+        } else if ((streamId % 2) == 0) {
+            throw new Http2Exception(Http2Constants.ERROR_PROTOCOL,
+                    "HEADERS received on server stream " + streamId);
+        } else if (streamId > getLastStreamId()) {
+            throw new Http2Exception(Http2Constants.ERROR_PROTOCOL,
+                    "HEADERS received on idle stream " + streamId);
+        } else {
+            // The stream was reset locally, its headers are ignored
+        }
+    }
+
+    /**
+     * Adds a request to be sent on a new stream.
+     * 
+     * @param response
+     *            The response of the request to send.
+     */
+    public synchronized void onRequest(Response response) {
+        if (this.aborted) {
+            fail(response);
+        } else {
+            this.pendingRequests.add(response);
+        }
+    }
+
+    /**
+     * Opens a new stream to send a request.
+     * 
+     * @param response
+     *            The response of the request to send.
+     * @return The new stream.
+     */
+    private Http2Stream openStream(Response response) {
+        int streamId = (getLastStreamId() == 0) ? 1 : getLastStreamId() + 2;
+        Http2Stream stream = new Http2Stream(this, streamId,
+                getRemoteInitialWindowSize(), getInitialWindowSize());
+        stream.setResponse(response);
+        stream.getPendingResponses().add(response);
+        setLastStreamId(streamId);
+        getStreams().put(streamId, stream);
+        getSendQueue().add(stream);
+        return stream;
+    }
+
+    /**
+     * Updates the response of a stream with the header fields received and
+     * adds it to the helper's inbound queue. Informational responses are
+     * ignored.
+     * 
+     * @param stream
+     *            The stream.
+     * @param fields
+     *            The decoded header fields.
+     * @param endStream
+     *            True if the response has no entity.
+     * @throws Http2Exception
+     *             If the response is malformed.
+     */
+    private void readResponse(Http2Stream stream, List<Header> fields,
+            boolean endStream) throws Http2Exception {
+        String status = null;
+        Series<Header> headers = new Series<Header>(Header.class);
+
+        for (Header field : fields) {
+            String name = field.getName();
+
+            if (!name.equals(name.toLowerCase())) {
+                throw new Http2Exception(Http2Constants.ERROR_PROTOCOL,
+                        stream.getId(), "Upper case header name: " + name);
+            } else if (name.startsWith(":")) {
+                if (!headers.isEmpty()) {
+                    throw new Http2Exception(Http2Constants.ERROR_PROTOCOL,
+                            stream.getId(),
+                            "Pseudo-header after regular headers: " + name);
+                } else if (":status".equals(name) && (status == null)) {
+                    status = field.getValue();
+                } else {
+                    throw new Http2Exception(Http2Constants.ERROR_PROTOCOL,
+                            stream.getId(), "Invalid pseudo-header: " + name);
+                }
+            } else if (isConnectionHeader(name)) {
+                throw new Http2Exception(Http2Constants.ERROR_PROTOCOL,
+                        stream.getId(), "Connection-specific header: " + name);
+            } else {
+                headers.add(field);
+            }
+        }
+
+        int statusCode = -1;
+
+        try {
+            statusCode = (status == null) ? -1 : Integer.parseInt(status);
+        } catch (NumberFormatException e) {
+            // Reported below
+        }
+
+        if ((statusCode < 100) || (statusCode > 999)) {
+            throw new Http2Exception(Http2Constants.ERROR_PROTOCOL,
+                    stream.getId(), "Invalid or missing :status pseudo-header");
+        } else if (statusCode < 200) {
+            if (endStream) {
+                throw new Http2Exception(Http2Constants.ERROR_PROTOCOL,
+                        stream.getId(),
+                        "Informational response ending the stream");
+            }
+
+            // Wait for the final response
+            return;
+        }
+
+        Response response = stream.getResponse();
+        response.setStatus(Status.valueOf(statusCode));
+        response.getServerInfo().setAddress(
+                getConnection().getSocket().getLocalAddress().toString());
+        response.getServerInfo().setAgent(Engine.VERSION_HEADER);
+        response.getServerInfo().setPort(getConnection().getSocket().getPort());
+
+        // Create the response entity
+        Representation entity = null;
+
+        if (endStream) {
+            entity = new EmptyRepresentation();
+        } else {
+            entity = new InputRepresentation(stream.getEntityStream(), null,
+                    HeaderUtils.getContentLength(headers));
+        }
+
+        try {
+            entity = HeaderUtils.extractEntityHeaders(headers, entity);
+            HeaderUtils.copyResponseTransportHeaders(headers, response);
+        } catch (Throwable t) {
+            getLogger().log(Level.WARNING, "Error while parsing the headers",
+                    t);
+        }
+
+        response.setEntity(entity);
+        response.getAttributes().put(HeaderConstants.ATTRIBUTE_HEADERS,
+                headers);
+        stream.setHeadersReceived(true);
+
+        if (endStream) {
+            onInputEnded(stream);
+        }
+
+        getHelper().getInboundMessages().add(response);
+    }
+
+    @Override
+    protected void releaseEntity(Response response) {
+        if ((response != null) && (response.getRequest().getEntity() != null)) {
+            response.getRequest().getEntity().release();
+        }
+    }
+
+}
@@ -0,0 +1,154 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.ext.nio.internal.http2;
+
+/**
+ * Constants defined by the HTTP/2 specification (RFC 7540).
+ * 
+ * @author Jerome Louvel
+ */
+public final class Http2Constants {
+
+    // --------------------------
+    // --- Connection preface ---
+    // --------------------------
+
+    public static final String CLIENT_PREFACE = "PRI * HTTP/2.0\r\n\r\nSM\r\n\r\n";
+
+    public static final String CLIENT_PREFACE_LINE = "PRI * HTTP/2.0";
+
+    public static final String UPGRADE_TOKEN = "h2c";
+
+    // -------------------
+    // --- Frame types ---
+    // -------------------
+
+    public static final int FRAME_DATA = 0x0;
+
+    public static final int FRAME_HEADERS = 0x1;
+
+    public static final int FRAME_PRIORITY = 0x2;
+
+    public static final int FRAME_RST_STREAM = 0x3;
+
+    public static final int FRAME_SETTINGS = 0x4;
+
+    public static final int FRAME_PUSH_PROMISE = 0x5;
+
+    public static final int FRAME_PING = 0x6;
+
+    public static final int FRAME_GOAWAY = 0x7;
+
+    public static final int FRAME_WINDOW_UPDATE = 0x8;
+
+    public static final int FRAME_CONTINUATION = 0x9;
+
+    public static final int FRAME_HEADER_SIZE = 9;
+
+    // -------------------
+    // --- Frame flags ---
+    // -------------------
+
+    public static final int FLAG_ACK = 0x1;
+
+    public static final int FLAG_END_STREAM = 0x1;
+
+    public static final int FLAG_END_HEADERS = 0x4;
+
+    public static final int FLAG_PADDED = 0x8;
+
+    public static final int FLAG_PRIORITY = 0x20;
+
+    // ----------------
+    // --- Settings ---
+    // ----------------
+
+    public static final int SETTINGS_HEADER_TABLE_SIZE = 0x1;
+
+    public static final int SETTINGS_ENABLE_PUSH = 0x2;
+
+    public static final int SETTINGS_MAX_CONCURRENT_STREAMS = 0x3;
+
+    public static final int SETTINGS_INITIAL_WINDOW_SIZE = 0x4;
+
+    public static final int SETTINGS_MAX_FRAME_SIZE = 0x5;
+
+    public static final int SETTINGS_MAX_HEADER_LIST_SIZE = 0x6;
+
+    // -------------------
+    // --- Error codes ---
+    // -------------------
+
+    public static final int ERROR_NO_ERROR = 0x0;
+
+    public static final int ERROR_PROTOCOL = 0x1;
+
+    public static final int ERROR_INTERNAL = 0x2;
+
+    public static final int ERROR_FLOW_CONTROL = 0x3;
+
+    public static final int ERROR_STREAM_CLOSED = 0x5;
+
+    public static final int ERROR_FRAME_SIZE = 0x6;
+
+    public static final int ERROR_REFUSED_STREAM = 0x7;
+
+    public static final int ERROR_CANCEL = 0x8;
+
+    public static final int ERROR_COMPRESSION = 0x9;
+
+    // ----------------------
+    // --- Default values ---
+    // ----------------------
+
+    public static final int DEFAULT_HEADER_TABLE_SIZE = 4096;
+
+    public static final int DEFAULT_INITIAL_WINDOW_SIZE = 65535;
+
+    public static final int DEFAULT_MAX_FRAME_SIZE = 16384;
+
+    public static final int DEFAULT_WEIGHT = 16;
+
+    public static final int MAX_FRAME_SIZE_LIMIT = 16777215;
+
+    public static final int MAX_WINDOW_SIZE = Integer.MAX_VALUE;
+
+    /**
+     * Private constructor to ensure that the class acts as a true utility
+     * class i.e. it isn't instantiable and extensible.
+     */
+    private Http2Constants() {
+    }
+
+}
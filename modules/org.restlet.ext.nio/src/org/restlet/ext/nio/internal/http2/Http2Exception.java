@@ -0,0 +1,112 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.ext.nio.internal.http2;
+
+import java.io.IOException;
+
+/**
+ * HTTP/2 protocol error. When a stream identifier is set, the error only
+ * affects that stream, which should be reset. Otherwise, it is a connection
+ * error that should terminate the whole connection.
+ * 
+ * @author Jerome Louvel
+ */
+public class Http2Exception extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    /** The HTTP/2 error code. */
+    private final int errorCode;
+
+    /** The identifier of the stream in error or 0 for connection errors. */
+    private final int streamId;
+
+    /**
+     * Constructor for connection errors.
+     * 
+     * @param errorCode
+     *            The HTTP/2 error code.
+     * @param message
+     *            The error message.
+     */
+    public Http2Exception(int errorCode, String message) {
+        this(errorCode, 0, message);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param errorCode
+     *            The HTTP/2 error code.
+     * @param streamId
+     *            The identifier of the stream in error or 0 for connection
+     *            errors.
+     * @param message
+     *            The error message.
+     */
+    public Http2Exception(int errorCode, int streamId, String message) {
+        super(message);
+        this.errorCode = errorCode;
+        this.streamId = streamId;
+    }
+
+    /**
+     * Returns the HTTP/2 error code.
+     * 
+     * @return The HTTP/2 error code.
+     */
+    public int getErrorCode() {
+        return errorCode;
+    }
+
+    /**
+     * Returns the identifier of the stream in error or 0 for connection
+     * errors.
+     * 
+     * @return The identifier of the stream in error.
+     */
+    public int getStreamId() {
+        return streamId;
+    }
+
+    /**
+     * Indicates if the error only affects a single stream.
+     * 
+     * @return True if the error only affects a single stream.
+     */
+    public boolean isStreamError() {
+        return streamId != 0;
+    }
+
+}
@@ -0,0 +1,148 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.ext.nio.internal.http2;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Splits the bytes received on an HTTP/2 connection into frames (RFC 7540,
+ * section 4.1) that are handled by the session. Frames can span several
+ * reads.
+ * 
+ * @author Jerome Louvel
+ */
+public class Http2FrameReader {
+
+    /** The header of the frame being received. */
+    private final byte[] frameHeader;
+
+    /** The number of frame header bytes received. */
+    private volatile int frameHeaderCount;
+
+    /** The payload of the frame being received. */
+    private volatile byte[] payload;
+
+    /** The number of payload bytes received. */
+    private volatile int payloadCount;
+
+    /** The payload length of the frame being received. */
+    private volatile int payloadLength;
+
+    /** The HTTP/2 session. */
+    private final Http2Session session;
+
+    /**
+     * Constructor.
+     * 
+     * @param session
+     *            The HTTP/2 session handling the frames.
+     */
+    public Http2FrameReader(Http2Session session) {
+        this.frameHeader = new byte[Http2Constants.FRAME_HEADER_SIZE];
+        this.session = session;
+    }
+
+    /**
+     * Dispatches a fully received frame to the session.
+     * 
+     * @throws Http2Exception
+     */
+    private void onFrame() throws Http2Exception {
+        this.frameHeaderCount = 0;
+        this.session.onFrame(this.frameHeader[3] & 0xff,
+                this.frameHeader[4] & 0xff,
+                Http2Utils.readInt31(this.frameHeader, 5), this.payload,
+                this.payloadLength);
+    }
+
+    /**
+     * Called when a frame header has been fully received.
+     * 
+     * @throws Http2Exception
+     */
+    private void onFrameHeader() throws Http2Exception {
+        this.payloadLength = ((this.frameHeader[0] & 0xff) << 16)
+                | ((this.frameHeader[1] & 0xff) << 8)
+                | (this.frameHeader[2] & 0xff);
+        this.payloadCount = 0;
+
+        if (this.payloadLength > this.session.getMaxFrameSize()) {
+            throw new Http2Exception(Http2Constants.ERROR_FRAME_SIZE,
+                    "Frame exceeding the maximum size: " + this.payloadLength);
+        }
+
+        if ((this.payload == null)
+                || (this.payload.length < this.payloadLength)) {
+            this.payload = new byte[this.session.getMaxFrameSize()];
+        }
+
+        if (this.payloadLength == 0) {
+            onFrame();
+        }
+    }
+
+    /**
+     * Reads the given bytes, dispatching the frames completed to the session.
+     * 
+     * @param bytes
+     *            The bytes received.
+     * @throws Http2Exception
+     *             If a connection error is detected.
+     */
+    public void read(ByteBuffer bytes) throws Http2Exception {
+        while (bytes.hasRemaining()) {
+            if (this.frameHeaderCount < this.frameHeader.length) {
+                int count = Math.min(bytes.remaining(),
+                        this.frameHeader.length - this.frameHeaderCount);
+                bytes.get(this.frameHeader, this.frameHeaderCount, count);
+                this.frameHeaderCount += count;
+
+                if (this.frameHeaderCount == this.frameHeader.length) {
+                    onFrameHeader();
+                }
+            } else {
+                int count = Math.min(bytes.remaining(), this.payloadLength
+                        - this.payloadCount);
+                bytes.get(this.payload, this.payloadCount, count);
+                this.payloadCount += count;
+
+                if (this.payloadCount == this.payloadLength) {
+                    onFrame();
+                }
+            }
+        }
+    }
+
+}
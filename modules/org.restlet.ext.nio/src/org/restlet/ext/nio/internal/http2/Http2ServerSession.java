@@ -0,0 +1,331 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.ext.nio.internal.http2;
+
+import java.util.Iterator;
+import java.util.List;
+import java.util.logging.Level;
+
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.Server;
+import org.restlet.data.Header;
+import org.restlet.engine.header.HeaderConstants;
+import org.restlet.engine.header.HeaderUtils;
+import org.restlet.ext.nio.HttpServerHelper;
+import org.restlet.ext.nio.internal.connection.Connection;
+import org.restlet.ext.nio.internal.request.InboundRequest;
+import org.restlet.ext.nio.internal.state.StreamState;
+import org.restlet.representation.EmptyRepresentation;
+import org.restlet.representation.InputRepresentation;
+import org.restlet.representation.Representation;
+import org.restlet.util.Series;
+
+/**
+ * HTTP/2 session of a server connection. Each stream opened by the client
+ * carries a request that is added to the helper's inbound queue, the
+ * responses being sent back on the same stream.
+ * 
+ * @author Jerome Louvel
+ */
+public class Http2ServerSession extends Http2Session {
+
+    /**
+     * Constructor.
+     * 
+     * @param connection
+     *            The parent connection.
+     * @param helper
+     *            The parent helper, providing the local settings.
+     */
+    public Http2ServerSession(Connection<Server> connection,
+            HttpServerHelper helper) {
+        super(connection, helper, helper.getHttp2HeaderTableSize(), helper
+                .getHttp2InitialWindowSize(), helper
+                .getHttp2MaxConcurrentStreams(), helper.getHttp2MaxFrameSize());
+    }
+
+    /**
+     * Creates the request and response received on a new stream and adds them
+     * to the helper's inbound queue.
+     * 
+     * @param stream
+     *            The new stream.
+     * @param fields
+     *            The decoded header fields.
+     * @param endStream
+     *            True if the request has no entity.
+     * @throws Http2Exception
+     *             If the request is malformed.
+     */
+    private void createRequest(Http2Stream stream, List<Header> fields,
+            boolean endStream) throws Http2Exception {
+        String method = null;
+        String path = null;
+        String scheme = null;
+        String authority = null;
+        Series<Header> headers = new Series<Header>(Header.class);
+        StringBuilder cookies = null;
+
+        for (Header field : fields) {
+            String name = field.getName();
+
+            if (!name.equals(name.toLowerCase())) {
+                throw new Http2Exception(Http2Constants.ERROR_PROTOCOL,
+                        stream.getId(), "Upper case header name: " + name);
+            } else if (name.startsWith(":")) {
+                if (!headers.isEmpty()) {
+                    throw new Http2Exception(Http2Constants.ERROR_PROTOCOL,
+                            stream.getId(),
+                            "Pseudo-header after regular headers: " + name);
+                } else if (":method".equals(name) && (method == null)) {
+                    method = field.getValue();
+                } else if (":path".equals(name) && (path == null)) {
+                    path = field.getValue();
+                } else if (":scheme".equals(name) && (scheme == null)) {
+                    scheme = field.getValue();
+                } else if (":authority".equals(name) && (authority == null)) {
+                    authority = field.getValue();
+                } else {
+                    throw new Http2Exception(Http2Constants.ERROR_PROTOCOL,
+                            stream.getId(), "Invalid pseudo-header: " + name);
+                }
+            } else if (isConnectionHeader(name)
+                    || ("te".equals(name) && !"trailers".equals(field
+                            .getValue()))) {
+                throw new Http2Exception(Http2Constants.ERROR_PROTOCOL,
+                        stream.getId(), "Connection-specific header: " + name);
+            } else if ("cookie".equals(name)) {
+                // Cookie crumbs are joined as expected by HTTP/1.1 parsers
+                if (cookies == null) {
+                    cookies = new StringBuilder(field.getValue());
+                } else {
+                    cookies.append("; ").append(field.getValue());
+                }
+            } else {
+                headers.add(field);
+            }
+        }
+
+        if ((method == null) || (scheme == null) || (path == null)
+                || path.isEmpty()) {
+            throw new Http2Exception(Http2Constants.ERROR_PROTOCOL,
+                    stream.getId(), "Missing mandatory pseudo-header");
+        }
+
+        if (cookies != null) {
+            headers.add(HeaderConstants.HEADER_COOKIE, cookies.toString());
+        }
+
+        if ((authority != null)
+                && (headers.getFirst(HeaderConstants.HEADER_HOST, true) == null)) {
+            headers.add(HeaderConstants.HEADER_HOST, authority);
+        }
+
+        Request request = getHelper().createRequest(getConnection(), method,
+                path, "HTTP/2.0");
+        Response response = new Response(request);
+        ((InboundRequest) request).setHeaders(headers);
+
+        // Create the request entity
+        Representation entity = null;
+
+        if (endStream) {
+            entity = new EmptyRepresentation();
+        } else {
+            entity = new InputRepresentation(stream.getEntityStream(), null,
+                    HeaderUtils.getContentLength(headers));
+        }
+
+        try {
+            entity = HeaderUtils.extractEntityHeaders(headers, entity);
+        } catch (Throwable t) {
+            getLogger().log(Level.WARNING,
+                    "Error while parsing entity headers", t);
+        }
+
+        request.setEntity(entity);
+        response.getServerInfo().setAddress(
+                getHelper().getHelped().getAddress());
+        response.getServerInfo().setPort(getHelper().getHelped().getPort());
+        openStream(stream, response);
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    protected Connection<Server> getConnection() {
+        return (Connection<Server>) super.getConnection();
+    }
+
+    @Override
+    protected HttpServerHelper getHelper() {
+        return (HttpServerHelper) super.getHelper();
+    }
+
+    @Override
+    protected void onHeaders(int streamId, List<Header> fields,
+            boolean endStream, int weight) throws Http2Exception {
+        Http2Stream stream = getStreams().get(streamId);
+
+        if (stream != null) {
+            // Trailers, which must end the stream
+            if (stream.getState() == StreamState.HALF_CLOSED_REMOTE) {
+                throw new Http2Exception(Http2Constants.ERROR_STREAM_CLOSED,
+                        streamId, "HEADERS received on a half-closed stream");
+            } else if (!endStream) {
+                throw new Http2Exception(Http2Constants.ERROR_PROTOCOL,
+                        streamId, "Trailers without END_STREAM flag");
+            }
+
+            onInputEnded(stream);
+        } else if (streamId <= getLastStreamId()) {
+            throw new Http2Exception(Http2Constants.ERROR_STREAM_CLOSED,
+                    "HEADERS received on closed stream " + streamId);
+        } else if ((streamId % 2) == 0) {
+            throw new Http2Exception(Http2Constants.ERROR_PROTOCOL,
+                    "Invalid client stream identifier: " + streamId);
+        } else {
+            setLastStreamId(streamId);
+
+            if (isGoingAway()) {
+                // New streams are ignored once the connection is closing
+            } else if (getStreams().size() >= getMaxConcurrentStreams()) {
+                throw new Http2Exception(Http2Constants.ERROR_REFUSED_STREAM,
+                        streamId, "Too many concurrent streams");
+            } else {
+                stream = new Http2Stream(this, streamId,
+                        getRemoteInitialWindowSize(), getInitialWindowSize());
+
+                if (weight > 0) {
+                    stream.setWeight(weight);
+                }
+
+                if (endStream) {
+                    stream.setState(StreamState.HALF_CLOSED_REMOTE);
+                    stream.onInputEnded(null);
+                }
+
+                createRequest(stream, fields, endStream);
+            }
+        }
+    }
+
+    /**
+     * Called when the server ended a stream, after sending the final
+     * response. If the client is still sending the request entity, the stream
+     * is reset as its remaining content is not needed anymore.
+     * 
+     * @param stream
+     *            The stream.
+     */
+    @Override
+    public synchronized void onOutputEnded(Http2Stream stream) {
+        if (stream.getState() == StreamState.OPEN) {
+            resetStream(stream.getId(), Http2Constants.ERROR_NO_ERROR);
+        } else {
+            super.onOutputEnded(stream);
+        }
+    }
+
+    /**
+     * Adds a committed response to be sent on the stream of its request.
+     * 
+     * @param response
+     *            The response to send.
+     * @return True if the stream was found, false if it was already closed.
+     */
+    public synchronized boolean onResponse(Response response) {
+        Http2Stream stream = null;
+
+        for (Iterator<Http2Stream> iter = getStreams().values().iterator(); (stream == null)
+                && iter.hasNext();) {
+            Http2Stream next = iter.next();
+
+            if ((next.getResponse() != null)
+                    && (next.getResponse().getRequest() == response
+                            .getRequest())) {
+                stream = next;
+            }
+        }
+
+        if (stream != null) {
+            stream.getPendingResponses().add(response);
+
+            if (!getSendQueue().contains(stream)) {
+                getSendQueue().add(stream);
+            }
+        }
+
+        return stream != null;
+    }
+
+    /**
+     * Opens a stream and adds its request to the helper's inbound queue.
+     * 
+     * @param stream
+     *            The stream.
+     * @param response
+     *            The response associated to the stream's request.
+     */
+    private void openStream(Http2Stream stream, Response response) {
+        stream.setResponse(response);
+        getStreams().put(stream.getId(), stream);
+        getHelper().getInboundMessages().add(response);
+    }
+
+    /**
+     * Opens the stream 1 on behalf of the HTTP/1.1 request that was upgraded
+     * to HTTP/2. This request is considered as fully received.
+     * 
+     * @param response
+     *            The response associated to the upgraded request.
+     */
+    public synchronized void openUpgradeStream(Response response) {
+        Http2Stream stream = new Http2Stream(this, 1,
+                getRemoteInitialWindowSize(), getInitialWindowSize());
+        stream.setState(StreamState.HALF_CLOSED_REMOTE);
+        stream.onInputEnded(null);
+        setLastStreamId(1);
+        openStream(stream, response);
+    }
+
+    @Override
+    protected void releaseEntity(Response response) {
+        if ((response != null) && (response.getEntity() != null)) {
+            response.getEntity().release();
+        }
+    }
+
+}
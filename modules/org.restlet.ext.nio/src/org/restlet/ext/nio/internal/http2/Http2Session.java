@@ -0,0 +1,1319 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.ext.nio.internal.http2;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.restlet.Response;
+import org.restlet.data.Header;
+import org.restlet.ext.nio.ConnectionHelper;
+import org.restlet.ext.nio.internal.connection.Connection;
+import org.restlet.ext.nio.internal.state.StreamState;
+
+/**
+ * HTTP/2 session state shared by the inbound and outbound ways of an HTTP/2
+ * connection. It keeps track of the multiplexed streams, the settings of both
+ * peers, the connection level flow control windows and the HPACK contexts.
+ * Subclasses handle the header blocks according to the side of the
+ * connection.<br>
+ * <br>
+ * Frames are received and sent by the connection controller thread. The
+ * session is also called by the application threads reading the received
+ * entities, in order to open the flow control windows as data is consumed.
+ * 
+ * @author Jerome Louvel
+ */
+public abstract class Http2Session {
+
+    /** The minimum number of entity bytes sent per DATA frame when sharing. */
+    private static final int MIN_QUANTUM = 256;
+
+    /** The parent connection. */
+    private final Connection<?> connection;
+
+    /** The control frames waiting to be sent. */
+    private final Queue<byte[]> controlFrames;
+
+    /** The HPACK decoder of received headers. */
+    private final HpackDecoder decoder;
+
+    /** The HPACK encoder of sent headers. */
+    private final HpackEncoder encoder;
+
+    /** Indicates if a GOAWAY frame was sent or received. */
+    private volatile boolean goingAway;
+
+    /** The header block being received in several frames. */
+    private final ByteArrayOutputStream headerBlock;
+
+    /** The flags of the HEADERS frame starting the pending header block. */
+    private volatile int headerFlags;
+
+    /** The stream of the pending header block or 0. */
+    private volatile int headerStreamId;
+
+    /** The weight of the HEADERS frame starting the pending header block. */
+    private volatile int headerWeight;
+
+    /** The parent helper. */
+    private final ConnectionHelper<?> helper;
+
+    /** The local initial stream window size. */
+    private final int initialWindowSize;
+
+    /**
+     * The identifier of the last stream initiated by the client, either
+     * received on the server side or opened on the client side.
+     */
+    private volatile int lastStreamId;
+
+    /** The maximum number of concurrent streams accepted. */
+    private final int maxConcurrentStreams;
+
+    /** The maximum size of received frame payloads. */
+    private final int maxFrameSize;
+
+    /** The number of bytes the peer can still send on the connection. */
+    private volatile int receiveWindow;
+
+    /** The initial stream window size of the peer. */
+    private volatile int remoteInitialWindowSize;
+
+    /** The maximum number of concurrent streams accepted by the peer. */
+    private volatile int remoteMaxConcurrentStreams;
+
+    /** The maximum size of sent frame payloads. */
+    private volatile int remoteMaxFrameSize;
+
+    /** The streams having something to send, in round-robin order. */
+    private final LinkedList<Http2Stream> sendQueue;
+
+    /** The number of bytes that can still be sent on the connection. */
+    private volatile int sendWindow;
+
+    /** Indicates if the SETTINGS frame of the peer was received. */
+    private volatile boolean settingsReceived;
+
+    /** The active streams, indexed by identifier. */
+    private final Map<Integer, Http2Stream> streams;
+
+    /**
+     * The number of bytes consumed on the connection not yet acknowledged with
+     * a window update.
+     */
+    private volatile int unacknowledged;
+
+    /**
+     * The connection window size to maintain. It covers the windows of all
+     * the concurrent streams so that the entities buffered for messages not
+     * yet handled can't block the other streams.
+     */
+    private final int windowSize;
+
+    /**
+     * Constructor.
+     * 
+     * @param connection
+     *            The parent connection.
+     * @param helper
+     *            The parent helper.
+     * @param headerTableSize
+     *            The maximum size of the HPACK dynamic table used to decode
+     *            the received headers.
+     * @param initialWindowSize
+     *            The local initial stream window size.
+     * @param maxConcurrentStreams
+     *            The maximum number of concurrent streams accepted.
+     * @param maxFrameSize
+     *            The maximum size of received frame payloads.
+     */
+    public Http2Session(Connection<?> connection, ConnectionHelper<?> helper,
+            int headerTableSize, int initialWindowSize,
+            int maxConcurrentStreams, int maxFrameSize) {
+        this.connection = connection;
+        this.controlFrames = new LinkedList<byte[]>();
+        this.decoder = new HpackDecoder(headerTableSize);
+        this.encoder = new HpackEncoder(
+                Http2Constants.DEFAULT_HEADER_TABLE_SIZE);
+        this.headerBlock = new ByteArrayOutputStream();
+        this.helper = helper;
+        this.initialWindowSize = initialWindowSize;
+        this.maxConcurrentStreams = maxConcurrentStreams;
+        this.maxFrameSize = maxFrameSize;
+        this.remoteInitialWindowSize = Http2Constants.DEFAULT_INITIAL_WINDOW_SIZE;
+        this.remoteMaxConcurrentStreams = Integer.MAX_VALUE;
+        this.remoteMaxFrameSize = Http2Constants.DEFAULT_MAX_FRAME_SIZE;
+        this.receiveWindow = Http2Constants.DEFAULT_INITIAL_WINDOW_SIZE;
+        this.sendQueue = new LinkedList<Http2Stream>();
+        this.sendWindow = Http2Constants.DEFAULT_INITIAL_WINDOW_SIZE;
+        this.streams = new HashMap<Integer, Http2Stream>();
+        this.windowSize = (int) Math.min(Http2Constants.MAX_WINDOW_SIZE,
+                Math.max((long) this.initialWindowSize
+                        * this.maxConcurrentStreams,
+                        Http2Constants.DEFAULT_INITIAL_WINDOW_SIZE));
+
+        // Send the local settings, part of the connection preface
+        this.controlFrames.add(Http2Utils.createSettings(
+                Http2Constants.SETTINGS_HEADER_TABLE_SIZE, headerTableSize,
+                Http2Constants.SETTINGS_ENABLE_PUSH, 0,
+                Http2Constants.SETTINGS_MAX_CONCURRENT_STREAMS,
+                this.maxConcurrentStreams,
+                Http2Constants.SETTINGS_INITIAL_WINDOW_SIZE,
+                this.initialWindowSize,
+                Http2Constants.SETTINGS_MAX_FRAME_SIZE, this.maxFrameSize));
+
+        if (this.windowSize > this.receiveWindow) {
+            // Enlarge the connection window
+            this.controlFrames.add(Http2Utils.createWindowUpdate(0,
+                    this.windowSize - this.receiveWindow));
+            this.receiveWindow = this.windowSize;
+        }
+    }
+
+    /**
+     * Aborts all the active streams, typically when the connection is closed
+     * or failed.
+     * 
+     * @param message
+     *            The error message reported to the entity readers.
+     */
+    public synchronized void abort(String message) {
+        for (Http2Stream stream : new LinkedList<Http2Stream>(
+                this.streams.values())) {
+            closeStream(stream, new IOException(message));
+        }
+    }
+
+    /**
+     * Applies the settings of the peer, received in a SETTINGS frame or in
+     * the HTTP2-Settings header of an h2c upgrade request.
+     * 
+     * @param payload
+     *            The SETTINGS frame payload.
+     * @throws Http2Exception
+     */
+    public synchronized void applySettings(byte[] payload)
+            throws Http2Exception {
+        if ((payload.length % 6) != 0) {
+            throw new Http2Exception(Http2Constants.ERROR_FRAME_SIZE,
+                    "Invalid SETTINGS payload length: " + payload.length);
+        }
+
+        for (int i = 0; i < payload.length; i += 6) {
+            int id = ((payload[i] & 0xff) << 8) | (payload[i + 1] & 0xff);
+            int value = Http2Utils.readInt(payload, i + 2);
+
+            switch (id) {
+            case Http2Constants.SETTINGS_HEADER_TABLE_SIZE:
+                // The encoder table never exceeds the default size
+                this.encoder.setMaxTableSize((int) Math.min(
+                        value & 0xffffffffL,
+                        Http2Constants.DEFAULT_HEADER_TABLE_SIZE));
+                break;
+
+            case Http2Constants.SETTINGS_ENABLE_PUSH:
+                if ((value != 0) && (value != 1)) {
+                    throw new Http2Exception(Http2Constants.ERROR_PROTOCOL,
+                            "Invalid SETTINGS_ENABLE_PUSH value: " + value);
+                }
+                break;
+
+            case Http2Constants.SETTINGS_MAX_CONCURRENT_STREAMS:
+                this.remoteMaxConcurrentStreams = (int) Math.min(
+                        value & 0xffffffffL, Integer.MAX_VALUE);
+                break;
+
+            case Http2Constants.SETTINGS_INITIAL_WINDOW_SIZE:
+                if (value < 0) {
+                    throw new Http2Exception(Http2Constants.ERROR_FLOW_CONTROL,
+                            "Invalid SETTINGS_INITIAL_WINDOW_SIZE value");
+                }
+
+                // Adjust the send window of all the active streams
+                int delta = value - this.remoteInitialWindowSize;
+
+                for (Http2Stream stream : this.streams.values()) {
+                    long window = (long) stream.getSendWindow() + delta;
+
+                    if (window > Http2Constants.MAX_WINDOW_SIZE) {
+                        throw new Http2Exception(
+                                Http2Constants.ERROR_FLOW_CONTROL,
+                                "Stream window overflow");
+                    }
+
+                    stream.setSendWindow((int) window);
+                }
+
+                this.remoteInitialWindowSize = value;
+                break;
+
+            case Http2Constants.SETTINGS_MAX_FRAME_SIZE:
+                if ((value < Http2Constants.DEFAULT_MAX_FRAME_SIZE)
+                        || (value > Http2Constants.MAX_FRAME_SIZE_LIMIT)) {
+                    throw new Http2Exception(Http2Constants.ERROR_PROTOCOL,
+                            "Invalid SETTINGS_MAX_FRAME_SIZE value: " + value);
+                }
+
+                this.remoteMaxFrameSize = value;
+                break;
+
+            default:
+                // Unused or unknown settings are ignored
+                break;
+            }
+        }
+    }
+
+    /**
+     * Closes a stream and releases its resources.
+     * 
+     * @param stream
+     *            The stream to close.
+     * @param error
+     *            The error to report to the entity readers or null.
+     */
+    protected void closeStream(Http2Stream stream, IOException error) {
+        stream.setState(StreamState.CLOSED);
+        this.streams.remove(stream.getId());
+        this.sendQueue.remove(stream);
+        int discarded = stream.onInputEnded(error);
+
+        if (discarded > 0) {
+            // Data never consumed still counts against the connection window
+            onConnectionConsumed(discarded);
+        }
+
+        if (stream.getEntityChannel() != null) {
+            try {
+                stream.getEntityChannel().close();
+            } catch (IOException ioe) {
+                getLogger().log(Level.FINE,
+                        "Unable to close the entity channel", ioe);
+            }
+
+            stream.setEntityChannel(null);
+        }
+
+        releaseEntity(stream.getOutputResponse());
+        stream.setOutputResponse(null);
+
+        for (Response response : stream.getPendingResponses()) {
+            releaseEntity(response);
+        }
+
+        stream.getPendingResponses().clear();
+    }
+
+    /**
+     * Encodes the header fields of a message. Header blocks must be sent in
+     * the order they were encoded.
+     * 
+     * @param fields
+     *            The header fields.
+     * @return The header block.
+     */
+    public synchronized byte[] encodeHeaders(List<Header> fields) {
+        return this.encoder.encode(fields);
+    }
+
+    /**
+     * Fills a DATA frame with the next entity bytes of a stream, within the
+     * flow control windows. The frame header is written once the payload is
+     * known and the buffer is flipped, ready to be written. The buffer is left
+     * empty if there is nothing to send yet.
+     * 
+     * @param stream
+     *            The stream.
+     * @param frame
+     *            The buffer of the DATA frame.
+     * @param lookahead
+     *            The one byte buffer used to read ahead the entity.
+     * @return True if the end of the entity was reached.
+     * @throws IOException
+     */
+    public boolean fillData(Http2Stream stream, ByteBuffer frame,
+            ByteBuffer lookahead) throws IOException {
+        boolean result = false;
+        ReadableByteChannel channel = stream.getEntityChannel();
+        int allowance = reserveSendAllowance(stream, frame.capacity()
+                - Http2Constants.FRAME_HEADER_SIZE);
+
+        try {
+            frame.clear();
+            frame.position(Http2Constants.FRAME_HEADER_SIZE);
+            frame.limit(Http2Constants.FRAME_HEADER_SIZE + allowance);
+
+            if ((allowance > 0) && (stream.getLookahead() != -1)) {
+                frame.put((byte) stream.getLookahead());
+                stream.setLookahead(-1);
+            }
+
+            while (!result && frame.hasRemaining()) {
+                int count = channel.read(frame);
+
+                if (count == -1) {
+                    result = true;
+                } else if (count == 0) {
+                    break;
+                }
+            }
+
+            if (!result && !frame.hasRemaining()
+                    && (stream.getLookahead() == -1)) {
+                // Read ahead to end the stream even if the window is exhausted
+                lookahead.clear();
+                int count = channel.read(lookahead);
+
+                if (count == -1) {
+                    result = true;
+                } else if (count == 1) {
+                    stream.setLookahead(lookahead.get(0) & 0xff);
+                }
+            }
+        } catch (IOException ioe) {
+            releaseSendAllowance(stream, allowance);
+            throw ioe;
+        }
+
+        int length = frame.position() - Http2Constants.FRAME_HEADER_SIZE;
+        releaseSendAllowance(stream, allowance - length);
+
+        if (result || (length > 0)) {
+            frame.flip();
+            Http2Utils.writeFrameHeader(frame, length,
+                    Http2Constants.FRAME_DATA,
+                    result ? Http2Constants.FLAG_END_STREAM : 0,
+                    stream.getId());
+            frame.position(0);
+        } else {
+            frame.limit(0);
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the parent connection.
+     * 
+     * @return The parent connection.
+     */
+    protected Connection<?> getConnection() {
+        return connection;
+    }
+
+    /**
+     * Returns the parent helper.
+     * 
+     * @return The parent helper.
+     */
+    protected ConnectionHelper<?> getHelper() {
+        return helper;
+    }
+
+    /**
+     * Returns the local initial stream window size.
+     * 
+     * @return The local initial stream window size.
+     */
+    protected int getInitialWindowSize() {
+        return initialWindowSize;
+    }
+
+    /**
+     * Returns the identifier of the last stream initiated by the client.
+     * 
+     * @return The identifier of the last stream initiated by the client.
+     */
+    protected int getLastStreamId() {
+        return lastStreamId;
+    }
+
+    /**
+     * Returns the logger.
+     * 
+     * @return The logger.
+     */
+    protected Logger getLogger() {
+        return this.connection.getLogger();
+    }
+
+    /**
+     * Returns the maximum number of concurrent streams accepted.
+     * 
+     * @return The maximum number of concurrent streams accepted.
+     */
+    protected int getMaxConcurrentStreams() {
+        return maxConcurrentStreams;
+    }
+
+    /**
+     * Returns the maximum size of received frame payloads.
+     * 
+     * @return The maximum size of received frame payloads.
+     */
+    public int getMaxFrameSize() {
+        return maxFrameSize;
+    }
+
+    /**
+     * Returns the initial stream window size of the peer.
+     * 
+     * @return The initial stream window size of the peer.
+     */
+    protected int getRemoteInitialWindowSize() {
+        return remoteInitialWindowSize;
+    }
+
+    /**
+     * Returns the maximum number of concurrent streams accepted by the peer.
+     * 
+     * @return The maximum number of concurrent streams accepted by the peer.
+     */
+    protected int getRemoteMaxConcurrentStreams() {
+        return remoteMaxConcurrentStreams;
+    }
+
+    /**
+     * Returns the maximum size of sent frame payloads.
+     * 
+     * @return The maximum size of sent frame payloads.
+     */
+    public int getRemoteMaxFrameSize() {
+        return remoteMaxFrameSize;
+    }
+
+    /**
+     * Returns the number of active streams.
+     * 
+     * @return The number of active streams.
+     */
+    public synchronized int getStreamCount() {
+        return this.streams.size();
+    }
+
+    /**
+     * Returns the streams having something to send, in round-robin order.
+     * 
+     * @return The streams having something to send.
+     */
+    protected LinkedList<Http2Stream> getSendQueue() {
+        return sendQueue;
+    }
+
+    /**
+     * Returns the active streams, indexed by identifier.
+     * 
+     * @return The active streams.
+     */
+    protected Map<Integer, Http2Stream> getStreams() {
+        return streams;
+    }
+
+    /**
+     * Sends a GOAWAY frame and aborts all the streams.
+     * 
+     * @param errorCode
+     *            The error code.
+     * @param message
+     *            The error message.
+     */
+    public synchronized void goAway(int errorCode, String message) {
+        if (!this.goingAway) {
+            this.goingAway = true;
+
+            if (getLogger().isLoggable(Level.FINE)) {
+                getLogger().log(
+                        Level.FINE,
+                        "Closing HTTP/2 connection with error " + errorCode
+                                + ": " + message);
+            }
+
+            this.controlFrames.add(Http2Utils.createGoAway(this.lastStreamId,
+                    errorCode));
+            abort(message);
+            this.connection.close(true);
+        }
+    }
+
+    /**
+     * Indicates if a frame can be sent, either a control frame or a frame on
+     * a stream that isn't blocked by flow control.
+     * 
+     * @return True if a frame can be sent.
+     */
+    public synchronized boolean hasOutput() {
+        boolean result = !this.controlFrames.isEmpty();
+
+        for (Iterator<Http2Stream> iter = this.sendQueue.iterator(); !result
+                && iter.hasNext();) {
+            result = isSendable(iter.next());
+        }
+
+        return result;
+    }
+
+    /**
+     * Indicates if the given header name is specific to HTTP/1.x connections.
+     * 
+     * @param name
+     *            The lower case header name.
+     * @return True if the given header name is specific to HTTP/1.x.
+     */
+    public static boolean isConnectionHeader(String name) {
+        return "connection".equals(name) || "keep-alive".equals(name)
+                || "proxy-connection".equals(name)
+                || "transfer-encoding".equals(name) || "upgrade".equals(name);
+    }
+
+    /**
+     * Indicates if there is nothing left to send and no active stream.
+     * 
+     * @return True if the session is empty.
+     */
+    public synchronized boolean isEmpty() {
+        return this.controlFrames.isEmpty() && this.streams.isEmpty();
+    }
+
+    /**
+     * Indicates if the connection is closing after a GOAWAY frame was sent or
+     * received.
+     * 
+     * @return True if the connection is closing.
+     */
+    public boolean isGoingAway() {
+        return goingAway;
+    }
+
+    /**
+     * Indicates if a stream can send a frame, either message headers or
+     * entity bytes within the flow control windows.
+     * 
+     * @param stream
+     *            The stream.
+     * @return True if the stream can send a frame.
+     */
+    private boolean isSendable(Http2Stream stream) {
+        return !stream.getPendingResponses().isEmpty()
+                || ((stream.getEntityChannel() != null)
+                        && (stream.getSendWindow() > 0) && (this.sendWindow > 0));
+    }
+
+    /**
+     * Returns the next stream that can send a frame, in weighted round-robin
+     * order.
+     * 
+     * @return The next stream that can send a frame or null.
+     */
+    public synchronized Http2Stream nextStream() {
+        Http2Stream result = null;
+
+        for (int i = this.sendQueue.size(); (result == null) && (i > 0); i--) {
+            Http2Stream stream = this.sendQueue.poll();
+
+            if (stream.hasOutput()) {
+                // Move it to the end of the queue
+                this.sendQueue.add(stream);
+
+                if (isSendable(stream)) {
+                    result = stream;
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Updates the connection window after bytes were consumed.
+     * 
+     * @param count
+     *            The number of bytes consumed.
+     */
+    private void onConnectionConsumed(int count) {
+        this.unacknowledged += count;
+
+        if (this.unacknowledged >= this.windowSize / 2) {
+            this.controlFrames.add(Http2Utils.createWindowUpdate(0,
+                    this.unacknowledged));
+            this.receiveWindow += this.unacknowledged;
+            this.unacknowledged = 0;
+        }
+    }
+
+    /**
+     * Called back when received entity bytes were consumed, either by the
+     * application or because they were discarded. Window updates are sent
+     * once half of a window was consumed, to avoid sending tiny frames.
+     * 
+     * @param stream
+     *            The stream.
+     * @param count
+     *            The number of bytes consumed.
+     */
+    public void onConsumed(Http2Stream stream, int count) {
+        synchronized (this) {
+            onStreamConsumed(stream, count);
+        }
+
+        // Window updates may have been queued from an application thread
+        this.helper.getController().wakeup();
+    }
+
+    /**
+     * Handles a DATA frame.
+     * 
+     * @param flags
+     *            The frame flags.
+     * @param streamId
+     *            The stream identifier.
+     * @param payload
+     *            The payload bytes.
+     * @param length
+     *            The payload length.
+     * @throws Http2Exception
+     */
+    private void onDataFrame(int flags, int streamId, byte[] payload,
+            int length) throws Http2Exception {
+        if (streamId == 0) {
+            throw new Http2Exception(Http2Constants.ERROR_PROTOCOL,
+                    "DATA frame on the connection stream");
+        }
+
+        // The whole payload counts against the flow control windows
+        this.receiveWindow -= length;
+
+        if (this.receiveWindow < 0) {
+            throw new Http2Exception(Http2Constants.ERROR_FLOW_CONTROL,
+                    "Connection window exceeded");
+        }
+
+        Http2Stream stream = this.streams.get(streamId);
+
+        if ((stream == null) || (stream.getState() == StreamState.HALF_CLOSED_REMOTE)) {
+            onConnectionConsumed(length);
+
+            if (streamId > this.lastStreamId) {
+                throw new Http2Exception(Http2Constants.ERROR_PROTOCOL,
+                        "DATA frame on idle stream " + streamId);
+            }
+
+            throw new Http2Exception(Http2Constants.ERROR_STREAM_CLOSED,
+                    streamId, "DATA frame on closed stream");
+        }
+
+        stream.setReceiveWindow(stream.getReceiveWindow() - length);
+
+        if (stream.getReceiveWindow() < 0) {
+            onConnectionConsumed(length);
+            throw new Http2Exception(Http2Constants.ERROR_FLOW_CONTROL,
+                    streamId, "Stream window exceeded");
+        }
+
+        int offset = 0;
+        int dataLength = length;
+
+        if ((flags & Http2Constants.FLAG_PADDED) != 0) {
+            int padding = (length > 0) ? (payload[0] & 0xff) : length;
+
+            if (padding >= length) {
+                throw new Http2Exception(Http2Constants.ERROR_PROTOCOL,
+                        "Invalid DATA frame padding");
+            }
+
+            offset = 1;
+            dataLength = length - 1 - padding;
+        }
+
+        // Padding and discarded bytes are consumed immediately
+        int discarded = stream.onData(payload, offset, dataLength);
+        int consumed = length - dataLength + discarded;
+
+        if (consumed > 0) {
+            onStreamConsumed(stream, consumed);
+        }
+
+        if ((flags & Http2Constants.FLAG_END_STREAM) != 0) {
+            onInputEnded(stream);
+        }
+    }
+
+    /**
+     * Called back when a complete frame is received.
+     * 
+     * @param type
+     *            The frame type.
+     * @param flags
+     *            The frame flags.
+     * @param streamId
+     *            The stream identifier.
+     * @param payload
+     *            The payload bytes.
+     * @param length
+     *            The payload length.
+     * @throws Http2Exception
+     *             If a connection error is detected.
+     */
+    public synchronized void onFrame(int type, int flags, int streamId,
+            byte[] payload, int length) throws Http2Exception {
+        if (!this.settingsReceived && (type != Http2Constants.FRAME_SETTINGS)) {
+            throw new Http2Exception(Http2Constants.ERROR_PROTOCOL,
+                    "The connection preface must start with a SETTINGS frame");
+        } else if ((this.headerStreamId != 0)
+                && ((type != Http2Constants.FRAME_CONTINUATION) || (streamId != this.headerStreamId))) {
+            throw new Http2Exception(Http2Constants.ERROR_PROTOCOL,
+                    "CONTINUATION frame expected");
+        }
+
+        try {
+            switch (type) {
+            case Http2Constants.FRAME_DATA:
+                onDataFrame(flags, streamId, payload, length);
+                break;
+
+            case Http2Constants.FRAME_HEADERS:
+                onHeadersFrame(flags, streamId, payload, length);
+                break;
+
+            case Http2Constants.FRAME_PRIORITY:
+                onPriorityFrame(streamId, payload, length);
+                break;
+
+            case Http2Constants.FRAME_RST_STREAM:
+                onRstStreamFrame(streamId, payload, length);
+                break;
+
+            case Http2Constants.FRAME_SETTINGS:
+                onSettingsFrame(flags, streamId, payload, length);
+                break;
+
+            case Http2Constants.FRAME_PUSH_PROMISE:
+                // Server push is always disabled by the local settings
+                throw new Http2Exception(Http2Constants.ERROR_PROTOCOL,
+                        "Unexpected PUSH_PROMISE frame");
+
+            case Http2Constants.FRAME_PING:
+                onPingFrame(flags, streamId, payload, length);
+                break;
+
+            case Http2Constants.FRAME_GOAWAY:
+                if (streamId != 0) {
+                    throw new Http2Exception(Http2Constants.ERROR_PROTOCOL,
+                            "GOAWAY frame on a stream");
+                }
+
+                // Complete the active streams then close the connection
+                this.goingAway = true;
+                this.connection.close(true);
+                break;
+
+            case Http2Constants.FRAME_WINDOW_UPDATE:
+                onWindowUpdateFrame(streamId, payload, length);
+                break;
+
+            case Http2Constants.FRAME_CONTINUATION:
+                if (this.headerStreamId == 0) {
+                    throw new Http2Exception(Http2Constants.ERROR_PROTOCOL,
+                            "Unexpected CONTINUATION frame");
+                }
+
+                this.headerBlock.write(payload, 0, length);
+
+                if ((flags & Http2Constants.FLAG_END_HEADERS) != 0) {
+                    onHeaderBlock(streamId,
+                            (this.headerFlags & Http2Constants.FLAG_END_STREAM) != 0,
+                            this.headerWeight);
+                }
+                break;
+
+            default:
+                // Unknown frame types are ignored
+                break;
+            }
+        } catch (Http2Exception e) {
+            if (e.isStreamError()) {
+                resetStream(e.getStreamId(), e.getErrorCode());
+            } else {
+                throw e;
+            }
+        }
+    }
+
+    /**
+     * Decodes the complete header block received on a stream.
+     * 
+     * @param streamId
+     *            The stream identifier.
+     * @param endStream
+     *            True if the END_STREAM flag was set.
+     * @param weight
+     *            The priority weight or 0 if unspecified.
+     * @throws Http2Exception
+     */
+    private void onHeaderBlock(int streamId, boolean endStream, int weight)
+            throws Http2Exception {
+        byte[] block = this.headerBlock.toByteArray();
+        this.headerBlock.reset();
+        this.headerStreamId = 0;
+
+        // Always decode to keep the HPACK context synchronized
+        onHeaders(streamId, this.decoder.decode(block, 0, block.length),
+                endStream, weight);
+    }
+
+    /**
+     * Handles the header fields decoded from a complete header block.
+     * 
+     * @param streamId
+     *            The stream identifier.
+     * @param fields
+     *            The decoded header fields.
+     * @param endStream
+     *            True if the END_STREAM flag was set.
+     * @param weight
+     *            The priority weight or 0 if unspecified.
+     * @throws Http2Exception
+     */
+    protected abstract void onHeaders(int streamId, List<Header> fields,
+            boolean endStream, int weight) throws Http2Exception;
+
+    /**
+     * Handles a HEADERS frame.
+     * 
+     * @param flags
+     *            The frame flags.
+     * @param streamId
+     *            The stream identifier.
+     * @param payload
+     *            The payload bytes.
+     * @param length
+     *            The payload length.
+     * @throws Http2Exception
+     */
+    private void onHeadersFrame(int flags, int streamId, byte[] payload,
+            int length) throws Http2Exception {
+        if (streamId == 0) {
+            throw new Http2Exception(Http2Constants.ERROR_PROTOCOL,
+                    "HEADERS frame on the connection stream");
+        }
+
+        int offset = 0;
+        int padding = 0;
+        int weight = 0;
+
+        if ((flags & Http2Constants.FLAG_PADDED) != 0) {
+            padding = (length > 0) ? (payload[0] & 0xff) : length;
+            offset++;
+        }
+
+        if ((flags & Http2Constants.FLAG_PRIORITY) != 0) {
+            if (length >= offset + 5) {
+                if (Http2Utils.readInt31(payload, offset) == streamId) {
+                    throw new Http2Exception(Http2Constants.ERROR_PROTOCOL,
+                            streamId, "Stream depending on itself");
+                }
+
+                weight = (payload[offset + 4] & 0xff) + 1;
+            }
+
+            offset += 5;
+        }
+
+        if (offset + padding > length) {
+            throw new Http2Exception(Http2Constants.ERROR_PROTOCOL,
+                    "Invalid HEADERS frame padding");
+        }
+
+        this.headerBlock.write(payload, offset, length - offset - padding);
+
+        if ((flags & Http2Constants.FLAG_END_HEADERS) != 0) {
+            onHeaderBlock(streamId,
+                    (flags & Http2Constants.FLAG_END_STREAM) != 0, weight);
+        } else {
+            // Wait for the CONTINUATION frames
+            this.headerStreamId = streamId;
+            this.headerFlags = flags;
+            this.headerWeight = weight;
+        }
+    }
+
+    /**
+     * Called when the peer ended a stream.
+     * 
+     * @param stream
+     *            The stream.
+     */
+    protected void onInputEnded(Http2Stream stream) {
+        stream.onInputEnded(null);
+
+        if (stream.getState() == StreamState.HALF_CLOSED_LOCAL) {
+            closeStream(stream, null);
+        } else {
+            stream.setState(StreamState.HALF_CLOSED_REMOTE);
+        }
+    }
+
+    /**
+     * Called when the local side ended a stream, after sending the last frame
+     * of a message.
+     * 
+     * @param stream
+     *            The stream.
+     */
+    public synchronized void onOutputEnded(Http2Stream stream) {
+        if (stream.getState() == StreamState.OPEN) {
+            stream.setState(StreamState.HALF_CLOSED_LOCAL);
+        } else if (stream.getState() == StreamState.HALF_CLOSED_REMOTE) {
+            closeStream(stream, null);
+        }
+    }
+
+    /**
+     * Handles a PING frame.
+     * 
+     * @param flags
+     *            The frame flags.
+     * @param streamId
+     *            The stream identifier.
+     * @param payload
+     *            The payload bytes.
+     * @param length
+     *            The payload length.
+     * @throws Http2Exception
+     */
+    private void onPingFrame(int flags, int streamId, byte[] payload,
+            int length) throws Http2Exception {
+        if (streamId != 0) {
+            throw new Http2Exception(Http2Constants.ERROR_PROTOCOL,
+                    "PING frame on a stream");
+        } else if (length != 8) {
+            throw new Http2Exception(Http2Constants.ERROR_FRAME_SIZE,
+                    "Invalid PING frame length: " + length);
+        } else if ((flags & Http2Constants.FLAG_ACK) == 0) {
+            byte[] data = new byte[8];
+            System.arraycopy(payload, 0, data, 0, 8);
+            this.controlFrames.add(Http2Utils.createFrame(
+                    Http2Constants.FRAME_PING, Http2Constants.FLAG_ACK, 0,
+                    data));
+        }
+    }
+
+    /**
+     * Handles a PRIORITY frame. Only the weight is taken into account, stream
+     * dependencies are ignored.
+     * 
+     * @param streamId
+     *            The stream identifier.
+     * @param payload
+     *            The payload bytes.
+     * @param length
+     *            The payload length.
+     * @throws Http2Exception
+     */
+    private void onPriorityFrame(int streamId, byte[] payload, int length)
+            throws Http2Exception {
+        if (streamId == 0) {
+            throw new Http2Exception(Http2Constants.ERROR_PROTOCOL,
+                    "PRIORITY frame on the connection stream");
+        } else if (length != 5) {
+            throw new Http2Exception(Http2Constants.ERROR_FRAME_SIZE,
+                    streamId, "Invalid PRIORITY frame length: " + length);
+        } else if (Http2Utils.readInt31(payload, 0) == streamId) {
+            throw new Http2Exception(Http2Constants.ERROR_PROTOCOL, streamId,
+                    "Stream depending on itself");
+        }
+
+        Http2Stream stream = this.streams.get(streamId);
+
+        if (stream != null) {
+            stream.setWeight((payload[4] & 0xff) + 1);
+        }
+    }
+
+    /**
+     * Handles a RST_STREAM frame.
+     * 
+     * @param streamId
+     *            The stream identifier.
+     * @param payload
+     *            The payload bytes.
+     * @param length
+     *            The payload length.
+     * @throws Http2Exception
+     */
+    private void onRstStreamFrame(int streamId, byte[] payload, int length)
+            throws Http2Exception {
+        if (streamId == 0) {
+            throw new Http2Exception(Http2Constants.ERROR_PROTOCOL,
+                    "RST_STREAM frame on the connection stream");
+        } else if (length != 4) {
+            throw new Http2Exception(Http2Constants.ERROR_FRAME_SIZE,
+                    "Invalid RST_STREAM frame length: " + length);
+        } else if (streamId > this.lastStreamId) {
+            throw new Http2Exception(Http2Constants.ERROR_PROTOCOL,
+                    "RST_STREAM frame on idle stream " + streamId);
+        }
+
+        Http2Stream stream = this.streams.get(streamId);
+
+        if (stream != null) {
+            closeStream(stream, new IOException("Stream reset by the peer"
+                    + " with error " + Http2Utils.readInt(payload, 0)));
+        }
+    }
+
+    /**
+     * Handles a SETTINGS frame.
+     * 
+     * @param flags
+     *            The frame flags.
+     * @param streamId
+     *            The stream identifier.
+     * @param payload
+     *            The payload bytes.
+     * @param length
+     *            The payload length.
+     * @throws Http2Exception
+     */
+    private void onSettingsFrame(int flags, int streamId, byte[] payload,
+            int length) throws Http2Exception {
+        if (streamId != 0) {
+            throw new Http2Exception(Http2Constants.ERROR_PROTOCOL,
+                    "SETTINGS frame on a stream");
+        } else if ((flags & Http2Constants.FLAG_ACK) != 0) {
+            if (length != 0) {
+                throw new Http2Exception(Http2Constants.ERROR_FRAME_SIZE,
+                        "SETTINGS acknowledgment with a payload");
+            }
+        } else {
+            byte[] settings = new byte[length];
+            System.arraycopy(payload, 0, settings, 0, length);
+            applySettings(settings);
+            this.settingsReceived = true;
+            this.controlFrames.add(Http2Utils.createFrame(
+                    Http2Constants.FRAME_SETTINGS, Http2Constants.FLAG_ACK, 0,
+                    new byte[0]));
+        }
+    }
+
+    /**
+     * Updates the stream and connection windows after bytes were consumed.
+     * 
+     * @param stream
+     *            The stream.
+     * @param count
+     *            The number of bytes consumed.
+     */
+    private void onStreamConsumed(Http2Stream stream, int count) {
+        onConnectionConsumed(count);
+
+        if ((stream.getState() == StreamState.OPEN)
+                || (stream.getState() == StreamState.HALF_CLOSED_LOCAL)) {
+            int consumed = stream.getUnacknowledged() + count;
+
+            if (consumed >= this.initialWindowSize / 2) {
+                this.controlFrames.add(Http2Utils.createWindowUpdate(
+                        stream.getId(), consumed));
+                stream.setReceiveWindow(stream.getReceiveWindow() + consumed);
+                consumed = 0;
+            }
+
+            stream.setUnacknowledged(consumed);
+        }
+    }
+
+    /**
+     * Handles a WINDOW_UPDATE frame.
+     * 
+     * @param streamId
+     *            The stream identifier.
+     * @param payload
+     *            The payload bytes.
+     * @param length
+     *            The payload length.
+     * @throws Http2Exception
+     */
+    private void onWindowUpdateFrame(int streamId, byte[] payload, int length)
+            throws Http2Exception {
+        if (length != 4) {
+            throw new Http2Exception(Http2Constants.ERROR_FRAME_SIZE,
+                    "Invalid WINDOW_UPDATE frame length: " + length);
+        }
+
+        int increment = Http2Utils.readInt31(payload, 0);
+
+        if (increment == 0) {
+            throw new Http2Exception(Http2Constants.ERROR_PROTOCOL, streamId,
+                    "Invalid window increment: 0");
+        } else if (streamId == 0) {
+            if ((long) this.sendWindow + increment > Http2Constants.MAX_WINDOW_SIZE) {
+                throw new Http2Exception(Http2Constants.ERROR_FLOW_CONTROL,
+                        "Connection window overflow");
+            }
+
+            this.sendWindow += increment;
+        } else {
+            Http2Stream stream = this.streams.get(streamId);
+
+            if (stream != null) {
+                if ((long) stream.getSendWindow() + increment > Http2Constants.MAX_WINDOW_SIZE) {
+                    throw new Http2Exception(Http2Constants.ERROR_FLOW_CONTROL,
+                            streamId, "Stream window overflow");
+                }
+
+                stream.setSendWindow(stream.getSendWindow() + increment);
+            } else if (streamId > this.lastStreamId) {
+                throw new Http2Exception(Http2Constants.ERROR_PROTOCOL,
+                        "WINDOW_UPDATE frame on idle stream " + streamId);
+            }
+        }
+    }
+
+    /**
+     * Polls the next control frame to send.
+     * 
+     * @return The next control frame or null.
+     */
+    public synchronized byte[] pollControlFrame() {
+        return this.controlFrames.poll();
+    }
+
+    /**
+     * Polls the next message whose headers should be sent on a stream. On the
+     * client side, this is the response of the request to send.
+     * 
+     * @param stream
+     *            The stream.
+     * @return The next response or null.
+     */
+    public synchronized Response pollResponse(Http2Stream stream) {
+        return stream.getPendingResponses().poll();
+    }
+
+    /**
+     * Releases the entity of a message that won't be sent.
+     * 
+     * @param response
+     *            The response.
+     */
+    protected abstract void releaseEntity(Response response);
+
+    /**
+     * Gives back the part of a send allowance that wasn't used.
+     * 
+     * @param stream
+     *            The stream.
+     * @param unused
+     *            The number of bytes not sent.
+     */
+    public synchronized void releaseSendAllowance(Http2Stream stream,
+            int unused) {
+        this.sendWindow += unused;
+        stream.setSendWindow(stream.getSendWindow() + unused);
+    }
+
+    /**
+     * Reserves the number of entity bytes that a stream can send in its next
+     * DATA frame. When several streams are sending entities, the frame size is
+     * proportional to the stream weight so that the bandwidth is shared
+     * accordingly.
+     * 
+     * @param stream
+     *            The stream.
+     * @param maxSize
+     *            The maximum size, depending on the buffer available.
+     * @return The number of bytes reserved.
+     */
+    public synchronized int reserveSendAllowance(Http2Stream stream,
+            int maxSize) {
+        int result = Math.min(maxSize, this.remoteMaxFrameSize);
+        int senders = 0;
+
+        for (Http2Stream next : this.sendQueue) {
+            if (next.getEntityChannel() != null) {
+                senders++;
+            }
+        }
+
+        if (senders > 1) {
+            result = Math.min(result, Math.max(MIN_QUANTUM, result
+                    * stream.getWeight() / 256));
+        }
+
+        result = Math.max(0, Math.min(result,
+                Math.min(this.sendWindow, stream.getSendWindow())));
+        this.sendWindow -= result;
+        stream.setSendWindow(stream.getSendWindow() - result);
+        return result;
+    }
+
+    /**
+     * Resets a stream by sending a RST_STREAM frame.
+     * 
+     * @param streamId
+     *            The stream identifier.
+     * @param errorCode
+     *            The error code.
+     */
+    public synchronized void resetStream(int streamId, int errorCode) {
+        this.controlFrames.add(Http2Utils.createRstStream(streamId, errorCode));
+        Http2Stream stream = this.streams.get(streamId);
+
+        if (stream != null) {
+            closeStream(stream, new IOException("Stream reset with error "
+                    + errorCode));
+        }
+    }
+
+    /**
+     * Sets the identifier of the last stream initiated by the client.
+     * 
+     * @param lastStreamId
+     *            The identifier of the last stream initiated by the client.
+     */
+    protected void setLastStreamId(int lastStreamId) {
+        this.lastStreamId = lastStreamId;
+    }
+
+}
@@ -0,0 +1,526 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.ext.nio.internal.http2;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.channels.ReadableByteChannel;
+import java.util.LinkedList;
+import java.util.Queue;
+
+import org.restlet.Response;
+import org.restlet.ext.nio.internal.state.StreamState;
+
+/**
+ * HTTP/2 stream multiplexed on a connection. On the server side, it carries a
+ * single request, buffering its entity for the application, and the responses
+ * sent back, provisional ones included. On the client side, it carries a
+ * single request sent and its response, whose entity is buffered.
+ * 
+ * @author Jerome Louvel
+ */
+public class Http2Stream {
+
+    /**
+     * Input stream exposing the entity received in DATA frames. Reads block
+     * until data is received or the peer ends the stream.
+     */
+    private class EntityStream extends InputStream {
+
+        @Override
+        public int available() throws IOException {
+            synchronized (Http2Stream.this) {
+                return buffered;
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            int discarded;
+
+            synchronized (Http2Stream.this) {
+                discarded = buffered;
+                chunks.clear();
+                buffered = 0;
+                inputClosed = true;
+            }
+
+            if (discarded > 0) {
+                session.onConsumed(Http2Stream.this, discarded);
+            }
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            int result = read(b, 0, 1);
+            return (result == -1) ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int result = 0;
+
+            if (len == 0) {
+                return 0;
+            }
+
+            synchronized (Http2Stream.this) {
+                while (chunks.isEmpty() && !inputEnded && (inputError == null)) {
+                    try {
+                        Http2Stream.this.wait();
+                    } catch (InterruptedException e) {
+                        throw new InterruptedIOException(
+                                "Interrupted while waiting for HTTP/2 data");
+                    }
+                }
+
+                if (inputError != null) {
+                    throw inputError;
+                } else if (chunks.isEmpty()) {
+                    return -1;
+                }
+
+                while ((result < len) && !chunks.isEmpty()) {
+                    byte[] chunk = chunks.peek();
+                    int count = Math.min(len - result, chunk.length
+                            - chunkOffset);
+                    System.arraycopy(chunk, chunkOffset, b, off + result,
+                            count);
+                    result += count;
+                    chunkOffset += count;
+
+                    if (chunkOffset == chunk.length) {
+                        chunks.poll();
+                        chunkOffset = 0;
+                    }
+                }
+
+                buffered -= result;
+            }
+
+            session.onConsumed(Http2Stream.this, result);
+            return result;
+        }
+    }
+
+    /** The number of buffered entity bytes. */
+    private int buffered;
+
+    /** The offset in the first buffered chunk. */
+    private int chunkOffset;
+
+    /** The buffered entity chunks. */
+    private final LinkedList<byte[]> chunks;
+
+    /** The channel of the entity being sent. */
+    private volatile ReadableByteChannel entityChannel;
+
+    /** The received entity stream. */
+    private final InputStream entityStream;
+
+    /** Indicates if the headers of the peer were received. */
+    private volatile boolean headersReceived;
+
+    /** The stream identifier. */
+    private final int id;
+
+    /** Indicates if the received entity stream was closed. */
+    private boolean inputClosed;
+
+    /** Indicates if the peer ended the stream. */
+    private boolean inputEnded;
+
+    /** The error to report to the received entity readers. */
+    private IOException inputError;
+
+    /**
+     * The entity byte read ahead to detect the end of the entity being sent,
+     * or -1.
+     */
+    private volatile int lookahead;
+
+    /**
+     * The response whose headers were sent and whose entity is being sent. On
+     * the client side, the entity sent is the one of the response's request.
+     */
+    private volatile Response outputResponse;
+
+    /**
+     * The responses waiting for their headers to be sent. On the client side,
+     * the headers sent are the ones of the response's request.
+     */
+    private final Queue<Response> pendingResponses;
+
+    /**
+     * The number of bytes the peer can still send before a window update.
+     */
+    private volatile int receiveWindow;
+
+    /** The response associated to the request carried by this stream. */
+    private volatile Response response;
+
+    /** The number of bytes that can still be sent before a window update. */
+    private volatile int sendWindow;
+
+    /** The parent session. */
+    private final Http2Session session;
+
+    /** The stream state. */
+    private volatile StreamState state;
+
+    /** The number of consumed bytes not yet acknowledged with a window update. */
+    private volatile int unacknowledged;
+
+    /** The priority weight, between 1 and 256. */
+    private volatile int weight;
+
+    /**
+     * Constructor.
+     * 
+     * @param session
+     *            The parent session.
+     * @param id
+     *            The stream identifier.
+     * @param sendWindow
+     *            The initial send window.
+     * @param receiveWindow
+     *            The initial receive window.
+     */
+    public Http2Stream(Http2Session session, int id, int sendWindow,
+            int receiveWindow) {
+        this.chunks = new LinkedList<byte[]>();
+        this.entityStream = new EntityStream();
+        this.id = id;
+        this.lookahead = -1;
+        this.pendingResponses = new LinkedList<Response>();
+        this.receiveWindow = receiveWindow;
+        this.sendWindow = sendWindow;
+        this.session = session;
+        this.state = StreamState.OPEN;
+        this.weight = Http2Constants.DEFAULT_WEIGHT;
+    }
+
+    /**
+     * Returns the channel of the entity being sent.
+     * 
+     * @return The channel of the entity being sent.
+     */
+    public ReadableByteChannel getEntityChannel() {
+        return entityChannel;
+    }
+
+    /**
+     * Returns the received entity stream.
+     * 
+     * @return The received entity stream.
+     */
+    public InputStream getEntityStream() {
+        return entityStream;
+    }
+
+    /**
+     * Returns the stream identifier.
+     * 
+     * @return The stream identifier.
+     */
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Returns the entity byte read ahead to detect the end of the entity being
+     * sent, or -1.
+     * 
+     * @return The entity byte read ahead or -1.
+     */
+    public int getLookahead() {
+        return lookahead;
+    }
+
+    /**
+     * Returns the response whose entity is being sent.
+     * 
+     * @return The response whose entity is being sent.
+     */
+    public Response getOutputResponse() {
+        return outputResponse;
+    }
+
+    /**
+     * Returns the responses waiting for their headers to be sent.
+     * 
+     * @return The responses waiting for their headers to be sent.
+     */
+    public Queue<Response> getPendingResponses() {
+        return pendingResponses;
+    }
+
+    /**
+     * Returns the number of bytes the peer can still send before a window
+     * update.
+     * 
+     * @return The receive window.
+     */
+    public int getReceiveWindow() {
+        return receiveWindow;
+    }
+
+    /**
+     * Returns the response associated to the request carried by this stream.
+     * 
+     * @return The response.
+     */
+    public Response getResponse() {
+        return response;
+    }
+
+    /**
+     * Returns the number of bytes that can still be sent before a window
+     * update.
+     * 
+     * @return The send window.
+     */
+    public int getSendWindow() {
+        return sendWindow;
+    }
+
+    /**
+     * Returns the stream state.
+     * 
+     * @return The stream state.
+     */
+    public StreamState getState() {
+        return state;
+    }
+
+    /**
+     * Returns the number of consumed bytes not yet acknowledged with a window
+     * update.
+     * 
+     * @return The number of unacknowledged bytes.
+     */
+    public int getUnacknowledged() {
+        return unacknowledged;
+    }
+
+    /**
+     * Returns the priority weight, between 1 and 256.
+     * 
+     * @return The priority weight.
+     */
+    public int getWeight() {
+        return weight;
+    }
+
+    /**
+     * Indicates if something is ready to be sent on this stream, either
+     * message headers or entity bytes.
+     * 
+     * @return True if something is ready to be sent.
+     */
+    public boolean hasOutput() {
+        return (getState() != StreamState.CLOSED)
+                && (!getPendingResponses().isEmpty() || (getEntityChannel() != null));
+    }
+
+    /**
+     * Indicates if the headers of the peer were received.
+     * 
+     * @return True if the headers of the peer were received.
+     */
+    public boolean isHeadersReceived() {
+        return headersReceived;
+    }
+
+    /**
+     * Appends entity bytes received in a DATA frame.
+     * 
+     * @param data
+     *            The source array.
+     * @param offset
+     *            The offset of the data.
+     * @param length
+     *            The length of the data.
+     * @return The number of bytes discarded because the entity stream was
+     *         already closed.
+     */
+    public synchronized int onData(byte[] data, int offset, int length) {
+        int result = 0;
+
+        if (this.inputClosed) {
+            result = length;
+        } else if (length > 0) {
+            byte[] chunk = new byte[length];
+            System.arraycopy(data, offset, chunk, 0, length);
+            this.chunks.add(chunk);
+            this.buffered += length;
+            notifyAll();
+        }
+
+        return result;
+    }
+
+    /**
+     * Signals that the peer ended the stream, normally or not.
+     * 
+     * @param error
+     *            The error to report to readers or null.
+     * @return The number of buffered bytes discarded because of the error.
+     */
+    public synchronized int onInputEnded(IOException error) {
+        int result = 0;
+        this.inputEnded = true;
+
+        if ((error != null) && (this.inputError == null)) {
+            this.inputError = error;
+            result = this.buffered;
+            this.chunks.clear();
+            this.buffered = 0;
+        }
+
+        notifyAll();
+        return result;
+    }
+
+    /**
+     * Sets the channel of the entity being sent.
+     * 
+     * @param entityChannel
+     *            The channel of the entity being sent.
+     */
+    public void setEntityChannel(ReadableByteChannel entityChannel) {
+        this.entityChannel = entityChannel;
+    }
+
+    /**
+     * Indicates if the headers of the peer were received.
+     * 
+     * @param headersReceived
+     *            True if the headers of the peer were received.
+     */
+    public void setHeadersReceived(boolean headersReceived) {
+        this.headersReceived = headersReceived;
+    }
+
+    /**
+     * Sets the entity byte read ahead to detect the end of the entity being
+     * sent, or -1.
+     * 
+     * @param lookahead
+     *            The entity byte read ahead or -1.
+     */
+    public void setLookahead(int lookahead) {
+        this.lookahead = lookahead;
+    }
+
+    /**
+     * Sets the response whose entity is being sent.
+     * 
+     * @param outputResponse
+     *            The response whose entity is being sent.
+     */
+    public void setOutputResponse(Response outputResponse) {
+        this.outputResponse = outputResponse;
+    }
+
+    /**
+     * Sets the number of bytes the peer can still send before a window
+     * update.
+     * 
+     * @param receiveWindow
+     *            The receive window.
+     */
+    public void setReceiveWindow(int receiveWindow) {
+        this.receiveWindow = receiveWindow;
+    }
+
+    /**
+     * Sets the response associated to the request carried by this stream.
+     * 
+     * @param response
+     *            The response.
+     */
+    public void setResponse(Response response) {
+        this.response = response;
+    }
+
+    /**
+     * Sets the number of bytes that can still be sent before a window update.
+     * 
+     * @param sendWindow
+     *            The send window.
+     */
+    public void setSendWindow(int sendWindow) {
+        this.sendWindow = sendWindow;
+    }
+
+    /**
+     * Sets the stream state.
+     * 
+     * @param state
+     *            The stream state.
+     */
+    public void setState(StreamState state) {
+        this.state = state;
+    }
+
+    /**
+     * Sets the number of consumed bytes not yet acknowledged with a window
+     * update.
+     * 
+     * @param unacknowledged
+     *            The number of unacknowledged bytes.
+     */
+    public void setUnacknowledged(int unacknowledged) {
+        this.unacknowledged = unacknowledged;
+    }
+
+    /**
+     * Sets the priority weight.
+     * 
+     * @param weight
+     *            The priority weight, between 1 and 256.
+     */
+    public void setWeight(int weight) {
+        this.weight = weight;
+    }
+
+    @Override
+    public String toString() {
+        return "Stream " + getId() + " (" + getState() + ")";
+    }
+
+}
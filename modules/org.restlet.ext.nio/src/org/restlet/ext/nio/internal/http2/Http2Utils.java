@@ -0,0 +1,254 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.ext.nio.internal.http2;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Utility methods to encode and decode HTTP/2 frames (RFC 7540, section 4).
+ * 
+ * @author Jerome Louvel
+ */
+public class Http2Utils {
+
+    /**
+     * Creates a complete frame.
+     * 
+     * @param type
+     *            The frame type.
+     * @param flags
+     *            The frame flags.
+     * @param streamId
+     *            The stream identifier.
+     * @param payload
+     *            The frame payload.
+     * @return The frame bytes.
+     */
+    public static byte[] createFrame(int type, int flags, int streamId,
+            byte[] payload) {
+        ByteBuffer result = ByteBuffer.allocate(Http2Constants.FRAME_HEADER_SIZE
+                + payload.length);
+        writeFrameHeader(result, payload.length, type, flags, streamId);
+        result.put(payload);
+        return result.array();
+    }
+
+    /**
+     * Creates a GOAWAY frame.
+     * 
+     * @param lastStreamId
+     *            The identifier of the last stream processed.
+     * @param errorCode
+     *            The error code.
+     * @return The frame bytes.
+     */
+    public static byte[] createGoAway(int lastStreamId, int errorCode) {
+        byte[] payload = new byte[8];
+        writeInt(payload, 0, lastStreamId);
+        writeInt(payload, 4, errorCode);
+        return createFrame(Http2Constants.FRAME_GOAWAY, 0, 0, payload);
+    }
+
+    /**
+     * Creates a HEADERS frame followed by the CONTINUATION frames needed to
+     * carry a header block.
+     * 
+     * @param streamId
+     *            The stream identifier.
+     * @param block
+     *            The encoded header block.
+     * @param maxFrameSize
+     *            The maximum size of the frame payloads.
+     * @param endStream
+     *            True if the END_STREAM flag should be set.
+     * @return The frames bytes, ready to be written.
+     */
+    public static ByteBuffer createHeaders(int streamId, byte[] block,
+            int maxFrameSize, boolean endStream) {
+        int frameCount = Math.max(1, (block.length + maxFrameSize - 1)
+                / maxFrameSize);
+        ByteBuffer result = ByteBuffer.allocate(block.length + frameCount
+                * Http2Constants.FRAME_HEADER_SIZE);
+
+        for (int offset = 0, i = 0; i < frameCount; i++) {
+            int length = Math.min(maxFrameSize, block.length - offset);
+            int flags = (i == frameCount - 1) ? Http2Constants.FLAG_END_HEADERS
+                    : 0;
+
+            if (i == 0) {
+                writeFrameHeader(result, length, Http2Constants.FRAME_HEADERS,
+                        flags | (endStream ? Http2Constants.FLAG_END_STREAM : 0),
+                        streamId);
+            } else {
+                writeFrameHeader(result, length,
+                        Http2Constants.FRAME_CONTINUATION, flags, streamId);
+            }
+
+            result.put(block, offset, length);
+            offset += length;
+        }
+
+        result.flip();
+        return result;
+    }
+
+    /**
+     * Creates a RST_STREAM frame.
+     * 
+     * @param streamId
+     *            The identifier of the stream to reset.
+     * @param errorCode
+     *            The error code.
+     * @return The frame bytes.
+     */
+    public static byte[] createRstStream(int streamId, int errorCode) {
+        byte[] payload = new byte[4];
+        writeInt(payload, 0, errorCode);
+        return createFrame(Http2Constants.FRAME_RST_STREAM, 0, streamId,
+                payload);
+    }
+
+    /**
+     * Creates a SETTINGS frame.
+     * 
+     * @param settings
+     *            The settings, as pairs of identifier and value.
+     * @return The frame bytes.
+     */
+    public static byte[] createSettings(int... settings) {
+        byte[] payload = new byte[settings.length * 3];
+
+        for (int i = 0; i < settings.length; i += 2) {
+            payload[i * 3] = (byte) (settings[i] >>> 8);
+            payload[i * 3 + 1] = (byte) settings[i];
+            writeInt(payload, i * 3 + 2, settings[i + 1]);
+        }
+
+        return createFrame(Http2Constants.FRAME_SETTINGS, 0, 0, payload);
+    }
+
+    /**
+     * Creates a WINDOW_UPDATE frame.
+     * 
+     * @param streamId
+     *            The stream identifier or 0 for the connection.
+     * @param increment
+     *            The window size increment.
+     * @return The frame bytes.
+     */
+    public static byte[] createWindowUpdate(int streamId, int increment) {
+        byte[] payload = new byte[4];
+        writeInt(payload, 0, increment);
+        return createFrame(Http2Constants.FRAME_WINDOW_UPDATE, 0, streamId,
+                payload);
+    }
+
+    /**
+     * Reads a 32-bit integer in network byte order.
+     * 
+     * @param source
+     *            The source array.
+     * @param offset
+     *            The offset of the integer.
+     * @return The integer read.
+     */
+    public static int readInt(byte[] source, int offset) {
+        return ((source[offset] & 0xff) << 24)
+                | ((source[offset + 1] & 0xff) << 16)
+                | ((source[offset + 2] & 0xff) << 8)
+                | (source[offset + 3] & 0xff);
+    }
+
+    /**
+     * Reads a 31-bit integer, ignoring the reserved most significant bit.
+     * 
+     * @param source
+     *            The source array.
+     * @param offset
+     *            The offset of the integer.
+     * @return The integer read.
+     */
+    public static int readInt31(byte[] source, int offset) {
+        return readInt(source, offset) & 0x7fffffff;
+    }
+
+    /**
+     * Writes a frame header.
+     * 
+     * @param target
+     *            The target buffer.
+     * @param length
+     *            The payload length.
+     * @param type
+     *            The frame type.
+     * @param flags
+     *            The frame flags.
+     * @param streamId
+     *            The stream identifier.
+     */
+    public static void writeFrameHeader(ByteBuffer target, int length,
+            int type, int flags, int streamId) {
+        target.put((byte) (length >>> 16));
+        target.put((byte) (length >>> 8));
+        target.put((byte) length);
+        target.put((byte) type);
+        target.put((byte) flags);
+        target.putInt(streamId & 0x7fffffff);
+    }
+
+    /**
+     * Writes a 32-bit integer in network byte order.
+     * 
+     * @param target
+     *            The target array.
+     * @param offset
+     *            The offset of the integer.
+     * @param value
+     *            The integer value.
+     */
+    public static void writeInt(byte[] target, int offset, int value) {
+        target[offset] = (byte) (value >>> 24);
+        target[offset + 1] = (byte) (value >>> 16);
+        target[offset + 2] = (byte) (value >>> 8);
+        target[offset + 3] = (byte) value;
+    }
+
+    /**
+     * Private constructor to ensure that the class acts as a true utility
+     * class i.e. it isn't instantiable and extensible.
+     */
+    private Http2Utils() {
+    }
+
+}
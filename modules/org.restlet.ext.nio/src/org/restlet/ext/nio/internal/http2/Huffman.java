@@ -0,0 +1,232 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.ext.nio.internal.http2;
+
+import java.io.ByteArrayOutputStream;
+
+/**
+ * Static Huffman code used by HPACK to compress header strings (RFC 7541,
+ * appendix B). The code is canonical, so only the code lengths are stored; the
+ * codes and the decoding tree are derived from them once.
+ * 
+ * @author Jerome Louvel
+ */
+public final class Huffman {
+
+    /** The code lengths in bits, indexed by symbol. Symbol 256 is EOS. */
+    private static final byte[] LENGTHS = { 13, 23, 28, 28, 28, 28, 28, 28,
+            28, 24, 30, 28, 28, 30, 28, 28, 28, 28, 28, 28, 28, 28, 30, 28, 28,
+            28, 28, 28, 28, 28, 28, 28, 6, 10, 10, 12, 13, 6, 8, 11, 10, 10, 8,
+            11, 8, 6, 6, 6, 5, 5, 5, 6, 6, 6, 6, 6, 6, 6, 7, 8, 15, 6, 12, 10,
+            13, 6, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7, 7,
+            7, 7, 8, 7, 8, 13, 19, 13, 14, 6, 15, 5, 6, 5, 6, 5, 6, 6, 6, 5, 7,
+            7, 6, 6, 6, 5, 6, 7, 6, 5, 5, 6, 7, 7, 7, 7, 7, 15, 11, 14, 13, 28,
+            20, 22, 20, 20, 22, 22, 22, 23, 22, 23, 23, 23, 23, 23, 24, 23, 24,
+            24, 22, 23, 24, 23, 23, 23, 23, 21, 22, 23, 22, 23, 23, 24, 22, 21,
+            20, 22, 22, 23, 23, 21, 23, 22, 22, 24, 21, 22, 23, 23, 21, 21, 22,
+            21, 23, 22, 23, 23, 20, 22, 22, 22, 23, 22, 22, 23, 26, 26, 20, 19,
+            22, 23, 22, 25, 26, 26, 26, 27, 27, 26, 24, 25, 19, 21, 26, 27, 27,
+            26, 27, 24, 21, 21, 26, 26, 28, 27, 27, 27, 20, 24, 20, 21, 22, 21,
+            21, 23, 22, 22, 25, 25, 24, 24, 26, 23, 26, 27, 26, 26, 27, 27, 27,
+            27, 27, 28, 27, 27, 27, 27, 27, 26, 30 };
+
+    /** The codes, indexed by symbol. */
+    private static final int[] CODES = new int[LENGTHS.length];
+
+    /**
+     * The decoding tree. Each node uses two consecutive slots for its 0 and 1
+     * branches. A positive value is the index of the child node, a negative
+     * value encodes the decoded symbol as -(symbol + 1).
+     */
+    private static final int[] TREE;
+
+    static {
+        // Assign the canonical codes, ordered by length then symbol
+        int code = 0;
+        int nodes = 1;
+
+        for (int length = 1; length <= 30; length++) {
+            for (int symbol = 0; symbol < LENGTHS.length; symbol++) {
+                if (LENGTHS[symbol] == length) {
+                    CODES[symbol] = code++;
+                    nodes += length;
+                }
+            }
+
+            code <<= 1;
+        }
+
+        // Build the decoding tree
+        int[] tree = new int[nodes * 2];
+        int size = 1;
+
+        for (int symbol = 0; symbol < LENGTHS.length; symbol++) {
+            int node = 0;
+
+            for (int bit = LENGTHS[symbol] - 1; bit > 0; bit--) {
+                int slot = node * 2 + ((CODES[symbol] >>> bit) & 1);
+
+                if (tree[slot] == 0) {
+                    tree[slot] = size++;
+                }
+
+                node = tree[slot];
+            }
+
+            tree[node * 2 + (CODES[symbol] & 1)] = -(symbol + 1);
+        }
+
+        TREE = tree;
+    }
+
+    /**
+     * Decodes a Huffman encoded string.
+     * 
+     * @param source
+     *            The source byte array.
+     * @param offset
+     *            The offset of the encoded bytes.
+     * @param length
+     *            The number of encoded bytes.
+     * @return The decoded bytes.
+     * @throws Http2Exception
+     *             If the encoding is invalid.
+     */
+    public static byte[] decode(byte[] source, int offset, int length)
+            throws Http2Exception {
+        ByteArrayOutputStream result = new ByteArrayOutputStream(length * 2);
+        int node = 0;
+
+        // Number of bits read since the last symbol and whether they were
+        // all set, needed to validate the final padding
+        int pendingBits = 0;
+        boolean pendingOnes = true;
+
+        for (int i = offset; i < offset + length; i++) {
+            int b = source[i] & 0xff;
+
+            for (int bit = 7; bit >= 0; bit--) {
+                int value = (b >>> bit) & 1;
+                int next = TREE[node * 2 + value];
+                pendingBits++;
+                pendingOnes &= (value == 1);
+
+                if (next < 0) {
+                    int symbol = -next - 1;
+
+                    if (symbol == 256) {
+                        throw new Http2Exception(
+                                Http2Constants.ERROR_COMPRESSION,
+                                "EOS symbol found in a Huffman encoded string");
+                    }
+
+                    result.write(symbol);
+                    node = 0;
+                    pendingBits = 0;
+                    pendingOnes = true;
+                } else if (next == 0) {
+                    throw new Http2Exception(Http2Constants.ERROR_COMPRESSION,
+                            "Invalid Huffman code");
+                } else {
+                    node = next;
+                }
+            }
+        }
+
+        if ((pendingBits > 7) || !pendingOnes) {
+            throw new Http2Exception(Http2Constants.ERROR_COMPRESSION,
+                    "Invalid padding in a Huffman encoded string");
+        }
+
+        return result.toByteArray();
+    }
+
+    /**
+     * Encodes a string.
+     * 
+     * @param source
+     *            The bytes to encode.
+     * @return The encoded bytes.
+     */
+    public static byte[] encode(byte[] source) {
+        byte[] result = new byte[encodedLength(source)];
+        long current = 0;
+        int bits = 0;
+        int index = 0;
+
+        for (byte b : source) {
+            int symbol = b & 0xff;
+            current = (current << LENGTHS[symbol]) | CODES[symbol];
+            bits += LENGTHS[symbol];
+
+            while (bits >= 8) {
+                bits -= 8;
+                result[index++] = (byte) (current >>> bits);
+            }
+        }
+
+        if (bits > 0) {
+            // Pad with the most significant bits of the EOS symbol
+            current = (current << (8 - bits)) | (0xff >>> bits);
+            result[index] = (byte) current;
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the number of bytes needed to encode a string.
+     * 
+     * @param source
+     *            The bytes to encode.
+     * @return The number of bytes needed to encode the string.
+     */
+    public static int encodedLength(byte[] source) {
+        long bits = 0;
+
+        for (byte b : source) {
+            bits += LENGTHS[b & 0xff];
+        }
+
+        return (int) ((bits + 7) >> 3);
+    }
+
+    /**
+     * Private constructor to ensure that the class acts as a true utility
+     * class i.e. it isn't instantiable and extensible.
+     */
+    private Huffman() {
+    }
+
+}
@@ -41,6 +41,7 @@ import org.restlet.Response;
 import org.restlet.data.Header;
 import org.restlet.engine.header.HeaderUtils;
 import org.restlet.engine.util.ReferenceUtils;
+import org.restlet.ext.nio.ClientConnectionHelper;
 import org.restlet.ext.nio.internal.connection.Connection;
 import org.restlet.util.Series;
 
@@ -84,6 +85,19 @@ public abstract class ClientOutboundWay extends OutboundWay {
         HeaderUtils.addRequestHeaders(getMessage().getRequest(), headers);
     }
 
+    /**
+     * Indicates if the given request can be sent on this way before the
+     * responses to the previously sent requests are received. Returns false by
+     * default.
+     * 
+     * @param request
+     *            The request to pipeline.
+     * @return True if the given request can be pipelined.
+     */
+    public boolean canPipeline(Request request) {
+        return false;
+    }
+
     @Override
     public Request getActualMessage() {
         return (getMessage() == null) ? null : getMessage().getRequest();
@@ -94,7 +108,12 @@ public abstract class ClientOutboundWay extends OutboundWay {
     public Connection<Client> getConnection() {
         return (Connection<Client>) super.getConnection();
     }
-    
+
+    @Override
+    public ClientConnectionHelper getHelper() {
+        return (ClientConnectionHelper) super.getHelper();
+    }
+
     @Override
     public void onMessageCompleted(boolean endDetected) throws IOException {
         Response message = getMessage();
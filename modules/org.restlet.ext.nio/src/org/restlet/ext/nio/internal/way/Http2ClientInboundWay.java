@@ -0,0 +1,176 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.ext.nio.internal.way;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.logging.Level;
+
+import org.restlet.Client;
+import org.restlet.Message;
+import org.restlet.Response;
+import org.restlet.data.Status;
+import org.restlet.ext.nio.internal.buffer.Buffer;
+import org.restlet.ext.nio.internal.connection.Connection;
+import org.restlet.ext.nio.internal.http2.Http2ClientSession;
+import org.restlet.ext.nio.internal.http2.Http2Exception;
+import org.restlet.ext.nio.internal.http2.Http2FrameReader;
+
+/**
+ * HTTP/2 client inbound way. It replaces the HTTP/1.1 inbound way of
+ * connections opened with prior knowledge of HTTP/2 support by the server. It
+ * splits the received bytes into frames that are handled by the shared
+ * {@link Http2ClientSession}.
+ * 
+ * @author Jerome Louvel
+ */
+public class Http2ClientInboundWay extends ClientInboundWay {
+
+    /** Indicates if a connection error was detected. */
+    private volatile boolean failed;
+
+    /** The frame reader. */
+    private final Http2FrameReader frameReader;
+
+    /** The HTTP/2 session. */
+    private final Http2ClientSession session;
+
+    /**
+     * Constructor.
+     * 
+     * @param connection
+     *            The parent connection.
+     * @param bufferSize
+     *            The byte buffer size.
+     * @param session
+     *            The HTTP/2 session.
+     */
+    public Http2ClientInboundWay(Connection<Client> connection,
+            int bufferSize, Http2ClientSession session) {
+        super(connection, bufferSize);
+        this.frameReader = new Http2FrameReader(session);
+        this.session = session;
+    }
+
+    @Override
+    protected Response createResponse(Status status) {
+        // Responses are created along with their requests
+        return null;
+    }
+
+    @Override
+    public Message getActualMessage() {
+        return null;
+    }
+
+    @Override
+    public int getLoadScore() {
+        return getSession().getRequestCount();
+    }
+
+    /**
+     * Returns the HTTP/2 session.
+     * 
+     * @return The HTTP/2 session.
+     */
+    public Http2ClientSession getSession() {
+        return session;
+    }
+
+    @Override
+    public boolean isAvailable() {
+        // Requests are multiplexed, see Http2ClientOutboundWay#canPipeline
+        return false;
+    }
+
+    @Override
+    public void onClosed() {
+        super.onClosed();
+        getSession().abort("HTTP/2 connection closed");
+    }
+
+    @Override
+    public int onDrain(Buffer buffer, int maxDrained, Object... args)
+            throws IOException {
+        ByteBuffer bytes = buffer.getBytes();
+        int result = bytes.remaining();
+
+        try {
+            if (!this.failed) {
+                this.frameReader.read(bytes);
+            }
+        } catch (Http2Exception e) {
+            this.failed = true;
+            getSession().goAway(e.getErrorCode(), e.getMessage());
+        }
+
+        if (this.failed) {
+            // Discard the bytes received after a connection error
+            bytes.position(bytes.limit());
+        }
+
+        if (getLogger().isLoggable(Level.FINER)) {
+            getLogger().log(Level.FINER, result + " HTTP/2 bytes read");
+        }
+
+        return result;
+    }
+
+    @Override
+    public void onError(Status status) {
+        getSession().abort("HTTP/2 connection error: " + status);
+    }
+
+    @Override
+    protected void onHeadersCompleted() throws IOException {
+        // Headers are received in HEADERS frames
+    }
+
+    @Override
+    protected void onReceived(Response message) throws IOException {
+        // Responses are added to the inbound queue by the session
+    }
+
+    @Override
+    public void onTimeOut() {
+        getSession().abort("HTTP/2 connection timed out");
+    }
+
+    @Override
+    protected void readStartLine() throws IOException {
+        // No start line in HTTP/2
+    }
+
+}
@@ -0,0 +1,206 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.ext.nio.internal.way;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.logging.Level;
+
+import org.restlet.Message;
+import org.restlet.Response;
+import org.restlet.Server;
+import org.restlet.data.Status;
+import org.restlet.engine.util.StringUtils;
+import org.restlet.ext.nio.internal.buffer.Buffer;
+import org.restlet.ext.nio.internal.connection.Connection;
+import org.restlet.ext.nio.internal.http2.Http2Constants;
+import org.restlet.ext.nio.internal.http2.Http2Exception;
+import org.restlet.ext.nio.internal.http2.Http2FrameReader;
+import org.restlet.ext.nio.internal.http2.Http2ServerSession;
+import org.restlet.ext.nio.internal.state.IoState;
+
+/**
+ * HTTP/2 server inbound way. It replaces the HTTP/1.1 inbound way once a
+ * connection is upgraded. It validates the client connection preface then
+ * splits the received bytes into frames that are handled by the shared
+ * {@link Http2ServerSession}.
+ * 
+ * @author Jerome Louvel
+ */
+public class Http2ServerInboundWay extends InboundWay {
+
+    /** The client connection preface bytes. */
+    private static final byte[] PREFACE = StringUtils
+            .getLatin1Bytes(Http2Constants.CLIENT_PREFACE);
+
+    /** Indicates if a connection error was detected. */
+    private volatile boolean failed;
+
+    /** The frame reader. */
+    private final Http2FrameReader frameReader;
+
+    /** The number of connection preface bytes already validated. */
+    private volatile int prefaceIndex;
+
+    /** The HTTP/2 session. */
+    private final Http2ServerSession session;
+
+    /**
+     * Constructor.
+     * 
+     * @param connection
+     *            The parent connection.
+     * @param bufferSize
+     *            The byte buffer size.
+     * @param session
+     *            The HTTP/2 session.
+     * @param prefaceIndex
+     *            The number of connection preface bytes already validated by
+     *            the HTTP/1.1 inbound way.
+     */
+    public Http2ServerInboundWay(Connection<Server> connection,
+            int bufferSize, Http2ServerSession session, int prefaceIndex) {
+        super(connection, bufferSize);
+        this.frameReader = new Http2FrameReader(session);
+        this.prefaceIndex = prefaceIndex;
+        this.session = session;
+    }
+
+    @Override
+    public Message getActualMessage() {
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    @Override
+    public Connection<Server> getConnection() {
+        return (Connection<Server>) super.getConnection();
+    }
+
+    @Override
+    public int getLoadScore() {
+        return getSession().getStreamCount();
+    }
+
+    /**
+     * Returns the HTTP/2 session.
+     * 
+     * @return The HTTP/2 session.
+     */
+    public Http2ServerSession getSession() {
+        return session;
+    }
+
+    @Override
+    public boolean isAvailable() {
+        // Connections are never shared after an upgrade
+        return false;
+    }
+
+    @Override
+    public void onClosed() {
+        super.onClosed();
+        getSession().abort("HTTP/2 connection closed");
+    }
+
+    @Override
+    public int onDrain(Buffer buffer, int maxDrained, Object... args)
+            throws IOException {
+        ByteBuffer bytes = buffer.getBytes();
+        int result = bytes.remaining();
+
+        try {
+            while (!this.failed && bytes.hasRemaining()
+                    && (this.prefaceIndex < PREFACE.length)) {
+                // Validate the client connection preface
+                if (bytes.get() != PREFACE[this.prefaceIndex++]) {
+                    throw new Http2Exception(Http2Constants.ERROR_PROTOCOL,
+                            "Invalid HTTP/2 connection preface");
+                }
+            }
+
+            if (!this.failed) {
+                this.frameReader.read(bytes);
+            }
+        } catch (Http2Exception e) {
+            this.failed = true;
+            getSession().goAway(e.getErrorCode(), e.getMessage());
+        }
+
+        if (this.failed) {
+            // Discard the bytes received after a connection error
+            bytes.position(bytes.limit());
+        }
+
+        if (getLogger().isLoggable(Level.FINER)) {
+            getLogger().log(Level.FINER, result + " HTTP/2 bytes read");
+        }
+
+        return result;
+    }
+
+    @Override
+    public void onError(Status status) {
+        getSession().abort("HTTP/2 connection error: " + status);
+    }
+
+    @Override
+    protected void onHeadersCompleted() throws IOException {
+        // Headers are received in HEADERS frames
+    }
+
+    @Override
+    protected void onReceived(Response message) throws IOException {
+        // Requests are added to the inbound queue by the session
+    }
+
+    @Override
+    public void onTimeOut() {
+        getSession().abort("HTTP/2 connection timed out");
+    }
+
+    @Override
+    public void postProcess(int drained) throws IOException {
+        if (getIoState() == IoState.READY) {
+            // The bytes transferred during the upgrade have been processed
+            setIoState(IoState.INTEREST);
+        }
+    }
+
+    @Override
+    protected void readStartLine() throws IOException {
+        // No start line in HTTP/2
+    }
+
+}
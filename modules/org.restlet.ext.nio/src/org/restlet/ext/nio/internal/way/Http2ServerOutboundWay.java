@@ -0,0 +1,362 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.ext.nio.internal.way;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Level;
+
+import org.restlet.Response;
+import org.restlet.Server;
+import org.restlet.data.Header;
+import org.restlet.data.Status;
+import org.restlet.engine.connector.ConnectorHelper;
+import org.restlet.ext.nio.internal.buffer.Buffer;
+import org.restlet.ext.nio.internal.connection.Connection;
+import org.restlet.ext.nio.internal.http2.Http2Constants;
+import org.restlet.ext.nio.internal.http2.Http2ServerSession;
+import org.restlet.ext.nio.internal.http2.Http2Session;
+import org.restlet.ext.nio.internal.http2.Http2Stream;
+import org.restlet.ext.nio.internal.http2.Http2Utils;
+import org.restlet.ext.nio.internal.state.IoState;
+import org.restlet.representation.Representation;
+import org.restlet.service.ConnectorService;
+import org.restlet.util.Series;
+
+/**
+ * HTTP/2 server outbound way. It replaces the HTTP/1.1 outbound way once a
+ * connection is upgraded. Responses of all the streams are serialized as
+ * frames, control frames first, then HEADERS and DATA frames of the streams
+ * in a weighted round-robin order that respects the flow control windows
+ * granted by the client.
+ * 
+ * @author Jerome Louvel
+ */
+public class Http2ServerOutboundWay extends ServerOutboundWay {
+
+    /** The buffer used to prepare DATA frames. */
+    private final ByteBuffer dataFrame;
+
+    /** The buffer used to read ahead the response entities. */
+    private final ByteBuffer lookahead;
+
+    /** The HTTP/2 session. */
+    private final Http2ServerSession session;
+
+    /** The bytes of the frame being written. */
+    private volatile ByteBuffer staging;
+
+    /**
+     * Constructor.
+     * 
+     * @param connection
+     *            The parent connection.
+     * @param bufferSize
+     *            The byte buffer size.
+     * @param session
+     *            The HTTP/2 session.
+     * @param preamble
+     *            The bytes to write before the first frame, such as the
+     *            HTTP/1.1 upgrade response, or null.
+     */
+    public Http2ServerOutboundWay(Connection<Server> connection,
+            int bufferSize, Http2ServerSession session, byte[] preamble) {
+        super(connection, bufferSize);
+        this.dataFrame = ByteBuffer.allocate(Http2Constants.FRAME_HEADER_SIZE
+                + Http2Constants.DEFAULT_MAX_FRAME_SIZE);
+        this.lookahead = ByteBuffer.allocate(1);
+        this.session = session;
+        this.staging = ByteBuffer.wrap((preamble == null) ? new byte[0]
+                : preamble);
+    }
+
+    /**
+     * Completes the sending of a final response, releasing its entity and
+     * ending the stream.
+     * 
+     * @param stream
+     *            The stream.
+     * @param response
+     *            The final response sent.
+     */
+    private void complete(Http2Stream stream, Response response) {
+        Representation entity = response.getEntity();
+        stream.setEntityChannel(null);
+        stream.setOutputResponse(null);
+
+        // Release entity
+        if (entity != null) {
+            entity.release();
+        }
+
+        // Callback connector service after sending entity
+        ConnectorService connectorService = ConnectorHelper
+                .getConnectorService();
+
+        if (connectorService != null) {
+            connectorService.afterSend(entity);
+        }
+
+        getSession().onOutputEnded(stream);
+    }
+
+    @Override
+    public int getLoadScore() {
+        return getSession().getStreamCount();
+    }
+
+    /**
+     * Returns the HTTP/2 session.
+     * 
+     * @return The HTTP/2 session.
+     */
+    public Http2ServerSession getSession() {
+        return session;
+    }
+
+    @Override
+    public void handle(Response response) {
+        if (!getSession().onResponse(response)) {
+            // The stream was reset in the meantime
+            if (response.getEntity() != null) {
+                response.getEntity().release();
+            }
+        }
+    }
+
+    @Override
+    protected boolean hasIoInterest() {
+        return this.staging.hasRemaining() || !getBuffer().isEmpty()
+                || getSession().hasOutput();
+    }
+
+    @Override
+    public boolean isAvailable() {
+        // Connections are never shared after an upgrade
+        return false;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return super.isEmpty() && !this.staging.hasRemaining()
+                && getSession().isEmpty();
+    }
+
+    /**
+     * Stages the next frame to write.
+     * 
+     * @return True if a frame was staged.
+     * @throws IOException
+     */
+    private boolean nextFrame() throws IOException {
+        boolean result = false;
+        byte[] controlFrame = getSession().pollControlFrame();
+
+        if (controlFrame != null) {
+            this.staging = ByteBuffer.wrap(controlFrame);
+            result = true;
+        } else {
+            Http2Stream stream = getSession().nextStream();
+
+            if (stream != null) {
+                if (stream.getEntityChannel() != null) {
+                    result = stageData(stream);
+                } else {
+                    Response response = getSession().pollResponse(stream);
+
+                    if (response != null) {
+                        stageHeaders(stream, response);
+                        result = true;
+                    }
+                }
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    public void onClosed() {
+        super.onClosed();
+        this.staging = ByteBuffer.wrap(new byte[0]);
+    }
+
+    @Override
+    public void onError(Status status) {
+        getSession().abort("HTTP/2 connection error: " + status);
+    }
+
+    @Override
+    public int onFill(Buffer buffer, Object... args) throws IOException {
+        int remaining = buffer.remaining();
+
+        while (buffer.hasRemaining()
+                && (this.staging.hasRemaining() || nextFrame())) {
+            buffer.fill(this.staging);
+        }
+
+        return remaining - buffer.remaining();
+    }
+
+    @Override
+    public void onMessageCompleted(boolean endDetected) throws IOException {
+        // Streams are completed individually
+    }
+
+    @Override
+    protected void onPostProcessing() {
+        setIoState(hasIoInterest() ? IoState.INTEREST : IoState.IDLE);
+    }
+
+    @Override
+    public void onTimeOut() {
+        getSession().abort("HTTP/2 connection timed out");
+    }
+
+    /**
+     * Stages a DATA frame with the next bytes of a response entity.
+     * 
+     * @param stream
+     *            The stream.
+     * @return True if a frame was staged.
+     */
+    private boolean stageData(Http2Stream stream) {
+        boolean result = false;
+        Response response = stream.getOutputResponse();
+        ReadableByteChannel channel = stream.getEntityChannel();
+
+        try {
+            boolean endStream = getSession().fillData(stream, this.dataFrame,
+                    this.lookahead);
+
+            if (this.dataFrame.hasRemaining()) {
+                this.staging = this.dataFrame;
+                result = true;
+
+                if (endStream) {
+                    try {
+                        channel.close();
+                    } catch (IOException ioe) {
+                        getLogger().log(Level.FINE,
+                                "Unable to close the entity channel", ioe);
+                    }
+
+                    complete(stream, response);
+                }
+            }
+        } catch (IOException ioe) {
+            getLogger().log(Level.WARNING, "Unable to read the entity", ioe);
+            getSession().resetStream(stream.getId(),
+                    Http2Constants.ERROR_INTERNAL);
+        }
+
+        return result;
+    }
+
+    /**
+     * Stages the HEADERS frame, and the CONTINUATION frames if needed, of a
+     * response.
+     * 
+     * @param stream
+     *            The stream.
+     * @param response
+     *            The response.
+     * @throws IOException
+     */
+    private void stageHeaders(Http2Stream stream, Response response)
+            throws IOException {
+        Series<Header> headers = new Series<Header>(Header.class);
+        setMessage(response);
+
+        try {
+            addHeaders(headers);
+        } finally {
+            setMessage(null);
+        }
+
+        List<Header> fields = new ArrayList<Header>();
+        fields.add(new Header(":status", Integer.toString(response.getStatus()
+                .getCode())));
+
+        for (Header header : headers) {
+            String name = header.getName().toLowerCase();
+
+            if (!Http2Session.isConnectionHeader(name)) {
+                fields.add(new Header(name, header.getValue()));
+            }
+        }
+
+        boolean entityAvailable = response.isFinal()
+                && response.isEntityAvailable();
+        boolean endStream = response.isFinal() && !entityAvailable;
+        this.staging = Http2Utils.createHeaders(stream.getId(), getSession()
+                .encodeHeaders(fields), getSession().getRemoteMaxFrameSize(),
+                endStream);
+
+        if (getLogger().isLoggable(Level.FINE)) {
+            getLogger().log(
+                    Level.FINE,
+                    "Writing HTTP/2 response " + response.getStatus()
+                            + " on " + stream);
+        }
+
+        if (entityAvailable) {
+            // Callback connector service before sending entity
+            ConnectorService connectorService = ConnectorHelper
+                    .getConnectorService();
+
+            if (connectorService != null) {
+                connectorService.beforeSend(response.getEntity());
+            }
+
+            stream.setOutputResponse(response);
+            stream.setEntityChannel(response.getEntity().getChannel());
+        } else if (response.isFinal()) {
+            complete(stream, response);
+        }
+    }
+
+    @Override
+    public void updateState() {
+        if ((getIoState() == IoState.INTEREST) && !hasIoInterest()) {
+            setIoState(IoState.IDLE);
+        }
+
+        super.updateState();
+    }
+
+}
@@ -41,8 +41,10 @@ import org.restlet.Client;
 import org.restlet.Response;
 import org.restlet.data.Status;
 import org.restlet.ext.nio.internal.connection.Connection;
+import org.restlet.ext.nio.internal.state.ConnectionState;
 import org.restlet.ext.nio.internal.state.IoState;
 import org.restlet.ext.nio.internal.state.MessageState;
+import org.restlet.util.SelectionRegistration;
 
 /**
  * HTTP client inbound way.
@@ -54,6 +56,12 @@ public class HttpClientInboundWay extends ClientInboundWay {
     /** The queue of messages. */
     private final Queue<Response> messages;
 
+    /**
+     * Indicates if a pipelined response was found in the buffer and is waiting
+     * to be processed by the controller.
+     */
+    private volatile boolean pipelinedReady;
+
     /**
      * Constructor.
      * 
@@ -104,9 +112,11 @@ public class HttpClientInboundWay extends ClientInboundWay {
 
     @Override
     protected boolean hasIoInterest() {
-        return (getMessageState() == MessageState.START)
-                || ((getIoState() == IoState.IDLE)
-                        && (getMessageState() != MessageState.BODY) && !isEmpty());
+        // A buffered pipelined response is processed before any new selection
+        return !this.pipelinedReady
+                && ((getMessageState() == MessageState.START)
+                        || ((getIoState() == IoState.IDLE)
+                                && (getMessageState() != MessageState.BODY) && !isEmpty()));
     }
 
     @Override
@@ -118,18 +128,72 @@ public class HttpClientInboundWay extends ClientInboundWay {
     public void onMessageCompleted(boolean endDetected) throws IOException {
         getMessages().remove(getMessage());
         super.onMessageCompleted(endDetected);
+
+        if (getConnection().getState() != ConnectionState.OPEN) {
+            // The connection is closing, pipelined and queued requests won't
+            // be answered on it
+            replayMessages(Status.CONNECTOR_ERROR_COMMUNICATION);
+            ((HttpClientOutboundWay) getConnection().getOutboundWay())
+                    .replayMessages(Status.CONNECTOR_ERROR_COMMUNICATION);
+        } else if (!getMessages().isEmpty()) {
+            // Responses to pipelined requests are still expected
+            setMessageState(MessageState.START);
+            getHelper().getController().wakeup();
+        }
+    }
+
+    @Override
+    public void onClosed() {
+        replayMessages(Status.CONNECTOR_ERROR_COMMUNICATION);
+        super.onClosed();
     }
 
     @Override
     public void onError(Status status) {
+        replayMessages(status);
+        super.onError(status);
+    }
+
+    @Override
+    public void onSelected(SelectionRegistration selectionRegistration) {
+        boolean pipelined = this.pipelinedReady;
+
+        if (pipelined) {
+            this.pipelinedReady = false;
+
+            if (getIoState() == IoState.READY) {
+                // Process the buffered pipelined response like a regular
+                // selection so that the way returns to the INTEREST state
+                setIoState(IoState.PROCESSING);
+            }
+        }
+
+        super.onSelected(selectionRegistration);
+
+        if (pipelined) {
+            // Let the controller update the interest of the received entity
+            // and dispatch the received response
+            getHelper().getController().wakeup();
+        }
+    }
+
+    /**
+     * Replays the requests awaiting their response, except the current one, on
+     * another connection if possible. Otherwise, reports them in error.
+     * 
+     * @param status
+     *            The error status to report.
+     */
+    protected void replayMessages(Status status) {
         for (Response rsp : getMessages()) {
             if (rsp != getMessage()) {
                 getMessages().remove(rsp);
-                getHelper().onInboundError(status, rsp);
+
+                if (!getHelper().replay(rsp)) {
+                    getHelper().onInboundError(status, rsp);
+                }
             }
         }
-
-        super.onError(status);
     }
 
     @Override
@@ -145,4 +209,24 @@ public class HttpClientInboundWay extends ClientInboundWay {
         super.onTimeOut();
     }
 
+    @Override
+    public void updateState() {
+        if (getConnection().isPipelining()) {
+            synchronized (getBuffer().getLock()) {
+                if ((getMessageState() == MessageState.START)
+                        && (getIoState() != IoState.READY)
+                        && !getBuffer().isEmpty()) {
+                    // The next pipelined response might already be buffered,
+                    // so let the controller process it without waiting for a
+                    // NIO selection
+                    this.pipelinedReady = true;
+                    setIoState(IoState.READY);
+                    getHelper().getController().wakeup();
+                }
+            }
+        }
+
+        super.updateState();
+    }
+
 }
@@ -34,6 +34,7 @@
 package org.restlet.ext.nio.internal.way;
 
 import java.io.IOException;
+import java.util.Iterator;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
@@ -41,6 +42,7 @@ import org.restlet.Request;
 import org.restlet.Response;
 import org.restlet.data.Status;
 import org.restlet.ext.nio.internal.connection.Connection;
+import org.restlet.ext.nio.internal.state.ConnectionState;
 import org.restlet.ext.nio.internal.state.MessageState;
 
 /**
@@ -66,12 +68,33 @@ public class HttpClientOutboundWay extends ClientOutboundWay {
         this.messages = new ConcurrentLinkedQueue<Response>();
     }
 
+    @Override
+    public boolean canPipeline(Request request) {
+        return isPipelineOpen()
+                && getHelper().isPipelinable(request)
+                && isPipelinable(getMessages())
+                && isPipelinable(getInboundMessages())
+                && ((getMessages().size() + getInboundMessages().size()) < getHelper()
+                        .getPipeliningDepth());
+    }
+
     @Override
     public void clear() {
         super.clear();
         this.messages.clear();
     }
 
+    /**
+     * Returns the queue of messages sent and awaiting their response on the
+     * inbound way.
+     * 
+     * @return The queue of messages awaiting their response.
+     */
+    protected Queue<Response> getInboundMessages() {
+        return ((HttpClientInboundWay) getConnection().getInboundWay())
+                .getMessages();
+    }
+
     @Override
     public int getLoadScore() {
         return getMessages().size();
@@ -96,15 +119,44 @@ public class HttpClientOutboundWay extends ClientOutboundWay {
         return super.isEmpty() && getMessages().isEmpty();
     }
 
-    @Override
-    public void onError(Status status) {
-        for (Response rsp : getMessages()) {
-            if (rsp != getMessage()) {
-                getMessages().remove(rsp);
-                getHelper().onOutboundError(status, rsp);
-            }
+    /**
+     * Indicates if the given messages can all be part of a pipeline.
+     * 
+     * @param messages
+     *            The messages to test.
+     * @return True if the given messages can all be part of a pipeline.
+     */
+    private boolean isPipelinable(Queue<Response> messages) {
+        boolean result = true;
+
+        for (Iterator<Response> iter = messages.iterator(); result
+                && iter.hasNext();) {
+            result = getHelper().isPipelinable(iter.next().getRequest());
         }
 
+        return result;
+    }
+
+    /**
+     * Indicates if the parent connection accepts pipelined requests.
+     * 
+     * @return True if the parent connection accepts pipelined requests.
+     */
+    private boolean isPipelineOpen() {
+        return getConnection().isPipelining()
+                && getConnection().isPersistent()
+                && (getConnection().getState() == ConnectionState.OPEN);
+    }
+
+    @Override
+    public void onClosed() {
+        replayMessages(Status.CONNECTOR_ERROR_COMMUNICATION);
+        super.onClosed();
+    }
+
+    @Override
+    public void onError(Status status) {
+        replayMessages(status);
         super.onError(status);
     }
 
@@ -116,11 +168,14 @@ public class HttpClientOutboundWay extends ClientOutboundWay {
             Request request = message.getRequest();
 
             if (request.isExpectingResponse()) {
-                Queue<Response> inboundMessages = ((HttpClientInboundWay) getConnection()
-                        .getInboundWay()).getMessages();
-                inboundMessages.add(message);
-                getConnection().getInboundWay().setMessageState(
-                        MessageState.START);
+                getInboundMessages().add(message);
+
+                // When pipelining, the inbound way might still be reading the
+                // response of a previous request.
+                if (getConnection().getInboundWay().getMessageState() == MessageState.IDLE) {
+                    getConnection().getInboundWay().setMessageState(
+                            MessageState.START);
+                }
             }
         }
 
@@ -137,6 +192,25 @@ public class HttpClientOutboundWay extends ClientOutboundWay {
         }
     }
 
+    /**
+     * Replays the requests not sent yet, except the current one, on another
+     * connection if possible. Otherwise, reports them in error.
+     * 
+     * @param status
+     *            The error status to report.
+     */
+    protected void replayMessages(Status status) {
+        for (Response rsp : getMessages()) {
+            if (rsp != getMessage()) {
+                getMessages().remove(rsp);
+
+                if (!getHelper().replay(rsp)) {
+                    getHelper().onOutboundError(status, rsp);
+                }
+            }
+        }
+    }
+
     @Override
     public void onTimeOut() {
         for (Response rsp : getMessages()) {
@@ -153,9 +227,25 @@ public class HttpClientOutboundWay extends ClientOutboundWay {
     @Override
     public void updateState() {
         // Update the IO state if necessary
-        if (getMessage() == null
-                && getConnection().getInboundWay().isAvailable()) {
-            setMessage(getMessages().peek());
+        if ((getMessage() == null)
+                && (getConnection().getState() != ConnectionState.CLOSING)) {
+            // Requests queued on a closing connection are replayed instead
+            if (getConnection().getInboundWay().isAvailable()) {
+                setMessage(getMessages().peek());
+            } else {
+                // Send the next request without waiting for the pending
+                // responses if it can be pipelined
+                Response next = getMessages().peek();
+
+                if ((next != null)
+                        && isPipelineOpen()
+                        && getHelper().isPipelinable(next.getRequest())
+                        && isPipelinable(getInboundMessages())
+                        && (getInboundMessages().size() < getHelper()
+                                .getPipeliningDepth())) {
+                    setMessage(next);
+                }
+            }
         }
 
         super.updateState();
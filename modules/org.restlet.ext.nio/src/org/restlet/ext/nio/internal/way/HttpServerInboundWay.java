@@ -36,20 +36,40 @@ package org.restlet.ext.nio.internal.way;
 import java.io.IOException;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Level;
 
 import org.restlet.Request;
 import org.restlet.Response;
 import org.restlet.Server;
+import org.restlet.data.Header;
 import org.restlet.data.Status;
+import org.restlet.engine.header.HeaderConstants;
+import org.restlet.engine.util.Base64;
+import org.restlet.engine.util.StringUtils;
+import org.restlet.ext.nio.HttpServerHelper;
 import org.restlet.ext.nio.internal.connection.Connection;
+import org.restlet.ext.nio.internal.connection.SslConnection;
+import org.restlet.ext.nio.internal.http2.Http2Constants;
+import org.restlet.ext.nio.internal.http2.Http2Exception;
+import org.restlet.ext.nio.internal.http2.Http2ServerSession;
+import org.restlet.ext.nio.internal.state.ConnectionState;
+import org.restlet.ext.nio.internal.state.IoState;
 
 /**
- * HTTP server inbound way.
+ * HTTP server inbound way. When HTTP/2 connections are enabled, it can also
+ * upgrade the connection to HTTP/2, either when a client sends the HTTP/2
+ * connection preface directly ("prior knowledge") or when it sends an
+ * HTTP/1.1 request with an "Upgrade: h2c" header.
  * 
  * @author Jerome Louvel
  */
 public class HttpServerInboundWay extends ServerInboundWay {
 
+    /** The response sent to accept an h2c upgrade request. */
+    private static final byte[] UPGRADE_RESPONSE = StringUtils
+            .getLatin1Bytes("HTTP/1.1 101 Switching Protocols\r\n"
+                    + "Connection: Upgrade\r\nUpgrade: h2c\r\n\r\n");
+
     /** The queue of messages. */
     private final Queue<Response> messages;
 
@@ -66,6 +86,21 @@ public class HttpServerInboundWay extends ServerInboundWay {
         this.messages = new ConcurrentLinkedQueue<Response>();
     }
 
+    /**
+     * Indicates if the connection can be upgraded to HTTP/2. This requires
+     * HTTP/2 connections to be enabled, a cleartext connection and no pending
+     * messages.
+     * 
+     * @return True if the connection can be upgraded to HTTP/2.
+     */
+    protected boolean canUpgrade() {
+        return ((HttpServerHelper) getHelper()).isHttp2Connections()
+                && !(getConnection() instanceof SslConnection)
+                && (getConnection().getState() == ConnectionState.OPEN)
+                && getMessages().isEmpty()
+                && getConnection().getOutboundWay().isEmpty();
+    }
+
     @Override
     public void clear() {
         super.clear();
@@ -91,6 +126,59 @@ public class HttpServerInboundWay extends ServerInboundWay {
         return messages;
     }
 
+    /**
+     * Returns the HTTP/2 settings sent by the client if the given request asks
+     * for an h2c upgrade that can be accepted.
+     * 
+     * @param message
+     *            The message received.
+     * @return The decoded HTTP2-Settings header or null.
+     */
+    protected byte[] getUpgradeSettings(Response message) {
+        byte[] result = null;
+
+        if ((getHeaders() != null)
+                && Http2Constants.UPGRADE_TOKEN.equalsIgnoreCase(getHeaders()
+                        .getFirstValue(HeaderConstants.HEADER_UPGRADE, true))
+                && !message.getRequest().isEntityAvailable() && canUpgrade()) {
+            boolean upgrade = false;
+            boolean settings = false;
+
+            for (Header header : getHeaders()) {
+                if (HeaderConstants.HEADER_CONNECTION.equalsIgnoreCase(header
+                        .getName())) {
+                    for (String token : header.getValue().split(",")) {
+                        upgrade |= "upgrade".equalsIgnoreCase(token.trim());
+                        settings |= "http2-settings".equalsIgnoreCase(token
+                                .trim());
+                    }
+                }
+            }
+
+            String value = getHeaders().getFirstValue("HTTP2-Settings", true);
+
+            if (upgrade && settings && (value != null)) {
+                // Convert the base64url value to standard base64
+                StringBuilder sb = new StringBuilder(value.trim().replace('-',
+                        '+').replace('_', '/'));
+
+                while ((sb.length() % 4) != 0) {
+                    sb.append('=');
+                }
+
+                try {
+                    result = Base64.decode(sb.toString());
+                } catch (IllegalArgumentException e) {
+                    getLogger().log(Level.FINE,
+                            "Invalid HTTP2-Settings header, upgrade ignored",
+                            e);
+                }
+            }
+        }
+
+        return result;
+    }
+
     @Override
     protected boolean hasIoInterest() {
         return super.hasIoInterest() || isAvailable();
@@ -120,13 +208,28 @@ public class HttpServerInboundWay extends ServerInboundWay {
 
     @Override
     protected void onReceived(Response message) throws IOException {
-        if ((message.getRequest() != null)
-                && message.getRequest().isExpectingResponse()) {
-            // Add it to the inbound queue
-            getMessages().add(message);
-        }
+        byte[] settings = (message.getRequest() == null) ? null
+                : getUpgradeSettings(message);
+
+        if (settings != null) {
+            // Switch to HTTP/2, the request being answered on stream 1
+            Http2ServerSession session = upgrade(0, UPGRADE_RESPONSE);
+
+            try {
+                session.applySettings(settings);
+                session.openUpgradeStream(message);
+            } catch (Http2Exception e) {
+                session.goAway(e.getErrorCode(), e.getMessage());
+            }
+        } else {
+            if ((message.getRequest() != null)
+                    && message.getRequest().isExpectingResponse()) {
+                // Add it to the inbound queue
+                getMessages().add(message);
+            }
 
-        super.onReceived(message);
+            super.onReceived(message);
+        }
     }
 
     @Override
@@ -142,4 +245,58 @@ public class HttpServerInboundWay extends ServerInboundWay {
         super.onTimeOut();
     }
 
+    @Override
+    protected void readStartLine() throws IOException {
+        if (Http2Constants.CLIENT_PREFACE_LINE.equals(getLineBuilder()
+                .toString()) && canUpgrade()) {
+            // HTTP/2 connection with prior knowledge, the rest of the
+            // connection preface is validated by the new inbound way
+            upgrade(Http2Constants.CLIENT_PREFACE_LINE.length() + 2, null);
+        } else {
+            super.readStartLine();
+        }
+    }
+
+    /**
+     * Upgrades the connection to HTTP/2 by replacing the ways of the
+     * connection. The bytes already received are transferred to the new
+     * inbound way.
+     * 
+     * @param prefaceIndex
+     *            The number of connection preface bytes already read.
+     * @param preamble
+     *            The bytes to write before the first frame or null.
+     * @return The new HTTP/2 session.
+     * @throws IOException
+     */
+    protected Http2ServerSession upgrade(int prefaceIndex, byte[] preamble)
+            throws IOException {
+        if (getLogger().isLoggable(Level.FINE)) {
+            getLogger().log(
+                    Level.FINE,
+                    "Upgrading connection from "
+                            + getConnection().getSocketAddress()
+                            + " to HTTP/2");
+        }
+
+        Http2ServerSession result = new Http2ServerSession(getConnection(),
+                (HttpServerHelper) getHelper());
+        Http2ServerInboundWay inboundWay = new Http2ServerInboundWay(
+                getConnection(), getBuffer().capacity(), result, prefaceIndex);
+        Http2ServerOutboundWay outboundWay = new Http2ServerOutboundWay(
+                getConnection(), getConnection().getOutboundWay().getBuffer()
+                        .capacity(), result, preamble);
+
+        // Transfer the bytes already received
+        inboundWay.getBuffer().fill(getBuffer().getBytes());
+        getBuffer().getBytes().position(getBuffer().getBytes().limit());
+        getConnection().upgrade(inboundWay, outboundWay);
+        inboundWay.setIoState(IoState.READY);
+
+        // Reset this way
+        clearLineBuilder();
+        onMessageCompleted(false);
+        return result;
+    }
+
 }
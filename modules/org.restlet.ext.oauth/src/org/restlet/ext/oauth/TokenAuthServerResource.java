@@ -102,8 +102,11 @@ public class TokenAuthServerResource extends OAuthServerResource {
         }
 
         JSONObject resp = new JSONObject();
-        resp.put(USERNAME, ((ServerToken) token).getUsername());
+        ServerToken serverToken = (ServerToken) token;
+        resp.put(USERNAME, serverToken.getUsername());
         resp.put(SCOPE, Scopes.toString(token.getScope()));
+        // Bounds the time the verifiers may cache the validation
+        resp.put(EXPIRES_IN, serverToken.getRemainingPeriod());
 
         return new JsonRepresentation(resp);
     }
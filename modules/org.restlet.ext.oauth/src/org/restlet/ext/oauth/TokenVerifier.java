@@ -33,8 +33,16 @@
 
 package org.restlet.ext.oauth;
 
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
 import java.util.logging.Level;
 import java.util.logging.Logger;
+
 import org.json.JSONException;
 import org.json.JSONObject;
 import org.restlet.Request;
@@ -57,7 +65,15 @@ import org.restlet.security.Verifier;
 /**
  * Verifier for OAuth 2.0 Protected Resources. Typically use with
  * ChallengeAuthenticator. "Bearer" and "MAC" challenge schemes are may
- * supported.
+ * supported.<br>
+ * <br>
+ * Tokens are validated by the token-auth resource of the authorization server.
+ * The verification results can be cached locally, valid tokens during at most
+ * {@link #getCacheTimeout()} seconds (and never beyond their expiration) and
+ * invalid tokens during {@link #getNegativeCacheTimeout()} seconds. Concurrent
+ * verifications of the same token share a single call to the authorization
+ * server. The calls go through the client dispatcher of the current context,
+ * reusing the client connectors of the parent component.
  * 
  * @author Shotaro Uchida <fantom@xmaker.mx>
  * @see <a href="http://tools.ietf.org/html/draft-ietf-oauth-v2-bearer-22">
@@ -73,8 +89,56 @@ public class TokenVerifier implements Verifier {
     // public static final ChallengeScheme HTTP_MAC =
     // new ChallengeScheme("HTTP_MAC", "MAC", "MAC Access Authentication");
 
+    /**
+     * Result of a token validation by the authorization server.
+     */
+    private static class Validation {
+
+        /** The time after which the result must not be used anymore. */
+        private final long expirationTime;
+
+        /** The granted scope or null if the token is invalid. */
+        private final String scope;
+
+        /** The resource owner name or null if the token is invalid. */
+        private final String username;
+
+        private Validation(String username, String scope, long expirationTime) {
+            this.expirationTime = expirationTime;
+            this.scope = scope;
+            this.username = username;
+        }
+
+        private boolean isValid() {
+            return username != null;
+        }
+    }
+
     private Reference authReference;
 
+    /** The maximum time in seconds a valid token is cached. */
+    private volatile int cacheTimeout = 0;
+
+    /** The maximum number of cached validations. */
+    private volatile int maxCacheSize = 10000;
+
+    /** The maximum time in seconds an invalid token is cached. */
+    private volatile int negativeCacheTimeout = 0;
+
+    /** The validations in progress, by access token. */
+    private final ConcurrentMap<String, FutureTask<Validation>> pendingValidations = new ConcurrentHashMap<String, FutureTask<Validation>>();
+
+    /** The cached validations, by access token, in least recently used order. */
+    private final Map<String, Validation> validations = new LinkedHashMap<String, Validation>(
+            16, 0.75f, true) {
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Validation> eldest) {
+            return size() > maxCacheSize;
+        }
+    };
+
     private boolean acceptBodyMethod = false; // 2.2. Form-Encoded Body
                                               // Parameter
 
@@ -88,35 +152,34 @@ public class TokenVerifier implements Verifier {
     }
 
     public int verify(Request request, Response response) {
-        final JSONObject authRequest;
+        final String bearer;
 
         try {
             ChallengeResponse cr = request.getChallengeResponse();
             if (cr == null) {
                 // Try Bearer alternative methods
-                String bearer = null;
+                String alternative = null;
                 if (acceptBodyMethod) {
-                    bearer = getAccessTokenFromBody(request);
+                    alternative = getAccessTokenFromBody(request);
                 }
-                if (bearer == null && acceptQueryMethod) {
-                    bearer = getAccessTokenFromQuery(request);
-                    if (bearer != null) {
+                if (alternative == null && acceptQueryMethod) {
+                    alternative = getAccessTokenFromQuery(request);
+                    if (alternative != null) {
                         OAuthServerResource.addCacheDirective(response,
                                 CacheDirective.privateInfo());
                     }
                 }
-                if (bearer == null) {
+                if (alternative == null) {
                     return RESULT_MISSING;
                 }
                 logger.config("Verify: Bearer (Alternative)");
-                authRequest = createBearerAuthRequest(bearer);
+                bearer = alternative;
             } else if (ChallengeScheme.HTTP_OAUTH_BEARER.equals(cr.getScheme())) {
                 logger.config("Verify: Bearer");
-                final String bearer = cr.getRawValue();
+                bearer = cr.getRawValue();
                 if (bearer == null || bearer.isEmpty()) {
                     return RESULT_MISSING;
                 }
-                authRequest = createBearerAuthRequest(bearer);
             }/*
               * else if (cr.getScheme().equals(HTTP_MAC)) { // TODO }
               */else {
@@ -126,48 +189,29 @@ public class TokenVerifier implements Verifier {
             return RESULT_INVALID;
         }
 
-        ClientResource authResource = new ClientResource(authReference);
-        JsonRepresentation jsonRepresentation;
-        JSONObject jsonResponse;
+        Validation validation = getValidation(bearer);
 
-        try {
-            logger.fine("Post auth request to auth resource...");
-            Representation resp = authResource.post(new JsonRepresentation(
-                    authRequest));
-            jsonRepresentation = new JsonRepresentation(resp);
-            jsonResponse = jsonRepresentation.getJsonObject();
-        } catch (Exception ex) {
-            logger.log(Level.SEVERE, null, ex);
-            return RESULT_INVALID;
-        }
-
-        if (jsonResponse.has(OAuthServerResource.ERROR)) {
-            try {
-                String error = jsonResponse
-                        .getString(OAuthServerResource.ERROR);
-                logger.warning(error);
-                logger.warning(jsonResponse
-                        .getString(OAuthServerResource.ERROR_DESC));
-            } catch (JSONException ex) {
-                logger.log(Level.SEVERE, null, ex);
-            }
+        if (!validation.isValid()) {
             // TODO: Configure challenge request
             return RESULT_INVALID;
         }
 
-        try {
-            ClientInfo clientInfo = request.getClientInfo();
-            clientInfo.setUser(new User(jsonResponse
-                    .getString(OAuthServerResource.USERNAME)));
-            clientInfo.setRoles(Scopes.toRoles(jsonResponse
-                    .getString(OAuthServerResource.SCOPE)));
-        } catch (JSONException ex) {
-            return RESULT_INVALID;
-        }
+        ClientInfo clientInfo = request.getClientInfo();
+        clientInfo.setUser(new User(validation.username));
+        clientInfo.setRoles(Scopes.toRoles(validation.scope));
 
         return RESULT_VALID;
     }
 
+    /**
+     * Removes all the cached validations.
+     */
+    public void clearCache() {
+        synchronized (validations) {
+            validations.clear();
+        }
+    }
+
     private static JSONObject createBearerAuthRequest(String token)
             throws JSONException {
         JSONObject request = new JSONObject();
@@ -177,6 +221,71 @@ public class TokenVerifier implements Verifier {
         return request;
     }
 
+    /**
+     * Returns the cached validation of a token if it is still usable.
+     * 
+     * @param token
+     *            The access token.
+     * @return The cached validation or null.
+     */
+    private Validation getCachedValidation(String token) {
+        synchronized (validations) {
+            Validation result = validations.get(token);
+            if (result != null
+                    && result.expirationTime <= System.currentTimeMillis()) {
+                validations.remove(token);
+                result = null;
+            }
+            return result;
+        }
+    }
+
+    /**
+     * Returns the validation of a token, from the cache or from the
+     * authorization server. Concurrent validations of the same token are
+     * coalesced.
+     * 
+     * @param token
+     *            The access token.
+     * @return The validation.
+     */
+    private Validation getValidation(final String token) {
+        Validation result = getCachedValidation(token);
+        if (result != null) {
+            logger.fine("Token validation found in cache.");
+            return result;
+        }
+
+        FutureTask<Validation> task = new FutureTask<Validation>(
+                new Callable<Validation>() {
+                    public Validation call() throws Exception {
+                        return validate(token);
+                    }
+                });
+        FutureTask<Validation> pending = pendingValidations.putIfAbsent(
+                token, task);
+
+        if (pending == null) {
+            try {
+                task.run();
+            } finally {
+                pendingValidations.remove(token);
+            }
+            pending = task;
+        }
+
+        try {
+            result = pending.get();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            result = new Validation(null, null, 0);
+        } catch (ExecutionException ex) {
+            logger.log(Level.SEVERE, null, ex.getCause());
+            result = new Validation(null, null, 0);
+        }
+        return result;
+    }
+
     private String getAccessTokenFromQuery(Request request) {
         // Try to find token in URI query
         Form params = request.getOriginalRef().getQueryAsForm();
@@ -213,6 +322,35 @@ public class TokenVerifier implements Verifier {
         return token;
     }
 
+    /**
+     * Returns the maximum time in seconds a valid token is cached. It is zero
+     * by default, meaning that valid tokens are not cached.
+     * 
+     * @return The maximum time in seconds a valid token is cached.
+     */
+    public int getCacheTimeout() {
+        return cacheTimeout;
+    }
+
+    /**
+     * Returns the maximum number of cached validations.
+     * 
+     * @return The maximum number of cached validations.
+     */
+    public int getMaxCacheSize() {
+        return maxCacheSize;
+    }
+
+    /**
+     * Returns the maximum time in seconds an invalid token is cached. It is
+     * zero by default, meaning that invalid tokens are not cached.
+     * 
+     * @return The maximum time in seconds an invalid token is cached.
+     */
+    public int getNegativeCacheTimeout() {
+        return negativeCacheTimeout;
+    }
+
     /**
      * @return the acceptBodyMethod
      */
@@ -242,4 +380,102 @@ public class TokenVerifier implements Verifier {
     public void setAcceptQueryMethod(boolean acceptQueryMethod) {
         this.acceptQueryMethod = acceptQueryMethod;
     }
+
+    /**
+     * Sets the maximum time in seconds a valid token is cached. The cached
+     * validation is never used after the expiration of the token reported by
+     * the authorization server.
+     * 
+     * @param cacheTimeout
+     *            The maximum time in seconds a valid token is cached.
+     */
+    public void setCacheTimeout(int cacheTimeout) {
+        this.cacheTimeout = cacheTimeout;
+    }
+
+    /**
+     * Sets the maximum number of cached validations.
+     * 
+     * @param maxCacheSize
+     *            The maximum number of cached validations.
+     */
+    public void setMaxCacheSize(int maxCacheSize) {
+        this.maxCacheSize = maxCacheSize;
+    }
+
+    /**
+     * Sets the maximum time in seconds an invalid token is cached.
+     * 
+     * @param negativeCacheTimeout
+     *            The maximum time in seconds an invalid token is cached.
+     */
+    public void setNegativeCacheTimeout(int negativeCacheTimeout) {
+        this.negativeCacheTimeout = negativeCacheTimeout;
+    }
+
+    /**
+     * Validates a token with the authorization server and caches the result.
+     * 
+     * @param token
+     *            The access token.
+     * @return The validation.
+     */
+    private Validation validate(String token) {
+        Validation result = null;
+        JSONObject jsonResponse = null;
+        ClientResource authResource = new ClientResource(authReference);
+
+        try {
+            logger.fine("Post auth request to auth resource...");
+            Representation resp = authResource
+                    .post(new JsonRepresentation(
+                            createBearerAuthRequest(token)));
+            jsonResponse = new JsonRepresentation(resp).getJsonObject();
+        } catch (Exception ex) {
+            logger.log(Level.SEVERE, null, ex);
+            // Unavailable auth server, don't cache the failure
+            return new Validation(null, null, 0);
+        } finally {
+            authResource.release();
+        }
+
+        long now = System.currentTimeMillis();
+
+        if (jsonResponse.has(OAuthServerResource.ERROR)) {
+            try {
+                String error = jsonResponse
+                        .getString(OAuthServerResource.ERROR);
+                logger.warning(error);
+                logger.warning(jsonResponse
+                        .getString(OAuthServerResource.ERROR_DESC));
+            } catch (JSONException ex) {
+                logger.log(Level.SEVERE, null, ex);
+            }
+            result = new Validation(null, null, now + negativeCacheTimeout
+                    * 1000L);
+        } else {
+            try {
+                long timeout = cacheTimeout;
+                if (jsonResponse.has(OAuthServerResource.EXPIRES_IN)) {
+                    timeout = Math.min(timeout, jsonResponse
+                            .getLong(OAuthServerResource.EXPIRES_IN));
+                }
+                result = new Validation(
+                        jsonResponse.getString(OAuthServerResource.USERNAME),
+                        jsonResponse.getString(OAuthServerResource.SCOPE), now
+                                + timeout * 1000L);
+            } catch (JSONException ex) {
+                result = new Validation(null, null, now
+                        + negativeCacheTimeout * 1000L);
+            }
+        }
+
+        if (result.expirationTime > now) {
+            synchronized (validations) {
+                validations.put(token, result);
+            }
+        }
+
+        return result;
+    }
 }
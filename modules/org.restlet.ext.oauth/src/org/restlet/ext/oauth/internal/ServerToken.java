@@ -54,6 +54,13 @@ public interface ServerToken extends Token {
      */
     public String getClientId();
 
+    /**
+     * The remaining lifetime in seconds of the access token.
+     * 
+     * @return the remaining lifetime in seconds, 0 if the token is expired.
+     */
+    public int getRemainingPeriod();
+
     /**
      * Check if the token is expired.
      * 
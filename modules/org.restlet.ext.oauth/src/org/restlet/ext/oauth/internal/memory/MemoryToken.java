@@ -52,6 +52,8 @@ public class MemoryToken implements ServerToken {
 
     private String refreshToken;
 
+    private long refreshTimestamp;
+
     private String[] scope;
 
     private String clientId;
@@ -60,6 +62,14 @@ public class MemoryToken implements ServerToken {
 
     protected MemoryToken() {
         timestamp = System.currentTimeMillis();
+        refreshTimestamp = timestamp;
+    }
+
+    /**
+     * @return the creation time in milliseconds
+     */
+    public long getTimestamp() {
+        return timestamp;
     }
 
     /**
@@ -122,6 +132,22 @@ public class MemoryToken implements ServerToken {
         this.refreshToken = refreshToken;
     }
 
+    /**
+     * @return the issue time of the refresh token in milliseconds
+     */
+    public long getRefreshTimestamp() {
+        return refreshTimestamp;
+    }
+
+    /**
+     * @param refreshTimestamp
+     *            the issue time of the refresh token in milliseconds, when it
+     *            is carried over from a previous token
+     */
+    public void setRefreshTimestamp(long refreshTimestamp) {
+        this.refreshTimestamp = refreshTimestamp;
+    }
+
     /**
      * @return the scope
      */
@@ -159,6 +185,11 @@ public class MemoryToken implements ServerToken {
         return username;
     }
 
+    public int getRemainingPeriod() {
+        long elapsedTime = System.currentTimeMillis() - timestamp;
+        return (int) Math.max(0, expirePeriod - (elapsedTime / 1000));
+    }
+
     /**
      * @param username
      *            the username to set
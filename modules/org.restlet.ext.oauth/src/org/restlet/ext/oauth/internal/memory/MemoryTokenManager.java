@@ -35,8 +35,15 @@ package org.restlet.ext.oauth.internal.memory;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.DelayQueue;
+import java.util.concurrent.Delayed;
+import java.util.concurrent.TimeUnit;
+
 import org.restlet.ext.oauth.OAuthError;
 import org.restlet.ext.oauth.OAuthException;
 import org.restlet.ext.oauth.OAuthResourceDefs;
@@ -46,18 +53,241 @@ import org.restlet.ext.oauth.internal.Client;
 import org.restlet.ext.oauth.internal.Token;
 
 /**
- * Memory implementation of TokenManager interface.
+ * Memory implementation of TokenManager interface. Tokens are indexed by
+ * access token, refresh token, client and username so that lookups don't scan
+ * all the tokens. Authorization sessions, and tokens once both their access
+ * token and their refresh token expired (see
+ * {@link #setRefreshExpirePeriod(int)}), are purged in expiration order by each
+ * write operation or by an explicit call to {@link #purgeExpired()}. The
+ * scheduled purges of revoked or refreshed tokens are left in the queue and
+ * skipped once due.
  * 
  * @author Shotaro Uchida <fantom@xmaker.mx>
  */
 public class MemoryTokenManager extends AbstractTokenManager {
 
+    /**
+     * Scheduled removal of a token or of a session, ordered by time.
+     */
+    private static class Expiration implements Delayed {
+
+        private final String key;
+
+        private final long time;
+
+        private final Object value;
+
+        private Expiration(String key, Object value, long time) {
+            this.key = key;
+            this.time = time;
+            this.value = value;
+        }
+
+        public int compareTo(Delayed other) {
+            long otherTime = ((Expiration) other).time;
+            return (time < otherTime) ? -1 : ((time == otherTime) ? 0 : 1);
+        }
+
+        public long getDelay(TimeUnit unit) {
+            return unit.convert(time - System.currentTimeMillis(),
+                    TimeUnit.MILLISECONDS);
+        }
+    }
+
     private final Map<String, MemoryToken> tokens = new ConcurrentHashMap<String, MemoryToken>();
 
     private final Map<String, AuthSession> sessions = new ConcurrentHashMap<String, AuthSession>();
 
+    /** Tokens by refresh token. */
+    private final Map<String, MemoryToken> tokensByRefreshToken = new ConcurrentHashMap<String, MemoryToken>();
+
+    /** Tokens by client identifier and username. */
+    private final Map<String, MemoryToken> tokensByOwner = new ConcurrentHashMap<String, MemoryToken>();
+
+    /** Tokens by client identifier. */
+    private final Map<String, Set<MemoryToken>> tokensByClient = new ConcurrentHashMap<String, Set<MemoryToken>>();
+
+    /** Tokens by username. */
+    private final Map<String, Set<MemoryToken>> tokensByUsername = new ConcurrentHashMap<String, Set<MemoryToken>>();
+
+    /** Scheduled removals of expired tokens and sessions. */
+    private final DelayQueue<Expiration> expirations = new DelayQueue<Expiration>();
+
+    /**
+     * Refresh tokens expire period in seconds, 0 if they expire with the
+     * access token.
+     */
+    private volatile int refreshExpirePeriod = 0;
+
+    /** Scheduled removals of the stored tokens, by access token. */
+    private final ConcurrentMap<String, Expiration> tokenExpirations = new ConcurrentHashMap<String, Expiration>();
+
+    /**
+     * Returns the key of the owner index.
+     * 
+     * @param clientId
+     *            The client identifier.
+     * @param username
+     *            The username or null.
+     * @return The key of the owner index.
+     */
+    private static String getOwnerKey(String clientId, String username) {
+        return (username == null) ? clientId + '\u0000' : clientId + '\u0001'
+                + username;
+    }
+
+    /**
+     * Adds a token to a set index.
+     */
+    private static void index(Map<String, Set<MemoryToken>> index, String key,
+            MemoryToken token) {
+        Set<MemoryToken> set = index.get(key);
+        if (set == null) {
+            set = Collections
+                    .newSetFromMap(new ConcurrentHashMap<MemoryToken, Boolean>());
+            index.put(key, set);
+        }
+        set.add(token);
+    }
+
+    /**
+     * Removes a token from a set index.
+     */
+    private static void unindex(Map<String, Set<MemoryToken>> index,
+            String key, MemoryToken token) {
+        Set<MemoryToken> set = index.get(key);
+        if (set != null) {
+            set.remove(token);
+            if (set.isEmpty()) {
+                index.remove(key);
+            }
+        }
+    }
+
+    /**
+     * Stores and indexes a token.
+     * 
+     * @param token
+     *            The token to add.
+     */
+    private synchronized void addToken(MemoryToken token) {
+        tokens.put(token.getAccessToken(), token);
+        tokensByRefreshToken.put(token.getRefreshToken(), token);
+        tokensByOwner.put(
+                getOwnerKey(token.getClientId(), token.getUsername()), token);
+        index(tokensByClient, token.getClientId(), token);
+        if (token.getUsername() != null) {
+            index(tokensByUsername, token.getUsername(), token);
+        }
+
+        // Keep the token while its access or refresh token is valid
+        long time = Math.max(token.getTimestamp() + token.getExpirePeriod()
+                * 1000L, token.getRefreshTimestamp() + refreshExpirePeriod
+                * 1000L);
+        Expiration expiration = new Expiration(token.getAccessToken(), token,
+                time + 1000L);
+        tokenExpirations.put(token.getAccessToken(), expiration);
+        expirations.add(expiration);
+    }
+
+    /**
+     * Removes a token and its index entries, if it is still stored.
+     * 
+     * @param token
+     *            The token to remove.
+     * @return True if the token was removed.
+     */
+    private synchronized boolean removeToken(Token token) {
+        MemoryToken stored = tokens.get(token.getAccessToken());
+        if (stored == null || stored != token) {
+            return false;
+        }
+
+        tokens.remove(stored.getAccessToken());
+        // The scheduled purge, if any, is skipped once due
+        tokenExpirations.remove(stored.getAccessToken());
+        if (tokensByRefreshToken.get(stored.getRefreshToken()) == stored) {
+            tokensByRefreshToken.remove(stored.getRefreshToken());
+        }
+        String ownerKey = getOwnerKey(stored.getClientId(),
+                stored.getUsername());
+        if (tokensByOwner.get(ownerKey) == stored) {
+            tokensByOwner.remove(ownerKey);
+        }
+        unindex(tokensByClient, stored.getClientId(), stored);
+        if (stored.getUsername() != null) {
+            unindex(tokensByUsername, stored.getUsername(), stored);
+        }
+        return true;
+    }
+
+    /**
+     * Removes the expired sessions and the tokens whose access token and
+     * refresh token expired.
+     * 
+     * @return The number of removed tokens and sessions.
+     */
+    public int purgeExpired() {
+        int count = 0;
+        Expiration expiration = expirations.poll();
+        while (expiration != null) {
+            if (expiration.value instanceof MemoryToken) {
+                // Skip the purges of the tokens already removed
+                if (tokenExpirations.remove(expiration.key, expiration)
+                        && removeToken((MemoryToken) expiration.value)) {
+                    count++;
+                }
+            } else if (sessions.remove(expiration.key) != null) {
+                count++;
+            }
+            expiration = expirations.poll();
+        }
+        return count;
+    }
+
+    /**
+     * Returns the number of stored tokens.
+     * 
+     * @return The number of stored tokens.
+     */
+    public int getTokenCount() {
+        return tokens.size();
+    }
+
+    /**
+     * Returns the number of stored sessions.
+     * 
+     * @return The number of stored sessions.
+     */
+    public int getSessionCount() {
+        return sessions.size();
+    }
+
+    /**
+     * @return the refresh tokens expire period in seconds, 0 if they expire
+     *         with the access token
+     */
+    public int getRefreshExpirePeriod() {
+        return refreshExpirePeriod;
+    }
+
+    /**
+     * Sets the refresh tokens expire period. Tokens are kept in memory until
+     * both their access token and their refresh token expired. By default,
+     * refresh tokens expire with their access token, so tokens are removed
+     * once their access token expired.
+     * 
+     * @param refreshExpirePeriod
+     *            the refresh tokens expire period in seconds, 0 if they expire
+     *            with the access token
+     */
+    public void setRefreshExpirePeriod(int refreshExpirePeriod) {
+        this.refreshExpirePeriod = refreshExpirePeriod;
+    }
+
     public Token generateToken(Client client, String username, String[] scope)
             throws OAuthException {
+        purgeExpired();
         revokeToken(client, username);
         MemoryToken token = new MemoryToken();
         token.setClientId(client.getClientId());
@@ -67,18 +297,25 @@ public class MemoryTokenManager extends AbstractTokenManager {
         token.setTokenType(OAuthResourceDefs.TOKEN_TYPE_BEARER);
         token.setAccessToken(generateRawToken());
         token.setRefreshToken(generateRawToken());
-        tokens.put(token.getAccessToken(), token);
+        addToken(token);
         return token;
     }
 
     public Token refreshToken(Client client, String refreshToken, String[] scope)
             throws OAuthException {
+        purgeExpired();
         MemoryToken token = findTokenByRefreshToken(refreshToken);
         if (token == null) {
             throw new OAuthException(OAuthError.invalid_grant,
                     "Invalid refresh token.", null);
         }
 
+        if (refreshExpirePeriod > 0
+                && (System.currentTimeMillis() - token.getRefreshTimestamp()) / 1000 > refreshExpirePeriod) {
+            throw new OAuthException(OAuthError.invalid_grant,
+                    "The refresh token expired.", null);
+        }
+
         // ensure that the refresh token was issued to the authenticated client
         if (!token.getClientId().equals(client.getClientId())) {
             throw new OAuthException(OAuthError.invalid_grant,
@@ -115,12 +352,14 @@ public class MemoryTokenManager extends AbstractTokenManager {
         if (isUpdateRefreshToken()) {
             newToken.setRefreshToken(generateRawToken());
         } else {
+            // The refresh token keeps its own expiration
             newToken.setRefreshToken(token.getRefreshToken());
+            newToken.setRefreshTimestamp(token.getRefreshTimestamp());
         }
 
         synchronized (this) {
-            if (tokens.remove(token.getAccessToken()) != null) {
-                tokens.put(newToken.getAccessToken(), newToken);
+            if (removeToken(token)) {
+                addToken(newToken);
                 return newToken;
             }
         }
@@ -129,8 +368,11 @@ public class MemoryTokenManager extends AbstractTokenManager {
     }
 
     public String storeSession(AuthSession session) throws OAuthException {
+        purgeExpired();
         String code = generateRawCode();
         sessions.put(code, session);
+        expirations.add(new Expiration(code, session, System
+                .currentTimeMillis() + session.getSessionTimeout() * 1000L));
         return code;
     }
 
@@ -157,63 +399,48 @@ public class MemoryTokenManager extends AbstractTokenManager {
     }
 
     public Token findToken(Client client, String username) {
-        for (MemoryToken token : tokens.values()) {
-            if (token.getClientId().equals(client.getClientId())
-                    && ((username == null && token.getUsername() == null) || (username != null && username
-                            .equals(token.getUsername())))) {
-                return token;
-            }
-        }
-        return null;
+        return tokensByOwner.get(getOwnerKey(client.getClientId(), username));
     }
 
     protected MemoryToken findTokenByRefreshToken(String refreshToken) {
-        for (MemoryToken token : tokens.values()) {
-            if (token.getRefreshToken().equals(refreshToken)) {
-                return token;
-            }
-        }
-        return null;
+        return tokensByRefreshToken.get(refreshToken);
     }
 
     public Token[] findTokens(String username) {
-        ArrayList<Token> list = new ArrayList<Token>();
-        for (MemoryToken token : tokens.values()) {
-            if (/* !token.isExpired() && */
-            token.getUsername() != null && token.getUsername().equals(username)) {
-                list.add(token);
-            }
+        Set<MemoryToken> set = (username == null) ? null : tokensByUsername
+                .get(username);
+        if (set == null) {
+            return new Token[0];
         }
+        ArrayList<Token> list = new ArrayList<Token>(set);
         return list.toArray(new Token[list.size()]);
     }
 
     public Token[] findTokens(Client client) {
-        ArrayList<Token> list = new ArrayList<Token>();
-        for (MemoryToken token : tokens.values()) {
-            if (/* !token.isExpired() && */
-            token.getClientId().equals(client.getClientId())) {
-                list.add(token);
-            }
+        Set<MemoryToken> set = tokensByClient.get(client.getClientId());
+        if (set == null) {
+            return new Token[0];
         }
+        ArrayList<Token> list = new ArrayList<Token>(set);
         return list.toArray(new Token[list.size()]);
     }
 
     public void revokeToken(Client client, String username) {
         Token token = findToken(client, username);
         if (token != null) {
-            tokens.remove(token.getAccessToken());
+            removeToken(token);
         }
     }
 
     public void revokeAllTokens(String username) {
         for (Token token : findTokens(username)) {
-            tokens.remove(token.getAccessToken());
+            removeToken(token);
         }
     }
 
     public void revokeAllTokens(Client client) {
         for (Token token : findTokens(client)) {
-            tokens.remove(token.getAccessToken());
+            removeToken(token);
         }
     }
 }
@@ -0,0 +1,625 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.ext.odata;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.logging.Level;
+
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.data.CharacterSet;
+import org.restlet.data.Header;
+import org.restlet.data.MediaType;
+import org.restlet.data.Method;
+import org.restlet.data.Status;
+import org.restlet.data.Tag;
+import org.restlet.engine.header.ContentType;
+import org.restlet.ext.atom.Entry;
+import org.restlet.ext.atom.Feed;
+import org.restlet.ext.odata.internal.BatchUtils;
+import org.restlet.ext.odata.internal.EntryContentHandler;
+import org.restlet.ext.odata.internal.FeedContentHandler;
+import org.restlet.ext.odata.internal.edm.AssociationEnd;
+import org.restlet.ext.odata.internal.edm.Metadata;
+import org.restlet.ext.odata.internal.edm.Property;
+import org.restlet.ext.odata.internal.edm.TypeUtils;
+import org.restlet.ext.odata.internal.reflect.ReflectUtils;
+import org.restlet.representation.Representation;
+import org.restlet.representation.StringRepresentation;
+import org.restlet.resource.ClientResource;
+import org.restlet.util.Series;
+
+/**
+ * Batch of operations sent to an OData service in a single "$batch" request.
+ * The operations are recorded by calling methods similar to the ones of the
+ * {@link Service} class, then submitted by calling the {@link #execute()}
+ * method.<br>
+ * <br>
+ * Consecutive changes (additions, updates and deletions of entities and links)
+ * are grouped into a change set that the service processes as an atomic
+ * unit. A new change set is started after each property loading or after a
+ * call to {@link #newChangeSet()}.<br>
+ * <br>
+ * This Java class is more or less equivalent to the WCF DataServiceContext
+ * SaveChanges method with the SaveChangesOptions.Batch option.
+ * 
+ * @author Thierry Boileau
+ * @see <a
+ *      href="http://www.odata.org/documentation/odata-version-2-0/batch-processing/">OData
+ *      batch processing</a>
+ */
+public class Batch {
+
+    /**
+     * Operation recorded in the batch.
+     */
+    private static final class Operation {
+
+        /** The change set identifier, or -1 for a retrieval. */
+        private final int changeSet;
+
+        /** The entity whose property is loaded. */
+        private final Object entity;
+
+        /** The name of the loaded property. */
+        private final String propertyName;
+
+        /** The request sent. */
+        private final Request request;
+
+        /**
+         * Constructor.
+         * 
+         * @param changeSet
+         *            The change set identifier, or -1 for a retrieval.
+         * @param request
+         *            The request sent.
+         * @param entity
+         *            The entity whose property is loaded.
+         * @param propertyName
+         *            The name of the loaded property.
+         */
+        private Operation(int changeSet, Request request, Object entity,
+                String propertyName) {
+            this.changeSet = changeSet;
+            this.request = request;
+            this.entity = entity;
+            this.propertyName = propertyName;
+        }
+    }
+
+    /** The identifier of the current change set, or -1. */
+    private int changeSet;
+
+    /** The number of change sets created. */
+    private int changeSetCount;
+
+    /** The recorded operations. */
+    private final List<Operation> operations;
+
+    /** The parent client service. */
+    private final Service service;
+
+    /**
+     * Constructor.
+     * 
+     * @param service
+     *            The parent client service.
+     */
+    public Batch(Service service) {
+        this.changeSet = -1;
+        this.changeSetCount = 0;
+        this.operations = new ArrayList<Operation>();
+        this.service = service;
+    }
+
+    /**
+     * Records the addition of an entity to an entity set.
+     * 
+     * @param entitySetName
+     *            The path of the entity set relatively to the service URI.
+     * @param entity
+     *            The entity to add.
+     * @throws Exception
+     */
+    public synchronized void addEntity(String entitySetName, Object entity)
+            throws Exception {
+        if (entity != null) {
+            getMetadata();
+            addChange(new Request(Method.POST,
+                    getService().createReference(entitySetName),
+                    toRepresentation(getService().toEntry(entity))));
+        }
+    }
+
+    /**
+     * Records the addition of an association between the source and the target
+     * entity via the given property name.
+     * 
+     * @param source
+     *            The source entity to update.
+     * @param sourceProperty
+     *            The name of the property of the source entity.
+     * @param target
+     *            The entity to add to the source entity.
+     * @throws Exception
+     */
+    public synchronized void addLink(Object source, String sourceProperty,
+            Object target) throws Exception {
+        if ((source != null) && (target != null)) {
+            addEntity(getMetadata().getSubpath(source, sourceProperty), target);
+        }
+    }
+
+    /**
+     * Adds a change to the current change set.
+     * 
+     * @param request
+     *            The change request.
+     */
+    private void addChange(Request request) {
+        if (this.changeSet == -1) {
+            this.changeSet = this.changeSetCount++;
+        }
+
+        this.operations.add(new Operation(this.changeSet, request, null,
+                null));
+    }
+
+    /**
+     * Removes all the recorded operations.
+     */
+    public synchronized void clear() {
+        this.operations.clear();
+        this.changeSet = -1;
+    }
+
+    /**
+     * Records the deletion of an entity.
+     * 
+     * @param entity
+     *            The entity to delete.
+     * @throws Exception
+     */
+    public synchronized void deleteEntity(Object entity) throws Exception {
+        if (entity != null) {
+            deleteEntity(getMetadata().getSubpath(entity));
+        }
+    }
+
+    /**
+     * Records the deletion of an entity.
+     * 
+     * @param entitySubpath
+     *            The path of the entity to delete.
+     */
+    public synchronized void deleteEntity(String entitySubpath) {
+        addChange(new Request(Method.DELETE, getService().createReference(
+                entitySubpath)));
+    }
+
+    /**
+     * Records the removal of the association between a source entity and a
+     * target entity via the given property name.
+     * 
+     * @param source
+     *            The source entity to update.
+     * @param sourceProperty
+     *            The name of the property of the source entity.
+     * @param target
+     *            The entity to delete from the source entity.
+     * @throws Exception
+     */
+    public synchronized void deleteLink(Object source, String sourceProperty,
+            Object target) throws Exception {
+        deleteEntity(getMetadata().getSubpath(source, sourceProperty, target));
+    }
+
+    /**
+     * Sends all the recorded operations in a single "$batch" request and
+     * returns the response to each of them, in the order of recording. The
+     * loaded properties are set on their entity. The recorded operations are
+     * then removed from the batch.<br>
+     * <br>
+     * When a change set fails, the service returns a single error response
+     * that is reported for each operation of the change set.
+     * 
+     * @return The responses to the recorded operations.
+     * @throws Exception
+     */
+    public synchronized List<Response> execute() throws Exception {
+        List<Response> result = new ArrayList<Response>();
+
+        if (!this.operations.isEmpty()) {
+            String boundary = "batch_" + UUID.randomUUID();
+            StringBuilder sb = new StringBuilder();
+            int start = 0;
+
+            while (start < this.operations.size()) {
+                int end = getGroupEnd(start);
+                Operation operation = this.operations.get(start);
+
+                if (operation.changeSet == -1) {
+                    BatchUtils.writePartHeaders(sb, boundary);
+                    BatchUtils.writeRequest(sb, operation.request);
+                } else {
+                    String changeSetBoundary = "changeset_"
+                            + UUID.randomUUID();
+                    BatchUtils.writeChangeSetHeaders(sb, boundary,
+                            changeSetBoundary);
+
+                    for (int i = start; i < end; i++) {
+                        BatchUtils.writePartHeaders(sb, changeSetBoundary);
+                        BatchUtils.writeRequest(sb,
+                                this.operations.get(i).request);
+                    }
+
+                    BatchUtils.writeClose(sb, changeSetBoundary);
+                }
+
+                start = end;
+            }
+
+            BatchUtils.writeClose(sb, boundary);
+
+            ClientResource resource = getService().createResource("$batch");
+            StringRepresentation entity = new StringRepresentation(sb,
+                    ContentType.readMediaType("multipart/mixed; boundary="
+                            + boundary), null, CharacterSet.UTF_8);
+
+            try {
+                Representation rep = resource.post(entity);
+                read(rep, result);
+            } finally {
+                getService().setLatestRequest(resource.getRequest());
+                getService().setLatestResponse(resource.getResponse());
+            }
+
+            clear();
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the metadata of the service.
+     * 
+     * @return The metadata of the service.
+     * @throws Exception
+     *             If the metadata can't be retrieved.
+     */
+    private Metadata getMetadata() throws Exception {
+        Metadata result = (Metadata) getService().getMetadata();
+
+        if (result == null) {
+            throw new Exception("Can't record this operation due to the "
+                    + "lack of the service's metadata.");
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the index following the group of operations starting at the
+     * given index. A group is either a change set or a single retrieval.
+     * 
+     * @param start
+     *            The index of the first operation of the group.
+     * @return The index following the group.
+     */
+    private int getGroupEnd(int start) {
+        int result = start + 1;
+        int changeSet = this.operations.get(start).changeSet;
+
+        if (changeSet != -1) {
+            while ((result < this.operations.size())
+                    && (this.operations.get(result).changeSet == changeSet)) {
+                result++;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the parent client service.
+     * 
+     * @return The parent client service.
+     */
+    public Service getService() {
+        return service;
+    }
+
+    /**
+     * Loads a property from the response to a retrieval.
+     * 
+     * @param operation
+     *            The retrieval.
+     * @param response
+     *            The response.
+     */
+    private void load(Operation operation, Response response) {
+        Object entity = operation.entity;
+        String propertyName = operation.propertyName;
+
+        try {
+            Metadata metadata = getMetadata();
+            AssociationEnd association = metadata.getAssociation(
+                    metadata.getEntityType(entity.getClass()), propertyName);
+
+            if (association != null) {
+                Class<?> propertyClass = ReflectUtils.getSimpleClass(entity,
+                        propertyName);
+                if (propertyClass == null) {
+                    propertyClass = TypeUtils.getJavaClass(association
+                            .getType());
+                }
+
+                List<Object> values = null;
+
+                if (association.isToMany()) {
+                    FeedContentHandler<Object> handler = new FeedContentHandler<Object>(
+                            propertyClass, association.getType(), metadata,
+                            getService().getLogger());
+                    new Feed(response.getEntity(), handler);
+                    values = handler.getEntities();
+                } else {
+                    EntryContentHandler<Object> handler = new EntryContentHandler<Object>(
+                            propertyClass, association.getType(), metadata,
+                            getService().getLogger());
+                    new Entry(response.getEntity(), handler);
+                    values = (handler.getEntity() == null) ? Collections
+                            .emptyList() : Collections.singletonList(handler
+                            .getEntity());
+                }
+
+                ReflectUtils.setProperty(entity, propertyName,
+                        association.isToMany(), values.iterator(),
+                        propertyClass);
+            } else {
+                String value = getService().getSimpleValue(
+                        response.getEntity(), propertyName);
+                Property property = metadata.getProperty(entity, propertyName);
+                ReflectUtils.setProperty(entity, property, value);
+            }
+        } catch (Exception e) {
+            getService().getLogger().log(
+                    Level.WARNING,
+                    "Can't set the property " + propertyName + " of "
+                            + entity.getClass() + " for the service"
+                            + getService().getServiceRef(), e);
+        }
+    }
+
+    /**
+     * Records the loading of the given property of an entity. The property is
+     * set when the batch is executed.
+     * 
+     * @param entity
+     *            The entity to update.
+     * @param propertyName
+     *            The name of the property.
+     * @throws Exception
+     */
+    public synchronized void loadProperty(Object entity, String propertyName)
+            throws Exception {
+        if (entity != null) {
+            Request request = new Request(Method.GET, getService()
+                    .createReference(
+                            getMetadata().getSubpath(entity, propertyName)));
+            this.operations.add(new Operation(-1, request, entity,
+                    propertyName));
+            this.changeSet = -1;
+        }
+    }
+
+    /**
+     * Starts a new change set. The following changes are processed
+     * independently of the previous ones.
+     */
+    public synchronized void newChangeSet() {
+        this.changeSet = -1;
+    }
+
+    /**
+     * Reads the multipart response to a batch request.
+     * 
+     * @param representation
+     *            The multipart response.
+     * @param responses
+     *            The list of responses to complete.
+     * @throws Exception
+     */
+    private void read(Representation representation, List<Response> responses)
+            throws Exception {
+        List<String> parts = Collections.emptyList();
+
+        if (representation != null) {
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            representation.write(baos);
+            parts = BatchUtils.readParts(BatchUtils.toString(baos
+                    .toByteArray()), BatchUtils.readBoundary(representation
+                    .getMediaType()));
+        }
+
+        int start = 0;
+        int index = 0;
+
+        while (start < this.operations.size()) {
+            int end = getGroupEnd(start);
+            String part = (index < parts.size()) ? parts.get(index++) : null;
+            Series<Header> headers = new Series<Header>(Header.class);
+            int body = (part == null) ? 0 : BatchUtils.readHeaders(part,
+                    headers);
+            String contentType = headers.getFirstValue("Content-Type", true);
+            List<String> changes = null;
+
+            if (BatchUtils.isMultipart(contentType)) {
+                changes = BatchUtils.readParts(part.substring(body),
+                        BatchUtils.readBoundary(ContentType
+                                .readMediaType(contentType)));
+            }
+
+            for (int i = start; i < end; i++) {
+                Operation operation = this.operations.get(i);
+                String message = null;
+
+                if (changes != null) {
+                    // Response of a change in a change set
+                    if (i - start < changes.size()) {
+                        String change = changes.get(i - start);
+                        message = change.substring(BatchUtils.readHeaders(
+                                change, new Series<Header>(Header.class)));
+                    }
+                } else if (part != null) {
+                    // Response to a retrieval or to a whole change set
+                    message = part.substring(body);
+                }
+
+                Response response = null;
+
+                if (message == null) {
+                    response = new Response(operation.request);
+                    response.setStatus(Status.CONNECTOR_ERROR_INTERNAL,
+                            "Missing response in the batch");
+                } else {
+                    response = BatchUtils.readResponse(message,
+                            operation.request);
+
+                    if ((operation.entity != null)
+                            && response.getStatus().isSuccess()) {
+                        load(operation, response);
+                    }
+                }
+
+                responses.add(response);
+            }
+
+            start = end;
+        }
+    }
+
+    /**
+     * Records the association between the source and the target entity via
+     * the given property name. If the target is null, the property of the
+     * source entity is set to null and the source entity is updated.
+     * 
+     * @param source
+     *            The source entity to update.
+     * @param sourceProperty
+     *            The name of the property of the source entity.
+     * @param target
+     *            The entity to associate to the source entity.
+     * @throws Exception
+     */
+    public synchronized void setLink(Object source, String sourceProperty,
+            Object target) throws Exception {
+        if (source != null) {
+            if (target != null) {
+                Metadata metadata = getMetadata();
+                StringBuilder sb = new StringBuilder("<uri xmlns=\"");
+                sb.append(Service.WCF_DATASERVICES_NAMESPACE);
+                sb.append("\">");
+                sb.append(getService().getServiceRef().toString());
+                sb.append(metadata.getSubpath(target));
+                sb.append("</uri>");
+
+                addChange(new Request(Method.PUT, getService()
+                        .createReference(
+                                metadata.getSubpath(source) + "/$links/"
+                                        + sourceProperty),
+                        new StringRepresentation(sb.toString(),
+                                MediaType.APPLICATION_XML)));
+            } else {
+                ReflectUtils.invokeSetter(source, sourceProperty, null);
+                updateEntity(source);
+            }
+        }
+    }
+
+    /**
+     * Returns the number of recorded operations.
+     * 
+     * @return The number of recorded operations.
+     */
+    public synchronized int size() {
+        return this.operations.size();
+    }
+
+    /**
+     * Returns the Atom representation of an entry.
+     * 
+     * @param entry
+     *            The entry.
+     * @return The Atom representation.
+     * @throws Exception
+     */
+    private Representation toRepresentation(Entry entry) throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        entry.write(baos);
+        baos.flush();
+        return new StringRepresentation(baos.toString(
+                CharacterSet.UTF_8.getName()), MediaType.APPLICATION_ATOM);
+    }
+
+    /**
+     * Records the update of an entity.
+     * 
+     * @param entity
+     *            The entity to update.
+     * @throws Exception
+     */
+    public synchronized void updateEntity(Object entity) throws Exception {
+        if (entity != null) {
+            Request request = new Request(Method.PUT, getService()
+                    .createReference(getMetadata().getSubpath(entity)),
+                    toRepresentation(getService().toEntry(entity)));
+            String tag = getService().getTag(entity);
+
+            if (tag != null) {
+                // Add a condition
+                request.getConditions().setMatch(Arrays.asList(new Tag(tag)));
+            }
+
+            addChange(request);
+        }
+    }
+
+}
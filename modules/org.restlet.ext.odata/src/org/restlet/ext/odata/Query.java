@@ -49,6 +49,7 @@ import org.restlet.ext.atom.Link;
 import org.restlet.ext.atom.Relation;
 import org.restlet.ext.odata.internal.EntryContentHandler;
 import org.restlet.ext.odata.internal.FeedContentHandler;
+import org.restlet.ext.odata.internal.StreamingEntryIterator;
 import org.restlet.ext.odata.internal.edm.EntityType;
 import org.restlet.ext.odata.internal.edm.Metadata;
 import org.restlet.representation.Representation;
@@ -62,7 +63,12 @@ import org.restlet.util.Series;
 /**
  * Specific query to a OData service, represents a particular HTTP request to a
  * data service. This Java class is more or less equivalent to the WCF
- * DataServiceQuery class.
+ * DataServiceQuery class.<br>
+ * <br>
+ * By default, each page of an entity set is entirely parsed before being
+ * iterated. In streaming mode (see {@link #stream(int)}), the entities are
+ * returned as they are parsed and the next pages are prefetched in the
+ * background while the current one is consumed.
  * 
  * @author Jerome Louvel
  * @see <a
@@ -205,12 +211,18 @@ public class Query<T> implements Iterable<T> {
     /** The reference to the next page (used in server-paging mode). */
     private Reference nextPage;
 
+    /** The number of pages prefetched in streaming mode. */
+    private int prefetchDepth;
+
     /** The query string. */
     private String query;
 
     /** The parent client service. */
     private Service service;
 
+    /** Are the entities streamed as they are parsed? */
+    private boolean streaming;
+
     /** The path of the targeted entity relatively to the data service URI. */
     private String subpath;
 
@@ -261,6 +273,8 @@ public class Query<T> implements Iterable<T> {
     public Query<T> addParameter(String name, String value) {
         Query<T> result = new Query<T>(this.getService(), this.getSubpath(),
                 (Class<T>) this.entityClass);
+        result.streaming = this.streaming;
+        result.prefetchDepth = this.prefetchDepth;
         if (getQuery() == null || "".equals(getQuery())) {
             result.setQuery(name + "=" + value);
         } else {
@@ -283,6 +297,8 @@ public class Query<T> implements Iterable<T> {
     public Query<T> addParameters(Series<Parameter> params) {
         Query<T> result = new Query<T>(this.getService(), this.getSubpath(),
                 (Class<T>) this.entityClass);
+        result.streaming = this.streaming;
+        result.prefetchDepth = this.prefetchDepth;
         StringBuilder builder = new StringBuilder();
 
         if (params != null) {
@@ -306,6 +322,29 @@ public class Query<T> implements Iterable<T> {
         return result;
     }
 
+    /**
+     * Starts streaming the entities of the target entity set.
+     * 
+     * @param targetUri
+     *            The target URI.
+     * @return The streaming iterator.
+     * @throws Exception
+     */
+    private StreamingEntryIterator<T> createStreamingIterator(
+            String targetUri) throws Exception {
+        Metadata metadata = (Metadata) service.getMetadata();
+        if (metadata == null) {
+            throw new Exception(
+                    "Can't execute the query without the service's metadata.");
+        }
+
+        StreamingEntryIterator<T> result = new StreamingEntryIterator<T>(
+                getService(), new Reference(targetUri), entityClass,
+                entityType, metadata, getLogger(), getPrefetchDepth());
+        result.start();
+        return result;
+    }
+
     /**
      * Returns the complete target URI reference for this query. It is composed
      * of the data service base URI, the subpath and the query string.
@@ -531,6 +570,16 @@ public class Query<T> implements Iterable<T> {
         return nextPage;
     }
 
+    /**
+     * Returns the number of pages that can be fetched ahead of the page being
+     * consumed in streaming mode.
+     * 
+     * @return The number of pages prefetched in streaming mode.
+     */
+    public int getPrefetchDepth() {
+        return prefetchDepth;
+    }
+
     /**
      * Returns the query string that may be completed by calls to
      * {@link Query#addParameter(String, String)} or
@@ -635,9 +684,20 @@ public class Query<T> implements Iterable<T> {
         return executed;
     }
 
+    /**
+     * Returns true if the entities are streamed as they are parsed.
+     * 
+     * @return True if the entities are streamed as they are parsed.
+     */
+    public boolean isStreaming() {
+        return streaming;
+    }
+
     /**
      * Returns an iterator over a set of elements of type T. It returns null if
-     * the query does not retrieve elements.
+     * the query does not retrieve elements. In streaming mode, entity sets are
+     * returned by a {@link StreamingEntryIterator} that should be closed if
+     * the iteration is abandoned before its end.
      * 
      * @return an Iterator or null if the query does not retrieve elements.
      */
@@ -645,24 +705,31 @@ public class Query<T> implements Iterable<T> {
         Iterator<T> result = null;
 
         try {
-            execute();
-            result = entities.iterator();
-
-            // result = new FeedParser<T>(getFeed(), this.entityClass,
-            // ((Metadata) getService().getMetadata())).parse();
-            // Detect server-paging mode.
-            setNextPage(null);
+            String targetUri = createTargetUri();
 
-            for (Link link : getFeed().getLinks()) {
-                if (Relation.NEXT.equals(link.getRel())) {
-                    setNextPage(link.getHref());
-                    break;
+            if (isStreaming() && !isExecuted()
+                    && (guessType(targetUri) == TYPE_ENTITY_SET)) {
+                result = createStreamingIterator(targetUri);
+            } else {
+                execute();
+                result = entities.iterator();
+
+                // result = new FeedParser<T>(getFeed(), this.entityClass,
+                // ((Metadata) getService().getMetadata())).parse();
+                // Detect server-paging mode.
+                setNextPage(null);
+
+                for (Link link : getFeed().getLinks()) {
+                    if (Relation.NEXT.equals(link.getRel())) {
+                        setNextPage(link.getHref());
+                        break;
+                    }
                 }
-            }
 
-            if (getNextPage() != null) {
-                result = new EntryIterator<T>(this.service, result,
-                        getNextPage(), entityClass);
+                if (getNextPage() != null) {
+                    result = new EntryIterator<T>(this.service, result,
+                            getNextPage(), entityClass);
+                }
             }
         } catch (Exception e) {
             getLogger().log(Level.WARNING,
@@ -765,6 +832,28 @@ public class Query<T> implements Iterable<T> {
         return addParameter("$skiptoken", token);
     }
 
+    /**
+     * Creates a new Query<T> iterated in streaming mode. The entities are
+     * returned as soon as they are parsed and the next pages of the entity set
+     * are fetched in the background while the current one is consumed.
+     * 
+     * @param prefetchDepth
+     *            The number of pages that can be fetched ahead of the page
+     *            being consumed. Zero only fetches a page once the previous
+     *            one has been consumed.
+     * @return A new Query<T> iterated in streaming mode.
+     */
+    @SuppressWarnings("unchecked")
+    public Query<T> stream(int prefetchDepth) {
+        Query<T> result = new Query<T>(this.getService(), this.getSubpath(),
+                (Class<T>) this.entityClass);
+        result.setQuery(getQuery());
+        result.inlineCount = this.inlineCount;
+        result.streaming = true;
+        result.prefetchDepth = prefetchDepth;
+        return result;
+    }
+
     /**
      * Creates a new Query<T> with the $top option set in the URI generated by
      * the returned query.
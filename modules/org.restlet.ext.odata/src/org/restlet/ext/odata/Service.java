@@ -55,6 +55,7 @@ import org.restlet.data.Parameter;
 import org.restlet.data.Preference;
 import org.restlet.data.Protocol;
 import org.restlet.data.Reference;
+import org.restlet.data.Status;
 import org.restlet.data.Tag;
 import org.restlet.engine.header.HeaderConstants;
 import org.restlet.engine.header.HeaderReader;
@@ -64,6 +65,7 @@ import org.restlet.ext.atom.Feed;
 import org.restlet.ext.atom.Link;
 import org.restlet.ext.atom.Relation;
 import org.restlet.ext.odata.internal.EntryContentHandler;
+import org.restlet.ext.odata.internal.MetadataCache;
 import org.restlet.ext.odata.internal.edm.AssociationEnd;
 import org.restlet.ext.odata.internal.edm.ComplexProperty;
 import org.restlet.ext.odata.internal.edm.EntityContainer;
@@ -139,6 +141,9 @@ public class Service {
     /** The metadata of the WCF service. */
     private Metadata metadata;
 
+    /** The cache of parsed metadata documents or null. */
+    private volatile MetadataCache metadataCache;
+
     /**
      * The version of the OData protocol extensions defined by the remote
      * service.
@@ -262,6 +267,16 @@ public class Service {
         }
     }
 
+    /**
+     * Creates a batch of operations that are sent to the service in a single
+     * "$batch" request.
+     * 
+     * @return A new batch.
+     */
+    public Batch createBatch() {
+        return new Batch(this);
+    }
+
     /**
      * Creates a query to a specific entity hosted by this service.
      * 
@@ -325,6 +340,18 @@ public class Service {
      *         the service reference).
      */
     public ClientResource createResource(String relativePath) {
+        return createResource(createReference(relativePath));
+    }
+
+    /**
+     * Returns the absolute reference of a path relative to the service
+     * reference.
+     * 
+     * @param relativePath
+     *            The relative reference of the target resource.
+     * @return The absolute reference.
+     */
+    Reference createReference(String relativePath) {
         String ref = getServiceRef().toString();
         if (ref.endsWith("/")) {
             if (relativePath.startsWith("/")) {
@@ -340,7 +367,7 @@ public class Service {
             }
         }
 
-        return createResource(new Reference(ref));
+        return new Reference(ref);
     }
 
     /**
@@ -452,7 +479,7 @@ public class Service {
      * 
      * @return The current logger.
      */
-    private Logger getLogger() {
+    Logger getLogger() {
         if (logger == null) {
             logger = Context.getCurrentLogger();
         }
@@ -471,39 +498,97 @@ public class Service {
     }
 
     /**
-     * Returns the metadata document related to the current service.
+     * Returns the metadata document related to the current service. When a
+     * {@link MetadataCache} is set, the parsed document is shared with the
+     * other instances using this cache, targeting the same service with the
+     * same credentials. Once expired, the cached version is revalidated with a
+     * conditional request.
      * 
      * @return The metadata document related to the current service.
      */
     protected Object getMetadata() {
         if (metadata == null) {
-            ClientResource resource = createResource("$metadata");
+            MetadataCache cache = getMetadataCache();
+            MetadataCache.Version version = (cache == null) ? null : cache
+                    .get(getServiceRef(), getCredentials());
+
+            if ((version != null) && version.isExpired()
+                    && !version.hasValidators()) {
+                // Can't revalidate this version
+                version = null;
+            }
 
-            try {
-                getLogger().log(
-                        Level.INFO,
-                        "Get the metadata for " + getServiceRef() + " at "
-                                + resource.getReference());
-                Representation rep = resource.get(MediaType.APPLICATION_XML);
-                this.metadata = new Metadata(rep, resource.getReference());
-            } catch (ResourceException e) {
-                getLogger().log(
-                        Level.SEVERE,
-                        "Can't get the metadata for " + getServiceRef()
-                                + " (response's status: "
-                                + resource.getStatus() + ")");
-            } catch (Exception e) {
-                getLogger().log(Level.SEVERE,
-                        "Can't get the metadata for " + getServiceRef(), e);
-            } finally {
-                this.latestRequest = resource.getRequest();
-                this.latestResponse = resource.getResponse();
+            if ((version != null) && !version.isExpired()) {
+                this.metadata = version.getMetadata();
+            } else {
+                ClientResource resource = createResource("$metadata");
+
+                try {
+                    getLogger().log(
+                            Level.INFO,
+                            "Get the metadata for " + getServiceRef() + " at "
+                                    + resource.getReference());
+
+                    if (version != null) {
+                        if (version.getTag() != null) {
+                            resource.getConditions().getNoneMatch()
+                                    .add(version.getTag());
+                        } else {
+                            resource.getConditions().setModifiedSince(
+                                    version.getModificationDate());
+                        }
+                    }
+
+                    Representation rep = resource
+                            .get(MediaType.APPLICATION_XML);
+
+                    if ((version != null)
+                            && Status.REDIRECTION_NOT_MODIFIED.equals(resource
+                                    .getStatus())) {
+                        // The cached version is still valid
+                        version.setExpirationTime(cache.getExpirationTime());
+                        this.metadata = version.getMetadata();
+                    } else {
+                        this.metadata = new Metadata(rep,
+                                resource.getReference());
+
+                        if (cache != null) {
+                            cache.put(getServiceRef(), getCredentials(),
+                                    new MetadataCache.Version(this.metadata,
+                                            rep.getTag(), rep
+                                                    .getModificationDate(),
+                                            cache.getExpirationTime()));
+                        }
+                    }
+                } catch (ResourceException e) {
+                    getLogger().log(
+                            Level.SEVERE,
+                            "Can't get the metadata for " + getServiceRef()
+                                    + " (response's status: "
+                                    + resource.getStatus() + ")");
+                } catch (Exception e) {
+                    getLogger().log(Level.SEVERE,
+                            "Can't get the metadata for " + getServiceRef(), e);
+                } finally {
+                    this.latestRequest = resource.getRequest();
+                    this.latestResponse = resource.getResponse();
+                }
             }
         }
 
         return metadata;
     }
 
+    /**
+     * Returns the cache of parsed metadata documents, or null if the metadata
+     * are not cached (default).
+     * 
+     * @return The cache of parsed metadata documents or null.
+     */
+    public MetadataCache getMetadataCache() {
+        return metadataCache;
+    }
+
     /**
      * Returns the version of the OData protocol extensions supported by the
      * remote service.
@@ -558,7 +643,7 @@ public class Service {
      * @throws Exception
      *             Thrown when a parsing error occurs.
      */
-    private String getSimpleValue(Representation representation, String tagName)
+    String getSimpleValue(Representation representation, String tagName)
             throws Exception {
         String result = null;
 
@@ -652,7 +737,7 @@ public class Service {
      *            The given entity.
      * @return The ETag value for the given entity.
      */
-    private String getTag(Object entity) {
+    String getTag(Object entity) {
         String result = null;
         if (entity != null) {
             Metadata metadata = (Metadata) getMetadata();
@@ -1069,6 +1154,17 @@ public class Service {
         this.maxClientVersion = maxClientVersion;
     }
 
+    /**
+     * Sets the cache of parsed metadata documents. Setting the same cache on
+     * several instances lets short-lived instances reuse the parsed documents.
+     * 
+     * @param metadataCache
+     *            The cache of parsed metadata documents or null.
+     */
+    public void setMetadataCache(MetadataCache metadataCache) {
+        this.metadataCache = metadataCache;
+    }
+
     /**
      * Sets the value of the given media entry link.
      * 
@@ -0,0 +1,429 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.ext.odata.internal;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.data.CharacterSet;
+import org.restlet.data.Header;
+import org.restlet.data.MediaType;
+import org.restlet.data.Status;
+import org.restlet.data.Tag;
+import org.restlet.engine.header.ContentType;
+import org.restlet.engine.header.HeaderConstants;
+import org.restlet.representation.ByteArrayRepresentation;
+import org.restlet.representation.Representation;
+import org.restlet.util.Series;
+
+/**
+ * Utility methods to write and read the multipart documents exchanged with
+ * the "$batch" endpoint of an OData service.
+ * 
+ * @author Thierry Boileau
+ * @see <a
+ *      href="http://www.odata.org/documentation/odata-version-2-0/batch-processing/">OData
+ *      batch processing</a>
+ */
+public class BatchUtils {
+
+    /** The line separator. */
+    private static final String CRLF = "\r\n";
+
+    /**
+     * Returns the byte array of a string read as ISO-8859-1, that is to say
+     * the original bytes of a message decoded with
+     * {@link #toString(byte[])}.
+     * 
+     * @param string
+     *            The string.
+     * @return The original bytes.
+     */
+    private static byte[] getBytes(String string) {
+        byte[] result = new byte[string.length()];
+
+        for (int i = 0; i < result.length; i++) {
+            result[i] = (byte) string.charAt(i);
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the value of a header.
+     * 
+     * @param headers
+     *            The headers.
+     * @param name
+     *            The header name.
+     * @return The header value or null.
+     */
+    private static String getHeader(Series<Header> headers, String name) {
+        return headers.getFirstValue(name, true);
+    }
+
+    /**
+     * Returns the index of the end of the headers block, that is to say of the
+     * first empty line.
+     * 
+     * @param message
+     *            The message.
+     * @param from
+     *            The index to start from.
+     * @return The index of the empty line and its length, or null.
+     */
+    private static int[] indexOfEmptyLine(String message, int from) {
+        int[] result = null;
+        int crlf = message.indexOf("\r\n\r\n", from);
+        int lf = message.indexOf("\n\n", from);
+
+        if ((crlf != -1) && ((lf == -1) || (crlf < lf))) {
+            result = new int[] { crlf + 2, 2 };
+        } else if (lf != -1) {
+            result = new int[] { lf + 1, 1 };
+        }
+
+        return result;
+    }
+
+    /**
+     * Indicates if a content type is multipart/mixed.
+     * 
+     * @param contentType
+     *            The content type header value.
+     * @return True if the content type is multipart/mixed.
+     */
+    public static boolean isMultipart(String contentType) {
+        return (contentType != null)
+                && contentType.toLowerCase().startsWith("multipart/mixed");
+    }
+
+    /**
+     * Reads the boundary parameter of a multipart media type.
+     * 
+     * @param mediaType
+     *            The multipart media type.
+     * @return The boundary or null.
+     */
+    public static String readBoundary(MediaType mediaType) {
+        String result = null;
+
+        if (mediaType != null) {
+            result = mediaType.getParameters().getFirstValue("boundary", true);
+
+            if ((result != null) && (result.length() > 1)
+                    && result.startsWith("\"") && result.endsWith("\"")) {
+                result = result.substring(1, result.length() - 1);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Reads the headers at the beginning of a message.
+     * 
+     * @param message
+     *            The message.
+     * @param headers
+     *            The headers to update.
+     * @return The index of the message body.
+     */
+    public static int readHeaders(String message, Series<Header> headers) {
+        int[] empty = indexOfEmptyLine(message, 0);
+        int end = (empty == null) ? message.length() : empty[0];
+        int result = (empty == null) ? message.length() : empty[0] + empty[1];
+
+        // The headers block may also be empty
+        if (message.startsWith("\r\n")) {
+            end = 0;
+            result = 2;
+        } else if (message.startsWith("\n")) {
+            end = 0;
+            result = 1;
+        }
+
+        for (String line : message.substring(0, end).split("\r?\n")) {
+            int colon = line.indexOf(':');
+
+            if (colon > 0) {
+                headers.add(line.substring(0, colon).trim(),
+                        line.substring(colon + 1).trim());
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Splits a multipart message into its parts. The preamble and the epilogue
+     * are ignored.
+     * 
+     * @param message
+     *            The multipart message.
+     * @param boundary
+     *            The boundary.
+     * @return The list of parts, including their headers.
+     */
+    public static List<String> readParts(String message, String boundary) {
+        List<String> result = new ArrayList<String>();
+        String delimiter = "--" + boundary;
+        int start = -1;
+        int index = message.indexOf(delimiter);
+
+        while (index != -1) {
+            boolean lineStart = (index == 0)
+                    || (message.charAt(index - 1) == '\n');
+
+            if (lineStart) {
+                if (start != -1) {
+                    // The line break before the delimiter belongs to it
+                    int end = index;
+
+                    if ((end > start) && (message.charAt(end - 1) == '\n')) {
+                        end--;
+                    }
+
+                    if ((end > start) && (message.charAt(end - 1) == '\r')) {
+                        end--;
+                    }
+
+                    result.add(message.substring(start, end));
+                }
+
+                int after = index + delimiter.length();
+
+                if (message.startsWith("--", after)) {
+                    // Close delimiter
+                    break;
+                }
+
+                int eol = message.indexOf('\n', after);
+                start = (eol == -1) ? message.length() : eol + 1;
+            }
+
+            index = message.indexOf(delimiter, index + delimiter.length());
+        }
+
+        return result;
+    }
+
+    /**
+     * Reads an HTTP response embedded in a part of type "application/http".
+     * 
+     * @param message
+     *            The embedded response, without the part headers.
+     * @param request
+     *            The request answered.
+     * @return The response.
+     */
+    public static Response readResponse(String message, Request request) {
+        Response result = new Response(request);
+        int eol = message.indexOf('\n');
+        String statusLine = ((eol == -1) ? message : message.substring(0, eol))
+                .trim();
+        String[] tokens = statusLine.split(" ", 3);
+
+        if ((tokens.length > 1) && tokens[0].startsWith("HTTP/")) {
+            int code = Integer.parseInt(tokens[1]);
+            result.setStatus((tokens.length > 2) ? new Status(Status
+                    .valueOf(code), tokens[2]) : Status.valueOf(code));
+        } else {
+            result.setStatus(Status.CONNECTOR_ERROR_INTERNAL,
+                    "Invalid batch response part: " + statusLine);
+        }
+
+        Series<Header> headers = new Series<Header>(Header.class);
+        String rest = (eol == -1) ? "" : message.substring(eol + 1);
+        int bodyIndex = readHeaders(rest, headers);
+        result.getAttributes().put(HeaderConstants.ATTRIBUTE_HEADERS, headers);
+
+        String body = rest.substring(bodyIndex);
+        if (body.length() > 0) {
+            byte[] bytes = getBytes(body);
+            String length = getHeader(headers,
+                    HeaderConstants.HEADER_CONTENT_LENGTH);
+
+            if (length != null) {
+                try {
+                    int size = Integer.parseInt(length);
+
+                    if (size < bytes.length) {
+                        byte[] trimmed = new byte[size];
+                        System.arraycopy(bytes, 0, trimmed, 0, size);
+                        bytes = trimmed;
+                    }
+                } catch (NumberFormatException e) {
+                    // Keep the whole body
+                }
+            }
+
+            String type = getHeader(headers,
+                    HeaderConstants.HEADER_CONTENT_TYPE);
+            Representation entity = new ByteArrayRepresentation(bytes);
+
+            if (type != null) {
+                ContentType contentType = new ContentType(type);
+                entity.setMediaType(contentType.getMediaType());
+                entity.setCharacterSet(contentType.getCharacterSet());
+            }
+
+            String tag = getHeader(headers, HeaderConstants.HEADER_ETAG);
+            if (tag != null) {
+                entity.setTag(Tag.parse(tag));
+            }
+
+            result.setEntity(entity);
+        }
+
+        return result;
+    }
+
+    /**
+     * Decodes a message as ISO-8859-1 so that each character matches exactly
+     * one byte of the original message.
+     * 
+     * @param bytes
+     *            The message bytes.
+     * @return The decoded message.
+     */
+    public static String toString(byte[] bytes) {
+        StringBuilder result = new StringBuilder(bytes.length);
+
+        for (byte b : bytes) {
+            result.append((char) (b & 0xff));
+        }
+
+        return result.toString();
+    }
+
+    /**
+     * Writes the headers of a part embedding a change set.
+     * 
+     * @param sb
+     *            The target buffer.
+     * @param boundary
+     *            The boundary of the enclosing multipart message.
+     * @param changeSetBoundary
+     *            The boundary of the change set.
+     */
+    public static void writeChangeSetHeaders(StringBuilder sb,
+            String boundary, String changeSetBoundary) {
+        sb.append("--").append(boundary).append(CRLF);
+        sb.append(HeaderConstants.HEADER_CONTENT_TYPE)
+                .append(": multipart/mixed; boundary=")
+                .append(changeSetBoundary).append(CRLF);
+        sb.append(CRLF);
+    }
+
+    /**
+     * Writes the close delimiter of a multipart message.
+     * 
+     * @param sb
+     *            The target buffer.
+     * @param boundary
+     *            The boundary of the multipart message.
+     */
+    public static void writeClose(StringBuilder sb, String boundary) {
+        sb.append("--").append(boundary).append("--").append(CRLF);
+    }
+
+    /**
+     * Writes the headers of a part embedding an HTTP request.
+     * 
+     * @param sb
+     *            The target buffer.
+     * @param boundary
+     *            The boundary of the enclosing multipart message.
+     */
+    public static void writePartHeaders(StringBuilder sb, String boundary) {
+        sb.append("--").append(boundary).append(CRLF);
+        sb.append(HeaderConstants.HEADER_CONTENT_TYPE)
+                .append(": application/http").append(CRLF);
+        sb.append("Content-Transfer-Encoding: binary").append(CRLF);
+        sb.append(CRLF);
+    }
+
+    /**
+     * Writes an HTTP request embedded in a part of type "application/http".
+     * 
+     * @param sb
+     *            The target buffer.
+     * @param request
+     *            The request to write.
+     * @throws IOException
+     */
+    public static void writeRequest(StringBuilder sb, Request request)
+            throws IOException {
+        sb.append(request.getMethod().getName()).append(' ');
+        sb.append(request.getResourceRef().toString()).append(" HTTP/1.1")
+                .append(CRLF);
+
+        if (!request.getConditions().getMatch().isEmpty()) {
+            sb.append(HeaderConstants.HEADER_IF_MATCH).append(": ")
+                    .append(request.getConditions().getMatch().get(0).format())
+                    .append(CRLF);
+        }
+
+        Representation entity = request.getEntity();
+        if (entity != null) {
+            // The whole batch is encoded in UTF-8
+            String text = entity.getText();
+            entity.setCharacterSet(CharacterSet.UTF_8);
+            sb.append(HeaderConstants.HEADER_CONTENT_TYPE).append(": ")
+                    .append(ContentType.writeHeader(entity)).append(CRLF);
+            sb.append(HeaderConstants.HEADER_CONTENT_LENGTH).append(": ")
+                    .append(text.getBytes(CharacterSet.UTF_8.getName()).length)
+                    .append(CRLF);
+            sb.append(CRLF);
+            sb.append(text);
+        } else {
+            sb.append(CRLF);
+        }
+
+        sb.append(CRLF);
+    }
+
+    /**
+     * Private constructor to ensure that the class acts as a true utility
+     * class i.e. it isn't instantiable and extensible.
+     */
+    private BatchUtils() {
+    }
+
+}
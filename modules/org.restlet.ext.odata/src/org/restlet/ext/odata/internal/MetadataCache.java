@@ -0,0 +1,385 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.ext.odata.internal;
+
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import org.restlet.data.ChallengeResponse;
+import org.restlet.data.ChallengeScheme;
+import org.restlet.data.Reference;
+import org.restlet.data.Tag;
+import org.restlet.engine.util.SystemUtils;
+import org.restlet.ext.odata.internal.edm.Metadata;
+
+/**
+ * Bounded cache of parsed metadata documents, indexed by service root URI and
+ * by the credentials used to retrieve them, so that a document is never
+ * shared between distinct identities. A cache is only shared by the
+ * {@link org.restlet.ext.odata.Service} instances it has been explicitly set
+ * on. Each cached version keeps the validators returned with the "$metadata"
+ * document (entity tag and modification date), so that an expired version
+ * can be revalidated with a conditional request instead of being downloaded
+ * and parsed again.
+ * 
+ * @author Thierry Boileau
+ */
+public class MetadataCache {
+
+    /**
+     * Key of a cached version, made of the service root URI and of the
+     * identity of the credentials.
+     */
+    private static class Key {
+
+        /** The identifier of the credentials. */
+        private final String identifier;
+
+        /** The raw value of the credentials. */
+        private final String rawValue;
+
+        /** The authentication scheme of the credentials. */
+        private final ChallengeScheme scheme;
+
+        /** The secret of the credentials. */
+        private final char[] secret;
+
+        /** The service root URI. */
+        private final String uri;
+
+        /**
+         * Constructor.
+         * 
+         * @param serviceRef
+         *            The service root URI.
+         * @param credentials
+         *            The credentials used to retrieve the metadata or null.
+         */
+        public Key(Reference serviceRef, ChallengeResponse credentials) {
+            String uri = serviceRef.toString(false, false);
+
+            if (uri.endsWith("/")) {
+                uri = uri.substring(0, uri.length() - 1);
+            }
+
+            this.uri = uri;
+
+            if (credentials != null) {
+                this.scheme = credentials.getScheme();
+                this.identifier = credentials.getIdentifier();
+                this.rawValue = credentials.getRawValue();
+                this.secret = (credentials.getSecret() == null) ? null
+                        : credentials.getSecret().clone();
+            } else {
+                this.scheme = null;
+                this.identifier = null;
+                this.rawValue = null;
+                this.secret = null;
+            }
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            boolean result = (obj == this);
+
+            if (!result && (obj instanceof Key)) {
+                Key that = (Key) obj;
+                result = this.uri.equals(that.uri)
+                        && SystemUtils.equals(this.scheme, that.scheme)
+                        && SystemUtils.equals(this.identifier, that.identifier)
+                        && SystemUtils.equals(this.rawValue, that.rawValue)
+                        && Arrays.equals(this.secret, that.secret);
+            }
+
+            return result;
+        }
+
+        @Override
+        public int hashCode() {
+            // The secret is discarded, as for challenge responses
+            return SystemUtils.hashCode(this.uri, this.scheme,
+                    this.identifier, this.rawValue);
+        }
+    }
+
+    /**
+     * A version of a cached metadata document.
+     */
+    public static class Version {
+
+        /** The time after which the version must be revalidated. */
+        private volatile long expirationTime;
+
+        /** The parsed metadata. */
+        private final Metadata metadata;
+
+        /** The modification date of the metadata document. */
+        private final Date modificationDate;
+
+        /** The entity tag of the metadata document. */
+        private final Tag tag;
+
+        /**
+         * Constructor.
+         * 
+         * @param metadata
+         *            The parsed metadata.
+         * @param tag
+         *            The entity tag of the metadata document.
+         * @param modificationDate
+         *            The modification date of the metadata document.
+         * @param expirationTime
+         *            The time after which the version must be revalidated.
+         */
+        public Version(Metadata metadata, Tag tag, Date modificationDate,
+                long expirationTime) {
+            this.metadata = metadata;
+            this.tag = tag;
+            this.modificationDate = modificationDate;
+            this.expirationTime = expirationTime;
+        }
+
+        /**
+         * Returns the parsed metadata.
+         * 
+         * @return The parsed metadata.
+         */
+        public Metadata getMetadata() {
+            return metadata;
+        }
+
+        /**
+         * Returns the modification date of the metadata document.
+         * 
+         * @return The modification date of the metadata document.
+         */
+        public Date getModificationDate() {
+            return modificationDate;
+        }
+
+        /**
+         * Returns the entity tag of the metadata document.
+         * 
+         * @return The entity tag of the metadata document.
+         */
+        public Tag getTag() {
+            return tag;
+        }
+
+        /**
+         * Indicates if the version has validators allowing a conditional
+         * revalidation.
+         * 
+         * @return True if the version has validators.
+         */
+        public boolean hasValidators() {
+            return (this.tag != null) || (this.modificationDate != null);
+        }
+
+        /**
+         * Indicates if the version must be revalidated.
+         * 
+         * @return True if the version must be revalidated.
+         */
+        public boolean isExpired() {
+            return System.currentTimeMillis() >= this.expirationTime;
+        }
+
+        /**
+         * Sets the time after which the version must be revalidated.
+         * 
+         * @param expirationTime
+         *            The time after which the version must be revalidated.
+         */
+        public void setExpirationTime(long expirationTime) {
+            this.expirationTime = expirationTime;
+        }
+    }
+
+    /** The default time during which a version is fresh, in milliseconds. */
+    public static final long DEFAULT_MAX_AGE = 300000L;
+
+    /** The default maximum number of cached versions. */
+    public static final int DEFAULT_MAX_SIZE = 16;
+
+    /** The time during which a version is fresh, in milliseconds. */
+    private volatile long maxAge;
+
+    /** The maximum number of cached versions. */
+    private volatile int maxSize;
+
+    /** The cached versions, least recently used first. */
+    private final Map<Key, Version> versions;
+
+    /**
+     * Constructor.
+     */
+    public MetadataCache() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param maxSize
+     *            The maximum number of cached versions.
+     */
+    public MetadataCache(int maxSize) {
+        this.maxAge = DEFAULT_MAX_AGE;
+        this.maxSize = maxSize;
+        this.versions = new LinkedHashMap<Key, Version>(16, 0.75f, true);
+    }
+
+    /**
+     * Removes all the cached versions.
+     */
+    public synchronized void clear() {
+        this.versions.clear();
+    }
+
+    /**
+     * Returns the cached version for the given service and credentials, or
+     * null.
+     * 
+     * @param serviceRef
+     *            The service root URI.
+     * @param credentials
+     *            The credentials used to retrieve the metadata or null.
+     * @return The cached version or null.
+     */
+    public synchronized Version get(Reference serviceRef,
+            ChallengeResponse credentials) {
+        return this.versions.get(new Key(serviceRef, credentials));
+    }
+
+    /**
+     * Returns the expiration time of a version validated now.
+     * 
+     * @return The expiration time of a version validated now.
+     */
+    public long getExpirationTime() {
+        return System.currentTimeMillis() + getMaxAge();
+    }
+
+    /**
+     * Returns the time during which a version is fresh, in milliseconds.
+     * 
+     * @return The time during which a version is fresh, in milliseconds.
+     */
+    public long getMaxAge() {
+        return maxAge;
+    }
+
+    /**
+     * Returns the maximum number of cached versions. The least recently used
+     * versions are evicted first.
+     * 
+     * @return The maximum number of cached versions.
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Caches a new version for the given service and credentials.
+     * 
+     * @param serviceRef
+     *            The service root URI.
+     * @param credentials
+     *            The credentials used to retrieve the metadata or null.
+     * @param version
+     *            The version to cache.
+     */
+    public synchronized void put(Reference serviceRef,
+            ChallengeResponse credentials, Version version) {
+        this.versions.put(new Key(serviceRef, credentials), version);
+
+        // Evict the least recently used versions
+        Iterator<Key> keys = this.versions.keySet().iterator();
+
+        while ((this.versions.size() > getMaxSize()) && keys.hasNext()) {
+            keys.next();
+            keys.remove();
+        }
+    }
+
+    /**
+     * Removes the cached version for the given service and credentials.
+     * 
+     * @param serviceRef
+     *            The service root URI.
+     * @param credentials
+     *            The credentials used to retrieve the metadata or null.
+     */
+    public synchronized void remove(Reference serviceRef,
+            ChallengeResponse credentials) {
+        this.versions.remove(new Key(serviceRef, credentials));
+    }
+
+    /**
+     * Sets the time during which a version is fresh, in milliseconds. Expired
+     * versions are revalidated with a conditional request.
+     * 
+     * @param maxAge
+     *            The time during which a version is fresh, in milliseconds.
+     */
+    public void setMaxAge(long maxAge) {
+        this.maxAge = maxAge;
+    }
+
+    /**
+     * Sets the maximum number of cached versions. The least recently used
+     * versions are evicted first.
+     * 
+     * @param maxSize
+     *            The maximum number of cached versions.
+     */
+    public void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /**
+     * Returns the number of cached versions.
+     * 
+     * @return The number of cached versions.
+     */
+    public synchronized int size() {
+        return this.versions.size();
+    }
+
+}
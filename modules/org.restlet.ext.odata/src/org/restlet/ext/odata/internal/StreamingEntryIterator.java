@@ -0,0 +1,516 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.ext.odata.internal;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.restlet.Context;
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.data.MediaType;
+import org.restlet.data.Reference;
+import org.restlet.ext.atom.Entry;
+import org.restlet.ext.atom.Feed;
+import org.restlet.ext.atom.Link;
+import org.restlet.ext.atom.Relation;
+import org.restlet.ext.odata.Service;
+import org.restlet.ext.odata.internal.edm.EntityType;
+import org.restlet.ext.odata.internal.edm.Metadata;
+import org.restlet.representation.Representation;
+import org.restlet.resource.ClientResource;
+import org.restlet.resource.ResourceException;
+
+/**
+ * Iterator that streams the entities of an entity set as they are parsed and
+ * that transparently supports server-side paging. The pages are retrieved and
+ * parsed by a background producer which can fetch a configurable number of
+ * pages ahead of the one being consumed. The producer runs on the executor
+ * service of the current context, or on a daemon thread when there is no
+ * such context.<br>
+ * <br>
+ * At most {@link #BUFFER_SIZE} parsed entities are buffered, so the producer
+ * blocks until the consumer catches up. The iteration is closed once it is
+ * over. Call {@link #close()} if it is abandoned before its end, in order to
+ * stop the producer and release the current response. Otherwise, the producer
+ * gives up after waiting for the consumer during the maximum idle time, and
+ * the next call to {@link #hasNext()} throws an exception.<br>
+ * <br>
+ * The latest request and response of the service are updated by the consumer
+ * thread, when it reaches the end of each page.
+ * 
+ * @author Thierry Boileau
+ * @param <T>
+ *            The type of the parsed entities.
+ */
+public class StreamingEntryIterator<T> implements Iterator<T>, Closeable,
+        Runnable {
+
+    /**
+     * Marks the end of a page, with the call that retrieved it.
+     */
+    private static class PageEnd {
+
+        /** The request that retrieved the page. */
+        private final Request request;
+
+        /** The response that retrieved the page. */
+        private final Response response;
+
+        /**
+         * Constructor.
+         * 
+         * @param request
+         *            The request that retrieved the page.
+         * @param response
+         *            The response that retrieved the page.
+         */
+        public PageEnd(Request request, Response response) {
+            this.request = request;
+            this.response = response;
+        }
+    }
+
+    /**
+     * Feed handler that hands each entity to the consumer as soon as it is
+     * parsed.
+     */
+    private class PageHandler extends FeedContentHandler<T> {
+
+        /** The feed being parsed. */
+        private volatile Feed feed;
+
+        /**
+         * Constructor.
+         */
+        public PageHandler() {
+            super(entityClass, entityType, metadata, logger);
+        }
+
+        @Override
+        protected void addEntity(T entity) {
+            put(entity);
+        }
+
+        @Override
+        public void endEntry(Entry entry) {
+            super.endEntry(entry);
+
+            // Don't keep the parsed entries in the feed
+            if (this.feed != null) {
+                List<Entry> entries = this.feed.getEntries();
+                int last = entries.size() - 1;
+
+                if ((last >= 0) && (entries.get(last) == entry)) {
+                    entries.remove(last);
+                }
+            }
+        }
+
+        @Override
+        public void startFeed(Feed feed) {
+            super.startFeed(feed);
+            this.feed = feed;
+        }
+    }
+
+    /** The maximum number of parsed entities waiting to be consumed. */
+    public static final int BUFFER_SIZE = 256;
+
+    /** The default maximum time the producer waits for the consumer. */
+    public static final long DEFAULT_MAX_IDLE_TIME = 60000;
+
+    /** Marks the end of the iteration. */
+    private static final Object END = new Object();
+
+    /** The polling period when waiting for the consumer, in milliseconds. */
+    private static final long POLL_PERIOD = 100;
+
+    /** Indicates if the producer gave up waiting for the consumer. */
+    private volatile boolean aborted;
+
+    /** Indicates if the iteration was closed. */
+    private volatile boolean closed;
+
+    /** Indicates if the iteration is over. */
+    private volatile boolean done;
+
+    /** The class of the listed objects. */
+    private final Class<?> entityClass;
+
+    /** The entity type of the listed objects. */
+    private final EntityType entityType;
+
+    /** The error that stopped the producer. */
+    private volatile Throwable error;
+
+    /** The reference to the first page. */
+    private final Reference firstPage;
+
+    /** The logger. */
+    private final Logger logger;
+
+    /** The maximum time the producer waits for the consumer, in ms. */
+    private volatile long maxIdleTime;
+
+    /** The metadata of the OData service. */
+    private final Metadata metadata;
+
+    /** The next entity to return. */
+    private volatile Object next;
+
+    /** The permits to fetch pages. */
+    private final Semaphore pages;
+
+    /** The entities parsed but not consumed yet, and the markers. */
+    private final BlockingQueue<Object> queue;
+
+    /** The underlying service. */
+    private final Service service;
+
+    /**
+     * Constructor.
+     * 
+     * @param service
+     *            The underlying service.
+     * @param firstPage
+     *            The reference to the first page.
+     * @param entityClass
+     *            The class of the listed objects.
+     * @param entityType
+     *            The entity type of the listed objects.
+     * @param metadata
+     *            The metadata of the OData service.
+     * @param logger
+     *            The logger.
+     * @param prefetchDepth
+     *            The number of pages that can be fetched ahead of the page
+     *            being consumed.
+     */
+    public StreamingEntryIterator(Service service, Reference firstPage,
+            Class<?> entityClass, EntityType entityType, Metadata metadata,
+            Logger logger, int prefetchDepth) {
+        this.service = service;
+        this.firstPage = firstPage;
+        this.entityClass = entityClass;
+        this.entityType = entityType;
+        this.metadata = metadata;
+        this.logger = logger;
+        this.maxIdleTime = DEFAULT_MAX_IDLE_TIME;
+        this.pages = new Semaphore(1 + Math.max(0, prefetchDepth));
+        this.queue = new ArrayBlockingQueue<Object>(BUFFER_SIZE);
+    }
+
+    /**
+     * Waits for the permit to fetch a new page.
+     * 
+     * @throws InterruptedException
+     * @throws CancellationException
+     *             If the iteration was closed or the consumer idle for too
+     *             long.
+     */
+    private void acquirePage() throws InterruptedException {
+        boolean acquired = false;
+        long start = System.currentTimeMillis();
+
+        while (!acquired && isWaiting(start)) {
+            acquired = this.pages
+                    .tryAcquire(POLL_PERIOD, TimeUnit.MILLISECONDS);
+        }
+
+        if (!acquired) {
+            throw new CancellationException("Iteration closed");
+        }
+    }
+
+    /**
+     * Stops the iteration and the background producer.
+     */
+    public void close() {
+        this.closed = true;
+        this.done = true;
+        this.next = null;
+        this.queue.clear();
+    }
+
+    /**
+     * Fetches and parses a page.
+     * 
+     * @param page
+     *            The reference of the page.
+     * @return The reference to the next page or null.
+     * @throws Exception
+     */
+    private Reference fetch(Reference page) throws Exception {
+        Reference result = null;
+        ClientResource resource = this.service.createResource(page);
+        Representation representation = resource
+                .get(MediaType.APPLICATION_ATOM);
+
+        if (representation != null) {
+            try {
+                Feed feed = new Feed(representation, new PageHandler());
+
+                for (Link link : feed.getLinks()) {
+                    if (Relation.NEXT.equals(link.getRel())) {
+                        result = link.getHref();
+
+                        if (result.isRelative()) {
+                            result = new Reference(page, result)
+                                    .getTargetRef();
+                        }
+
+                        break;
+                    }
+                }
+            } finally {
+                representation.release();
+            }
+        }
+
+        put(new PageEnd(resource.getRequest(), resource.getResponse()));
+        return result;
+    }
+
+    /**
+     * Returns the error that stopped the iteration, if any.
+     * 
+     * @return The error that stopped the iteration or null.
+     */
+    public Throwable getError() {
+        return error;
+    }
+
+    /**
+     * Returns the maximum time the producer waits for the consumer, in
+     * milliseconds.
+     * 
+     * @return The maximum time the producer waits for the consumer.
+     */
+    public long getMaxIdleTime() {
+        return maxIdleTime;
+    }
+
+    public boolean hasNext() {
+        while ((this.next == null) && !this.done) {
+            Object item = take();
+
+            if (item instanceof PageEnd) {
+                PageEnd pageEnd = (PageEnd) item;
+                this.service.setLatestRequest(pageEnd.request);
+                this.service.setLatestResponse(pageEnd.response);
+
+                // Allow the producer to fetch another page
+                this.pages.release();
+            } else if (item == END) {
+                close();
+            } else {
+                this.next = item;
+            }
+        }
+
+        if ((this.next == null) && (this.error != null)) {
+            Throwable e = this.error;
+            this.error = null;
+
+            if (e instanceof ResourceException) {
+                throw (ResourceException) e;
+            }
+
+            throw new ResourceException(e);
+        }
+
+        return this.next != null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public T next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+
+        T result = (T) this.next;
+        this.next = null;
+        return result;
+    }
+
+    /**
+     * Indicates if the producer can keep waiting for the consumer.
+     * 
+     * @param start
+     *            The time the producer started to wait.
+     * @return True if the producer can keep waiting.
+     */
+    private boolean isWaiting(long start) {
+        if (!this.closed
+                && (System.currentTimeMillis() - start > getMaxIdleTime())) {
+            this.error = new CancellationException(
+                    "Iteration abandoned by the consumer");
+            this.aborted = true;
+        }
+
+        return !this.closed && !this.aborted;
+    }
+
+    /**
+     * Hands an item to the consumer, waiting for free space if needed.
+     * 
+     * @param item
+     *            The item to add.
+     * @throws CancellationException
+     *             If the iteration was closed or the consumer idle for too
+     *             long.
+     */
+    private void put(Object item) {
+        boolean added = false;
+        long start = System.currentTimeMillis();
+
+        try {
+            while (!added && isWaiting(start)) {
+                added = this.queue.offer(item, POLL_PERIOD,
+                        TimeUnit.MILLISECONDS);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        if (!added) {
+            throw new CancellationException("Iteration closed");
+        }
+    }
+
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    /**
+     * Fetches and parses the pages, handing the entities to the consumer.
+     */
+    public void run() {
+        try {
+            Reference page = this.firstPage;
+
+            while (page != null) {
+                acquirePage();
+                page = fetch(page);
+            }
+
+            put(END);
+        } catch (CancellationException e) {
+            if (this.aborted) {
+                this.logger.fine("Streaming of " + this.firstPage
+                        + " aborted after waiting for the consumer");
+            }
+        } catch (Throwable t) {
+            if (!this.closed) {
+                this.logger.log(Level.WARNING, "Can't parse the content of "
+                        + this.firstPage, t);
+                this.error = t;
+
+                try {
+                    put(END);
+                } catch (CancellationException e) {
+                    // The iteration was closed
+                }
+            }
+        }
+    }
+
+    /**
+     * Sets the maximum time the producer waits for the consumer, in
+     * milliseconds.
+     * 
+     * @param maxIdleTime
+     *            The maximum time the producer waits for the consumer.
+     */
+    public void setMaxIdleTime(long maxIdleTime) {
+        this.maxIdleTime = maxIdleTime;
+    }
+
+    /**
+     * Starts the background producer on the executor service of the current
+     * context, or on a daemon thread when there is no such context.
+     */
+    public void start() {
+        Context context = Context.getCurrent();
+        Executor executor = (context == null) ? null : context
+                .getExecutorService();
+
+        if (executor != null) {
+            executor.execute(this);
+        } else {
+            Thread thread = new Thread(this, "Restlet-OData-"
+                    + this.firstPage.getPath());
+            thread.setDaemon(true);
+            thread.start();
+        }
+    }
+
+    /**
+     * Waits for the next item produced, or the end when the producer gave up
+     * or the iteration was closed.
+     * 
+     * @return The next item produced.
+     */
+    private Object take() {
+        Object result = null;
+
+        try {
+            while ((result == null) && !this.closed) {
+                result = this.queue.poll(POLL_PERIOD, TimeUnit.MILLISECONDS);
+
+                if ((result == null) && this.aborted) {
+                    result = END;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            close();
+        }
+
+        return (result == null) ? END : result;
+    }
+
+}
@@ -33,7 +33,17 @@
 
 package org.restlet.ext.rdf;
 
-import java.util.concurrent.CopyOnWriteArraySet;
+import java.io.Serializable;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.restlet.data.MediaType;
 import org.restlet.data.Reference;
@@ -41,18 +51,186 @@ import org.restlet.representation.Representation;
 
 /**
  * Graph composed of links. This also called a set of RDF statements or a RDF
- * model.
+ * model.<br>
+ * <br>
+ * Links are indexed by source, type and target (SPO, POS and OSP indexes) so
+ * that adding a link, checking its presence or matching a pattern of links
+ * doesn't require scanning the whole graph. Two links with equal source, type
+ * and target are considered as duplicates. Equal references and literals are
+ * shared between the links of the graph, therefore links shouldn't be modified
+ * once added. Like before, iterators work on a snapshot of the graph and never
+ * throw {@link java.util.ConcurrentModificationException}.<br>
+ * <br>
+ * Note that large RDF representations can also be processed link by link,
+ * without building a graph, by giving a custom {@link GraphHandler} to
+ * {@link RdfRepresentation#parse(GraphHandler)}.
  * 
  * @author Jerome Louvel
  */
-public class Graph extends CopyOnWriteArraySet<Link> {
+public class Graph extends AbstractSet<Link> implements Serializable {
 
     /** The serialization unique identifier. */
     private static final long serialVersionUID = 1L;
 
+    /**
+     * Adds the links of an index entry matching the given terms to a list.
+     * 
+     * @param index
+     *            The index to look up.
+     * @param first
+     *            The first term, not null.
+     * @param second
+     *            The second term or null for any.
+     * @param third
+     *            The third term or null for any.
+     * @param links
+     *            The list of links to complete.
+     */
+    private static void collect(
+            Map<Object, Map<Object, Map<Object, Link>>> index, Object first,
+            Object second, Object third, List<Link> links) {
+        Map<Object, Map<Object, Link>> seconds = index.get(first);
+
+        if (seconds != null) {
+            if (second != null) {
+                collect(seconds.get(second), third, links);
+            } else {
+                for (Map<Object, Link> thirds : seconds.values()) {
+                    collect(thirds, third, links);
+                }
+            }
+        }
+    }
+
+    /**
+     * Adds the links of an index entry matching the given term to a list.
+     * 
+     * @param thirds
+     *            The links by third term.
+     * @param third
+     *            The third term or null for any.
+     * @param links
+     *            The list of links to complete.
+     */
+    private static void collect(Map<Object, Link> thirds, Object third,
+            List<Link> links) {
+        if (thirds != null) {
+            if (third != null) {
+                Link link = thirds.get(third);
+
+                if (link != null) {
+                    links.add(link);
+                }
+            } else {
+                links.addAll(thirds.values());
+            }
+        }
+    }
+
+    /**
+     * Returns the key of a literal in the map of shared terms.
+     * 
+     * @param literal
+     *            The literal.
+     * @return The key of the literal.
+     */
+    private static String getLiteralKey(Literal literal) {
+        StringBuilder sb = new StringBuilder();
+        sb.append(literal.getValue()).append('\u0000');
+        sb.append(literal.getDatatypeRef()).append('\u0000');
+        sb.append(literal.getLanguage());
+        return sb.toString();
+    }
+
+    /**
+     * Indexes a link.
+     * 
+     * @param index
+     *            The index to update.
+     * @param first
+     *            The first term.
+     * @param second
+     *            The second term.
+     * @param third
+     *            The third term.
+     * @param link
+     *            The link to index.
+     */
+    private static void index(
+            Map<Object, Map<Object, Map<Object, Link>>> index, Object first,
+            Object second, Object third, Link link) {
+        Map<Object, Map<Object, Link>> seconds = index.get(first);
+
+        if (seconds == null) {
+            seconds = new IdentityHashMap<Object, Map<Object, Link>>(4);
+            index.put(first, seconds);
+        }
+
+        Map<Object, Link> thirds = seconds.get(second);
+
+        if (thirds == null) {
+            thirds = new IdentityHashMap<Object, Link>(2);
+            seconds.put(second, thirds);
+        }
+
+        thirds.put(third, link);
+    }
+
+    /**
+     * Removes a link from an index.
+     * 
+     * @param index
+     *            The index to update.
+     * @param first
+     *            The first term.
+     * @param second
+     *            The second term.
+     * @param third
+     *            The third term.
+     */
+    private static void unindex(
+            Map<Object, Map<Object, Map<Object, Link>>> index, Object first,
+            Object second, Object third) {
+        Map<Object, Map<Object, Link>> seconds = index.get(first);
+
+        if (seconds != null) {
+            Map<Object, Link> thirds = seconds.get(second);
+
+            if (thirds != null) {
+                thirds.remove(third);
+
+                if (thirds.isEmpty()) {
+                    seconds.remove(second);
+
+                    if (seconds.isEmpty()) {
+                        index.remove(first);
+                    }
+                }
+            }
+        }
+    }
+
     /** The default link that is used to complete new links. */
     private Link defaultLink;
 
+    /** The links in insertion order. */
+    private final Set<Link> links;
+
+    /** The links by target, source and type. */
+    private final Map<Object, Map<Object, Map<Object, Link>>> osp;
+
+    /** The links by type, target and source. */
+    private final Map<Object, Map<Object, Map<Object, Link>>> pos;
+
+    /** The snapshot of the links, reset each time the graph is modified. */
+    private transient volatile List<Link> snapshot;
+
+    /** The links by source, type and target. */
+    private final Map<Object, Map<Object, Map<Object, Link>>> spo;
+
+    /** The shared references and literals, by reference or literal key. */
+    private final Map<Object, Object> terms;
+
     /**
      * Default constructor.
      */
@@ -68,6 +246,37 @@ public class Graph extends CopyOnWriteArraySet<Link> {
      */
     public Graph(Link defaultLink) {
         this.defaultLink = defaultLink;
+        this.links = new LinkedHashSet<Link>();
+        this.osp = new IdentityHashMap<Object, Map<Object, Map<Object, Link>>>();
+        this.pos = new IdentityHashMap<Object, Map<Object, Map<Object, Link>>>();
+        this.spo = new IdentityHashMap<Object, Map<Object, Map<Object, Link>>>();
+        this.terms = new HashMap<Object, Object>();
+    }
+
+    /**
+     * Adds a link unless a link with the same source, type and target is
+     * already in the graph.
+     * 
+     * @param link
+     *            The link to add.
+     * @return True if the link was added.
+     */
+    @Override
+    public synchronized boolean add(Link link) {
+        Object source = intern(link.getSource());
+        Object typeRef = intern(link.getTypeRef());
+        Object target = intern(link.getTarget());
+        boolean result = (find(source, typeRef, target) == null);
+
+        if (result) {
+            index(this.spo, source, typeRef, target, link);
+            index(this.pos, typeRef, target, source, link);
+            index(this.osp, target, source, typeRef, link);
+            this.links.add(link);
+            this.snapshot = null;
+        }
+
+        return result;
     }
 
     /**
@@ -84,7 +293,8 @@ public class Graph extends CopyOnWriteArraySet<Link> {
      */
     public Link add(Graph sourceGraph, Reference typeRef, Literal targetLit) {
         Link result = new Link(getSourceAsGraph(sourceGraph),
-                getTypeRef(typeRef), getTargetAsLiteral(targetLit));
+                intern(getTypeRef(typeRef)),
+                intern(getTargetAsLiteral(targetLit)));
         add(result);
         return result;
     }
@@ -103,7 +313,8 @@ public class Graph extends CopyOnWriteArraySet<Link> {
      */
     public Link add(Graph sourceGraph, Reference typeRef, Reference targetRef) {
         Link result = new Link(getSourceAsGraph(sourceGraph),
-                getTypeRef(typeRef), getTargetAsReference(targetRef));
+                intern(getTypeRef(typeRef)),
+                intern(getTargetAsReference(targetRef)));
         add(result);
         return result;
     }
@@ -121,8 +332,9 @@ public class Graph extends CopyOnWriteArraySet<Link> {
      * @return The created link.
      */
     public Link add(Reference sourceRef, Reference typeRef, Literal targetLit) {
-        Link result = new Link(getSourceAsReference(sourceRef),
-                getTypeRef(typeRef), getTargetAsLiteral(targetLit));
+        Link result = new Link(intern(getSourceAsReference(sourceRef)),
+                intern(getTypeRef(typeRef)),
+                intern(getTargetAsLiteral(targetLit)));
         add(result);
         return result;
     }
@@ -140,8 +352,9 @@ public class Graph extends CopyOnWriteArraySet<Link> {
      * @return The created link.
      */
     public Link add(Reference sourceRef, Reference typeRef, Reference targetRef) {
-        Link result = new Link(getSourceAsReference(sourceRef),
-                getTypeRef(typeRef), getTargetAsReference(targetRef));
+        Link result = new Link(intern(getSourceAsReference(sourceRef)),
+                intern(getTypeRef(typeRef)),
+                intern(getTargetAsReference(targetRef)));
         add(result);
         return result;
     }
@@ -309,6 +522,55 @@ public class Graph extends CopyOnWriteArraySet<Link> {
                 new Reference(targetRef));
     }
 
+    @Override
+    public synchronized void clear() {
+        this.links.clear();
+        this.osp.clear();
+        this.pos.clear();
+        this.spo.clear();
+        this.terms.clear();
+        this.snapshot = null;
+    }
+
+    @Override
+    public synchronized boolean contains(Object object) {
+        boolean result = false;
+
+        if (object instanceof Link) {
+            Link link = (Link) object;
+            result = (find(getTerm(link.getSource()),
+                    getTerm(link.getTypeRef()), getTerm(link.getTarget())) != null);
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the link of the graph with the given shared terms.
+     * 
+     * @param source
+     *            The shared source.
+     * @param typeRef
+     *            The shared type reference.
+     * @param target
+     *            The shared target.
+     * @return The link found or null.
+     */
+    private Link find(Object source, Object typeRef, Object target) {
+        Link result = null;
+        Map<Object, Map<Object, Link>> types = this.spo.get(source);
+
+        if (types != null) {
+            Map<Object, Link> targets = types.get(typeRef);
+
+            if (targets != null) {
+                result = targets.get(target);
+            }
+        }
+
+        return result;
+    }
+
     /**
      * Returns the default link that is used to complete new links.
      * 
@@ -426,6 +688,27 @@ public class Graph extends CopyOnWriteArraySet<Link> {
         return result;
     }
 
+    /**
+     * Returns the shared instance of a reference or literal, or the given term
+     * for other kinds of terms.
+     * 
+     * @param term
+     *            The term to look up.
+     * @return The shared term or null if the reference or literal isn't used
+     *         by the graph.
+     */
+    private Object getTerm(Object term) {
+        Object result = term;
+
+        if (term instanceof Reference) {
+            result = this.terms.get(term);
+        } else if (term instanceof Literal) {
+            result = this.terms.get(getLiteralKey((Literal) term));
+        }
+
+        return result;
+    }
+
     /**
      * Returns the type reference, either the one given in the typeRef parameter
      * or if it is null, the type reference of the default link.
@@ -444,6 +727,174 @@ public class Graph extends CopyOnWriteArraySet<Link> {
         return result;
     }
 
+    /**
+     * Returns the shared instance of a reference or literal, registering the
+     * given one if needed. Other kinds of terms are returned as is.
+     * 
+     * @param term
+     *            The term to share.
+     * @return The shared term.
+     */
+    @SuppressWarnings("unchecked")
+    private synchronized <T> T intern(T term) {
+        T result = term;
+
+        if ((term instanceof Reference) || (term instanceof Literal)) {
+            Object key = (term instanceof Literal) ? getLiteralKey((Literal) term)
+                    : term;
+            result = (T) this.terms.get(key);
+
+            if (result == null) {
+                this.terms.put(key, term);
+                result = term;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns an iterator on a snapshot of the links. The snapshot is shared
+     * by the iterators until the graph is modified.
+     * 
+     * @return An iterator on a snapshot of the links.
+     */
+    @Override
+    public Iterator<Link> iterator() {
+        List<Link> links = this.snapshot;
+
+        if (links == null) {
+            synchronized (this) {
+                links = this.snapshot;
+
+                if (links == null) {
+                    links = Collections.unmodifiableList(new ArrayList<Link>(
+                            this.links));
+                    this.snapshot = links;
+                }
+            }
+        }
+
+        final Iterator<Link> iterator = links.iterator();
+
+        return new Iterator<Link>() {
+
+            /** The last link returned. */
+            private Link last;
+
+            public boolean hasNext() {
+                return iterator.hasNext();
+            }
+
+            public Link next() {
+                this.last = iterator.next();
+                return this.last;
+            }
+
+            public void remove() {
+                if (this.last == null) {
+                    throw new IllegalStateException();
+                }
+
+                Graph.this.remove(this.last);
+                this.last = null;
+            }
+        };
+    }
+
+    /**
+     * Returns the links matching a pattern. A null source, type reference or
+     * target matches any value. The most selective index is used, so that only
+     * the matching links are visited.
+     * 
+     * @param source
+     *            The source to match (reference, graph or link) or null.
+     * @param typeRef
+     *            The type reference to match or null.
+     * @param target
+     *            The target to match (reference, literal, graph or link) or
+     *            null.
+     * @return The list of matching links.
+     */
+    public synchronized List<Link> match(Object source, Reference typeRef,
+            Object target) {
+        List<Link> result = new ArrayList<Link>();
+        Object s = getTerm(source);
+        Object p = getTerm(typeRef);
+        Object o = getTerm(target);
+
+        // Unknown references or literals don't match any link
+        if (((source == null) || (s != null))
+                && ((typeRef == null) || (p != null))
+                && ((target == null) || (o != null))) {
+            if ((s != null) && ((p != null) || (o == null))) {
+                collect(this.spo, s, p, o, result);
+            } else if (s != null) {
+                collect(this.osp, o, s, null, result);
+            } else if (p != null) {
+                collect(this.pos, p, o, null, result);
+            } else if (o != null) {
+                collect(this.osp, o, null, null, result);
+            } else {
+                result.addAll(this.links);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Removes a link, or the link of the graph with the same source, type and
+     * target.
+     * 
+     * @param object
+     *            The link to remove.
+     * @return True if a link was removed.
+     */
+    @Override
+    public synchronized boolean remove(Object object) {
+        boolean result = false;
+
+        if (object instanceof Link) {
+            Link link = (Link) object;
+            Object source = getTerm(link.getSource());
+            Object typeRef = getTerm(link.getTypeRef());
+            Object target = getTerm(link.getTarget());
+            Link found = find(source, typeRef, target);
+
+            if (found != null) {
+                unindex(this.spo, source, typeRef, target);
+                unindex(this.pos, typeRef, target, source);
+                unindex(this.osp, target, source, typeRef);
+                this.links.remove(found);
+                release(source);
+                release(typeRef);
+                release(target);
+                this.snapshot = null;
+                result = true;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Releases a shared reference or literal if no link uses it anymore.
+     * 
+     * @param term
+     *            The shared term.
+     */
+    private void release(Object term) {
+        if (!this.spo.containsKey(term) && !this.pos.containsKey(term)
+                && !this.osp.containsKey(term)) {
+            if (term instanceof Reference) {
+                this.terms.remove(term);
+            } else if (term instanceof Literal) {
+                this.terms.remove(getLiteralKey((Literal) term));
+            }
+        }
+    }
+
     /**
      * Sets the default link that is used to complete new links.
      * 
@@ -454,4 +905,9 @@ public class Graph extends CopyOnWriteArraySet<Link> {
         this.defaultLink = defaultLink;
     }
 
+    @Override
+    public synchronized int size() {
+        return this.links.size();
+    }
+
 }
@@ -390,11 +390,9 @@ public class RdfClientResource extends ClientResource {
         if (links != null) {
             result = new HashSet<Literal>();
 
-            for (Link link : links) {
+            for (Link link : links.match(null, typeRef, null)) {
                 if (link.hasLiteralTarget()) {
-                    if ((typeRef == null) || typeRef.equals(link.getTypeRef())) {
-                        result.add(link.getTargetAsLiteral());
-                    }
+                    result.add(link.getTargetAsLiteral());
                 }
             }
         }
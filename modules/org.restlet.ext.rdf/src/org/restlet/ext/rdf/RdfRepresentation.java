@@ -33,6 +33,7 @@
 
 package org.restlet.ext.rdf;
 
+import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.Writer;
 import java.util.logging.Level;
@@ -40,6 +41,7 @@ import java.util.logging.Level;
 import org.restlet.Context;
 import org.restlet.data.MediaType;
 import org.restlet.data.Reference;
+import org.restlet.engine.io.IoUtils;
 import org.restlet.ext.rdf.internal.n3.RdfN3Reader;
 import org.restlet.ext.rdf.internal.n3.RdfN3Writer;
 import org.restlet.ext.rdf.internal.ntriples.RdfNTriplesReader;
@@ -120,7 +122,7 @@ public class RdfRepresentation extends WriterRepresentation {
      *         representation.
      */
     public GraphHandler createBuilder(Graph graph) {
-        return new GraphBuilder(this.graph);
+        return new GraphBuilder(graph);
     }
 
     /**
@@ -226,7 +228,8 @@ public class RdfRepresentation extends WriterRepresentation {
 
     /**
      * Parses the inner RDF representation. The given graph handler is invoked
-     * each time a link is detected.
+     * each time a link is detected, which allows large representations to be
+     * processed link by link without building a {@link Graph}.
      * 
      * @param graphHandler
      *            The graph handler.
@@ -334,7 +337,11 @@ public class RdfRepresentation extends WriterRepresentation {
 
     @Override
     public void write(Writer writer) throws IOException {
-        write(createWriter(getMediaType(), writer));
+        // The graph handlers write small chunks of characters
+        BufferedWriter bufferedWriter = new BufferedWriter(writer,
+                IoUtils.BUFFER_SIZE);
+        write(createWriter(getMediaType(), bufferedWriter));
+        bufferedWriter.flush();
     }
 
 }
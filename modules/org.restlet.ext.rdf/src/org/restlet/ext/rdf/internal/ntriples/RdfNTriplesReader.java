@@ -33,13 +33,12 @@
 
 package org.restlet.ext.rdf.internal.ntriples;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.List;
+import java.io.Reader;
+import java.util.Arrays;
 
+import org.restlet.data.Language;
 import org.restlet.data.Reference;
-import org.restlet.engine.io.IoUtils;
 import org.restlet.ext.rdf.GraphHandler;
 import org.restlet.ext.rdf.Link;
 import org.restlet.ext.rdf.Literal;
@@ -47,24 +46,44 @@ import org.restlet.ext.rdf.internal.RdfReader;
 import org.restlet.representation.Representation;
 
 /**
- * Handler of RDF content according to the N-Triples notation.
+ * Handler of RDF content according to the N-Triples notation.<br>
+ * <br>
+ * The characters are read into a sliding buffer, and statements are scanned
+ * directly from this buffer and given to the graph handler without building
+ * intermediate token objects. The buffer is only enlarged when a single token
+ * exceeds its size.
  * 
  * @author Thierry Boileau
  */
 public class RdfNTriplesReader extends RdfReader {
 
-    /** Internal buffered reader. */
-    private BufferedReader br;
+    /** Number of characters kept before the current one to allow step backs. */
+    private static final int LOOKBEHIND = 4;
 
     /** The reading buffer. */
-    private final char[] buffer;
+    private char[] buffer;
 
     /** Size of the reading buffer. */
-    private final int BUFFER_SIZE = 4096;
+    private final int BUFFER_SIZE = 8192;
+
+    /** The number of characters available in the buffer. */
+    private int count;
+
+    /** Indicates if the end of the stream was reached. */
+    private boolean endReached;
 
     /** End of reading buffer marker. */
     public final int EOF = 0;
 
+    /** The predicate of the previous statement. */
+    private Reference previousPredicate;
+
+    /** The subject of the previous statement. */
+    private Reference previousSubject;
+
+    /** Internal reader. */
+    private Reader reader;
+
     /**
      * Index that discovers the end of the current token and the beginning of
      * the futur one.
@@ -87,15 +106,13 @@ public class RdfNTriplesReader extends RdfReader {
             GraphHandler graphHandler) throws IOException {
         super(rdfRepresentation, graphHandler);
 
-        // Initialize the buffer in two parts
-        this.buffer = new char[(BUFFER_SIZE + 1) * 2];
-        // Mark the upper index of each part.
-        this.buffer[BUFFER_SIZE] = this.buffer[2 * BUFFER_SIZE + 1] = EOF;
-        this.scoutIndex = 2 * BUFFER_SIZE;
+        // The last character is reserved for the end marker
+        this.buffer = new char[BUFFER_SIZE + 1];
+        this.buffer[0] = (char) EOF;
+        this.count = 0;
+        this.scoutIndex = -1;
         this.startTokenIndex = 0;
-
-        this.br = new BufferedReader(getRdfRepresentation().getReader(),
-                IoUtils.BUFFER_SIZE);
+        this.reader = getRdfRepresentation().getReader();
     }
 
     /**
@@ -137,6 +154,46 @@ public class RdfNTriplesReader extends RdfReader {
         startTokenIndex = scoutIndex;
     }
 
+    /**
+     * Reads more characters into the buffer. The characters of the current
+     * token are moved to the start of the buffer, which is enlarged if the
+     * current token fills it.
+     * 
+     * @throws IOException
+     */
+    private void fill() throws IOException {
+        if (!this.endReached) {
+            int kept = Math.max(0,
+                    Math.min(startTokenIndex, scoutIndex - LOOKBEHIND));
+
+            if (kept > 0) {
+                System.arraycopy(buffer, kept, buffer, 0, count - kept);
+                count -= kept;
+                scoutIndex -= kept;
+                startTokenIndex -= kept;
+            }
+
+            if (count >= buffer.length - 1) {
+                buffer = Arrays.copyOf(buffer, (buffer.length - 1) * 2 + 1);
+            }
+
+            int len = this.reader.read(buffer, count, buffer.length - 1
+                    - count);
+
+            if (len == -1) {
+                this.endReached = true;
+            } else {
+                count += len;
+            }
+        }
+
+        if (scoutIndex >= count) {
+            // End of the stream reached
+            scoutIndex = count;
+            buffer[count] = (char) EOF;
+        }
+    }
+
     /**
      * Returns the current parsed character.
      * 
@@ -152,43 +209,11 @@ public class RdfNTriplesReader extends RdfReader {
      * @return The current token.
      */
     protected String getCurrentToken() {
-        StringBuilder builder = new StringBuilder();
-        if (startTokenIndex <= scoutIndex) {
-            if (scoutIndex <= BUFFER_SIZE) {
-                for (int i = startTokenIndex; i < scoutIndex; i++) {
-                    builder.append(buffer[i]);
-                }
-            } else {
-                for (int i = startTokenIndex; i < BUFFER_SIZE; i++) {
-                    builder.append(buffer[i]);
-                }
-                for (int i = BUFFER_SIZE + 1; i < scoutIndex; i++) {
-                    builder.append(buffer[i]);
-                }
-            }
-        } else {
-            if (startTokenIndex <= BUFFER_SIZE) {
-                for (int i = startTokenIndex; i < BUFFER_SIZE; i++) {
-                    builder.append(buffer[i]);
-                }
-                for (int i = BUFFER_SIZE + 1; i < (2 * BUFFER_SIZE + 1); i++) {
-                    builder.append(buffer[i]);
-                }
-                for (int i = 0; i < scoutIndex; i++) {
-                    builder.append(buffer[i]);
-                }
-            } else {
-                for (int i = startTokenIndex; i < (2 * BUFFER_SIZE + 1); i++) {
-                    builder.append(buffer[i]);
-                }
-                for (int i = 0; i < scoutIndex; i++) {
-                    builder.append(buffer[i]);
-                }
-            }
-        }
+        String result = (startTokenIndex < scoutIndex) ? new String(buffer,
+                startTokenIndex, scoutIndex - startTokenIndex) : "";
         // the current token is consumed.
         startTokenIndex = scoutIndex;
-        return builder.toString();
+        return result;
     }
 
     /**
@@ -219,18 +244,15 @@ public class RdfNTriplesReader extends RdfReader {
         sb.append(scoutIndex);
         sb.append("] near ");
 
-        if (startTokenIndex < 25) {
-            sb.append(buffer, buffer.length - 30, 28);
-            sb.append(buffer, 0, 25);
-        } else if (startTokenIndex > (buffer.length - 25)) {
-            sb.append(buffer, buffer.length - 30, 28);
-            sb.append(buffer, 0, 20);
-        } else {
-            sb.append(buffer, startTokenIndex - 25, 50);
+        int start = Math.max(0, Math.min(startTokenIndex, scoutIndex) - 25);
+        int end = Math.min(Math.min(count, buffer.length),
+                Math.max(startTokenIndex, scoutIndex) + 25);
+
+        if (start < end) {
+            sb.append(buffer, start, end - start);
         }
 
         return sb.toString();
-
     }
 
     /**
@@ -289,6 +311,8 @@ public class RdfNTriplesReader extends RdfReader {
             case '.':
                 step();
                 break;
+            case EOF:
+                break;
             default:
                 parseStatement();
                 break;
@@ -310,59 +334,192 @@ public class RdfNTriplesReader extends RdfReader {
     }
 
     /**
-     * Reads the current statement until its end, and parses it.
+     * Parses the hexadecimal code point of an escaped character.
      * 
-     * @param context
-     *            The current context.
+     * @param digits
+     *            The number of hexadecimal digits.
+     * @param builder
+     *            The builder to complete.
      * @throws IOException
      */
-    protected void parseStatement() throws IOException {
-        List<Reference> lexicalUnits = new ArrayList<Reference>();
-        String object = null;
-        do {
-            consumeWhiteSpaces();
-            switch (getChar()) {
-            case '<':
-                lexicalUnits.add(new Reference(parseUri()));
-                break;
-            case '_':
-                lexicalUnits.add(Link.createBlankRef(parseToken()));
-                break;
-            case '"':
-                int c = step();
-                discard();
-                while (!isEndOfFile(c) && (c != '"')) {
-                    c = step();
+    private void parseEscapedCodePoint(int digits, StringBuilder builder)
+            throws IOException {
+        int codePoint = 0;
+
+        for (int i = 0; i < digits; i++) {
+            int digit = Character.digit(step(), 16);
+
+            if (digit == -1) {
+                throw new IOException("Invalid escaped character. "
+                        + getParsingMessage());
+            }
+
+            codePoint = (codePoint << 4) + digit;
+        }
+
+        builder.appendCodePoint(codePoint);
+    }
+
+    /**
+     * Parses a literal, including its optional language tag or datatype. The
+     * current character is the opening quote.
+     * 
+     * @return The literal.
+     * @throws IOException
+     */
+    private Literal parseLiteral() throws IOException {
+        StringBuilder builder = null;
+        int c = step();
+        discard();
+
+        while (!isEndOfFile(c) && (c != '"')) {
+            if (c == '\\') {
+                // Unescape the value, copying the characters already scanned
+                if (builder == null) {
+                    builder = new StringBuilder();
+                }
+
+                builder.append(getCurrentToken());
+                c = step();
+
+                switch (c) {
+                case 't':
+                    builder.append('\t');
+                    break;
+                case 'n':
+                    builder.append('\n');
+                    break;
+                case 'r':
+                    builder.append('\r');
+                    break;
+                case 'u':
+                    parseEscapedCodePoint(4, builder);
+                    break;
+                case 'U':
+                    parseEscapedCodePoint(8, builder);
+                    break;
+                default:
+                    builder.append((char) c);
+                    break;
                 }
-                object = getCurrentToken();
+
                 step();
                 discard();
-                break;
-            case '.':
-                break;
-            case '#':
-                parseComment();
-                break;
-            case EOF:
-                break;
-            default:
-                throw new IOException(
-                        "This document does not seem to follow the N-Triples syntax. "
-                                + getParsingMessage());
+                c = getChar();
+            } else {
+                c = step();
             }
-        } while (!isEndOfFile(getChar()) && getChar() != '.'
-                && getChar() != '}');
-
-        // Generate the links
-        if (!lexicalUnits.isEmpty()) {
-            if (object != null) {
-                getGraphHandler().link(lexicalUnits.get(0),
-                        lexicalUnits.get(1), new Literal(object));
+        }
+
+        if (isEndOfFile(c)) {
+            throw new IOException("Unterminated literal. "
+                    + getParsingMessage());
+        }
+
+        String value = (builder == null) ? getCurrentToken() : builder.append(
+                getCurrentToken()).toString();
+        Literal result = null;
+        c = step();
+        discard();
+
+        if (c == '@') {
+            step();
+            discard();
+            result = new Literal(value, null, Language.valueOf(parseToken()));
+        } else if ((c == '^') && (step() == '^')) {
+            step();
+            discard();
+            result = new Literal(value, parseResource(null));
+        } else {
+            result = new Literal(value);
+        }
+
+        return result;
+    }
+
+    /**
+     * Parses a URI reference or a blank node reference.
+     * 
+     * @param previous
+     *            The reference parsed at the same position of the previous
+     *            statement or null. It is returned again if it has the same
+     *            value, in order to save memory.
+     * @return The reference parsed.
+     * @throws IOException
+     */
+    private Reference parseResource(Reference previous) throws IOException {
+        Reference result = null;
+
+        if (getChar() == '<') {
+            int c = step();
+            discard();
+
+            while (!isEndOfFile(c) && (c != '>')) {
+                c = step();
+            }
+
+            if (isEndOfFile(c)) {
+                throw new IOException("Unterminated URI reference. "
+                        + getParsingMessage());
+            }
+
+            if ((previous != null) && regionEquals(previous.toString())) {
+                result = previous;
             } else {
-                getGraphHandler().link(lexicalUnits.get(0),
-                        lexicalUnits.get(1), lexicalUnits.get(2));
+                result = new Reference(getCurrentToken());
+            }
+
+            step();
+            discard();
+        } else if (getChar() == '_') {
+            String token = parseToken();
+
+            if (token.startsWith("_:")) {
+                token = token.substring(2);
             }
+
+            result = Link.createBlankRef(token);
+        } else {
+            throw new IOException(
+                    "This document does not seem to follow the N-Triples syntax. "
+                            + getParsingMessage());
+        }
+
+        return result;
+    }
+
+    /**
+     * Reads the current statement until its end, and parses it.
+     * 
+     * @throws IOException
+     */
+    protected void parseStatement() throws IOException {
+        Reference subject = parseResource(this.previousSubject);
+        consumeWhiteSpaces();
+        Reference predicate = parseResource(this.previousPredicate);
+        consumeWhiteSpaces();
+
+        // Generate the link
+        if (getChar() == '"') {
+            getGraphHandler().link(subject, predicate, parseLiteral());
+        } else {
+            getGraphHandler().link(subject, predicate, parseResource(null));
+        }
+
+        this.previousSubject = subject;
+        this.previousPredicate = predicate;
+
+        consumeWhiteSpaces();
+
+        if (getChar() == '.') {
+            step();
+        } else if (!isEndOfFile(getChar())) {
+            throw new IOException(
+                    "This document does not seem to follow the N-Triples syntax. "
+                            + getParsingMessage());
         }
+
+        discard();
     }
 
     /**
@@ -381,29 +538,62 @@ public class RdfNTriplesReader extends RdfReader {
     }
 
     /**
-     * Returns the value of the current URI.
+     * Returns the value of the current URI. White spaces inside the URI are
+     * discarded.
      * 
      * @return The value of the current URI.
      * @throws IOException
      */
     protected String parseUri() throws IOException {
-        StringBuilder builder = new StringBuilder();
         // Suppose the current character is "<".
         int c = step();
+        discard();
+        boolean whiteSpaces = false;
+
         while (c != EOF && c != '>') {
-            if (!isWhiteSpace(c)) {
-                // Discard white spaces.
-                builder.append((char) c);
-            }
+            whiteSpaces |= isWhiteSpace(c);
             c = step();
         }
+
+        String result = getCurrentToken();
+
+        if (whiteSpaces) {
+            // Discard white spaces.
+            StringBuilder builder = new StringBuilder(result.length());
+
+            for (int i = 0; i < result.length(); i++) {
+                if (!isWhiteSpace(result.charAt(i))) {
+                    builder.append(result.charAt(i));
+                }
+            }
+
+            result = builder.toString();
+        }
+
         if (c == '>') {
             // Set the cursor at the right of the uri.
             step();
         }
         discard();
 
-        return builder.toString();
+        return result;
+    }
+
+    /**
+     * Indicates if the current token is equal to the given value.
+     * 
+     * @param value
+     *            The value to compare.
+     * @return True if the current token is equal to the given value.
+     */
+    private boolean regionEquals(String value) {
+        boolean result = (value.length() == scoutIndex - startTokenIndex);
+
+        for (int i = 0; result && (i < value.length()); i++) {
+            result = (value.charAt(i) == buffer[startTokenIndex + i]);
+        }
+
+        return result;
     }
 
     /**
@@ -414,32 +604,9 @@ public class RdfNTriplesReader extends RdfReader {
      */
     protected int step() throws IOException {
         scoutIndex++;
-        if (buffer[scoutIndex] == EOF) {
-            if (scoutIndex == BUFFER_SIZE) {
-                // Reached the end of the first part of the buffer, read into
-                // the second one.
-                scoutIndex++;
-                int len = this.br.read(buffer, 0, BUFFER_SIZE);
-                if (len == -1) {
-                    // End of the stream reached
-                    buffer[scoutIndex] = EOF;
-                } else {
-                    buffer[BUFFER_SIZE + len + 1] = EOF;
-                }
-            } else if (scoutIndex == (2 * BUFFER_SIZE + 1)) {
-                scoutIndex = 0;
-                // Reached the end of the second part of the buffer, read into
-                // the first one.
-                int len = this.br.read(buffer, 0, BUFFER_SIZE);
-                if (len == -1) {
-                    // End of the stream reached
-                    buffer[scoutIndex] = EOF;
-                } else {
-                    buffer[len] = EOF;
-                }
-            } else {
-                // Reached the end of the stream.
-            }
+
+        if (scoutIndex >= count) {
+            fill();
         }
 
         return buffer[scoutIndex];
@@ -473,10 +640,7 @@ public class RdfNTriplesReader extends RdfReader {
      *            The number of steps to go back.
      */
     protected void stepBack(int n) {
-        scoutIndex -= n;
-        if (scoutIndex < 0) {
-            scoutIndex = BUFFER_SIZE * 2 + 1 - scoutIndex;
-        }
+        scoutIndex = Math.max(0, scoutIndex - n);
     }
 
 }
@@ -43,7 +43,8 @@ import org.restlet.ext.rdf.Link;
 import org.restlet.ext.rdf.Literal;
 
 /**
- * Handler of RDF content according to the N-Triples notation.
+ * Handler of RDF content according to the N-Triples notation. Each link is
+ * directly written to the character writer, which should be buffered.
  * 
  * @author Thierry Boileau
  */
@@ -89,7 +90,7 @@ public class RdfNTriplesWriter extends GraphHandler {
             write(typeRef);
             this.writer.write(" ");
             write(target);
-            this.writer.write(".\n");
+            this.writer.write(" .\n");
         } catch (IOException e) {
             org.restlet.Context.getCurrentLogger().warning(
                     "Cannot write the representation of a statement due to: "
@@ -105,7 +106,7 @@ public class RdfNTriplesWriter extends GraphHandler {
             write(typeRef);
             this.writer.write(" ");
             write(target);
-            this.writer.write(".\n");
+            this.writer.write(" .\n");
         } catch (IOException e) {
             org.restlet.Context.getCurrentLogger().warning(
                     "Cannot write the representation of a statement due to: "
@@ -114,17 +115,69 @@ public class RdfNTriplesWriter extends GraphHandler {
     }
 
     /**
-     * Writes the representation of a literal.
+     * Writes the representation of a literal, escaping its value.
      * 
      * @param literal
      *            The literal to write.
      * @throws IOException
      */
     private void write(Literal literal) throws IOException {
-        // Write it as a string
-        this.writer.write("\"");
-        this.writer.write(literal.getValue());
-        this.writer.write("\"");
+        String value = literal.getValue();
+        this.writer.write('"');
+
+        if (value != null) {
+            int start = 0;
+
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+
+                if ((c < 0x20) || (c > 0x7e) || (c == '"') || (c == '\\')) {
+                    // Write the characters scanned before the escaped one
+                    this.writer.write(value, start, i - start);
+                    start = i + 1;
+
+                    switch (c) {
+                    case '\t':
+                        this.writer.write("\\t");
+                        break;
+                    case '\n':
+                        this.writer.write("\\n");
+                        break;
+                    case '\r':
+                        this.writer.write("\\r");
+                        break;
+                    case '"':
+                        this.writer.write("\\\"");
+                        break;
+                    case '\\':
+                        this.writer.write("\\\\");
+                        break;
+                    default:
+                        this.writer.write("\\u");
+                        String hex = Integer.toHexString(c).toUpperCase();
+
+                        for (int j = hex.length(); j < 4; j++) {
+                            this.writer.write('0');
+                        }
+
+                        this.writer.write(hex);
+                        break;
+                    }
+                }
+            }
+
+            this.writer.write(value, start, value.length() - start);
+        }
+
+        this.writer.write('"');
+
+        if (literal.getLanguage() != null) {
+            this.writer.write('@');
+            this.writer.write(literal.getLanguage().toString());
+        } else if (literal.getDatatypeRef() != null) {
+            this.writer.write("^^");
+            write(literal.getDatatypeRef());
+        }
     }
 
     /**
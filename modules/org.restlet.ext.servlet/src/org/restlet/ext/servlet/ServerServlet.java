@@ -241,6 +241,13 @@ import org.restlet.routing.VirtualHost;
  * "org.restlet.ext.servlet.ServletContext" attribute of the Restlet application
  * in case you need access to it.<br>
  * <br>
+ * When a response isn't automatically committed (see
+ * {@link org.restlet.Response#setAutoCommitting(boolean)}), the Servlet request
+ * is switched into asynchronous mode, releasing the container thread until
+ * {@link org.restlet.Response#commit()} is invoked. This requires the Servlet
+ * to be declared with the "async-supported" element set to "true", otherwise
+ * the response is committed synchronously as usual.<br>
+ * <br>
  * Finally, an "org.restlet.ext.servlet.offsetPath" attribute, containing the
  * computed offset path used to attach applications when (and only when) the
  * auto-wiring feature is set, is added to the component's context.
@@ -38,6 +38,7 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.restlet.Context;
+import org.restlet.Response;
 import org.restlet.Restlet;
 import org.restlet.data.Reference;
 import org.restlet.engine.Engine;
@@ -177,6 +178,9 @@ public class ServletAdapter extends ServletServerAdapter {
     /**
      * Services a HTTP Servlet request as a Restlet request handled by the
      * "target" Restlet.
+     * If the response isn't automatically committed and the Servlet request
+     * supports it, the request is switched into asynchronous mode and the
+     * response is only committed when {@link Response#commit()} is invoked.
      * 
      * @param request
      *            The HTTP Servlet request.
@@ -205,7 +209,7 @@ public class ServletAdapter extends ServletServerAdapter {
 
                 // Handle the request and commit the response
                 getNext().handle(httpRequest, httpResponse);
-                commit(httpResponse);
+                commitOrSuspend(httpResponse);
             } finally {
                 Engine.clearThreadLocalVariables();
             }
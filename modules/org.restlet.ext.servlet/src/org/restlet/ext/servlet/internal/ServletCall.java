@@ -46,6 +46,7 @@ import java.util.Map;
 import java.util.Map.Entry;
 import java.util.logging.Level;
 
+import javax.servlet.AsyncContext;
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
@@ -71,6 +72,10 @@ import org.restlet.util.Series;
  */
 public class ServletCall extends ServerCall {
 
+    // [ifndef gae] member
+    /** The Servlet asynchronous context, if the call was switched to it. */
+    private volatile AsyncContext asyncContext;
+
     /** The HTTP Servlet request to wrap. */
     private volatile HttpServletRequest request;
 
@@ -97,11 +102,6 @@ public class ServletCall extends ServerCall {
         this.response = response;
     }
 
-    @Override
-    public void flushBuffers() throws IOException {
-        getResponse().flushBuffer();
-    }
-
     /**
      * Constructor.
      * 
@@ -129,6 +129,22 @@ public class ServletCall extends ServerCall {
         return false;
     }
 
+    // [ifndef gae] method
+    @Override
+    public void complete() {
+        AsyncContext context = this.asyncContext;
+
+        if (context != null) {
+            this.asyncContext = null;
+            context.complete();
+        }
+    }
+
+    @Override
+    public void flushBuffers() throws IOException {
+        getResponse().flushBuffer();
+    }
+
     @Override
     public List<Certificate> getCertificates() {
         Certificate[] certificateArray = (Certificate[]) getRequest()
@@ -464,4 +480,32 @@ public class ServletCall extends ServerCall {
         }
     }
 
+    // [ifndef gae] method
+    /**
+     * Switches the Servlet request into asynchronous mode if supported by the
+     * container and the Servlet configuration. The container timeout is
+     * disabled as the application decides when the response is committed.
+     * 
+     * @return True if the call was switched into asynchronous mode.
+     */
+    @Override
+    public boolean startAsync() {
+        boolean result = false;
+
+        if (getRequest().isAsyncSupported() && !getRequest().isAsyncStarted()) {
+            try {
+                this.asyncContext = getRequest().startAsync(getRequest(),
+                        getResponse());
+                this.asyncContext.setTimeout(0);
+                result = true;
+            } catch (IllegalStateException ise) {
+                getLogger().log(Level.FINE,
+                        "Unable to start the asynchronous Servlet request",
+                        ise);
+            }
+        }
+
+        return result;
+    }
+
 }
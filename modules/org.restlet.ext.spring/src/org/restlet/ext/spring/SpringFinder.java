@@ -33,8 +33,6 @@
 
 package org.restlet.ext.spring;
 
-import java.util.logging.Level;
-
 import org.restlet.Context;
 import org.restlet.Request;
 import org.restlet.Response;
@@ -123,21 +121,7 @@ public class SpringFinder extends Finder {
      * @return The created resource or null.
      */
     public ServerResource create() {
-        ServerResource result = null;
-
-        if (getTargetClass() != null) {
-            try {
-                // Invoke the default constructor
-                result = (ServerResource) getTargetClass().newInstance();
-            } catch (Exception e) {
-                getLogger()
-                        .log(Level.WARNING,
-                                "Exception while instantiating the target server resource.",
-                                e);
-            }
-        }
-
-        return result;
+        return newInstance(getTargetClass());
     }
 
     /**
@@ -59,6 +59,7 @@ import org.restlet.test.ext.crypto.CryptoTestSuite;
 import org.restlet.test.ext.crypto.DigestVerifierTestCase;
 import org.restlet.test.ext.crypto.HttpDigestTestCase;
 import org.restlet.test.ext.emf.EmfTestSuite;
+import org.restlet.test.ext.fileupload.MultipartReaderTestCase;
 import org.restlet.test.ext.freemarker.FreeMarkerTestCase;
 import org.restlet.test.ext.guice.GuiceSelfInjectingServerResourceModuleTestCase;
 import org.restlet.test.ext.gwt.GwtConverterTestCase;
@@ -78,6 +79,7 @@ import org.restlet.test.representation.AppendableRepresentationTestCase;
 import org.restlet.test.representation.DigesterRepresentationTestCase;
 import org.restlet.test.representation.RangeRepresentationTestCase;
 import org.restlet.test.routing.FilterTestCase;
+import org.restlet.test.routing.RateLimiterTestCase;
 import org.restlet.test.routing.RedirectTestCase;
 import org.restlet.test.routing.RouteListTestCase;
 import org.restlet.test.routing.ValidatorTestCase;
@@ -125,7 +127,9 @@ public class RestletTestSuite extends TestSuite {
 		addTestSuite(JaxbIntegrationConverterTestCase.class);
 		addTestSuite(LanguageTestCase.class);
 		addTestSuite(MediaTypeTestCase.class);
+		addTestSuite(MultipartReaderTestCase.class);
 		addTestSuite(ProductTokenTestCase.class);
+		addTestSuite(RateLimiterTestCase.class);
 		addTestSuite(ReferenceTestCase.class);
 		addTestSuite(RestartTestCase.class);
 		addTestSuite(RiapTestCase.class);
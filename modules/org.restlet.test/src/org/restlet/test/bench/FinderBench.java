@@ -0,0 +1,105 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.test.bench;
+
+import org.restlet.Application;
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.data.Method;
+import org.restlet.ext.spring.SpringBeanFinder;
+import org.restlet.ext.spring.SpringFinder;
+import org.restlet.resource.Finder;
+import org.restlet.resource.Get;
+import org.restlet.resource.ServerResource;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.beans.factory.support.DefaultListableBeanFactory;
+import org.springframework.beans.factory.support.RootBeanDefinition;
+
+public class FinderBench {
+
+    public static class BenchResource extends ServerResource {
+        @Get("txt")
+        public String represent() {
+            return "hello";
+        }
+    }
+
+    private static void bench(String name, Finder finder, int count) {
+        // Warm up
+        run(finder, count / 10);
+        long startTime = System.currentTimeMillis();
+        run(finder, count);
+        long endTime = System.currentTimeMillis();
+        System.out.println(name + ": " + count + " calls in "
+                + (endTime - startTime) + " ms");
+    }
+
+    public static void main(String[] args) throws Exception {
+        int count = (args.length > 0) ? Integer.parseInt(args[0]) : 1000000;
+
+        // Resources otherwise create their own application
+        Application.setCurrent(new Application());
+
+        bench("Finder", new Finder(null, BenchResource.class), count);
+
+        Finder reusing = new Finder(null, BenchResource.class);
+        reusing.setReusingResources(true);
+        bench("Finder reusing resources", reusing, count);
+
+        bench("SpringFinder", new SpringFinder(null, BenchResource.class),
+                count);
+
+        DefaultListableBeanFactory beanFactory = new DefaultListableBeanFactory();
+        RootBeanDefinition definition = new RootBeanDefinition(
+                BenchResource.class);
+        definition.setScope(BeanDefinition.SCOPE_PROTOTYPE);
+        beanFactory.registerBeanDefinition("resource", definition);
+        bench("SpringBeanFinder", new SpringBeanFinder(null, beanFactory,
+                "resource"), count);
+    }
+
+    private static void run(Finder finder, int count) {
+        for (int i = 0; i < count; i++) {
+            Request request = new Request(Method.GET, "http://localhost/");
+            Response response = new Response(request);
+            finder.handle(request, response);
+
+            if (!response.getStatus().isSuccess()) {
+                throw new IllegalStateException(response.getStatus()
+                        .toString());
+            }
+        }
+    }
+
+}
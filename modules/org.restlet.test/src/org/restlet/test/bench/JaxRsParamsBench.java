@@ -0,0 +1,129 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.test.bench;
+
+import java.util.List;
+import java.util.UUID;
+
+import javax.ws.rs.GET;
+import javax.ws.rs.HeaderParam;
+import javax.ws.rs.Path;
+import javax.ws.rs.PathParam;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+
+import org.restlet.Context;
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.data.Header;
+import org.restlet.data.Method;
+import org.restlet.data.Reference;
+import org.restlet.engine.header.HeaderConstants;
+import org.restlet.ext.jaxrs.JaxRsRestlet;
+import org.restlet.service.MetadataService;
+import org.restlet.util.Series;
+
+/**
+ * Benchmarks the injection of parameters into a parameter-heavy JAX-RS
+ * resource method.
+ */
+public class JaxRsParamsBench {
+
+    @Path("orders/{customer}/{order}")
+    public static class OrderResource {
+        @GET
+        @Produces("text/plain")
+        public String get(@PathParam("customer") String customer,
+                @PathParam("order") long order,
+                @QueryParam("page") Integer page,
+                @QueryParam("size") int size,
+                @QueryParam("sort") String sort,
+                @QueryParam("status") List<String> status,
+                @QueryParam("since") Long since,
+                @QueryParam("token") UUID token,
+                @HeaderParam("X-Trace") String trace,
+                @HeaderParam("X-Version") Integer version) {
+            return customer + order + page + size + sort + status + since
+                    + token + trace + version;
+        }
+    }
+
+    private static void bench(String name, JaxRsRestlet restlet, int count) {
+        // Warm up
+        run(restlet, count / 10);
+        long startTime = System.currentTimeMillis();
+        run(restlet, count);
+        long endTime = System.currentTimeMillis();
+        System.out.println(name + ": " + count + " calls in "
+                + (endTime - startTime) + " ms");
+    }
+
+    public static void main(String[] args) throws Exception {
+        int count = (args.length > 0) ? Integer.parseInt(args[0]) : 100000;
+        JaxRsRestlet restlet = new JaxRsRestlet(new Context(),
+                new MetadataService());
+        restlet.addClass(OrderResource.class);
+        restlet.start();
+        bench("JAX-RS parameter injection", restlet, count);
+        restlet.stop();
+    }
+
+    private static void run(JaxRsRestlet restlet, int count) {
+        Reference baseRef = new Reference("http://localhost");
+
+        for (int i = 0; i < count; i++) {
+            Reference ref = new Reference(baseRef,
+                    "http://localhost/orders/acme/" + i
+                            + "?page=2&size=50&sort=date&status=open"
+                            + "&status=paid&since=1262304000000"
+                            + "&token=3f2504e0-4f89-11d3-9a0c-0305e82c3301");
+            Request request = new Request(Method.GET, ref);
+            request.setOriginalRef(ref.getTargetRef());
+            Series<Header> headers = new Series<Header>(Header.class);
+            headers.add("X-Trace", "bench");
+            headers.add("X-Version", "2");
+            request.getAttributes().put(HeaderConstants.ATTRIBUTE_HEADERS,
+                    headers);
+            Response response = new Response(request);
+            restlet.handle(request, response);
+
+            if (!response.getStatus().isSuccess()) {
+                throw new IllegalStateException(response.getStatus()
+                        .toString());
+            }
+        }
+    }
+
+}
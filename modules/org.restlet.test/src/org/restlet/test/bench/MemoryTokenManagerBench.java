@@ -0,0 +1,103 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.test.bench;
+
+import org.restlet.ext.oauth.internal.Client;
+import org.restlet.ext.oauth.internal.Client.ClientType;
+import org.restlet.ext.oauth.internal.Token;
+import org.restlet.ext.oauth.internal.memory.MemoryClientManager;
+import org.restlet.ext.oauth.internal.memory.MemoryTokenManager;
+
+public class MemoryTokenManagerBench {
+
+    public static void main(String[] args) throws Exception {
+        int count = (args.length > 0) ? Integer.parseInt(args[0]) : 1000000;
+        MemoryClientManager clients = new MemoryClientManager();
+        Client[] clientArray = new Client[100];
+
+        for (int i = 0; i < clientArray.length; i++) {
+            clientArray[i] = clients.createClient(ClientType.CONFIDENTIAL,
+                    null, null);
+        }
+
+        MemoryTokenManager tokens = new MemoryTokenManager();
+        String[] refreshTokens = new String[count];
+        long startTime = System.currentTimeMillis();
+
+        for (int i = 0; i < count; i++) {
+            Token token = tokens.generateToken(clientArray[i
+                    % clientArray.length], "user" + i, new String[] { "a" });
+            refreshTokens[i] = token.getRefreshToken();
+        }
+
+        long endTime = System.currentTimeMillis();
+        System.out.println("Generated " + count + " tokens in "
+                + (endTime - startTime) + " ms");
+
+        int lookups = Math.min(count, 100000);
+        startTime = System.currentTimeMillis();
+
+        for (int i = 0; i < lookups; i++) {
+            tokens.refreshToken(clientArray[i % clientArray.length],
+                    refreshTokens[i], null);
+        }
+
+        endTime = System.currentTimeMillis();
+        System.out.println("Refreshed " + lookups + " tokens in "
+                + (endTime - startTime) + " ms");
+
+        startTime = System.currentTimeMillis();
+
+        for (int i = 0; i < lookups; i++) {
+            tokens.findToken(clientArray[i % clientArray.length], "user" + i);
+            tokens.findTokens("user" + i);
+        }
+
+        endTime = System.currentTimeMillis();
+        System.out.println("Found " + lookups + " tokens in "
+                + (endTime - startTime) + " ms");
+
+        startTime = System.currentTimeMillis();
+
+        for (int i = 0; i < lookups; i++) {
+            tokens.revokeAllTokens("user" + i);
+        }
+
+        endTime = System.currentTimeMillis();
+        System.out.println("Revoked " + lookups + " users in "
+                + (endTime - startTime) + " ms, " + tokens.getTokenCount()
+                + " tokens left");
+    }
+
+}
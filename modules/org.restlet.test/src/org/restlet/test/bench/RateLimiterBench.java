@@ -0,0 +1,117 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.test.bench;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.restlet.routing.RateLimiter;
+
+public class RateLimiterBench {
+
+    private static void bench(final RateLimiter limiter, final String[] keys,
+            final int threads, final int calls) throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(threads);
+        final AtomicLong rejected = new AtomicLong();
+        long startTime = System.currentTimeMillis();
+
+        for (int t = 0; t < threads; t++) {
+            final int offset = t;
+
+            new Thread() {
+                @Override
+                public void run() {
+                    long count = 0;
+
+                    for (int i = 0; i < calls; i++) {
+                        String key = keys[(i * threads + offset) % keys.length];
+
+                        if (limiter.tryAcquire(key) > 0) {
+                            count++;
+                        }
+                    }
+
+                    rejected.addAndGet(count);
+                    latch.countDown();
+                }
+            }.start();
+        }
+
+        latch.await();
+        long endTime = System.currentTimeMillis();
+        Runtime runtime = Runtime.getRuntime();
+        System.gc();
+        System.out.println(threads + " threads, " + ((long) threads * calls)
+                + " calls in " + (endTime - startTime) + " ms, "
+                + rejected.get() + " rejected, " + limiter.getSize()
+                + " keys tracked, "
+                + ((runtime.totalMemory() - runtime.freeMemory()) >> 20)
+                + " MB used");
+    }
+
+    public static void main(String[] args) throws Exception {
+        int keyCount = (args.length > 0) ? Integer.parseInt(args[0])
+                : 2000000;
+        int calls = (args.length > 1) ? Integer.parseInt(args[1]) : 5000000;
+        String[] keys = new String[keyCount];
+
+        for (int i = 0; i < keys.length; i++) {
+            keys[i] = "10." + ((i >> 16) & 0xff) + "." + ((i >> 8) & 0xff)
+                    + "." + (i & 0xff) + ":" + (i >> 24);
+        }
+
+        RateLimiter limiter = new RateLimiter(null, null, 10, 20);
+        limiter.setMaxIdleTimeMs(2000);
+
+        // Warm up
+        bench(limiter, keys, 1, calls / 10);
+        int processors = Runtime.getRuntime().availableProcessors();
+
+        for (int threads = 1; threads <= processors * 2; threads *= 2) {
+            bench(limiter, keys, threads, calls / threads);
+        }
+
+        // Let the buckets become idle then sweep all the stripes
+        Thread.sleep(limiter.getMaxIdleTimeMs() + 1000);
+
+        for (int i = 0; i < RateLimiter.DEFAULT_STRIPES * 100; i++) {
+            limiter.tryAcquire("sweep" + i);
+        }
+
+        System.out.println("After eviction: " + limiter.getSize()
+                + " keys tracked");
+    }
+
+}
@@ -0,0 +1,131 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.test.bench;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import org.restlet.data.MediaType;
+import org.restlet.data.Reference;
+import org.restlet.ext.rdf.Graph;
+import org.restlet.ext.rdf.GraphHandler;
+import org.restlet.ext.rdf.Literal;
+import org.restlet.ext.rdf.RdfRepresentation;
+import org.restlet.ext.rdf.internal.ntriples.RdfNTriplesWriter;
+import org.restlet.representation.FileRepresentation;
+
+public class RdfNTriplesBench {
+
+    public static void main(String[] args) throws Exception {
+        int count = (args.length > 0) ? Integer.parseInt(args[0]) : 2000000;
+        File file = File.createTempFile("restlet-bench", ".nt");
+        file.deleteOnExit();
+
+        // Write the triples
+        long startTime = System.currentTimeMillis();
+        Writer writer = new BufferedWriter(new OutputStreamWriter(
+                new FileOutputStream(file), "UTF-8"));
+        RdfNTriplesWriter ntWriter = new RdfNTriplesWriter(writer);
+        Reference[] predicates = new Reference[20];
+
+        for (int i = 0; i < predicates.length; i++) {
+            predicates[i] = new Reference("http://example.com/ns#p" + i);
+        }
+
+        ntWriter.startGraph();
+
+        for (int i = 0; i < count; i++) {
+            Reference subject = new Reference("http://example.com/items/"
+                    + (i / 10));
+
+            if ((i % 2) == 0) {
+                ntWriter.link(subject, predicates[i % predicates.length],
+                        new Literal("Value \"" + i + "\"\n"));
+            } else {
+                ntWriter.link(subject, predicates[i % predicates.length],
+                        new Reference("http://example.com/items/" + i));
+            }
+        }
+
+        ntWriter.endGraph();
+        writer.close();
+        long endTime = System.currentTimeMillis();
+        System.out.println("Wrote " + count + " triples (" + file.length()
+                + " bytes) in " + (endTime - startTime) + " ms");
+
+        // Stream the triples
+        final long[] parsed = new long[1];
+        FileRepresentation rep = new FileRepresentation(file,
+                MediaType.TEXT_RDF_NTRIPLES);
+        startTime = System.currentTimeMillis();
+        new RdfRepresentation(rep).parse(new GraphHandler() {
+            @Override
+            public void link(Graph source, Reference typeRef, Literal target) {
+                parsed[0]++;
+            }
+
+            @Override
+            public void link(Graph source, Reference typeRef,
+                    Reference target) {
+                parsed[0]++;
+            }
+
+            @Override
+            public void link(Reference source, Reference typeRef,
+                    Literal target) {
+                parsed[0]++;
+            }
+
+            @Override
+            public void link(Reference source, Reference typeRef,
+                    Reference target) {
+                parsed[0]++;
+            }
+        });
+        endTime = System.currentTimeMillis();
+        System.out.println("Parsed " + parsed[0] + " triples in "
+                + (endTime - startTime) + " ms");
+
+        // Build a graph
+        startTime = System.currentTimeMillis();
+        Graph graph = new RdfRepresentation(rep).getGraph();
+        endTime = System.currentTimeMillis();
+        System.out.println("Built a graph of " + graph.size()
+                + " links in " + (endTime - startTime) + " ms");
+    }
+
+}
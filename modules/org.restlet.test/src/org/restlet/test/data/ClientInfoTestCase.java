@@ -35,12 +35,14 @@ package org.restlet.test.data;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 
 import org.restlet.Request;
 import org.restlet.data.ClientInfo;
 import org.restlet.data.Language;
 import org.restlet.data.MediaType;
 import org.restlet.data.Preference;
+import org.restlet.engine.util.UserAgentMatcher;
 import org.restlet.representation.Variant;
 import org.restlet.service.ConnegService;
 import org.restlet.service.MetadataService;
@@ -67,6 +69,60 @@ public class ClientInfoTestCase extends RestletTestCase {
         super.tearDown();
     }
 
+    /**
+     * Tests the parsing of the agent attributes.
+     */
+    public void testAgentAttributes() throws Exception {
+        ClientInfo ci = new ClientInfo();
+        ci.setAgent("Mozilla/4.0 (compatible; MSIE 6.0; Windows NT 5.1)");
+        Map<String, String> attributes = ci.getAgentAttributes();
+        assertEquals("MSIE", attributes.get("agentName"));
+        assertEquals("6.0", attributes.get("agentVersion"));
+        assertEquals("Windows NT 5.1", attributes.get("agentOs"));
+
+        ci = new ClientInfo();
+        ci.setAgent("Restlet-Framework/2.3");
+        assertEquals("Restlet-Framework", ci.getAgentName());
+        assertEquals("2.3", ci.getAgentVersion());
+
+        ci = new ClientInfo();
+        ci.setAgent("Not a product");
+        assertTrue(ci.getAgentAttributes().isEmpty());
+
+        ci = new ClientInfo();
+        assertTrue(ci.getAgentAttributes().isEmpty());
+    }
+
+    /**
+     * Tests the cache of the user agent matcher.
+     */
+    public void testAgentMatcherCache() throws Exception {
+        List<String> templates = new ArrayList<String>();
+        templates.add("Mozilla/{mozillaVersion} (compatible; {agentName} {agentVersion}; {agentOs})");
+        templates.add("{agentName}/{agentVersion}");
+        UserAgentMatcher matcher = new UserAgentMatcher(templates, 2);
+
+        Map<String, String> first = matcher.match("Wget/1.9");
+        assertEquals("Wget", first.get("agentName"));
+        assertEquals("1.9", first.get("agentVersion"));
+        assertSame(first, matcher.match("Wget/1.9"));
+
+        Map<String, String> msie = matcher
+                .match("Mozilla/4.0 (compatible; MSIE 5.5; Windows 98)");
+        assertEquals("MSIE", msie.get("agentName"));
+        assertEquals("Windows 98", msie.get("agentOs"));
+
+        // The least recently used agent is evicted
+        matcher.match("Wget/1.9");
+        matcher.match("curl/7.35.0");
+        assertSame(first, matcher.match("Wget/1.9"));
+        assertNotSame(msie,
+                matcher.match("Mozilla/4.0 (compatible; MSIE 5.5; Windows 98)"));
+
+        assertTrue(matcher.match("Unknown agent").isEmpty());
+        assertTrue(matcher.match(null).isEmpty());
+    }
+
     /**
      * Conneg tests.
      */
@@ -0,0 +1,185 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.test.engine;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.restlet.Context;
+import org.restlet.data.Protocol;
+import org.restlet.engine.adapter.HttpRequest;
+import org.restlet.engine.adapter.HttpResponse;
+import org.restlet.engine.adapter.ServerAdapter;
+import org.restlet.engine.adapter.ServerCall;
+import org.restlet.test.RestletTestCase;
+
+/**
+ * Unit tests for the asynchronous commit of responses by HTTP server adapters.
+ * 
+ * @author Jerome Louvel
+ */
+public class AsyncCommitTestCase extends RestletTestCase {
+
+    /**
+     * Server call recording what was sent back to the client.
+     */
+    private static class TestServerCall extends ServerCall {
+
+        private final boolean asyncSupported;
+
+        private volatile int completions;
+
+        private final ByteArrayOutputStream entity;
+
+        public TestServerCall(boolean asyncSupported) {
+            super("localhost", 8182);
+            this.asyncSupported = asyncSupported;
+            this.entity = new ByteArrayOutputStream();
+            setMethod("GET");
+            setProtocol(Protocol.HTTP);
+            setRequestUri("/test");
+            getRequestHeaders().add("Host", "localhost");
+        }
+
+        @Override
+        public boolean abort() {
+            return false;
+        }
+
+        @Override
+        public void complete() {
+            this.completions++;
+        }
+
+        @Override
+        public InputStream getRequestEntityStream(long size) {
+            return null;
+        }
+
+        @Override
+        public InputStream getRequestHeadStream() {
+            return null;
+        }
+
+        @Override
+        public OutputStream getResponseEntityStream() {
+            return this.entity;
+        }
+
+        @Override
+        public boolean startAsync() {
+            return this.asyncSupported;
+        }
+    }
+
+    private ServerAdapter adapter;
+
+    private HttpResponse createResponse(TestServerCall call) {
+        HttpRequest request = adapter.toRequest(call);
+        HttpResponse response = new HttpResponse(call, request);
+        response.setEntity("hello", null);
+        return response;
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        adapter = new ServerAdapter(new Context());
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        adapter = null;
+        super.tearDown();
+    }
+
+    public void testAutoCommit() {
+        TestServerCall call = new TestServerCall(true);
+        HttpResponse response = createResponse(call);
+        adapter.commitOrSuspend(response);
+
+        assertTrue(response.isCommitted());
+        assertEquals("hello", call.entity.toString());
+        assertEquals(1, call.completions);
+    }
+
+    public void testDeferredCommit() {
+        TestServerCall call = new TestServerCall(true);
+        HttpResponse response = createResponse(call);
+        response.setAutoCommitting(false);
+        adapter.commitOrSuspend(response);
+
+        // The connector thread is released without sending the response
+        assertFalse(response.isCommitted());
+        assertEquals(0, call.entity.size());
+        assertEquals(0, call.completions);
+
+        response.commit();
+        assertTrue(response.isCommitted());
+        assertEquals("hello", call.entity.toString());
+        assertEquals(1, call.completions);
+
+        // Committing twice has no effect
+        response.commit();
+        assertEquals("hello", call.entity.toString());
+        assertEquals(1, call.completions);
+    }
+
+    public void testEarlyCommit() {
+        TestServerCall call = new TestServerCall(true);
+        HttpResponse response = createResponse(call);
+        response.setAutoCommitting(false);
+
+        // Committed before the connector thread is done with the call
+        response.commit();
+        assertEquals(0, call.entity.size());
+
+        adapter.commitOrSuspend(response);
+        assertEquals("hello", call.entity.toString());
+        assertEquals(1, call.completions);
+    }
+
+    public void testUnsupportedAsync() {
+        TestServerCall call = new TestServerCall(false);
+        HttpResponse response = createResponse(call);
+        response.setAutoCommitting(false);
+        adapter.commitOrSuspend(response);
+
+        assertTrue(response.isCommitted());
+        assertEquals("hello", call.entity.toString());
+        assertEquals(1, call.completions);
+    }
+
+}
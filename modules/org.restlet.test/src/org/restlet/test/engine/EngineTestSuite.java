@@ -64,6 +64,7 @@ public class EngineTestSuite extends TestSuite {
         super("Engine package");
         addTestSuite(AlphaNumericComparatorTestCase.class);
         addTestSuite(AnnotationUtilsTestCase.class);
+        addTestSuite(AsyncCommitTestCase.class);
         addTestSuite(Base64TestCase.class);
         addTestSuite(BufferTestCase.class);
         addTestSuite(BioUtilsTestCase.class);
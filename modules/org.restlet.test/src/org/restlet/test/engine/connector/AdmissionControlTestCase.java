@@ -0,0 +1,402 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.test.engine.connector;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.restlet.Application;
+import org.restlet.Component;
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.Restlet;
+import org.restlet.Server;
+import org.restlet.data.MediaType;
+import org.restlet.data.Method;
+import org.restlet.data.Protocol;
+import org.restlet.data.Reference;
+import org.restlet.engine.Engine;
+import org.restlet.ext.nio.HttpServerHelper;
+import org.restlet.ext.nio.ServerConnectionHelper;
+import org.restlet.ext.nio.internal.admission.AdmissionController;
+import org.restlet.ext.nio.internal.admission.Bulkhead;
+import org.restlet.ext.nio.internal.admission.ConcurrencyLimit;
+import org.restlet.representation.StringRepresentation;
+import org.restlet.test.RestletTestCase;
+
+/**
+ * Unit tests for the admission control of the NIO server connector.
+ * 
+ * @author Jerome Louvel
+ */
+public class AdmissionControlTestCase extends RestletTestCase {
+
+    private Component component;
+
+    /** Counted down when the slow call is handled. */
+    private volatile CountDownLatch entered;
+
+    /** Counted down to release the slow call. */
+    private volatile CountDownLatch release;
+
+    private AdmissionController getAdmissionController() {
+        return (AdmissionController) component.getServers().get(0)
+                .getContext().getAttributes()
+                .get(ServerConnectionHelper.ADMISSION_CONTROLLER);
+    }
+
+    private int getPort() {
+        return component.getServers().get(0).getEphemeralPort();
+    }
+
+    /**
+     * Sends a GET request on a new connection.
+     */
+    private Socket send(String path) throws IOException {
+        Socket result = new Socket("localhost", getPort());
+        result.setSoTimeout(5000);
+        OutputStream out = result.getOutputStream();
+        out.write(("GET " + path + " HTTP/1.1\r\nHost: localhost\r\n\r\n")
+                .getBytes("ISO-8859-1"));
+        out.flush();
+        return result;
+    }
+
+    /**
+     * Reads the response head, returning the status line followed by the
+     * "Retry-After" header if any.
+     */
+    private String receive(Socket socket) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+                socket.getInputStream(), "ISO-8859-1"));
+        String result = reader.readLine();
+
+        for (String line = reader.readLine(); (line != null)
+                && (line.length() > 0); line = reader.readLine()) {
+            if (line.toLowerCase().startsWith("retry-after:")) {
+                result += " Retry-After";
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        Engine engine = Engine.register(false);
+        engine.getRegisteredServers().add(
+                new HttpServerHelper(null));
+        engine.registerDefaultConverters();
+
+        this.entered = new CountDownLatch(1);
+        this.release = new CountDownLatch(1);
+        component = new Component();
+        Server server = component.getServers().add(Protocol.HTTP, 0);
+        server.getContext().getParameters().add("admissionControl", "true");
+        server.getContext().getParameters().add("admissionLimit", "fixed");
+        server.getContext().getParameters().add("admissionInitialLimit", "1");
+        server.getContext().getParameters().add("maxQueued", "-1");
+        component.getDefaultHost().attach(new Application() {
+            @Override
+            public Restlet createInboundRoot() {
+                return new Restlet() {
+                    @Override
+                    public void handle(Request request,
+                            final Response response) {
+                        if ("/async".equals(request.getResourceRef().getPath())) {
+                            // Commit the response from another thread
+                            response.setAutoCommitting(false);
+                            new Thread() {
+                                @Override
+                                public void run() {
+                                    entered.countDown();
+
+                                    try {
+                                        release.await(5, TimeUnit.SECONDS);
+                                    } catch (InterruptedException e) {
+                                        // Ignore
+                                    }
+
+                                    response.setEntity(new StringRepresentation(
+                                            "ok", MediaType.TEXT_PLAIN));
+                                    response.commit();
+                                }
+                            }.start();
+                            return;
+                        }
+
+                        if ("/slow".equals(request.getResourceRef().getPath())) {
+                            entered.countDown();
+
+                            try {
+                                release.await(5, TimeUnit.SECONDS);
+                            } catch (InterruptedException e) {
+                                // Ignore
+                            }
+                        }
+
+                        response.setEntity(new StringRepresentation("ok",
+                                MediaType.TEXT_PLAIN));
+                    }
+                };
+            }
+        });
+        component.start();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        release.countDown();
+
+        if ((component != null) && component.isStarted()) {
+            component.stop();
+        }
+
+        component = null;
+        super.tearDown();
+
+        // Restore a clean engine
+        Engine.register();
+    }
+
+    public void testAimdLimit() {
+        ConcurrencyLimit limit = new ConcurrencyLimit(
+                ConcurrencyLimit.ALGORITHM_AIMD, 10, 2, 20,
+                TimeUnit.MILLISECONDS.toNanos(100));
+
+        // Saturated calls below the target latency increase the limit
+        for (int i = 0; i < 100; i++) {
+            while (limit.tryAcquire()) {
+            }
+
+            for (int j = limit.getInFlight(); j > 0; j--) {
+                limit.release(TimeUnit.MILLISECONDS.toNanos(10), false);
+            }
+        }
+
+        assertEquals(20, limit.getLimit());
+
+        // Slow calls decrease it, once per window of calls
+        for (int i = 0; i < 300; i++) {
+            limit.tryAcquire();
+            limit.release(TimeUnit.MILLISECONDS.toNanos(200), false);
+        }
+
+        assertEquals(2, limit.getLimit());
+    }
+
+    public void testAimdBackoffOncePerWindow() {
+        ConcurrencyLimit limit = new ConcurrencyLimit(
+                ConcurrencyLimit.ALGORITHM_AIMD, 10, 1, 20, 0);
+
+        while (limit.tryAcquire()) {
+        }
+
+        // A burst of congested calls only reduces the limit once
+        for (int j = 0; j < 8; j++) {
+            limit.release(TimeUnit.MILLISECONDS.toNanos(10), true);
+        }
+
+        assertEquals(9, limit.getLimit());
+
+        // The next window can reduce it again
+        limit.release(TimeUnit.MILLISECONDS.toNanos(10), true);
+        assertEquals(9, limit.getLimit());
+        limit.release(TimeUnit.MILLISECONDS.toNanos(10), true);
+        assertEquals(8, limit.getLimit());
+    }
+
+    public void testBulkhead() {
+        Bulkhead bulkhead = new Bulkhead("localhost", 2);
+        assertTrue(bulkhead.tryAcquire());
+        assertTrue(bulkhead.tryAcquire());
+        assertFalse(bulkhead.tryAcquire());
+        assertEquals(1, bulkhead.getRejectedCount());
+        bulkhead.release();
+        assertTrue(bulkhead.tryAcquire());
+        assertEquals(2, bulkhead.getActive());
+    }
+
+    public void testBulkheadKeys() {
+        ServerConnectionHelper helper = new HttpServerHelper(new Server(
+                Protocol.HTTP, 0));
+        AdmissionController admission = new AdmissionController(helper,
+                new ConcurrencyLimit(ConcurrencyLimit.ALGORITHM_FIXED, 10, 1,
+                        10, 0), 0, 1, Arrays.asList("www.example.com"), 0);
+
+        for (String host : new String[] { "www.example.com", "a.example.com",
+                "b.example.com" }) {
+            Response response = admit(admission, host);
+            assertNotNull(response);
+            admission.onCommitted(response);
+        }
+
+        // Hosts that aren't configured share a bulkhead
+        assertEquals(2, admission.getBulkheads().size());
+        assertEquals(0, admission.getLimit().getInFlight());
+    }
+
+    public void testBulkheadEviction() {
+        ServerConnectionHelper helper = new HttpServerHelper(new Server(
+                Protocol.HTTP, 0));
+        AdmissionController admission = new AdmissionController(helper,
+                new ConcurrencyLimit(ConcurrencyLimit.ALGORITHM_FIXED, 10, 1,
+                        10, 0), 0, 1, Collections.<String> emptyList(), 0);
+
+        Response busy = admit(admission, "busy.example.com");
+        assertNotNull(busy);
+
+        for (int i = 0; i < 2000; i++) {
+            Response response = admit(admission, "host" + i + ".example.com");
+            assertNotNull(response);
+            admission.onCommitted(response);
+        }
+
+        // Idle bulkheads are evicted, not the busy one
+        assertTrue(admission.getBulkheads().size() <= 1024);
+        assertNull(admit(admission, "busy.example.com"));
+        admission.onCommitted(busy);
+        assertEquals(0, admission.getLimit().getInFlight());
+    }
+
+    /**
+     * Admits a call for a given host, returning its response or null if the
+     * call was rejected.
+     */
+    private Response admit(AdmissionController admission, String host) {
+        Request request = new Request(Method.GET, "http://" + host + "/");
+        request.setHostRef(new Reference("http://" + host));
+        Response response = new Response(request);
+        return (admission.admit(response) == null) ? null : response;
+    }
+
+    public void testDeferredCommit() throws Exception {
+        Socket async = send("/async");
+        Socket fast = null;
+
+        try {
+            assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+            // The permit is kept until the response is committed
+            fast = send("/fast");
+            assertEquals("HTTP/1.1 503 Service Unavailable Retry-After",
+                    receive(fast));
+
+            release.countDown();
+            assertEquals("HTTP/1.1 200 OK", receive(async));
+        } finally {
+            async.close();
+
+            if (fast != null) {
+                fast.close();
+            }
+        }
+
+        assertEquals(0, getAdmissionController().getLimit().getInFlight());
+    }
+
+    public void testFixedLimit() {
+        ConcurrencyLimit limit = new ConcurrencyLimit(
+                ConcurrencyLimit.ALGORITHM_FIXED, 2, 1, 10, 0);
+        assertTrue(limit.tryAcquire());
+        assertTrue(limit.tryAcquire());
+        assertFalse(limit.tryAcquire());
+        limit.release(TimeUnit.SECONDS.toNanos(1), true);
+        assertEquals(2, limit.getLimit());
+        assertTrue(limit.tryAcquire());
+    }
+
+    public void testGradientLimit() {
+        ConcurrencyLimit limit = new ConcurrencyLimit(
+                ConcurrencyLimit.ALGORITHM_GRADIENT, 10, 1, 100, 0);
+
+        // Steady latency under saturation increases the limit
+        for (int i = 0; i < 50; i++) {
+            while (limit.tryAcquire()) {
+            }
+
+            for (int j = limit.getInFlight(); j > 0; j--) {
+                limit.release(TimeUnit.MILLISECONDS.toNanos(10), false);
+            }
+        }
+
+        int grown = limit.getLimit();
+        assertTrue(grown > 10);
+
+        // A latency rise shrinks it
+        for (int i = 0; i < 50; i++) {
+            limit.tryAcquire();
+            limit.release(TimeUnit.MILLISECONDS.toNanos(100), false);
+        }
+
+        assertTrue(limit.getLimit() < grown / 2);
+    }
+
+    public void testRejection() throws Exception {
+        Socket slow = send("/slow");
+        Socket fast = null;
+
+        try {
+            assertTrue(entered.await(5, TimeUnit.SECONDS));
+
+            // The concurrency limit is reached
+            fast = send("/fast");
+            assertEquals("HTTP/1.1 503 Service Unavailable Retry-After",
+                    receive(fast));
+
+            release.countDown();
+            assertEquals("HTTP/1.1 200 OK", receive(slow));
+        } finally {
+            slow.close();
+
+            if (fast != null) {
+                fast.close();
+            }
+        }
+
+        AdmissionController admission = getAdmissionController();
+        assertEquals(1, admission.getAdmittedCount());
+        assertEquals(1, admission.getRejectedLimitCount());
+        assertEquals(0, admission.getLimit().getInFlight());
+    }
+
+}
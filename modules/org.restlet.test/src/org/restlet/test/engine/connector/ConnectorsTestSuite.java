@@ -58,10 +58,15 @@ public class ConnectorsTestSuite extends TestSuite {
 
         // [ifdef jse]
         // addTestSuite(AsynchroneTestCase.class);
+        addTestSuite(AdmissionControlTestCase.class);
         addTestSuite(ChunkedEncodingPutTestCase.class);
         addTestSuite(ChunkedEncodingTestCase.class);
+        addTestSuite(DeferredCommitTestCase.class);
         addTestSuite(GetTestCase.class);
         addTestSuite(GetChunkedTestCase.class);
+        addTestSuite(Http2TestCase.class);
+        addTestSuite(HttpClientPoolTestCase.class);
+        addTestSuite(PipeliningTestCase.class);
         addTestSuite(PostPutTestCase.class);
         addTestSuite(RemoteClientAddressTestCase.class);
         addTestSuite(SslClientContextGetTestCase.class);
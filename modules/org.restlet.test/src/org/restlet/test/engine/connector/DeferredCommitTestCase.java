@@ -0,0 +1,165 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.test.engine.connector;
+
+import org.restlet.Application;
+import org.restlet.Client;
+import org.restlet.Component;
+import org.restlet.Context;
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.Restlet;
+import org.restlet.Server;
+import org.restlet.data.MediaType;
+import org.restlet.data.Method;
+import org.restlet.data.Protocol;
+import org.restlet.data.Status;
+import org.restlet.engine.Engine;
+import org.restlet.ext.jetty.JettyServerHelper;
+import org.restlet.representation.StringRepresentation;
+import org.restlet.test.RestletTestCase;
+
+/**
+ * Unit tests for responses committed asynchronously with the Jetty server
+ * connector.
+ * 
+ * @author Jerome Louvel
+ */
+public class DeferredCommitTestCase extends RestletTestCase {
+
+    /**
+     * Restlet committing its responses from another thread, after the
+     * connector thread was released.
+     */
+    private static class DeferredRestlet extends Restlet {
+
+        /** The number of calls still awaiting their response. */
+        private volatile int pendingCalls;
+
+        @Override
+        public void handle(Request request, final Response response) {
+            response.setAutoCommitting(false);
+            pendingCalls++;
+
+            new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        Thread.sleep(200);
+                    } catch (InterruptedException e) {
+                        // Commit right away
+                    }
+
+                    pendingCalls--;
+                    response.setStatus(Status.SUCCESS_OK);
+                    response.setEntity(new StringRepresentation(
+                            "Deferred hello", MediaType.TEXT_PLAIN));
+                    response.commit();
+                }
+            }.start();
+        }
+    }
+
+    private Component component;
+
+    private DeferredRestlet restlet;
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        Engine engine = Engine.register(false);
+        engine.getRegisteredServers().add(
+                new org.restlet.ext.jetty.HttpServerHelper(null));
+        engine.getRegisteredClients().add(
+                new org.restlet.engine.connector.HttpClientHelper(null));
+        engine.registerDefaultConverters();
+
+        restlet = new DeferredRestlet();
+        component = new Component();
+        component.getServers().add(Protocol.HTTP, 0);
+        component.getDefaultHost().attach(new Application() {
+            @Override
+            public Restlet createInboundRoot() {
+                return restlet;
+            }
+        });
+        component.start();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        if ((component != null) && component.isStarted()) {
+            component.stop();
+        }
+
+        component = null;
+        restlet = null;
+        super.tearDown();
+
+        // Restore a clean engine
+        Engine.register();
+    }
+
+    public void testDeferredCommit() throws Exception {
+        Server server = component.getServers().get(0);
+        Client client = new Client(Protocol.HTTP);
+
+        try {
+            Response response = client.handle(new Request(Method.GET,
+                    "http://localhost:" + server.getEphemeralPort() + "/"));
+            assertEquals(Status.SUCCESS_OK, response.getStatus());
+            assertEquals("Deferred hello", response.getEntityAsText());
+            assertEquals(0, restlet.pendingCalls);
+        } finally {
+            client.stop();
+        }
+    }
+
+    public void testThreadPoolMetrics() throws Exception {
+        JettyServerHelper helper = new org.restlet.ext.jetty.HttpServerHelper(
+                new Server(new Context(), Protocol.HTTP, 0, restlet));
+        assertEquals(-1, helper.getThreadPoolThreads());
+        helper.start();
+
+        try {
+            assertTrue(helper.getThreadPoolThreads() > 0);
+            assertTrue(helper.getThreadPoolIdleThreads() >= 0);
+            assertTrue(helper.getThreadPoolQueueSize() >= 0);
+            assertFalse(helper.isLowOnResources());
+        } finally {
+            helper.stop();
+        }
+    }
+
+}
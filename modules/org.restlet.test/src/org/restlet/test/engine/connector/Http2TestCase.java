@@ -0,0 +1,471 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.test.engine.connector;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.restlet.Application;
+import org.restlet.Client;
+import org.restlet.Component;
+import org.restlet.Context;
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.Restlet;
+import org.restlet.Server;
+import org.restlet.Uniform;
+import org.restlet.data.Header;
+import org.restlet.data.MediaType;
+import org.restlet.data.Method;
+import org.restlet.data.Protocol;
+import org.restlet.data.Status;
+import org.restlet.engine.Engine;
+import org.restlet.engine.util.StringUtils;
+import org.restlet.ext.nio.internal.http2.HpackDecoder;
+import org.restlet.ext.nio.internal.http2.HpackEncoder;
+import org.restlet.ext.nio.internal.http2.Http2Constants;
+import org.restlet.ext.nio.internal.http2.Http2Utils;
+import org.restlet.representation.StringRepresentation;
+import org.restlet.test.RestletTestCase;
+
+/**
+ * Unit tests for the HTTP/2 cleartext support of the NIO connectors.
+ * 
+ * @author Jerome Louvel
+ */
+public class Http2TestCase extends RestletTestCase {
+
+    /**
+     * Minimal HTTP/2 client working on a raw socket.
+     */
+    private static class Http2Client {
+
+        private final HpackDecoder decoder = new HpackDecoder(4096);
+
+        private final HpackEncoder encoder = new HpackEncoder(4096);
+
+        private final DataInputStream in;
+
+        private final OutputStream out;
+
+        private final Socket socket;
+
+        public Http2Client(int port) throws IOException {
+            this.socket = new Socket("localhost", port);
+            this.socket.setSoTimeout(5000);
+            this.in = new DataInputStream(socket.getInputStream());
+            this.out = socket.getOutputStream();
+        }
+
+        public void close() throws IOException {
+            socket.close();
+        }
+
+        public List<Header> decode(byte[] block) throws IOException {
+            return decoder.decode(block, 0, block.length);
+        }
+
+        public DataInputStream getInputStream() {
+            return in;
+        }
+
+        /**
+         * Reads the next frame, acknowledging the SETTINGS frames.
+         */
+        public Frame readFrame() throws IOException {
+            byte[] header = new byte[Http2Constants.FRAME_HEADER_SIZE];
+            in.readFully(header);
+            Frame result = new Frame();
+            int length = ((header[0] & 0xff) << 16) | ((header[1] & 0xff) << 8)
+                    | (header[2] & 0xff);
+            result.type = header[3] & 0xff;
+            result.flags = header[4] & 0xff;
+            result.streamId = Http2Utils.readInt31(header, 5);
+            result.payload = new byte[length];
+            in.readFully(result.payload);
+
+            if ((result.type == Http2Constants.FRAME_SETTINGS)
+                    && ((result.flags & Http2Constants.FLAG_ACK) == 0)) {
+                write(Http2Utils.createFrame(Http2Constants.FRAME_SETTINGS,
+                        Http2Constants.FLAG_ACK, 0, new byte[0]));
+            }
+
+            return result;
+        }
+
+        /**
+         * Reads frames until the given streams are ended, collecting their
+         * status and entities.
+         */
+        public Map<Integer, String> readResponses(int... streamIds)
+                throws IOException {
+            Map<Integer, String> result = new HashMap<Integer, String>();
+            Map<Integer, StringBuilder> entities = new HashMap<Integer, StringBuilder>();
+
+            for (int streamId : streamIds) {
+                entities.put(streamId, new StringBuilder());
+            }
+
+            int ended = 0;
+
+            while (ended < streamIds.length) {
+                Frame frame = readFrame();
+                StringBuilder entity = entities.get(frame.streamId);
+
+                if (entity != null) {
+                    if (frame.type == Http2Constants.FRAME_HEADERS) {
+                        for (Header header : decode(frame.payload)) {
+                            if (":status".equals(header.getName())) {
+                                entity.append(header.getValue()).append(' ');
+                            }
+                        }
+                    } else if (frame.type == Http2Constants.FRAME_DATA) {
+                        entity.append(new String(frame.payload, "ISO-8859-1"));
+
+                        if (frame.payload.length > 0) {
+                            write(Http2Utils.createWindowUpdate(0,
+                                    frame.payload.length));
+                            write(Http2Utils.createWindowUpdate(
+                                    frame.streamId, frame.payload.length));
+                        }
+                    }
+
+                    if ((frame.flags & Http2Constants.FLAG_END_STREAM) != 0) {
+                        result.put(frame.streamId, entity.toString());
+                        ended++;
+                    }
+                }
+            }
+
+            return result;
+        }
+
+        /**
+         * Sends the connection preface and the given settings.
+         */
+        public void sendPreface(int... settings) throws IOException {
+            write(StringUtils.getLatin1Bytes(Http2Constants.CLIENT_PREFACE));
+            write(Http2Utils.createSettings(settings));
+        }
+
+        /**
+         * Sends a request, with an optional entity.
+         */
+        public void sendRequest(int streamId, String method, String path,
+                String entity) throws IOException {
+            List<Header> headers = new ArrayList<Header>();
+            headers.add(new Header(":method", method));
+            headers.add(new Header(":scheme", "http"));
+            headers.add(new Header(":path", path));
+            headers.add(new Header(":authority", "localhost"));
+            write(Http2Utils.createFrame(Http2Constants.FRAME_HEADERS,
+                    Http2Constants.FLAG_END_HEADERS
+                            | ((entity == null) ? Http2Constants.FLAG_END_STREAM
+                                    : 0), streamId, encoder.encode(headers)));
+
+            if (entity != null) {
+                write(Http2Utils.createFrame(Http2Constants.FRAME_DATA,
+                        Http2Constants.FLAG_END_STREAM, streamId,
+                        StringUtils.getLatin1Bytes(entity)));
+            }
+        }
+
+        public void write(byte[] bytes) throws IOException {
+            out.write(bytes);
+            out.flush();
+        }
+    }
+
+    /**
+     * HTTP/2 frame received by the client.
+     */
+    private static class Frame {
+
+        private int flags;
+
+        private byte[] payload;
+
+        private int streamId;
+
+        private int type;
+    }
+
+    /** The size of the entity returned for the "/big" path. */
+    private static final int BIG_SIZE = 1000;
+
+    private Component component;
+
+    private int getPort() {
+        return component.getServers().get(0).getEphemeralPort();
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        Engine engine = Engine.register(false);
+        engine.getRegisteredServers().add(
+                new org.restlet.ext.nio.HttpServerHelper(null));
+        engine.registerDefaultConverters();
+
+        component = new Component();
+        Server server = component.getServers().add(Protocol.HTTP, 0);
+        server.getContext().getParameters().add("http2Connections", "true");
+        server.getContext().getParameters().add("maxQueued", "-1");
+        component.getDefaultHost().attach(new Application() {
+            @Override
+            public Restlet createInboundRoot() {
+                return new Restlet() {
+                    @Override
+                    public void handle(Request request, Response response) {
+                        String path = request.getResourceRef().getPath();
+                        StringBuilder sb = new StringBuilder();
+
+                        if ("/big".equals(path)) {
+                            for (int i = 0; i < BIG_SIZE; i++) {
+                                sb.append((char) ('a' + (i % 26)));
+                            }
+                        } else if ("/info".equals(path)) {
+                            sb.append(request.getProtocol().getVersion())
+                                    .append(' ')
+                                    .append(request.getClientInfo().getPort());
+                        } else {
+                            sb.append("hello ").append(path);
+
+                            if (request.isEntityAvailable()) {
+                                sb.append(' ').append(
+                                        request.getEntityAsText());
+                            }
+                        }
+
+                        response.setEntity(new StringRepresentation(sb,
+                                MediaType.TEXT_PLAIN));
+                    }
+                };
+            }
+        });
+        component.start();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        if ((component != null) && component.isStarted()) {
+            component.stop();
+        }
+
+        component = null;
+        super.tearDown();
+
+        // Restore a clean engine
+        Engine.register();
+    }
+
+    public void testFlowControl() throws Exception {
+        Http2Client client = new Http2Client(getPort());
+
+        try {
+            client.sendPreface(Http2Constants.SETTINGS_INITIAL_WINDOW_SIZE,
+                    100);
+            client.sendRequest(1, "GET", "/big", null);
+            int received = 0;
+
+            // The server must stop at the initial stream window
+            while (received < 100) {
+                Frame frame = client.readFrame();
+
+                if (frame.type == Http2Constants.FRAME_DATA) {
+                    received += frame.payload.length;
+                }
+            }
+
+            assertEquals(100, received);
+            client.write(Http2Utils.createWindowUpdate(1, BIG_SIZE - 100));
+            client.write(Http2Utils.createWindowUpdate(0, BIG_SIZE));
+            boolean ended = false;
+
+            while (!ended) {
+                Frame frame = client.readFrame();
+
+                if (frame.type == Http2Constants.FRAME_DATA) {
+                    received += frame.payload.length;
+                    ended = (frame.flags & Http2Constants.FLAG_END_STREAM) != 0;
+                }
+            }
+
+            assertEquals(BIG_SIZE, received);
+        } finally {
+            client.close();
+        }
+    }
+
+    public void testHpackDecoding() throws Exception {
+        // RFC 7541, appendix C.4.1
+        byte[] block = new byte[] { (byte) 0x82, (byte) 0x86, (byte) 0x84,
+                (byte) 0x41, (byte) 0x8c, (byte) 0xf1, (byte) 0xe3,
+                (byte) 0xc2, (byte) 0xe5, (byte) 0xf2, (byte) 0x3a,
+                (byte) 0x6b, (byte) 0xa0, (byte) 0xab, (byte) 0x90,
+                (byte) 0xf4, (byte) 0xff };
+        HpackDecoder decoder = new HpackDecoder(4096);
+        List<Header> headers = decoder.decode(block, 0, block.length);
+
+        assertEquals(4, headers.size());
+        assertEquals(":method", headers.get(0).getName());
+        assertEquals("GET", headers.get(0).getValue());
+        assertEquals("http", headers.get(1).getValue());
+        assertEquals("/", headers.get(2).getValue());
+        assertEquals(":authority", headers.get(3).getName());
+        assertEquals("www.example.com", headers.get(3).getValue());
+        assertEquals(1, decoder.getTable().getCount());
+        assertEquals(57, decoder.getTable().getSize());
+
+        // Round trip through the encoder
+        byte[] encoded = new HpackEncoder(4096).encode(headers);
+        assertEquals(headers.toString(),
+                new HpackDecoder(4096).decode(encoded, 0, encoded.length)
+                        .toString());
+    }
+
+    public void testNioClient() throws Exception {
+        org.restlet.ext.nio.HttpClientHelper helper = new org.restlet.ext.nio.HttpClientHelper(
+                null);
+        Engine.getInstance().getRegisteredClients().add(0, helper);
+        Client client = new Client(new Context(), Protocol.HTTP);
+        client.getContext().getParameters().add("http2Connections", "true");
+        client.getContext().getParameters().add("http2InitialWindowSize",
+                "100");
+        client.start();
+
+        try {
+            String baseUri = "http://localhost:" + getPort();
+
+            // Concurrent requests are multiplexed on a single connection
+            int count = 10;
+            final Set<String> infos = Collections
+                    .synchronizedSet(new HashSet<String>());
+            final CountDownLatch latch = new CountDownLatch(count);
+            Uniform callback = new Uniform() {
+                public void handle(Request request, Response response) {
+                    try {
+                        if (response.getStatus().isSuccess()) {
+                            infos.add(response.getEntityAsText());
+                        }
+                    } finally {
+                        latch.countDown();
+                    }
+                }
+            };
+
+            for (int i = 0; i < count; i++) {
+                Request request = new Request(Method.GET, baseUri + "/info");
+                request.setOnResponse(callback);
+                client.handle(request);
+            }
+
+            assertTrue(latch.await(10, TimeUnit.SECONDS));
+            assertEquals(1, infos.size());
+            assertTrue(infos.iterator().next().startsWith("2.0 "));
+
+            Response response = client.handle(new Request(Method.POST,
+                    baseUri + "/c", new StringRepresentation("posted")));
+            assertEquals(Status.SUCCESS_OK, response.getStatus());
+            assertEquals("hello /c posted", response.getEntityAsText());
+
+            // The response entity exceeds the stream window
+            response = client.handle(new Request(Method.GET, baseUri
+                    + "/big"));
+            assertEquals(Status.SUCCESS_OK, response.getStatus());
+            assertEquals(BIG_SIZE, response.getEntityAsText().length());
+        } finally {
+            client.stop();
+            Engine.getInstance().getRegisteredClients().remove(helper);
+        }
+    }
+
+    public void testPriorKnowledge() throws Exception {
+        Http2Client client = new Http2Client(getPort());
+
+        try {
+            client.sendPreface(Http2Constants.SETTINGS_ENABLE_PUSH, 0);
+            client.sendRequest(1, "GET", "/a", null);
+            client.sendRequest(3, "GET", "/b", null);
+            client.sendRequest(5, "POST", "/c", "posted");
+            Map<Integer, String> responses = client.readResponses(1, 3, 5);
+
+            assertEquals("200 hello /a", responses.get(1));
+            assertEquals("200 hello /b", responses.get(3));
+            assertEquals("200 hello /c posted", responses.get(5));
+        } finally {
+            client.close();
+        }
+    }
+
+    public void testUpgrade() throws Exception {
+        Http2Client client = new Http2Client(getPort());
+
+        try {
+            client.write(StringUtils.getLatin1Bytes("GET /up HTTP/1.1\r\n"
+                    + "Host: localhost\r\n"
+                    + "Connection: Upgrade, HTTP2-Settings\r\n"
+                    + "Upgrade: h2c\r\n"
+                    + "HTTP2-Settings: AAMAAABkAAQAAP__\r\n\r\n"));
+
+            // Read the interim response
+            StringBuilder line = new StringBuilder();
+            DataInputStream in = client.getInputStream();
+
+            while (!line.toString().endsWith("\r\n\r\n")) {
+                line.append((char) in.read());
+            }
+
+            assertTrue(line.toString().startsWith("HTTP/1.1 101"));
+            client.sendPreface();
+            Map<Integer, String> responses = client.readResponses(1);
+
+            assertEquals("200 hello /up", responses.get(1));
+        } finally {
+            client.close();
+        }
+    }
+
+}
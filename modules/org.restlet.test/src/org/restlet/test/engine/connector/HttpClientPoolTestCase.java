@@ -0,0 +1,197 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.test.engine.connector;
+
+import org.apache.http.conn.routing.HttpRoute;
+import org.apache.http.pool.PoolStats;
+import org.restlet.Client;
+import org.restlet.Component;
+import org.restlet.Context;
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.Restlet;
+import org.restlet.data.MediaType;
+import org.restlet.data.Method;
+import org.restlet.data.Protocol;
+import org.restlet.data.Reference;
+import org.restlet.data.Status;
+import org.restlet.ext.httpclient.HttpClientHelper;
+import org.restlet.test.RestletTestCase;
+
+/**
+ * Unit tests for the connection pool of the Apache HTTP client connector.
+ * 
+ * @author Jerome Louvel
+ */
+public class HttpClientPoolTestCase extends RestletTestCase {
+
+    private Component component;
+
+    private HttpClientHelper helper;
+
+    /**
+     * Creates a helper with the given parameters.
+     * 
+     * @param parameters
+     *            The name and value of each parameter.
+     * @return The created helper.
+     */
+    private HttpClientHelper createHelper(String... parameters) {
+        Client client = new Client(new Context(), Protocol.HTTP);
+
+        for (int i = 0; i < parameters.length; i += 2) {
+            client.getContext().getParameters()
+                    .add(parameters[i], parameters[i + 1]);
+        }
+
+        return new HttpClientHelper(client);
+    }
+
+    /**
+     * Returns the maximum number of connections of the route of a given URI.
+     * 
+     * @param uri
+     *            The URI.
+     * @return The maximum number of connections of the route.
+     */
+    private int getMax(String uri) {
+        return helper.getPoolStats(helper.getRoute(new Reference(uri)))
+                .getMax();
+    }
+
+    /**
+     * Returns the URI of the test server.
+     * 
+     * @return The URI of the test server.
+     */
+    private String getServerUri() {
+        return "http://localhost:"
+                + component.getServers().get(0).getEphemeralPort();
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        component = new Component();
+        component.getServers().add(Protocol.HTTP, 0);
+        component.getDefaultHost().attach(new Restlet() {
+            @Override
+            public void handle(Request request, Response response) {
+                response.setEntity("hello", MediaType.TEXT_PLAIN);
+            }
+        });
+        component.start();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        if (helper != null) {
+            helper.stop();
+        }
+
+        if ((component != null) && component.isStarted()) {
+            component.stop();
+        }
+
+        component = null;
+        helper = null;
+        super.tearDown();
+    }
+
+    public void testPoolLimits() throws Exception {
+        helper = createHelper("maxTotalConnections", "5",
+                "maxConnectionsPerHost", "2", "maxConnectionsPerRoute",
+                "https://api.example.com=7", "maxConnectionsPerRoute",
+                "http://www.example.com:80=3", "maxConnectionsPerRoute",
+                "http://www.example.com:8080=4", "maxConnectionsPerRoute",
+                "http://invalid.example.com", "maxConnectionsPerRoute",
+                "http://invalid.example.com=abc", "maxConnectionsPerRoute",
+                "http://invalid.example.com=-1");
+
+        // No pool before the start
+        assertNull(helper.getPoolStats());
+        helper.start();
+        assertEquals(5, helper.getPoolStats().getMax());
+
+        // Both forms of the default port are configured
+        assertEquals(7, getMax("https://api.example.com"));
+        assertEquals(7, getMax("https://api.example.com:443"));
+        assertEquals(3, getMax("http://www.example.com"));
+        assertEquals(3, getMax("http://www.example.com:80"));
+        assertEquals(4, getMax("http://www.example.com:8080"));
+
+        // Malformed entries are ignored
+        assertEquals(2, getMax("http://invalid.example.com"));
+        assertEquals(2, getMax("http://other.example.com"));
+    }
+
+    public void testPoolStats() throws Exception {
+        helper = createHelper("maxConnectionsPerHost", "3");
+        helper.start();
+
+        for (int i = 0; i < 5; i++) {
+            Response response = new Response(new Request(Method.GET,
+                    getServerUri() + "/"));
+            helper.handle(response.getRequest(), response);
+            assertEquals(Status.SUCCESS_OK, response.getStatus());
+            assertEquals("hello", response.getEntity().getText());
+        }
+
+        PoolStats total = helper.getPoolStats();
+        assertEquals(0, total.getLeased());
+        assertEquals(0, total.getPending());
+        assertTrue(total.getAvailable() >= 1);
+
+        PoolStats route = helper.getPoolStats(helper.getRoute(new Reference(
+                getServerUri())));
+        assertEquals(3, route.getMax());
+        assertEquals(total.getAvailable(), route.getAvailable());
+    }
+
+    public void testRoute() {
+        helper = createHelper();
+
+        // The port stays undefined as for the routes of the requests
+        HttpRoute route = helper.getRoute(new Reference(
+                "https://api.example.com/path"));
+        assertEquals(-1, route.getTargetHost().getPort());
+        assertEquals("api.example.com", route.getTargetHost().getHostName());
+        assertTrue(route.isSecure());
+
+        route = helper.getRoute(new Reference("http://api.example.com:8080"));
+        assertEquals(8080, route.getTargetHost().getPort());
+        assertFalse(route.isSecure());
+    }
+
+}
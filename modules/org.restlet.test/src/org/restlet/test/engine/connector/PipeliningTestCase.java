@@ -0,0 +1,328 @@
+/**
+ * Copyright 2005-2014 Restlet
+ *
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ *
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ *
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ *
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ *
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ *
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ *
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ *
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ *
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.test.engine.connector;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.restlet.Client;
+import org.restlet.Context;
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.Uniform;
+import org.restlet.data.MediaType;
+import org.restlet.data.Method;
+import org.restlet.data.Protocol;
+import org.restlet.engine.Engine;
+import org.restlet.engine.connector.ConnectorHelper;
+import org.restlet.representation.InputRepresentation;
+import org.restlet.test.RestletTestCase;
+
+/**
+ * Unit tests for HTTP/1.1 requests pipelining with the NIO client connector.
+ *
+ * @author Jerome Louvel
+ */
+public class PipeliningTestCase extends RestletTestCase {
+
+    /**
+     * Minimal HTTP server answering the requests received on a connection in
+     * batches, making pipelined requests observable.
+     */
+    private static class BatchServer extends Thread {
+
+        /** The number of accepted connections. */
+        private final AtomicInteger connections = new AtomicInteger();
+
+        /** The largest number of requests received in a single batch. */
+        private volatile int maxBatch;
+
+        /** Number of responses after which the first connection is closed. */
+        private final int maxResponses;
+
+        private final ServerSocket serverSocket;
+
+        public BatchServer(int maxResponses) throws IOException {
+            this.maxResponses = maxResponses;
+            this.serverSocket = new ServerSocket(0);
+            setDaemon(true);
+        }
+
+        public int getPort() {
+            return serverSocket.getLocalPort();
+        }
+
+        private void handle(Socket socket) throws IOException {
+            BufferedReader reader = new BufferedReader(new InputStreamReader(
+                    socket.getInputStream(), "ISO-8859-1"));
+            OutputStream out = socket.getOutputStream();
+            socket.setSoTimeout(300);
+            int responses = 0;
+            boolean open = true;
+
+            while (open) {
+                List<String> paths = new ArrayList<String>();
+                String line = null;
+
+                // Collect the requests available before the timeout
+                try {
+                    while ((line = reader.readLine()) != null) {
+                        if (line.startsWith("GET ")) {
+                            paths.add(line.split(" ")[1]);
+                        } else if (line.startsWith("PUT ")) {
+                            paths.add(line.split(" ")[1] + ":"
+                                    + readBody(reader));
+                        }
+                    }
+
+                    open = false;
+                } catch (SocketTimeoutException ste) {
+                    // Batch completed
+                }
+
+                maxBatch = Math.max(maxBatch, paths.size());
+
+                for (int i = 0; open && (i < paths.size()); i++) {
+                    byte[] body = paths.get(i).getBytes("ISO-8859-1");
+                    boolean close = (connections.get() == 1)
+                            && (++responses == maxResponses);
+                    String head = "HTTP/1.1 200 OK\r\nContent-Type: text/plain\r\nContent-Length: "
+                            + body.length
+                            + (close ? "\r\nConnection: close" : "")
+                            + "\r\n\r\n";
+                    byte[] headBytes = head.getBytes("ISO-8859-1");
+                    byte[] message = new byte[headBytes.length + body.length];
+                    System.arraycopy(headBytes, 0, message, 0, headBytes.length);
+                    System.arraycopy(body, 0, message, headBytes.length,
+                            body.length);
+                    out.write(message);
+                    out.flush();
+                    open = !close;
+                }
+            }
+
+            socket.close();
+        }
+
+        /**
+         * Reads the headers and the entity of a request, returning the
+         * entity.
+         */
+        private String readBody(BufferedReader reader) throws IOException {
+            int length = 0;
+            String line = null;
+
+            while (((line = reader.readLine()) != null) && (line.length() > 0)) {
+                if (line.toLowerCase().startsWith("content-length:")) {
+                    length = Integer.parseInt(line.substring(15).trim());
+                }
+            }
+
+            char[] body = new char[length];
+
+            for (int read = 0; read < length;) {
+                read += reader.read(body, read, length - read);
+            }
+
+            return new String(body);
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!serverSocket.isClosed()) {
+                    Socket socket = serverSocket.accept();
+                    connections.incrementAndGet();
+                    handle(socket);
+                }
+            } catch (IOException e) {
+                // Server stopped
+            }
+        }
+
+        public void shutdown() throws IOException {
+            serverSocket.close();
+        }
+    }
+
+    private BatchServer server;
+
+    private Client client;
+
+    private ConnectorHelper<Client> helper;
+
+    /**
+     * Sends asynchronous GET requests and returns the response texts indexed
+     * by request path.
+     */
+    private Map<String, String> call(int count) throws Exception {
+        final CountDownLatch latch = new CountDownLatch(count);
+        final Map<String, String> results = new ConcurrentHashMap<String, String>();
+
+        Uniform callback = new Uniform() {
+            public void handle(Request request, Response response) {
+                try {
+                    if (response.getStatus().isSuccess()) {
+                        results.put(request.getResourceRef().getPath(),
+                                response.getEntityAsText());
+                    }
+                } finally {
+                    latch.countDown();
+                }
+            }
+        };
+
+        for (int i = 0; i < count; i++) {
+            Request request = new Request(Method.GET, "http://localhost:"
+                    + server.getPort() + "/item" + i);
+            request.setOnResponse(callback);
+            client.handle(request);
+        }
+
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        return results;
+    }
+
+    private void start(int maxResponses) throws Exception {
+        server = new BatchServer(maxResponses);
+        server.start();
+
+        helper = new org.restlet.ext.nio.HttpClientHelper(null);
+        Engine.getInstance().getRegisteredClients().add(0, helper);
+        client = new Client(new Context(), Protocol.HTTP);
+        client.getContext().getParameters().add("pipeliningConnections",
+                "true");
+        client.getContext().getParameters().add("pipeliningDepth", "4");
+        client.getContext().getParameters().add("maxConnectionsPerHost", "1");
+        client.start();
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        if (client != null) {
+            client.stop();
+        }
+
+        if (server != null) {
+            server.shutdown();
+        }
+
+        if (helper != null) {
+            Engine.getInstance().getRegisteredClients().remove(helper);
+        }
+
+        client = null;
+        server = null;
+        helper = null;
+        super.tearDown();
+    }
+
+    public void testPipelinedResponsesCorrelation() throws Exception {
+        start(-1);
+        Map<String, String> results = call(4);
+
+        for (int i = 0; i < 4; i++) {
+            assertEquals("/item" + i, results.get("/item" + i));
+        }
+
+        assertEquals(1, server.connections.get());
+        assertTrue(server.maxBatch > 1);
+    }
+
+    public void testReplayOfStreamingPut() throws Exception {
+        start(1);
+        final CountDownLatch latch = new CountDownLatch(2);
+        final Map<String, String> results = new ConcurrentHashMap<String, String>();
+
+        Uniform callback = new Uniform() {
+            public void handle(Request request, Response response) {
+                try {
+                    if (response.getStatus().isSuccess()) {
+                        results.put(request.getMethod().getName(),
+                                response.getEntityAsText());
+                    }
+                } finally {
+                    latch.countDown();
+                }
+            }
+        };
+
+        Request get = new Request(Method.GET, "http://localhost:"
+                + server.getPort() + "/item0");
+        get.setOnResponse(callback);
+        client.handle(get);
+
+        // The streaming entity can't be pipelined behind the GET request
+        byte[] content = "streamed-content".getBytes("ISO-8859-1");
+        Request put = new Request(Method.PUT, "http://localhost:"
+                + server.getPort() + "/item1", new InputRepresentation(
+                new ByteArrayInputStream(content), MediaType.TEXT_PLAIN,
+                content.length));
+        put.setOnResponse(callback);
+        client.handle(put);
+
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+        assertEquals("/item0", results.get("GET"));
+
+        // Replayed on a new connection with its full entity
+        assertEquals("/item1:streamed-content", results.get("PUT"));
+        assertEquals(2, server.connections.get());
+        assertEquals(1, server.maxBatch);
+    }
+
+    public void testReplayOnConnectionClose() throws Exception {
+        start(1);
+        Map<String, String> results = call(3);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals("/item" + i, results.get("/item" + i));
+        }
+
+        assertTrue(server.connections.get() > 1);
+    }
+
+}
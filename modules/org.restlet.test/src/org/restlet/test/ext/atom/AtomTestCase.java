@@ -36,14 +36,22 @@ package org.restlet.test.ext.atom;
 import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.restlet.data.MediaType;
 import org.restlet.data.Reference;
 import org.restlet.engine.io.IoUtils;
 import org.restlet.ext.atom.Categories;
+import org.restlet.ext.atom.Entry;
 import org.restlet.ext.atom.Feed;
+import org.restlet.ext.atom.FeedIterator;
+import org.restlet.ext.atom.FeedReader;
 import org.restlet.ext.atom.Service;
+import org.restlet.ext.atom.StreamingFeed;
 import org.restlet.representation.FileRepresentation;
+import org.restlet.representation.StringRepresentation;
+import org.restlet.resource.ClientResource;
 import org.restlet.test.RestletTestCase;
 
 /**
@@ -98,4 +106,60 @@ public class AtomTestCase extends RestletTestCase {
         IoUtils.delete(testDir, true);
     }
 
+    public void testFeedIterator() throws Exception {
+        String uri = "clap://class/org/restlet/test/ext/atom/entry.xml";
+        Feed feed = new Feed(uri);
+        FeedIterator iterator = new FeedIterator(new ClientResource(uri).get());
+
+        List<Entry> entries = new ArrayList<Entry>();
+        while (iterator.hasNext()) {
+            entries.add(iterator.next());
+        }
+
+        assertFalse(iterator.hasNext());
+        assertEquals(feed.getEntries().size(), entries.size());
+        for (int i = 0; i < entries.size(); i++) {
+            assertEquals(feed.getEntries().get(i).getTitle().getContent(),
+                    entries.get(i).getTitle().getContent());
+            assertEquals(feed.getEntries().get(i).getId(), entries.get(i)
+                    .getId());
+        }
+
+        // Feed metadata is kept but entries are detached
+        assertEquals(feed.getTitle().getContent(), iterator.getFeed()
+                .getTitle().getContent());
+        assertEquals(feed.getId(), iterator.getFeed().getId());
+        assertTrue(iterator.getFeed().getEntries().isEmpty());
+
+        // Entries can also be transmitted to a callback
+        final List<Entry> received = new ArrayList<Entry>();
+        iterator = new FeedIterator(new ClientResource(uri).get(),
+                new FeedReader() {
+                    @Override
+                    public void endEntry(Entry entry) {
+                        received.add(entry);
+                    }
+                });
+        iterator.parse();
+        assertEquals(feed.getEntries().size(), received.size());
+    }
+
+    public void testStreamingFeed() throws Exception {
+        Feed feed = new Feed("clap://class/org/restlet/test/ext/atom/entry.xml");
+
+        StreamingFeed streamingFeed = new StreamingFeed(feed.getEntries()
+                .iterator());
+        streamingFeed.setTitle("Streamed");
+        streamingFeed.setId(feed.getId());
+        assertTrue(streamingFeed.isTransient());
+
+        Feed feed2 = new Feed(new StringRepresentation(
+                streamingFeed.getText()));
+        assertEquals("Streamed", feed2.getTitle().getContent());
+        assertEquals(feed.getId(), feed2.getId());
+        assertEquals(feed.getEntries().size(), feed2.getEntries().size());
+        assertEquals(feed.getEntries().get(0).getTitle().getContent(), feed2
+                .getEntries().get(0).getTitle().getContent());
+    }
+
 }
@@ -119,8 +119,15 @@ public class CookieAuthenticatorTestCase extends RestletTestCase {
         // 4) Retry connect with right credentials
         cr.getCookies().add(cs.getName(), cs.getValue());
         assertEquals("Hello, world!", cr.get(String.class));
+        CookieSetting refreshed = cr.getCookieSettings().getFirst(
+                "Credentials");
+        assertNotNull("No refreshed cookie credentials found", refreshed);
 
-        // 5) Logout
+        // 5) Retry connect with the refreshed credentials
+        cr.getCookies().set(refreshed.getName(), refreshed.getValue());
+        assertEquals("Hello, world!", cr.get(String.class));
+
+        // 6) Logout
         ClientResource logoutCr = cr.getChild("/logout");
         logoutCr.get();
         assertEquals(Status.SUCCESS_OK, logoutCr.getStatus());
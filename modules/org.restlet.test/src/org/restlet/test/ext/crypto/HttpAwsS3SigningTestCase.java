@@ -151,6 +151,12 @@ public class HttpAwsS3SigningTestCase extends RestletTestCase {
 
         result = AwsUtils.getS3Signature(uploadRequest, ACCESS_KEY.toCharArray());
         Assert.assertEquals("C0FlOtU8Ylb9KDTpZqYkZPX91iI=", result);
+
+        // The reused MAC is initialized with each key
+        result = AwsUtils.getS3Signature(getRequest, "otherKey".toCharArray());
+        Assert.assertFalse("xXjDGYUmKxnwqr5KXNPGldn5LbA=".equals(result));
+        result = AwsUtils.getS3Signature(getRequest, ACCESS_KEY.toCharArray());
+        Assert.assertEquals("xXjDGYUmKxnwqr5KXNPGldn5LbA=", result);
     }
 
     @Test
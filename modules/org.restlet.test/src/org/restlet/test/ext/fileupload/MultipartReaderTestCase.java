@@ -0,0 +1,248 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.test.ext.fileupload;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.restlet.data.MediaType;
+import org.restlet.data.Status;
+import org.restlet.engine.util.StringUtils;
+import org.restlet.ext.fileupload.MultipartListener;
+import org.restlet.ext.fileupload.MultipartReader;
+import org.restlet.representation.ByteArrayRepresentation;
+import org.restlet.representation.FileRepresentation;
+import org.restlet.representation.Representation;
+import org.restlet.resource.ResourceException;
+import org.restlet.test.RestletTestCase;
+
+/**
+ * Test case for the streaming multipart reader and listener.
+ * 
+ * @author Jerome Louvel
+ */
+public class MultipartReaderTestCase extends RestletTestCase {
+
+    private static final String BOUNDARY = "----RestletBoundary7MA4YWxk";
+
+    private byte[] file;
+
+    private Representation createEntity() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        write(bytes, "preamble\r\n--" + BOUNDARY + "\r\n");
+        write(bytes, "Content-Disposition: form-data; name=\"title\"\r\n\r\n");
+        write(bytes, "Hello\r\n--" + BOUNDARY + "\r\n");
+        write(bytes,
+                "Content-Disposition: form-data; name=\"file\"; filename=\"data.bin\"\r\n");
+        write(bytes, "Content-Type: application/octet-stream\r\n\r\n");
+        bytes.write(this.file);
+        write(bytes, "\r\n--" + BOUNDARY + "\r\n");
+        write(bytes, "Content-Disposition: form-data; name=\"empty\"\r\n\r\n");
+        write(bytes, "\r\n--" + BOUNDARY + "--\r\nepilogue");
+        byte[] content = bytes.toByteArray();
+
+        Representation result = new ByteArrayRepresentation(content, 0,
+                content.length, MediaType.valueOf("multipart/form-data; boundary="
+                        + BOUNDARY));
+        result.setSize(content.length);
+        return result;
+    }
+
+    private byte[] read(Representation part) throws IOException {
+        ByteArrayOutputStream result = new ByteArrayOutputStream();
+        part.write(result);
+        return result.toByteArray();
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+
+        // Binary content with partial delimiters
+        this.file = new byte[100000];
+        new Random(1).nextBytes(this.file);
+        byte[] partial = StringUtils.getLatin1Bytes("\r\n--" + BOUNDARY);
+
+        for (int i = 1000; i < this.file.length - partial.length; i += 997) {
+            System.arraycopy(partial, 0, this.file, i, i % partial.length);
+        }
+    }
+
+    public void testListener() throws Exception {
+        final List<Representation> parts = new ArrayList<Representation>();
+        final List<IOException> errors = new ArrayList<IOException>();
+        MultipartListener listener = new MultipartListener(createEntity(), 100) {
+            @Override
+            protected void onCompleted() {
+                parts.add(null);
+            }
+
+            @Override
+            protected void onError(IOException ioe) {
+                errors.add(ioe);
+            }
+
+            @Override
+            protected void onPart(Representation part) {
+                parts.add(part);
+            }
+        };
+        listener.setSpoolThreshold(1000);
+
+        while (parts.size() < 4 && errors.isEmpty()) {
+            listener.onSelected(null);
+        }
+
+        assertTrue(errors.isEmpty());
+        assertEquals("Hello", parts.get(0).getText());
+        assertTrue(parts.get(1) instanceof FileRepresentation);
+        assertTrue(Arrays.equals(this.file, read(parts.get(1))));
+        assertEquals(0, parts.get(2).getSize());
+        assertNull(parts.get(3));
+        parts.get(1).release();
+    }
+
+    public void testListenerMaxPartSize() throws Exception {
+        final List<IOException> errors = new ArrayList<IOException>();
+        MultipartListener listener = new MultipartListener(createEntity()) {
+            @Override
+            protected void onError(IOException ioe) {
+                errors.add(ioe);
+            }
+
+            @Override
+            protected void onPart(Representation part) {
+            }
+        };
+        listener.setMaxPartSize(50000);
+
+        for (int i = 0; i < 100 && errors.isEmpty(); i++) {
+            listener.onSelected(null);
+        }
+
+        assertEquals(1, errors.size());
+        assertEquals(Status.CLIENT_ERROR_REQUEST_ENTITY_TOO_LARGE,
+                ((ResourceException) errors.get(0).getCause()).getStatus());
+    }
+
+    public void testMaxPartSize() throws Exception {
+        MultipartReader reader = new MultipartReader(createEntity());
+        reader.setMaxPartSize(50000);
+        assertEquals("Hello", reader.nextPart().getText());
+
+        try {
+            reader.nextPart();
+            reader.nextPart();
+            fail("The maximum part size was ignored");
+        } catch (ResourceException e) {
+            assertEquals(Status.CLIENT_ERROR_REQUEST_ENTITY_TOO_LARGE,
+                    e.getStatus());
+        }
+    }
+
+    public void testMaxSize() throws Exception {
+        MultipartReader reader = new MultipartReader(createEntity());
+        reader.setMaxSize(1000);
+
+        try {
+            reader.nextPart();
+            fail("The maximum size was ignored");
+        } catch (ResourceException e) {
+            assertEquals(Status.CLIENT_ERROR_REQUEST_ENTITY_TOO_LARGE,
+                    e.getStatus());
+        }
+    }
+
+    public void testNextPart() throws Exception {
+        MultipartReader reader = new MultipartReader(createEntity(), 128);
+        Representation part = reader.nextPart();
+        assertEquals(MediaType.TEXT_PLAIN, part.getMediaType());
+        assertEquals("title",
+                part.getDisposition().getParameters().getFirstValue("name"));
+        assertEquals("Hello", part.getText());
+
+        part = reader.nextPart();
+        assertEquals(MediaType.APPLICATION_OCTET_STREAM, part.getMediaType());
+        assertEquals("data.bin", part.getDisposition().getFilename());
+        assertTrue(Arrays.equals(this.file, read(part)));
+
+        part = reader.nextPart();
+        assertEquals("empty",
+                part.getDisposition().getParameters().getFirstValue("name"));
+        assertEquals(0, read(part).length);
+        assertNull(reader.nextPart());
+        assertNull(reader.nextPart());
+    }
+
+    public void testReadParts() throws Exception {
+        for (boolean memoryMapped : new boolean[] { false, true }) {
+            MultipartReader reader = new MultipartReader(createEntity(), 100);
+            reader.setMemoryMapped(memoryMapped);
+            List<Representation> parts = reader.readParts();
+            assertEquals(3, parts.size());
+            assertEquals("Hello", parts.get(0).getText());
+            assertEquals("data.bin", parts.get(1).getDisposition()
+                    .getFilename());
+
+            File spooled = ((FileRepresentation) parts.get(1)).getFile();
+            assertEquals(this.file.length, spooled.length());
+            assertTrue(Arrays.equals(this.file, read(parts.get(1))));
+            parts.get(1).release();
+            assertFalse(spooled.exists());
+        }
+    }
+
+    public void testSkipParts() throws Exception {
+        MultipartReader reader = new MultipartReader(createEntity(), 100);
+        reader.nextPart();
+        Representation part = reader.nextPart();
+        byte[] buffer = new byte[10];
+        assertEquals(10, part.getStream().read(buffer));
+        part = reader.nextPart();
+        assertEquals("empty",
+                part.getDisposition().getParameters().getFirstValue("name"));
+        assertNull(reader.nextPart());
+    }
+
+    private void write(ByteArrayOutputStream bytes, String text)
+            throws IOException {
+        bytes.write(StringUtils.getLatin1Bytes(text));
+    }
+
+}
@@ -162,4 +162,30 @@ public class FormTest extends JaxRsTestCase {
     public void testParamOnly() throws IOException {
         check("paramOnly", false);
     }
+
+    /**
+     * Checks that sequential calls each read the form of their own entity.
+     * 
+     * @see FormTestResource#paramOnly(String, String)
+     */
+    public void testParamOnlySequential() throws IOException {
+        String[][] values = { { "b", "d" }, { "x", "y" }, { "b", null } };
+
+        for (String[] value : values) {
+            Form form = new Form();
+            form.add("a", value[0]);
+            if (value[1] != null) {
+                form.add("c", value[1]);
+            }
+
+            Response response = post("paramOnly", form.getWebRepresentation());
+            sysOutEntityIfError(response);
+            assertEquals(Status.SUCCESS_OK, response.getStatus());
+            String expectedEntity = "a -> " + value[0] + "\n";
+            if (value[1] != null) {
+                expectedEntity += "c -> " + value[1] + "\n";
+            }
+            assertEquals(expectedEntity, response.getEntity().getText());
+        }
+    }
 }
@@ -96,6 +96,15 @@ public class PathRegExpTests extends TestCase {
 
     private final PathRegExp regExpOneSegment2 = newPathRegExp(PATH_PATTERN_2);
 
+    public void testLiteralPrefix() {
+        assertEquals("abc/", this.regExpMultipleSegments1.getLiteralPrefix());
+        assertEquals("", newPathRegExp("{id}").getLiteralPrefix());
+        assertEquals("", PathRegExp.EMPTY.getLiteralPrefix());
+        assertEquals("abc", newPathRegExp("/abc.xml").getLiteralPrefix());
+        assertNull(this.regExpMultipleSegments1.match(new RemainingPath(
+                "/abd/25478/shf/12345/xyz")));
+    }
+
     /**
      * Test method for
      * {@link org.restlet.ext.jaxrs.internal.util.PathRegExp#match(java.lang.String)} .
@@ -42,10 +42,14 @@ import junit.framework.TestCase;
 import org.restlet.engine.Engine;
 import org.restlet.ext.jaxrs.internal.core.ThreadLocalizedContext;
 import org.restlet.ext.jaxrs.internal.util.PathRegExp;
+import org.restlet.ext.jaxrs.internal.util.RemainingPath;
+import org.restlet.ext.jaxrs.internal.wrappers.MatchingTable;
 import org.restlet.ext.jaxrs.internal.wrappers.ResourceClasses;
 import org.restlet.ext.jaxrs.internal.wrappers.RootResourceClass;
 import org.restlet.test.ext.jaxrs.services.path.IllegalPathService1;
 import org.restlet.test.ext.jaxrs.services.path.IllegalPathService2;
+import org.restlet.test.ext.jaxrs.services.resources.PersonResource;
+import org.restlet.test.ext.jaxrs.services.resources.PersonsResource;
 
 /**
  * @author Stephan Koops
@@ -81,6 +85,33 @@ public class RootResourceClassTest extends TestCase {
         assertEquals("/afsdf:use", rrcRegExp.getPathTemplateDec());
     }
 
+    public void testRootMatchingTable() throws Exception {
+        final ResourceClasses resourceClasses = new ResourceClasses(
+                new ThreadLocalizedContext(), null, null, Engine
+                        .getAnonymousLogger());
+        assertNull(resourceClasses.getRootMatchingTable().getFirstMatching(
+                new RemainingPath("persons")));
+
+        assertTrue(resourceClasses.addRootClass(PersonsResource.class));
+        assertTrue(resourceClasses.addRootClass(PersonResource.class));
+        final MatchingTable<RootResourceClass> table = resourceClasses
+                .getRootMatchingTable();
+        assertEquals(2, table.getMembers().size());
+        assertEquals(PersonResource.class, table.getMembers().get(0)
+                .getJaxRsClass());
+        assertEquals("persons/", table.getMembers().get(0).getPathRegExp()
+                .getLiteralPrefix());
+
+        assertEquals(PersonsResource.class, table.getFirstMatching(
+                new RemainingPath("persons")).getJaxRsClass());
+        assertEquals(PersonsResource.class, table.getFirstMatching(
+                new RemainingPath("/persons/")).getJaxRsClass());
+        assertEquals(PersonResource.class, table.getFirstMatching(
+                new RemainingPath("persons/5")).getJaxRsClass());
+        assertNull(table.getFirstMatching(new RemainingPath("person")));
+        assertNull(table.getFirstMatching(new RemainingPath("other/5")));
+    }
+
     static RootResourceClass getPerRequestRootClassWrapper(
             ResourceClasses resourceClasses, Class<?> jaxRsRootResourceClass)
             throws Exception {
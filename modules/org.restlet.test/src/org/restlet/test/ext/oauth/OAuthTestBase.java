@@ -96,6 +96,10 @@ public class OAuthTestBase {
             return STUB_CLIENT_ID;
         }
 
+        public int getRemainingPeriod() {
+            return 3600;
+        }
+
         public boolean isExpired() {
             return false;
         }
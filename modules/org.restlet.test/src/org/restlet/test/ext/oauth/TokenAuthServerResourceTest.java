@@ -40,6 +40,7 @@ import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 import static org.restlet.ext.oauth.OAuthResourceDefs.ACCESS_TOKEN;
 import static org.restlet.ext.oauth.OAuthResourceDefs.ERROR;
+import static org.restlet.ext.oauth.OAuthResourceDefs.EXPIRES_IN;
 import static org.restlet.ext.oauth.OAuthResourceDefs.SCOPE;
 import static org.restlet.ext.oauth.OAuthResourceDefs.TOKEN_TYPE;
 import static org.restlet.ext.oauth.OAuthResourceDefs.TOKEN_TYPE_BEARER;
@@ -155,5 +156,6 @@ public class TokenAuthServerResourceTest extends OAuthTestBase {
         assertThat(response.getString(USERNAME), is(STUB_USERNAME));
         assertThat(Scopes.parseScope(response.getString(SCOPE)),
                 is(arrayContainingInAnyOrder("a", "b")));
+        assertThat(response.getInt(EXPIRES_IN), is(3600));
     }
 }
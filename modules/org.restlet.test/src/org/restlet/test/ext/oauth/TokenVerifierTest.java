@@ -40,6 +40,8 @@ import static org.restlet.ext.oauth.OAuthResourceDefs.ACCESS_TOKEN;
 import static org.restlet.ext.oauth.OAuthResourceDefs.SCOPE;
 import static org.restlet.ext.oauth.OAuthResourceDefs.USERNAME;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
 import org.json.JSONObject;
 import org.junit.AfterClass;
 import org.junit.BeforeClass;
@@ -86,9 +88,12 @@ public class TokenVerifierTest extends OAuthTestBase {
 
     public static class StubServerResource extends ServerResource {
 
+        private static final AtomicInteger calls = new AtomicInteger();
+
         @Post
         public Representation authenticate(Representation input)
                 throws Exception {
+            calls.incrementAndGet();
             JSONObject call = new JsonRepresentation(input).getJsonObject();
 
             if (call.getString(ACCESS_TOKEN).equals(STUB_ACCESS_TOKEN)) {
@@ -225,4 +230,61 @@ public class TokenVerifierTest extends OAuthTestBase {
         assertThat(Scopes.parseScope(info.getRoles()),
                 is(arrayContainingInAnyOrder("a", "b")));
     }
+
+    /**
+     * Test case 7: Valid access_token cached.
+     */
+    @Test
+    public void testCase7() {
+        TokenVerifier verifier = new TokenVerifier(tokenAuthURI);
+        verifier.setCacheTimeout(60);
+        int calls = StubServerResource.calls.get();
+
+        for (int i = 0; i < 3; i++) {
+            Request request = new Request();
+            ChallengeResponse cr = new ChallengeResponse(
+                    ChallengeScheme.HTTP_OAUTH_BEARER);
+            cr.setRawValue(STUB_ACCESS_TOKEN);
+            request.setChallengeResponse(cr);
+
+            int result = verifier.verify(request, new Response(request));
+            assertThat(result, is(Verifier.RESULT_VALID));
+            assertThat(request.getClientInfo().getUser().getIdentifier(),
+                    is("testuser"));
+        }
+
+        assertThat(StubServerResource.calls.get(), is(calls + 1));
+
+        verifier.clearCache();
+        Request request = new Request();
+        ChallengeResponse cr = new ChallengeResponse(
+                ChallengeScheme.HTTP_OAUTH_BEARER);
+        cr.setRawValue(STUB_ACCESS_TOKEN);
+        request.setChallengeResponse(cr);
+        verifier.verify(request, new Response(request));
+        assertThat(StubServerResource.calls.get(), is(calls + 2));
+    }
+
+    /**
+     * Test case 8: Invalid access_token cached.
+     */
+    @Test
+    public void testCase8() throws Exception {
+        TokenVerifier verifier = new TokenVerifier(tokenAuthURI);
+        verifier.setNegativeCacheTimeout(60);
+        int calls = StubServerResource.calls.get();
+
+        for (int i = 0; i < 3; i++) {
+            Request request = new Request();
+            ChallengeResponse cr = new ChallengeResponse(
+                    ChallengeScheme.HTTP_OAUTH_BEARER);
+            cr.setRawValue("qux");
+            request.setChallengeResponse(cr);
+
+            int result = verifier.verify(request, new Response(request));
+            assertThat(result, is(Verifier.RESULT_INVALID));
+        }
+
+        assertThat(StubServerResource.calls.get(), is(calls + 1));
+    }
 }
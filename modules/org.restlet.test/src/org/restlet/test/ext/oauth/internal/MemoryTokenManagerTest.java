@@ -0,0 +1,207 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.test.ext.oauth.internal;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.restlet.ext.oauth.OAuthException;
+import org.restlet.ext.oauth.internal.AuthSession;
+import org.restlet.ext.oauth.internal.Client;
+import org.restlet.ext.oauth.internal.Client.ClientType;
+import org.restlet.ext.oauth.internal.ServerToken;
+import org.restlet.ext.oauth.internal.Token;
+import org.restlet.ext.oauth.internal.memory.MemoryClientManager;
+import org.restlet.ext.oauth.internal.memory.MemoryTokenManager;
+
+/**
+ * Tests the indexes and the purge of the {@link MemoryTokenManager}.
+ * 
+ * @author Jerome Louvel
+ */
+public class MemoryTokenManagerTest {
+
+    private Client client1;
+
+    private Client client2;
+
+    private MemoryTokenManager tokens;
+
+    @Before
+    public void setupTokenManager() {
+        MemoryClientManager clients = new MemoryClientManager();
+        client1 = clients.createClient(ClientType.CONFIDENTIAL, null, null);
+        client2 = clients.createClient(ClientType.CONFIDENTIAL, null, null);
+        tokens = new MemoryTokenManager();
+    }
+
+    @Test
+    public void testFindTokens() throws Exception {
+        Token token1 = tokens.generateToken(client1, "alice", new String[] {});
+        Token token2 = tokens.generateToken(client2, "alice", new String[] {});
+        Token token3 = tokens.generateToken(client1, "bob", new String[] {});
+        Token token4 = tokens.generateToken(client1, new String[] {});
+
+        assertSame(token1, tokens.findToken(client1, "alice"));
+        assertSame(token2, tokens.findToken(client2, "alice"));
+        assertSame(token4, tokens.findToken(client1));
+        assertNull(tokens.findToken(client2, "bob"));
+        assertEquals(2, tokens.findTokens("alice").length);
+        assertEquals(3, tokens.findTokens(client1).length);
+
+        // A new token replaces the previous one of the same owner
+        Token token5 = tokens.generateToken(client1, "bob", new String[] {});
+        assertSame(token5, tokens.findToken(client1, "bob"));
+        assertEquals(4, tokens.getTokenCount());
+
+        tokens.revokeAllTokens("alice");
+        assertNull(tokens.findToken(client1, "alice"));
+        assertEquals(0, tokens.findTokens("alice").length);
+        assertEquals(2, tokens.findTokens(client1).length);
+
+        tokens.revokeAllTokens(client1);
+        assertEquals(0, tokens.getTokenCount());
+        assertNotNull(token3);
+    }
+
+    @Test
+    public void testPurge() throws Exception {
+        AuthSession session = AuthSession.newAuthSession();
+        session.setSessionTimeout(0);
+        tokens.storeSession(session);
+        assertEquals(1, tokens.getSessionCount());
+        assertEquals(1, tokens.purgeExpired());
+        assertEquals(0, tokens.getSessionCount());
+
+        tokens.setExpirePeriod(0);
+        tokens.setRefreshExpirePeriod(1);
+        tokens.generateToken(client1, "alice", new String[] {});
+        assertEquals(0, tokens.purgeExpired());
+        Thread.sleep(2100);
+        assertEquals(1, tokens.purgeExpired());
+        assertEquals(0, tokens.getTokenCount());
+        assertNull(tokens.findToken(client1, "alice"));
+    }
+
+    @Test
+    public void testPurgeRemovedTokens() throws Exception {
+        tokens.setExpirePeriod(0);
+        tokens.generateToken(client1, "alice", new String[] {});
+        tokens.revokeToken(client1, "alice");
+
+        // The second token replaces the first one
+        tokens.generateToken(client1, "bob", new String[] {});
+        tokens.generateToken(client1, "bob", new String[] {});
+        assertEquals(1, tokens.getTokenCount());
+
+        // The purges of the removed tokens are skipped
+        Thread.sleep(1100);
+        assertEquals(1, tokens.purgeExpired());
+        assertEquals(0, tokens.getTokenCount());
+    }
+
+    @Test
+    public void testPurgeWithoutRefreshPeriod() throws Exception {
+        tokens.setExpirePeriod(0);
+        tokens.generateToken(client1, "alice", new String[] {});
+        assertEquals(0, tokens.purgeExpired());
+        Thread.sleep(1100);
+        assertEquals(1, tokens.purgeExpired());
+        assertEquals(0, tokens.getTokenCount());
+    }
+
+    @Test
+    public void testRemainingPeriod() throws Exception {
+        tokens.setExpirePeriod(1);
+        ServerToken token = (ServerToken) tokens.generateToken(client1,
+                "alice", new String[] {});
+        assertTrue(token.getRemainingPeriod() <= 1);
+        Thread.sleep(2100);
+        assertEquals(0, token.getRemainingPeriod());
+    }
+
+    @Test
+    public void testRefreshToken() throws Exception {
+        Token token = tokens.generateToken(client1, "alice",
+                new String[] { "a" });
+        Token refreshed = tokens.refreshToken(client1,
+                token.getRefreshToken(), null);
+
+        assertSame(refreshed, tokens.findToken(client1, "alice"));
+        assertSame(refreshed, tokens.validateToken(refreshed.getAccessToken()));
+        assertEquals(1, tokens.getTokenCount());
+
+        try {
+            tokens.refreshToken(client1, token.getRefreshToken(), null);
+            fail("OAuthException expected.");
+        } catch (OAuthException ex) {
+            // The previous refresh token was replaced
+        }
+
+        try {
+            tokens.validateToken(token.getAccessToken());
+            fail("OAuthException expected.");
+        } catch (OAuthException ex) {
+            // The previous access token was revoked
+        }
+    }
+
+    @Test
+    public void testRefreshTokenExpiration() throws Exception {
+        tokens.setRefreshExpirePeriod(1);
+        tokens.setUpdateRefreshToken(false);
+        Token token = tokens.generateToken(client1, "alice",
+                new String[] { "a" });
+
+        Thread.sleep(1100);
+        Token refreshed = tokens.refreshToken(client1,
+                token.getRefreshToken(), null);
+        assertEquals(token.getRefreshToken(), refreshed.getRefreshToken());
+
+        // The carried over refresh token keeps its issue time
+        Thread.sleep(1000);
+        try {
+            tokens.refreshToken(client1, token.getRefreshToken(), null);
+            fail("OAuthException expected.");
+        } catch (OAuthException ex) {
+            // The refresh token expired
+        }
+    }
+}
@@ -33,11 +33,30 @@
 
 package org.restlet.test.ext.odata;
 
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 
 import org.restlet.Component;
+import org.restlet.Context;
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.Restlet;
+import org.restlet.data.ChallengeResponse;
+import org.restlet.data.ChallengeScheme;
+import org.restlet.data.MediaType;
 import org.restlet.data.Protocol;
+import org.restlet.data.Reference;
+import org.restlet.data.Status;
+import org.restlet.engine.header.ContentType;
+import org.restlet.ext.odata.Batch;
 import org.restlet.ext.odata.Query;
+import org.restlet.ext.odata.internal.MetadataCache;
+import org.restlet.ext.odata.internal.StreamingEntryIterator;
+import org.restlet.resource.ResourceException;
 import org.restlet.test.RestletTestCase;
 import org.restlet.test.ext.odata.cafe.Cafe;
 import org.restlet.test.ext.odata.cafe.CafeService;
@@ -52,6 +71,49 @@ import org.restlet.test.ext.odata.cafe.Item;
  */
 public class ODataCafeTestCase extends RestletTestCase {
 
+    /** Simulates the "$batch" endpoint with a canned response. */
+    private static class BatchRestlet extends Restlet {
+
+        /** The latest batch request received. */
+        private volatile String received;
+
+        @Override
+        public void handle(Request request, Response response) {
+            try {
+                this.received = request.getEntityAsText();
+            } catch (Exception e) {
+                this.received = null;
+            }
+
+            String name = "<?xml version=\"1.0\" encoding=\"utf-8\"?>"
+                    + "<Name xmlns=\"http://schemas.microsoft.com/ado/2007/08/dataservices\">"
+                    + "Le Grand Cafe</Name>";
+            String body = "--batchresponse_1\r\n"
+                    + "Content-Type: multipart/mixed; boundary=changesetresponse_1\r\n"
+                    + "\r\n" + "--changesetresponse_1\r\n"
+                    + "Content-Type: application/http\r\n"
+                    + "Content-Transfer-Encoding: binary\r\n" + "\r\n"
+                    + "HTTP/1.1 204 No Content\r\n" + "\r\n" + "\r\n"
+                    + "--changesetresponse_1\r\n"
+                    + "Content-Type: application/http\r\n"
+                    + "Content-Transfer-Encoding: binary\r\n" + "\r\n"
+                    + "HTTP/1.1 204 No Content\r\n" + "\r\n" + "\r\n"
+                    + "--changesetresponse_1--\r\n" + "--batchresponse_1\r\n"
+                    + "Content-Type: application/http\r\n"
+                    + "Content-Transfer-Encoding: binary\r\n" + "\r\n"
+                    + "HTTP/1.1 200 OK\r\n"
+                    + "Content-Type: application/xml;charset=utf-8\r\n"
+                    + "Content-Length: " + name.length() + "\r\n" + "\r\n"
+                    + name + "\r\n" + "--batchresponse_1--\r\n";
+            response.setStatus(Status.SUCCESS_ACCEPTED);
+            response.setEntity(body, ContentType
+                    .readMediaType("multipart/mixed; boundary=batchresponse_1"));
+        }
+    }
+
+    /** The "$batch" endpoint. */
+    private BatchRestlet batchRestlet = new BatchRestlet();
+
     /** Inner component. */
     private Component component = new Component();
 
@@ -64,6 +126,7 @@ public class ODataCafeTestCase extends RestletTestCase {
 
         component.getServers().add(Protocol.HTTP, 8111);
         component.getClients().add(Protocol.CLAP);
+        component.getDefaultHost().attach("/Cafe.svc/$batch", batchRestlet);
         component.getDefaultHost().attach("/Cafe.svc",
                 new org.restlet.test.ext.odata.cafe.CafeApplication());
         component.start();
@@ -78,6 +141,89 @@ public class ODataCafeTestCase extends RestletTestCase {
         super.tearDown();
     }
 
+    /**
+     * Tests the batch of operations.
+     */
+    public void testBatch() throws Exception {
+        Cafe cafe = service.createCafeQuery("/Cafes").iterator().next();
+        Batch batch = service.createBatch();
+        batch.updateEntity(cafe);
+        batch.deleteEntity("/Cafes('2')");
+        batch.loadProperty(cafe, "Name");
+        assertEquals(3, batch.size());
+
+        List<Response> responses = batch.execute();
+        assertEquals(0, batch.size());
+        assertEquals(3, responses.size());
+        assertEquals(Status.SUCCESS_NO_CONTENT, responses.get(0).getStatus());
+        assertEquals(Status.SUCCESS_NO_CONTENT, responses.get(1).getStatus());
+        assertEquals(Status.SUCCESS_OK, responses.get(2).getStatus());
+        assertTrue(MediaType.APPLICATION_XML.equals(responses.get(2)
+                .getEntity().getMediaType()));
+        assertEquals("Le Grand Cafe", cafe.getName());
+
+        String received = batchRestlet.received;
+        assertNotNull(received);
+        assertTrue(received.contains("Content-Type: multipart/mixed; boundary=changeset_"));
+        assertTrue(received
+                .contains("PUT http://localhost:8111/Cafe.svc/Cafes('1') HTTP/1.1"));
+        assertTrue(received
+                .contains("DELETE http://localhost:8111/Cafe.svc/Cafes('2') HTTP/1.1"));
+        assertTrue(received
+                .contains("GET http://localhost:8111/Cafe.svc/Cafes('1')/Name HTTP/1.1"));
+    }
+
+    /**
+     * Tests the sharing of the parsed metadata.
+     */
+    public void testMetadataCache() throws Exception {
+        // Metadata are not cached by default
+        assertNull(service.getMetadataCache());
+
+        MetadataCache cache = new MetadataCache();
+        service.setMetadataCache(cache);
+        assertNull(cache.get(service.getServiceRef(), null));
+
+        assertTrue(service.createCafeQuery("/Cafes").iterator().hasNext());
+        MetadataCache.Version version = cache.get(service.getServiceRef(),
+                null);
+        assertNotNull(version);
+        assertFalse(version.isExpired());
+
+        // Another service instance sharing the cache reuses the same version
+        CafeService other = new CafeService();
+        other.setMetadataCache(cache);
+        assertTrue(other.createCafeQuery("/Cafes").iterator().hasNext());
+        assertSame(version, cache.get(other.getServiceRef(), null));
+        assertEquals(1, cache.size());
+
+        // Distinct credentials don't share the version
+        ChallengeResponse credentials = new ChallengeResponse(
+                ChallengeScheme.HTTP_BASIC, "scott", "tiger");
+        other = new CafeService();
+        other.setMetadataCache(cache);
+        other.setCredentials(credentials);
+        assertTrue(other.createCafeQuery("/Cafes").iterator().hasNext());
+        assertNotSame(version, cache.get(other.getServiceRef(), credentials));
+        assertNull(cache.get(other.getServiceRef(), new ChallengeResponse(
+                ChallengeScheme.HTTP_BASIC, "scott", "lion")));
+        assertEquals(2, cache.size());
+
+        // Without validators, an expired version is downloaded again
+        version.setExpirationTime(0);
+        other = new CafeService();
+        other.setMetadataCache(cache);
+        assertTrue(other.createCafeQuery("/Cafes").iterator().hasNext());
+        assertNotSame(version, cache.get(other.getServiceRef(), null));
+
+        // The least recently used versions are evicted
+        cache.setMaxSize(1);
+        cache.put(new Reference("http://localhost:8111/Other.svc"), null,
+                version);
+        assertEquals(1, cache.size());
+        assertNull(cache.get(service.getServiceRef(), null));
+    }
+
     /**
      * Tests the parsing of Feed element.
      */
@@ -243,4 +389,97 @@ public class ODataCafeTestCase extends RestletTestCase {
         assertEquals("Marly Le Roi", cafe.getCity());
         assertEquals(78310, cafe.getZipCode());
     }
+
+    /**
+     * Tests the server paging feature in streaming mode.
+     */
+    public void testStreamingServerPaging() throws Exception {
+        Query<Cafe> query = service.createCafeQuery("/Cafes")
+                .skipToken("Skip1").stream(1);
+        assertTrue(query.isStreaming());
+        assertEquals(1, query.getPrefetchDepth());
+
+        Iterator<Cafe> iterator = query.iterator();
+        assertTrue(iterator instanceof StreamingEntryIterator);
+
+        String[] ids = { "1", "2", "1", "2" };
+        for (String id : ids) {
+            assertTrue(iterator.hasNext());
+            Cafe cafe = iterator.next();
+            assertEquals(id, cafe.getId());
+            assertNotNull(cafe.getName());
+        }
+
+        assertFalse(iterator.hasNext());
+        assertNull(((StreamingEntryIterator<Cafe>) iterator).getError());
+
+        // Abandon an iteration before its end
+        StreamingEntryIterator<Cafe> streaming = (StreamingEntryIterator<Cafe>) query
+                .iterator();
+        assertEquals("1", streaming.next().getId());
+        streaming.close();
+        assertFalse(streaming.hasNext());
+    }
+
+    /**
+     * Tests that the producer gives up when the consumer stays idle.
+     */
+    @SuppressWarnings("unchecked")
+    public void testStreamingAbandoned() throws Exception {
+        StreamingEntryIterator<Cafe> streaming = (StreamingEntryIterator<Cafe>) service
+                .createCafeQuery("/Cafes").skipToken("Skip1").stream(0)
+                .iterator();
+        streaming.setMaxIdleTime(200);
+        assertEquals("1", streaming.next().getId());
+
+        // The producer waits for the end of the first page to be consumed
+        Thread.sleep(1000);
+        assertEquals("2", streaming.next().getId());
+
+        try {
+            streaming.hasNext();
+            fail("The producer should have given up");
+        } catch (ResourceException e) {
+            assertTrue(e.getCause() instanceof CancellationException);
+        }
+
+        assertFalse(streaming.hasNext());
+    }
+
+    /**
+     * Tests that the producer runs on the executor service of the current
+     * context and that the latest response is updated by the consumer.
+     */
+    public void testStreamingExecutor() throws Exception {
+        final List<Runnable> tasks = new ArrayList<Runnable>();
+        ScheduledExecutorService executor = new ScheduledThreadPoolExecutor(1) {
+            @Override
+            public void execute(Runnable command) {
+                tasks.add(command);
+                super.execute(command);
+            }
+        };
+
+        Context context = new Context();
+        context.setExecutorService(executor);
+        Context previous = Context.getCurrent();
+        Context.setCurrent(context);
+
+        try {
+            Iterator<Cafe> iterator = service.createCafeQuery("/Cafes")
+                    .skipToken("Skip1").stream(1).iterator();
+            service.setLatestResponse(null);
+            assertEquals(1, tasks.size());
+            assertEquals("1", iterator.next().getId());
+            assertNull(service.getLatestResponse());
+            assertEquals("2", iterator.next().getId());
+
+            // Reaching the end of the page updates the latest response
+            assertTrue(iterator.hasNext());
+            assertNotNull(service.getLatestResponse());
+        } finally {
+            Context.setCurrent(previous);
+            executor.shutdownNow();
+        }
+    }
 }
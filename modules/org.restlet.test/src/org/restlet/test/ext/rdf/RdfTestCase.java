@@ -33,7 +33,15 @@
 
 package org.restlet.test.ext.rdf;
 
+import java.util.List;
+
+import org.restlet.data.Language;
 import org.restlet.data.MediaType;
+import org.restlet.data.Reference;
+import org.restlet.ext.rdf.Graph;
+import org.restlet.ext.rdf.GraphHandler;
+import org.restlet.ext.rdf.Link;
+import org.restlet.ext.rdf.Literal;
 import org.restlet.ext.rdf.RdfRepresentation;
 import org.restlet.representation.Representation;
 import org.restlet.representation.StringRepresentation;
@@ -44,6 +52,123 @@ import org.restlet.test.RestletTestCase;
  */
 public class RdfTestCase extends RestletTestCase {
 
+    public void testGraph() throws Exception {
+        Graph graph = new Graph();
+        graph.addReference("http://ex.com/s1", "http://ex.com/p1",
+                "http://ex.com/o1");
+        graph.addReference("http://ex.com/s1", "http://ex.com/p2",
+                "http://ex.com/o2");
+        graph.addReference("http://ex.com/s2", "http://ex.com/p1",
+                "http://ex.com/o1");
+        graph.addLiteral("http://ex.com/s2", "http://ex.com/p3", "value");
+
+        // Duplicates are ignored
+        graph.addReference("http://ex.com/s1", "http://ex.com/p1",
+                "http://ex.com/o1");
+        graph.addLiteral("http://ex.com/s2", "http://ex.com/p3", "value");
+        assertEquals(4, graph.size());
+        assertTrue(graph.contains(new Link(new Reference("http://ex.com/s2"),
+                new Reference("http://ex.com/p3"), new Literal("value"))));
+
+        Reference s1 = new Reference("http://ex.com/s1");
+        Reference p1 = new Reference("http://ex.com/p1");
+        Reference o1 = new Reference("http://ex.com/o1");
+        assertEquals(2, graph.match(s1, null, null).size());
+        assertEquals(2, graph.match(null, p1, null).size());
+        assertEquals(2, graph.match(null, null, o1).size());
+        assertEquals(2, graph.match(null, p1, o1).size());
+        assertEquals(1, graph.match(s1, null, o1).size());
+        assertEquals(1, graph.match(s1, p1, o1).size());
+        assertEquals(4, graph.match(null, null, null).size());
+        assertEquals(0, graph.match(new Reference("http://ex.com/s3"), null,
+                null).size());
+
+        List<Link> links = graph.match(null, null, new Literal("value"));
+        assertEquals(1, links.size());
+        assertEquals("value", links.get(0).getTargetAsLiteral().getValue());
+
+        // Iteration works on a snapshot
+        for (Link link : graph) {
+            graph.remove(link);
+        }
+
+        assertTrue(graph.isEmpty());
+        assertEquals(0, graph.match(s1, null, null).size());
+    }
+
+    public void testGraphHandler() throws Exception {
+        StringBuilder sb = new StringBuilder();
+        sb.append("@prefix ex: <http://ex.com/> .\n");
+
+        for (int i = 0; i < 2000; i++) {
+            sb.append("ex:s").append(i % 100).append(" ex:p").append(i % 7)
+                    .append(" \"v").append(i).append("\" .\n");
+        }
+
+        Representation rep = new StringRepresentation(sb,
+                MediaType.TEXT_TURTLE);
+        assertEquals(2000, new RdfRepresentation(rep).getGraph().size());
+
+        // Stream the links without building a graph
+        final int[] count = new int[1];
+        new RdfRepresentation(rep).parse(new GraphHandler() {
+            @Override
+            public void link(Graph source, Reference typeRef, Literal target) {
+            }
+
+            @Override
+            public void link(Graph source, Reference typeRef,
+                    Reference target) {
+            }
+
+            @Override
+            public void link(Reference source, Reference typeRef,
+                    Literal target) {
+                count[0]++;
+            }
+
+            @Override
+            public void link(Reference source, Reference typeRef,
+                    Reference target) {
+            }
+        });
+        assertEquals(2000, count[0]);
+    }
+
+    public void testNTriples() throws Exception {
+        Graph graph = new Graph();
+
+        for (int i = 0; i < 1000; i++) {
+            graph.add(new Reference("http://ex.com/s" + (i % 10)),
+                    new Reference("http://ex.com/p"), new Literal("\"v\"\t"
+                            + i + "\u00e9\n"));
+        }
+
+        graph.add(Link.createBlankRef("b1"), new Reference("http://ex.com/p"),
+                new Literal("chat", null, Language.valueOf("fr")));
+        graph.add(Link.createBlankRef("b1"), new Reference("http://ex.com/p"),
+                new Literal("12", new Reference(
+                        "http://www.w3.org/2001/XMLSchema#int")));
+
+        // Write then parse a representation larger than the read buffer
+        String text = new RdfRepresentation(graph,
+                MediaType.TEXT_RDF_NTRIPLES).getText();
+        assertTrue(text.length() > 16384);
+        Graph parsed = new RdfRepresentation(new StringRepresentation(text,
+                MediaType.TEXT_RDF_NTRIPLES)).getGraph();
+        assertEquals(graph.size(), parsed.size());
+        assertEquals(1, parsed.match(null, null, new Literal("\"v\"\t999\u00e9\n"))
+                .size());
+
+        assertEquals(2, parsed.match(Link.createBlankRef("b1"), null, null)
+                .size());
+        assertEquals(1, parsed.match(null, null,
+                new Literal("chat", null, Language.valueOf("fr"))).size());
+        assertEquals(1, parsed.match(null, null,
+                new Literal("12", new Reference(
+                        "http://www.w3.org/2001/XMLSchema#int"))).size());
+    }
+
     public void testN3() throws Exception {
         Representation rep = new StringRepresentation(
                 "@prefix rdf: <http://www.w3.org/1999/02/22-rdf-syntax-ns#> ."
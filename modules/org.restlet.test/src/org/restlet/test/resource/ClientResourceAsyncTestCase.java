@@ -0,0 +1,177 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.test.resource;
+
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.restlet.Application;
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.Restlet;
+import org.restlet.data.Method;
+import org.restlet.data.Status;
+import org.restlet.resource.ClientResource;
+import org.restlet.resource.ResourceException;
+import org.restlet.resource.Result;
+import org.restlet.resource.ResultFuture;
+import org.restlet.routing.Router;
+
+/**
+ * Test the asynchronous methods of the client resource.
+ * 
+ * @author Jerome Louvel
+ */
+public class ClientResourceAsyncTestCase extends InternalConnectorTestCase {
+
+    protected Application createApplication(final String path) {
+        return new Application() {
+            @Override
+            public Restlet createInboundRoot() {
+                Router router = new Router(getContext());
+                router.attach(path, new Restlet() {
+                    @Override
+                    public void handle(Request request, Response response) {
+                        if (Method.POST.equals(request.getMethod())) {
+                            response.setEntity("echo "
+                                    + request.getEntityAsText(), null);
+                        } else {
+                            response.setEntity("hello", null);
+                        }
+                    }
+                });
+                return router;
+            }
+        };
+    }
+
+    private ClientResource createClientResource(String uri) {
+        ClientResource result = new ClientResource(uri);
+        result.setNext(getClient());
+        return result;
+    }
+
+    public void testAddResult() throws Exception {
+        ResultFuture<String> future = new ResultFuture<String>();
+        final StringBuilder received = new StringBuilder();
+        Result<Object> result = new Result<Object>() {
+            public void onFailure(Throwable caught) {
+                received.append("failure");
+            }
+
+            public void onSuccess(Object result) {
+                received.append(result);
+            }
+        };
+
+        future.addResult(result);
+        future.onSuccess("first");
+        future.onSuccess("second");
+        future.addResult(result);
+        assertEquals("firstfirst", received.toString());
+        assertEquals("first", future.get());
+    }
+
+    public void testCancel() throws Exception {
+        ResultFuture<String> future = new ResultFuture<String>();
+        assertTrue(future.cancel(false));
+        assertFalse(future.cancel(false));
+        future.onSuccess("ignored");
+        assertTrue(future.isCancelled());
+        assertTrue(future.isDone());
+
+        try {
+            future.get();
+            fail("A cancellation exception was expected");
+        } catch (CancellationException e) {
+            // Expected
+        }
+    }
+
+    public void testErrorAsync() throws Exception {
+        ResultFuture<String> future = createClientResource(
+                getUri() + "/missing").getAsync(String.class);
+
+        try {
+            future.get(10, TimeUnit.SECONDS);
+            fail("An execution exception was expected");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof ResourceException);
+            assertEquals(Status.CLIENT_ERROR_NOT_FOUND,
+                    ((ResourceException) e.getCause()).getStatus());
+        }
+    }
+
+    public void testGetAsync() throws Exception {
+        ResultFuture<String> future = createClientResource(getUri())
+                .getAsync(String.class);
+        assertEquals("hello", future.get(10, TimeUnit.SECONDS));
+    }
+
+    public void testPostAsync() throws Exception {
+        ResultFuture<String> future = createClientResource(getUri())
+                .postAsync("test", String.class);
+        assertEquals("echo test", future.get(10, TimeUnit.SECONDS));
+    }
+
+    public void testTimeout() throws Exception {
+        ScheduledExecutorService scheduler = Executors
+                .newSingleThreadScheduledExecutor();
+
+        try {
+            ResultFuture<String> future = new ResultFuture<String>().timeout(
+                    50, TimeUnit.MILLISECONDS, scheduler);
+
+            try {
+                future.get(10, TimeUnit.SECONDS);
+                fail("An execution exception was expected");
+            } catch (ExecutionException e) {
+                assertTrue(e.getCause() instanceof TimeoutException);
+            }
+
+            // Late results are ignored
+            future.onSuccess("late");
+            assertTrue(future.isDone());
+            assertFalse(future.isCancelled());
+        } finally {
+            scheduler.shutdown();
+        }
+    }
+
+}
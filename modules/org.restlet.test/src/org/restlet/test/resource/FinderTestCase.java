@@ -0,0 +1,244 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.test.resource;
+
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.data.MediaType;
+import org.restlet.data.Method;
+import org.restlet.data.Status;
+import org.restlet.representation.Representation;
+import org.restlet.representation.StringRepresentation;
+import org.restlet.resource.Finder;
+import org.restlet.resource.ResourceException;
+import org.restlet.resource.ServerResource;
+import org.restlet.test.RestletTestCase;
+
+/**
+ * Test the instantiation and reuse of resources by the {@link Finder} class.
+ * 
+ * @author Jerome Louvel
+ */
+public class FinderTestCase extends RestletTestCase {
+
+    public static class CountedResource extends ServerResource {
+
+        private static int instances;
+
+        public CountedResource() {
+            instances++;
+        }
+
+        @Override
+        protected void doInit() throws ResourceException {
+            if (getQuery().getFirst("missing") != null) {
+                setExisting(false);
+            }
+        }
+
+        @Override
+        protected Representation get() throws ResourceException {
+            if (getQuery().getFirst("nested") != null) {
+                Response nested = FinderTestCase.handle(finder,
+                        "http://localhost/");
+                assertEquals(Status.SUCCESS_OK, nested.getStatus());
+                assertNotSame(this, lastResource);
+            }
+
+            if (getQuery().getFirst("deferred") != null) {
+                // The response will be committed by another thread
+                getResponse().setAutoCommitting(false);
+            }
+
+            lastResource = this;
+            return new StringRepresentation("instance",
+                    MediaType.TEXT_PLAIN);
+        }
+    }
+
+    public static class FlagsResource extends ServerResource {
+
+        private static int instances;
+
+        public FlagsResource() {
+            instances++;
+            setNegotiated(false);
+        }
+
+        @Override
+        protected void doInit() throws ResourceException {
+            if (getQuery().getFirst("unconditional") != null) {
+                setConditional(false);
+            }
+
+            if (getQuery().getFirst("negotiated") != null) {
+                setNegotiated(true);
+            }
+        }
+
+        @Override
+        protected Representation get() throws ResourceException {
+            return new StringRepresentation(isConditional() + ","
+                    + isNegotiated(), MediaType.TEXT_PLAIN);
+        }
+    }
+
+    private static class PrivateResource extends ServerResource {
+        @Override
+        protected Representation get() throws ResourceException {
+            return new StringRepresentation("private", MediaType.TEXT_PLAIN);
+        }
+    }
+
+    private static Finder finder;
+
+    private static ServerResource lastResource;
+
+    private static Response handle(Finder finder, String uri) {
+        Request request = new Request(Method.GET, uri);
+        Response response = new Response(request);
+        finder.handle(request, response);
+        return response;
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        CountedResource.instances = 0;
+        finder = new Finder(null, CountedResource.class);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        finder = null;
+        lastResource = null;
+        super.tearDown();
+    }
+
+    public void testCreate() throws Exception {
+        ServerResource resource1 = finder.create(null, null);
+        ServerResource resource2 = finder.create(null, null);
+        assertNotSame(resource1, resource2);
+        assertEquals(2, CountedResource.instances);
+
+        // The cached constructor follows the target class
+        finder.setTargetClass(PrivateResource.class);
+        assertTrue(finder.create(null, null) instanceof PrivateResource);
+        Response response = handle(finder, "http://localhost/");
+        assertEquals(Status.SUCCESS_OK, response.getStatus());
+        assertEquals("private", response.getEntity().getText());
+    }
+
+    public void testDeferredCommit() throws Exception {
+        finder.setReusingResources(true);
+        Response deferred = handle(finder, "http://localhost/?deferred");
+        assertFalse(deferred.isCommitted());
+        ServerResource deferredResource = lastResource;
+
+        // The resource is still in use until its response is committed
+        Response response = handle(finder, "http://localhost/");
+        assertEquals(Status.SUCCESS_OK, response.getStatus());
+        assertNotSame(deferredResource, lastResource);
+        assertSame(deferred, deferredResource.getResponse());
+        assertEquals(2, CountedResource.instances);
+
+        // Resources of automatically committed responses are still reused
+        handle(finder, "http://localhost/");
+        assertEquals(2, CountedResource.instances);
+    }
+
+    public void testFind() throws Exception {
+        final int[] finds = new int[1];
+        finder = new Finder(null, CountedResource.class) {
+            @Override
+            public ServerResource find(Request request, Response response) {
+                finds[0]++;
+                return super.find(request, response);
+            }
+        };
+        finder.setReusingResources(true);
+        handle(finder, "http://localhost/");
+        handle(finder, "http://localhost/");
+        assertEquals(2, finds[0]);
+        assertEquals(1, CountedResource.instances);
+    }
+
+    public void testFlags() throws Exception {
+        FlagsResource.instances = 0;
+        finder.setTargetClass(FlagsResource.class);
+        finder.setReusingResources(true);
+
+        Response response = handle(finder,
+                "http://localhost/?unconditional&negotiated");
+        assertEquals("false,true", response.getEntity().getText());
+
+        // The flags set at construction time are restored
+        response = handle(finder, "http://localhost/");
+        assertEquals("true,false", response.getEntity().getText());
+        assertEquals(1, FlagsResource.instances);
+    }
+
+    public void testNestedCalls() throws Exception {
+        finder.setReusingResources(true);
+        Response response = handle(finder, "http://localhost/?nested");
+        assertEquals(Status.SUCCESS_OK, response.getStatus());
+        assertEquals(2, CountedResource.instances);
+    }
+
+    public void testReusingResources() throws Exception {
+        handle(finder, "http://localhost/");
+        handle(finder, "http://localhost/");
+        assertEquals(2, CountedResource.instances);
+
+        finder.setReusingResources(true);
+        CountedResource.instances = 0;
+
+        for (int i = 0; i < 3; i++) {
+            Response response = handle(finder, "http://localhost/");
+            assertEquals(Status.SUCCESS_OK, response.getStatus());
+            assertEquals("instance", response.getEntity().getText());
+        }
+
+        assertEquals(1, CountedResource.instances);
+        assertNull(lastResource.getRequest());
+
+        // The call specific state is reset
+        Response response = handle(finder, "http://localhost/?missing");
+        assertEquals(Status.CLIENT_ERROR_NOT_FOUND, response.getStatus());
+        response = handle(finder, "http://localhost/");
+        assertEquals(Status.SUCCESS_OK, response.getStatus());
+        assertEquals(1, CountedResource.instances);
+    }
+
+}
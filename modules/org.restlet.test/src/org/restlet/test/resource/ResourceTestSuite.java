@@ -63,6 +63,8 @@ public class ResourceTestSuite {
         suite.addTestSuite(AnnotatedResource16TestCase.class);
         suite.addTestSuite(AnnotatedResource17TestCase.class);
         suite.addTestSuite(AnnotatedResource18TestCase.class);
+        suite.addTestSuite(ClientResourceAsyncTestCase.class);
+        suite.addTestSuite(FinderTestCase.class);
 
         // Tests based on HTTP client connectors are not supported by the GAE
         // edition.
@@ -0,0 +1,169 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.test.routing;
+
+import java.util.concurrent.TimeUnit;
+
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.Restlet;
+import org.restlet.data.ChallengeResponse;
+import org.restlet.data.ChallengeScheme;
+import org.restlet.data.Method;
+import org.restlet.data.Status;
+import org.restlet.routing.RateLimiter;
+import org.restlet.test.RestletTestCase;
+
+/**
+ * Test {@link org.restlet.routing.RateLimiter}.
+ * 
+ * @author Jerome Louvel
+ */
+public class RateLimiterTestCase extends RestletTestCase {
+
+    /** Rate limiter driven by a manual clock. */
+    private static class TestRateLimiter extends RateLimiter {
+        private volatile long time;
+
+        public TestRateLimiter(double rate, int burst) {
+            super(null, new Restlet() {
+                @Override
+                public void handle(Request request, Response response) {
+                    response.setStatus(Status.SUCCESS_OK);
+                }
+            }, rate, burst, 4);
+        }
+
+        public void advance(long millis) {
+            this.time += TimeUnit.MILLISECONDS.toNanos(millis);
+        }
+
+        @Override
+        protected long getTime() {
+            return time;
+        }
+    }
+
+    private static Response handle(RateLimiter limiter, String address) {
+        Request request = new Request(Method.GET, "http://localhost/");
+        request.getClientInfo().setAddress(address);
+        Response response = new Response(request);
+        limiter.handle(request, response);
+        return response;
+    }
+
+    public void testBurstAndRefill() {
+        TestRateLimiter limiter = new TestRateLimiter(2, 3);
+
+        for (int i = 0; i < 3; i++) {
+            assertEquals(0, limiter.tryAcquire("a"));
+        }
+
+        long waitTime = limiter.tryAcquire("a");
+        assertEquals(TimeUnit.MILLISECONDS.toNanos(500), waitTime);
+
+        // Other keys are independent
+        assertEquals(0, limiter.tryAcquire("b"));
+
+        limiter.advance(499);
+        assertTrue(limiter.tryAcquire("a") > 0);
+        limiter.advance(1);
+        assertEquals(0, limiter.tryAcquire("a"));
+        assertTrue(limiter.tryAcquire("a") > 0);
+    }
+
+    public void testEviction() {
+        TestRateLimiter limiter = new TestRateLimiter(100, 1);
+        limiter.setMaxIdleTimeMs(1000);
+
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(0, limiter.tryAcquire("key" + i));
+        }
+
+        assertEquals(1000, limiter.getSize());
+        assertTrue(limiter.tryAcquire("key0") > 0);
+
+        // Sweeps happen lazily, once per stripe and idle period
+        limiter.advance(1100);
+
+        for (int i = 0; i < 100; i++) {
+            limiter.tryAcquire("other" + i);
+        }
+
+        assertEquals(100, limiter.getSize());
+        assertEquals(0, limiter.tryAcquire("key0"));
+    }
+
+    public void testFilter() {
+        TestRateLimiter limiter = new TestRateLimiter(1, 2);
+        assertEquals(Status.SUCCESS_OK, handle(limiter, "10.0.0.1").getStatus());
+        assertEquals(Status.SUCCESS_OK, handle(limiter, "10.0.0.1").getStatus());
+
+        Response response = handle(limiter, "10.0.0.1");
+        assertEquals(Status.CLIENT_ERROR_TOO_MANY_REQUESTS,
+                response.getStatus());
+        assertEquals(429, response.getStatus().getCode());
+        assertNotNull(response.getRetryAfter());
+        assertTrue(response.getRetryAfter().getTime() > System
+                .currentTimeMillis());
+
+        assertEquals(Status.SUCCESS_OK, handle(limiter, "10.0.0.2").getStatus());
+    }
+
+    public void testUserKey() {
+        TestRateLimiter limiter = new TestRateLimiter(1, 1);
+        limiter.setKeyFormat("{cri}");
+
+        Request request = new Request(Method.GET, "http://localhost/");
+        request.setChallengeResponse(new ChallengeResponse(
+                ChallengeScheme.HTTP_BASIC, "scott", "tiger"));
+        Response response = new Response(request);
+        limiter.handle(request, response);
+        assertEquals(Status.SUCCESS_OK, response.getStatus());
+
+        response = new Response(request);
+        limiter.handle(request, response);
+        assertEquals(Status.CLIENT_ERROR_TOO_MANY_REQUESTS,
+                response.getStatus());
+
+        // Anonymous calls have an empty key and aren't limited
+        request = new Request(Method.GET, "http://localhost/");
+        response = new Response(request);
+        limiter.handle(request, response);
+        assertEquals(Status.SUCCESS_OK, response.getStatus());
+        assertEquals(1, limiter.getSize());
+    }
+
+}
@@ -0,0 +1,358 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+package org.restlet.test.service;
+
+import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.restlet.Context;
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.Restlet;
+import org.restlet.data.CacheDirective;
+import org.restlet.data.ChallengeResponse;
+import org.restlet.data.ChallengeScheme;
+import org.restlet.data.Dimension;
+import org.restlet.data.MediaType;
+import org.restlet.data.Method;
+import org.restlet.data.Preference;
+import org.restlet.data.Status;
+import org.restlet.data.Tag;
+import org.restlet.engine.application.CacheFilter;
+import org.restlet.ext.crypto.CookieAuthenticator;
+import org.restlet.representation.InputRepresentation;
+import org.restlet.representation.StringRepresentation;
+import org.restlet.security.MapVerifier;
+import org.restlet.service.CacheService;
+import org.restlet.test.RestletTestCase;
+
+/**
+ * Unit tests for the cache service.
+ * 
+ * @author Jerome Louvel
+ */
+public class CacheServiceTestCase extends RestletTestCase {
+
+    /**
+     * Restlet counting its calls and returning a tagged representation.
+     */
+    private static class CountingRestlet extends Restlet {
+
+        private final AtomicInteger calls = new AtomicInteger();
+
+        private volatile List<CacheDirective> directives = new ArrayList<CacheDirective>();
+
+        private volatile long delay;
+
+        @Override
+        public void handle(Request request, Response response) {
+            calls.incrementAndGet();
+
+            if (delay > 0) {
+                try {
+                    Thread.sleep(delay);
+                } catch (InterruptedException e) {
+                    // Answer right away
+                }
+            }
+
+            Tag tag = new Tag("v1");
+
+            if (request.getConditions().getNoneMatch().contains(tag)) {
+                response.setStatus(Status.REDIRECTION_NOT_MODIFIED);
+            } else {
+                String text = "hello " + request.getResourceRef().getPath();
+
+                if (!request.getClientInfo().getAcceptedMediaTypes()
+                        .isEmpty()) {
+                    text += " "
+                            + request.getClientInfo().getAcceptedMediaTypes()
+                                    .get(0).getMetadata();
+                    response.getDimensions().add(Dimension.MEDIA_TYPE);
+                }
+
+                response.setEntity(new StringRepresentation(text));
+                response.getEntity().setTag(tag);
+            }
+
+            response.setCacheDirectives(directives);
+        }
+    }
+
+    /**
+     * Cookie authenticator formatting credentials cookies on demand. It
+     * doesn't update the cookie of the authenticated requests.
+     */
+    private static class TestCookieAuthenticator extends CookieAuthenticator {
+
+        public TestCookieAuthenticator() {
+            super(new Context(), "test", "0123456789abcdef".getBytes());
+        }
+
+        @Override
+        protected int authenticated(Request request, Response response) {
+            return CONTINUE;
+        }
+
+        public String format(String identifier, String secret)
+                throws Exception {
+            return formatCredentials(new ChallengeResponse(
+                    ChallengeScheme.HTTP_COOKIE, identifier, secret));
+        }
+    }
+
+    private CacheFilter filter;
+
+    private CountingRestlet restlet;
+
+    private CacheService service;
+
+    private Response handle(Method method, String path) {
+        return handle(new Request(method, "http://localhost" + path));
+    }
+
+    private Response handle(Request request) {
+        Response response = new Response(request);
+        filter.handle(request, response);
+        return response;
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        service = new CacheService();
+        restlet = new CountingRestlet();
+        restlet.directives.add(CacheDirective.maxAge(60));
+        filter = (CacheFilter) service.createInboundFilter(new Context());
+        filter.setNext(restlet);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        filter = null;
+        restlet = null;
+        service = null;
+        super.tearDown();
+    }
+
+    public void testCoalescing() throws Exception {
+        restlet.delay = 300;
+        List<Thread> threads = new ArrayList<Thread>();
+        final AtomicInteger hits = new AtomicInteger();
+
+        for (int i = 0; i < 5; i++) {
+            Thread thread = new Thread() {
+                @Override
+                public void run() {
+                    if ("hello /a".equals(handle(Method.GET, "/a")
+                            .getEntityAsText())) {
+                        hits.incrementAndGet();
+                    }
+                }
+            };
+            threads.add(thread);
+            thread.start();
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(5, hits.get());
+        assertEquals(1, restlet.calls.get());
+    }
+
+    public void testConditionalHit() {
+        handle(Method.GET, "/a");
+        Request request = new Request(Method.GET, "http://localhost/a");
+        request.getConditions().getNoneMatch().add(new Tag("v1"));
+        Response response = handle(request);
+
+        assertEquals(Status.REDIRECTION_NOT_MODIFIED, response.getStatus());
+        assertEquals(1, restlet.calls.get());
+    }
+
+    public void testCookieAuthenticated() throws Exception {
+        TestCookieAuthenticator authenticator = new TestCookieAuthenticator();
+        MapVerifier verifier = new MapVerifier();
+        verifier.getLocalSecrets().put("alice", "a".toCharArray());
+        verifier.getLocalSecrets().put("bob", "b".toCharArray());
+        authenticator.setVerifier(verifier);
+        authenticator.setNext(new Restlet() {
+            @Override
+            public void handle(Request request, Response response) {
+                restlet.calls.incrementAndGet();
+                response.setEntity(new StringRepresentation("hello "
+                        + request.getClientInfo().getUser().getIdentifier()));
+                response.getCacheDirectives().add(CacheDirective.maxAge(60));
+            }
+        });
+        filter.setNext(authenticator);
+
+        Request request = new Request(Method.GET, "http://localhost/a");
+        request.getCookies().add("Credentials",
+                authenticator.format("alice", "a"));
+        assertEquals("hello alice", handle(request).getEntityAsText());
+
+        request = new Request(Method.GET, "http://localhost/a");
+        request.getCookies().add("Credentials",
+                authenticator.format("bob", "b"));
+        assertEquals("hello bob", handle(request).getEntityAsText());
+
+        assertEquals(2, restlet.calls.get());
+        assertEquals(0, filter.getEntryCount());
+    }
+
+    public void testDisabled() {
+        service.setEnabled(false);
+        handle(Method.GET, "/a");
+        handle(Method.GET, "/a");
+
+        assertEquals(2, restlet.calls.get());
+        assertEquals(0, filter.getEntryCount());
+    }
+
+    public void testEviction() {
+        service.setMaxEntries(2);
+        handle(Method.GET, "/a");
+        handle(Method.GET, "/b");
+        handle(Method.GET, "/a");
+        handle(Method.GET, "/c");
+
+        assertEquals(2, filter.getEntryCount());
+        assertEquals(3, restlet.calls.get());
+
+        // The least recently used entry was evicted
+        handle(Method.GET, "/a");
+        assertEquals(3, restlet.calls.get());
+        handle(Method.GET, "/b");
+        assertEquals(4, restlet.calls.get());
+    }
+
+    public void testFreshHit() {
+        assertEquals("hello /a", handle(Method.GET, "/a").getEntityAsText());
+        Response response = handle(Method.GET, "/a");
+
+        assertEquals(Status.SUCCESS_OK, response.getStatus());
+        assertEquals("hello /a", response.getEntityAsText());
+        assertEquals(new Tag("v1"), response.getEntity().getTag());
+        assertEquals(1, restlet.calls.get());
+        assertEquals(1, filter.getEntryCount());
+        assertEquals(8, filter.getSize());
+    }
+
+    public void testInvalidation() {
+        handle(Method.GET, "/a");
+        handle(Method.PUT, "/a");
+        handle(Method.GET, "/a");
+
+        assertEquals(3, restlet.calls.get());
+    }
+
+    public void testLargeStreamedEntity() {
+        service.setMaxEntrySize(4);
+        filter.setNext(new Restlet() {
+            @Override
+            public void handle(Request request, Response response) {
+                restlet.calls.incrementAndGet();
+                response.setEntity(new InputRepresentation(
+                        new ByteArrayInputStream("hello /a".getBytes()),
+                        MediaType.TEXT_PLAIN));
+                response.getEntity().setTag(new Tag("v1"));
+                response.getCacheDirectives().add(CacheDirective.maxAge(60));
+            }
+        });
+
+        // The entity of unknown size is streamed entirely but not stored
+        assertEquals("hello /a", handle(Method.GET, "/a").getEntityAsText());
+        assertEquals("hello /a", handle(Method.GET, "/a").getEntityAsText());
+        assertEquals(2, restlet.calls.get());
+        assertEquals(0, filter.getEntryCount());
+    }
+
+    public void testNoStore() {
+        restlet.directives.clear();
+        restlet.directives.add(CacheDirective.noStore());
+        handle(Method.GET, "/a");
+        handle(Method.GET, "/a");
+
+        assertEquals(2, restlet.calls.get());
+        assertEquals(0, filter.getEntryCount());
+    }
+
+    public void testOnlyIfCached() {
+        Request request = new Request(Method.GET, "http://localhost/a");
+        request.getCacheDirectives().add(CacheDirective.onlyIfCached());
+
+        assertEquals(Status.SERVER_ERROR_GATEWAY_TIMEOUT, handle(request)
+                .getStatus());
+        assertEquals(0, restlet.calls.get());
+    }
+
+    public void testRevalidation() {
+        restlet.directives.clear();
+        restlet.directives.add(CacheDirective.noCache());
+        handle(Method.GET, "/a");
+        Response response = handle(Method.GET, "/a");
+
+        // The resource answered "304 Not Modified" to the cache
+        assertEquals(2, restlet.calls.get());
+        assertEquals(Status.SUCCESS_OK, response.getStatus());
+        assertEquals("hello /a", response.getEntityAsText());
+    }
+
+    public void testVary() {
+        Request request = new Request(Method.GET, "http://localhost/a");
+        request.getClientInfo().getAcceptedMediaTypes()
+                .add(new Preference<MediaType>(MediaType.TEXT_XML));
+        assertEquals("hello /a text/xml", handle(request).getEntityAsText());
+
+        request = new Request(Method.GET, "http://localhost/a");
+        request.getClientInfo().getAcceptedMediaTypes()
+                .add(new Preference<MediaType>(MediaType.APPLICATION_JSON));
+        assertEquals("hello /a application/json", handle(request)
+                .getEntityAsText());
+
+        request = new Request(Method.GET, "http://localhost/a");
+        request.getClientInfo().getAcceptedMediaTypes()
+                .add(new Preference<MediaType>(MediaType.TEXT_XML));
+        assertEquals("hello /a text/xml", handle(request).getEntityAsText());
+
+        assertEquals(2, restlet.calls.get());
+        assertEquals(2, filter.getEntryCount());
+    }
+
+}
@@ -33,7 +33,12 @@
 
 package org.restlet.test.service;
 
+import java.util.List;
+
+import org.restlet.data.CharacterSet;
+import org.restlet.data.Language;
 import org.restlet.data.MediaType;
+import org.restlet.data.Metadata;
 import org.restlet.service.MetadataService;
 import org.restlet.test.RestletTestCase;
 
@@ -44,6 +49,46 @@ import org.restlet.test.RestletTestCase;
  */
 public class MetadataServiceTestCase extends RestletTestCase {
 
+    public void testExtensions() {
+        MetadataService ms = new MetadataService();
+        assertEquals(MediaType.TEXT_XML, ms.getMediaType("xml"));
+        assertEquals(MediaType.TEXT_XML, ms.getMetadata("xml"));
+        assertNull(ms.getLanguage("xml"));
+
+        List<Metadata> all = ms.getAllMetadata("xml");
+        assertEquals(2, all.size());
+        assertEquals(MediaType.TEXT_XML, all.get(0));
+        assertEquals(MediaType.APPLICATION_XML, all.get(1));
+        assertEquals(2, ms.getAllMediaTypes("xml").size());
+        assertNull(ms.getAllLanguages("xml"));
+        assertNull(ms.getAllMetadata("unknown"));
+
+        assertEquals("txt", ms.getExtension(MediaType.TEXT_PLAIN));
+        assertEquals("xml", ms.getExtension(MediaType.APPLICATION_XML));
+        assertEquals("fr", ms.getExtension(Language.FRENCH));
+        assertTrue(ms.getAllLanguageExtensionNames().contains("fr"));
+        assertFalse(ms.getAllMediaTypeExtensionNames().contains("fr"));
+        assertTrue(ms.getAllCharacterSetExtensionNames().contains("utf8"));
+    }
+
+    public void testExtensionsUpdate() {
+        MetadataService ms = new MetadataService();
+        ms.addExtension("xml", MediaType.APPLICATION_ATOM, true);
+        assertEquals(MediaType.APPLICATION_ATOM, ms.getMediaType("xml"));
+        assertEquals(3, ms.getAllMediaTypes("xml").size());
+        assertEquals("xml", ms.getExtension(MediaType.APPLICATION_ATOM));
+
+        ms.addExtension("u8", CharacterSet.UTF_8);
+        assertEquals(CharacterSet.UTF_8, ms.getCharacterSet("u8"));
+        assertEquals("u8", ms.getAllCharacterSetExtensionNames().get(
+                ms.getAllCharacterSetExtensionNames().size() - 1));
+
+        ms.clearExtensions();
+        assertNull(ms.getMediaType("xml"));
+        assertNull(ms.getExtension(MediaType.APPLICATION_ATOM));
+        assertTrue(ms.getAllExtensionNames().isEmpty());
+    }
+
     public void testStrict() {
         MetadataService ms = new MetadataService();
         MediaType ma = ms.getMediaType("ma");
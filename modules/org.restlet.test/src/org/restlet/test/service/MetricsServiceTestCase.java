@@ -0,0 +1,225 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.test.service;
+
+import java.lang.management.ManagementFactory;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.restlet.Application;
+import org.restlet.Context;
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.Restlet;
+import org.restlet.data.Method;
+import org.restlet.data.Status;
+import org.restlet.engine.metrics.CallMetrics;
+import org.restlet.engine.metrics.ConnectorMetrics;
+import org.restlet.engine.metrics.LatencyHistogram;
+import org.restlet.engine.metrics.MetricsUtils;
+import org.restlet.engine.metrics.PrometheusRepresentation;
+import org.restlet.routing.Router;
+import org.restlet.service.MetricsService;
+import org.restlet.test.RestletTestCase;
+
+/**
+ * Unit tests for the metrics service.
+ * 
+ * @author Jerome Louvel
+ */
+public class MetricsServiceTestCase extends RestletTestCase {
+
+    private static class TestConnector implements ConnectorMetrics {
+        public int getActiveCount() {
+            return 2;
+        }
+
+        public int getConnectionCount() {
+            return 3;
+        }
+
+        public String getName() {
+            return "HTTP/1.1:8182";
+        }
+
+        public int getQueueDepth() {
+            return 4;
+        }
+    }
+
+    private Application application;
+
+    private Response handle(String path) {
+        Request request = new Request(Method.GET, "http://localhost" + path);
+        request.getResourceRef().setBaseRef("http://localhost");
+        Response response = new Response(request);
+        this.application.handle(request, response);
+        return response;
+    }
+
+    @Override
+    protected void setUp() throws Exception {
+        super.setUp();
+        this.application = new Application() {
+            @Override
+            public Restlet createInboundRoot() {
+                Router router = new Router(getContext());
+                router.attach("/users/{id}", new Restlet() {
+                    @Override
+                    public void handle(Request request, Response response) {
+                        response.setEntity("hello", null);
+                    }
+                });
+                return router;
+            }
+        };
+        this.application.getMetricsService().setEnabled(true);
+        this.application.getMetricsService().setJmxEnabled(false);
+    }
+
+    @Override
+    protected void tearDown() throws Exception {
+        this.application.stop();
+        this.application = null;
+        super.tearDown();
+    }
+
+    public void testConnectors() throws Exception {
+        Context parent = new Context();
+        Context server = parent.createChildContext();
+        MetricsService ms = new MetricsService(true);
+        ms.setContext(parent);
+        ConnectorMetrics connector = new TestConnector();
+
+        MetricsUtils.addConnector(server, connector);
+        assertEquals(1, ms.getConnectors().size());
+
+        String text = new PrometheusRepresentation(ms).getText();
+        assertTrue(text
+                .contains("restlet_connector_connections{connector=\"HTTP/1.1:8182\"} 3\n"));
+        assertTrue(text
+                .contains("restlet_connector_queue_depth{connector=\"HTTP/1.1:8182\"} 4\n"));
+
+        MetricsUtils.removeConnector(server, connector);
+        assertTrue(ms.getConnectors().isEmpty());
+    }
+
+    public void testHistogram() {
+        LatencyHistogram histogram = new LatencyHistogram(4);
+
+        for (int i = 1; i <= 1000; i++) {
+            histogram.record(i * 1000000L);
+        }
+
+        assertEquals(1000, histogram.getCount());
+        assertEquals(1000000000L, histogram.getMax());
+        assertEquals(500500000000L, histogram.getSum());
+
+        long[] values = histogram.getValuesAtPercentiles(50, 99, 100);
+        assertEquals(500000000D, values[0], 500000000D * 0.07);
+        assertEquals(990000000D, values[1], 990000000D * 0.07);
+        assertEquals(1000000000L, values[2]);
+    }
+
+    public void testJmx() throws Exception {
+        MetricsService ms = new MetricsService(true);
+        ms.setName("test");
+        ms.start();
+
+        try {
+            ms.onCallStarted();
+            ms.onCallCompleted("/a", Status.SUCCESS_OK, 2000000L, -1, 10);
+
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName(
+                    "org.restlet:type=MetricsService,name=\"test\"");
+            assertEquals(0, server.getAttribute(name, "InFlight"));
+            assertEquals(1L, server.getAttribute(name, "route /a count"));
+            assertEquals(10L, server.getAttribute(name, "status 200 bytesOut"));
+        } finally {
+            ms.stop();
+        }
+
+        assertFalse(ManagementFactory.getPlatformMBeanServer().isRegistered(
+                new ObjectName("org.restlet:type=MetricsService,name=\"test\"")));
+    }
+
+    public void testMaxRoutes() {
+        MetricsService ms = new MetricsService(true);
+        ms.setMaxRoutes(2);
+
+        for (String route : new String[] { "/a", "/b", "/c", "/d", "/a" }) {
+            ms.onCallStarted();
+            ms.onCallCompleted(route, Status.SUCCESS_OK, 1000, -1, -1);
+        }
+
+        assertEquals(3, ms.getRoutes().size());
+        assertEquals(2, ms.getRoutes().get("/a").getCount());
+        assertEquals(2, ms.getRoutes().get(MetricsService.OTHER_ROUTE)
+                .getCount());
+        assertEquals(5, ms.getStatuses().get(200).getCount());
+    }
+
+    public void testRoutes() throws Exception {
+        assertEquals(Status.SUCCESS_OK, handle("/users/12").getStatus());
+        assertEquals(Status.SUCCESS_OK, handle("/users/34").getStatus());
+        assertEquals(Status.CLIENT_ERROR_NOT_FOUND, handle("/missing")
+                .getStatus());
+
+        MetricsService ms = this.application.getMetricsService();
+        assertEquals(0, ms.getInFlight());
+
+        CallMetrics users = ms.getRoutes().get("/users/{id}");
+        assertNotNull(users);
+        assertEquals(2, users.getCount());
+        assertEquals(10, users.getBytesOut());
+        assertEquals(1, ms.getRoutes().get(MetricsService.NO_ROUTE)
+                .getCount());
+        assertEquals(2, ms.getStatuses().get(200).getCount());
+        assertEquals(1, ms.getStatuses().get(404).getCount());
+
+        String text = new PrometheusRepresentation(ms).getText();
+        assertTrue(text.contains("# TYPE restlet_route_duration_seconds summary\n"));
+        assertTrue(text
+                .contains("restlet_route_duration_seconds_count{route=\"/users/{id}\"} 2\n"));
+        assertTrue(text
+                .contains("restlet_route_sent_bytes_total{route=\"/users/{id}\"} 10\n"));
+        assertTrue(text
+                .contains("restlet_status_duration_seconds_count{status=\"404\"} 1\n"));
+        assertTrue(text.contains("restlet_calls_in_flight 0\n"));
+    }
+
+}
@@ -42,8 +42,10 @@ public class ServiceTestSuite {
         TestSuite suite = new TestSuite("Service package");
 
         // $JUnit-BEGIN$
+        suite.addTestSuite(CacheServiceTestCase.class);
         suite.addTestSuite(ConnegServiceTestCase.class);
         suite.addTestSuite(MetadataServiceTestCase.class);
+        suite.addTestSuite(MetricsServiceTestCase.class);
         // $JUnit-END$
 
         return suite;
@@ -44,12 +44,14 @@ import org.restlet.resource.ServerResource;
 import org.restlet.routing.Router;
 import org.restlet.routing.VirtualHost;
 import org.restlet.security.Role;
+import org.restlet.service.CacheService;
 import org.restlet.service.ConnectorService;
 import org.restlet.service.ConnegService;
 import org.restlet.service.ConverterService;
 import org.restlet.service.DecoderService;
 import org.restlet.service.EncoderService;
 import org.restlet.service.MetadataService;
+import org.restlet.service.MetricsService;
 import org.restlet.service.RangeService;
 import org.restlet.service.StatusService;
 import org.restlet.service.TunnelService;
@@ -65,6 +67,7 @@ import org.restlet.util.ServiceList;
  * Applications also have many useful services associated. Most are enabled by
  * default and are available as properties that can be eventually overridden:
  * <ul>
+ * <li>"cacheService" to cache responses in memory (disabled by default).</li>
  * <li>"connectorService" to declare necessary client and server connectors.</li>
  * <li>"converterService" to convert between regular objects and
  * representations.</li>
@@ -74,6 +77,8 @@ import org.restlet.util.ServiceList;
  * (disabled by default).</li>
  * <li>"metadataService" to provide access to metadata and their associated
  * extension names.</li>
+ * <li>"metricsService" to collect latency and throughput metrics (disabled by
+ * default).</li>
  * <li>"rangeService" to automatically exposes ranges of response entities.</li>
  * <li>"statusService" to provide common representations for exception status.</li>
  * <li>"taskService" to run tasks asynchronously (disabled by default).</li>
@@ -161,11 +166,13 @@ public class Application extends Restlet {
         this.inboundRoot = null;
         this.roles = new CopyOnWriteArrayList<Role>();
         this.services = new ServiceList(context);
+        this.services.add(new MetricsService());
         this.services.add(new TunnelService(true, true));
         this.services.add(new StatusService());
         this.services.add(new DecoderService());
         this.services.add(new EncoderService(false));
         this.services.add(new RangeService());
+        this.services.add(new CacheService(false));
         this.services.add(new ConnectorService());
         this.services.add(new ConnegService());
         this.services.add(new ConverterService());
@@ -206,6 +213,15 @@ public class Application extends Restlet {
         return getHelper().getFirstOutboundFilter();
     }
 
+    /**
+     * Returns the cache service. The service is disabled by default.
+     * 
+     * @return The cache service.
+     */
+    public CacheService getCacheService() {
+        return getServices().get(CacheService.class);
+    }
+
     /**
      * Returns the connector service. The service is enabled by default.
      * 
@@ -287,6 +303,15 @@ public class Application extends Restlet {
         return getServices().get(MetadataService.class);
     }
 
+    /**
+     * Returns the metrics service. The service is disabled by default.
+     * 
+     * @return The metrics service.
+     */
+    public MetricsService getMetricsService() {
+        return getServices().get(MetricsService.class);
+    }
+
     /**
      * Returns the outbound root Restlet.
      * 
@@ -388,6 +413,16 @@ public class Application extends Restlet {
         }
     }
 
+    /**
+     * Sets the cache service.
+     * 
+     * @param cacheService
+     *            The cache service.
+     */
+    public void setCacheService(CacheService cacheService) {
+        getServices().set(cacheService);
+    }
+
     /**
      * Sets the connector service.
      * 
@@ -480,6 +515,16 @@ public class Application extends Restlet {
         getServices().set(metadataService);
     }
 
+    /**
+     * Sets the metrics service.
+     * 
+     * @param metricsService
+     *            The metrics service.
+     */
+    public void setMetricsService(MetricsService metricsService) {
+        getServices().set(metricsService);
+    }
+
     /**
      * Sets the outbound root Resource class.
      * 
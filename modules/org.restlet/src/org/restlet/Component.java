@@ -50,6 +50,7 @@ import org.restlet.routing.Router;
 import org.restlet.routing.VirtualHost;
 import org.restlet.security.Realm;
 import org.restlet.service.LogService;
+import org.restlet.service.MetricsService;
 import org.restlet.service.Service;
 import org.restlet.service.StatusService;
 import org.restlet.util.ClientList;
@@ -100,10 +101,12 @@ import org.restlet.util.ServiceList;
  * </pre>
  * 
  * <br>
- * Components also have useful services associated. They are all enabled by
+ * Components also have useful services associated. Most are enabled by
  * default and are available as properties that can be eventually overridden:
  * <ul>
  * <li>"logService" to configure access logging.</li>
+ * <li>"metricsService" to collect latency and throughput metrics (disabled by
+ * default).</li>
  * <li>"statusService" to provide common representations for exception status.</li>
  * <li>"taskService" to run tasks asynchronously.</li>
  * </ul>
@@ -196,6 +199,8 @@ public class Component extends Restlet {
             this.internalRouter = new InternalRouter(childContext);
             this.services.add(new LogService());
             getLogService().setContext(childContext);
+            this.services.add(new MetricsService());
+            getMetricsService().setContext(childContext);
             this.services.add(new StatusService());
             getStatusService().setContext(childContext);
             this.clients.setContext(childContext);
@@ -334,6 +339,15 @@ public class Component extends Restlet {
         return getServices().get(LogService.class);
     }
 
+    /**
+     * Returns the global metrics service. The service is disabled by default.
+     * 
+     * @return The global metrics service.
+     */
+    public MetricsService getMetricsService() {
+        return getServices().get(MetricsService.class);
+    }
+
     /**
      * Finds the realm with the given name.
      * 
@@ -487,6 +501,16 @@ public class Component extends Restlet {
         getServices().set(logService);
     }
 
+    /**
+     * Sets the global metrics service.
+     * 
+     * @param metricsService
+     *            The global metrics service.
+     */
+    public void setMetricsService(MetricsService metricsService) {
+        getServices().set(metricsService);
+    }
+
     /**
      * Sets the list of realms. This method clears the current list and adds all
      * entries in the parameter list.
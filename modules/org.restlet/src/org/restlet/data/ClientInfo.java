@@ -140,6 +140,14 @@ public final class ClientInfo {
      */
     private static volatile List<String> userAgentTemplates = null;
 
+    // [ifndef gwt] member
+    /**
+     * The matcher compiled from the user-agent templates.
+     * 
+     * @see The {@link ClientInfo#getAgentAttributes()} method.
+     */
+    private static volatile org.restlet.engine.util.UserAgentMatcher userAgentMatcher = null;
+
     // [ifndef gwt] method
     /**
      * Returns the preferred metadata taking into account both metadata
@@ -171,6 +179,33 @@ public final class ClientInfo {
         return result;
     }
 
+    // [ifndef gwt] method
+    /**
+     * Returns the matcher compiled from the user-agent templates defined in
+     * "agent.properties" file.
+     * 
+     * @return The matcher compiled from the user-agent templates or null.
+     * @see The {@link ClientInfo#getAgentAttributes()} method.
+     */
+    private static org.restlet.engine.util.UserAgentMatcher getUserAgentMatcher() {
+        // Lazy initialization with double-check.
+        org.restlet.engine.util.UserAgentMatcher m = ClientInfo.userAgentMatcher;
+        if (m == null) {
+            synchronized (ClientInfo.class) {
+                m = ClientInfo.userAgentMatcher;
+                if (m == null) {
+                    List<String> templates = getUserAgentTemplates();
+                    if (templates != null) {
+                        m = new org.restlet.engine.util.UserAgentMatcher(
+                                templates);
+                    }
+                    ClientInfo.userAgentMatcher = m;
+                }
+            }
+        }
+        return m;
+    }
+
     // [ifndef gwt] method
     /**
      * Returns the list of user-agent templates defined in "agent.properties"
@@ -542,7 +577,6 @@ public final class ClientInfo {
     public Map<String, String> getAgentAttributes() {
         if (this.agentAttributes == null) {
             this.agentAttributes = new ConcurrentHashMap<String, String>();
-            Map<String, Object> map = new ConcurrentHashMap<String, Object>();
 
             // Loop on a list of user-agent templates until a template match
             // the current user-agent string. The list of templates is
@@ -551,45 +585,13 @@ public final class ClientInfo {
             // Some defined variables are used in order to catch the name,
             // version and optional comment. Respectively, these
             // variables are called "agentName", "agentVersion" and
-            // "agentComment".
-            org.restlet.routing.Template template = null;
-            // Predefined variables.
-            org.restlet.routing.Variable agentName = new org.restlet.routing.Variable(
-                    org.restlet.routing.Variable.TYPE_TOKEN);
-            org.restlet.routing.Variable agentVersion = new org.restlet.routing.Variable(
-                    org.restlet.routing.Variable.TYPE_TOKEN);
-            org.restlet.routing.Variable agentComment = new org.restlet.routing.Variable(
-                    org.restlet.routing.Variable.TYPE_COMMENT);
-            org.restlet.routing.Variable agentCommentAttribute = new org.restlet.routing.Variable(
-                    org.restlet.routing.Variable.TYPE_COMMENT_ATTRIBUTE);
-            org.restlet.routing.Variable facultativeData = new org.restlet.routing.Variable(
-                    org.restlet.routing.Variable.TYPE_ALL, null, false, false);
-
-            if (ClientInfo.getUserAgentTemplates() != null) {
-                for (String string : ClientInfo.getUserAgentTemplates()) {
-                    template = new org.restlet.routing.Template(string,
-                            org.restlet.routing.Template.MODE_EQUALS);
-
-                    // Update the predefined variables.
-                    template.getVariables().put("agentName", agentName);
-                    template.getVariables().put("agentVersion", agentVersion);
-                    template.getVariables().put("agentComment", agentComment);
-                    template.getVariables().put("agentOs",
-                            agentCommentAttribute);
-                    template.getVariables().put("commentAttribute",
-                            agentCommentAttribute);
-                    template.getVariables().put("facultativeData",
-                            facultativeData);
-
-                    // Parse the template
-                    if (template.parse(getAgent(), map) > -1) {
-                        for (String key : map.keySet()) {
-                            this.agentAttributes
-                                    .put(key, (String) map.get(key));
-                        }
-                        break;
-                    }
-                }
+            // "agentComment". The compiled templates and the attributes
+            // parsed are shared by all instances.
+            org.restlet.engine.util.UserAgentMatcher matcher = ClientInfo
+                    .getUserAgentMatcher();
+
+            if (matcher != null) {
+                this.agentAttributes.putAll(matcher.match(getAgent()));
             }
         }
 
@@ -41,6 +41,7 @@ import java.util.logging.Level;
 
 import org.restlet.Context;
 import org.restlet.Request;
+import org.restlet.Response;
 import org.restlet.data.CacheDirective;
 import org.restlet.data.ChallengeResponse;
 import org.restlet.data.ClientInfo;
@@ -91,6 +92,9 @@ public class HttpRequest extends Request {
         }
     }
 
+    /** The adapter committing the response of an asynchronous call. */
+    private volatile ServerAdapter adapter;
+
     /** Indicates if the cache control data was parsed and added. */
     private volatile boolean cacheDirectivesAdded;
 
@@ -203,6 +207,31 @@ public class HttpRequest extends Request {
         return getHttpCall().abort();
     }
 
+    /**
+     * Commits the given response. If the low-level call was switched into
+     * asynchronous mode, the response is immediately sent back to the client.
+     * Otherwise, the connector thread still handling the call will commit it
+     * when done.
+     * 
+     * @param response
+     *            The response to commit.
+     */
+    @Override
+    public void commit(Response response) {
+        ServerAdapter committer = null;
+
+        synchronized (this) {
+            if ((response != null) && !response.isCommitted()) {
+                response.setCommitted(true);
+                committer = this.adapter;
+            }
+        }
+
+        if ((committer != null) && (response instanceof HttpResponse)) {
+            committer.commit((HttpResponse) response);
+        }
+    }
+
     @Override
     public void flushBuffers() throws IOException {
         getHttpCall().flushBuffers();
@@ -597,6 +626,17 @@ public class HttpRequest extends Request {
         return result;
     }
 
+    /**
+     * Sets the adapter committing the response once the low-level call was
+     * switched into asynchronous mode.
+     * 
+     * @param adapter
+     *            The adapter committing the response.
+     */
+    void setAdapter(ServerAdapter adapter) {
+        this.adapter = adapter;
+    }
+
     @Override
     public void setChallengeResponse(ChallengeResponse response) {
         super.setChallengeResponse(response);
@@ -150,7 +150,7 @@ public class HttpServerHelper extends ServerHelper {
             HttpRequest request = getAdapter().toRequest(httpCall);
             HttpResponse response = new HttpResponse(httpCall, request);
             handle(request, response);
-            getAdapter().commit(response);
+            getAdapter().commitOrSuspend(response);
         } catch (Exception e) {
             getLogger().log(Level.WARNING,
                     "Error while handling an HTTP server call: ",
@@ -39,6 +39,7 @@ import java.util.List;
 import java.util.logging.Level;
 
 import org.restlet.Context;
+import org.restlet.Response;
 import org.restlet.data.Header;
 import org.restlet.data.Method;
 import org.restlet.data.Status;
@@ -228,6 +229,39 @@ public class ServerAdapter extends Adapter {
         }
     }
 
+    /**
+     * Commits the response of a call just handled by the current connector
+     * thread. If the response isn't automatically committed and the low-level
+     * call can be switched into asynchronous mode, the current thread is
+     * released and the response will be committed when
+     * {@link Response#commit()} is invoked, typically by another thread.
+     * 
+     * @param response
+     *            The high-level response.
+     * @see Response#isAutoCommitting()
+     */
+    public void commitOrSuspend(HttpResponse response) {
+        boolean suspended = false;
+
+        if (response.getRequest() instanceof HttpRequest) {
+            HttpRequest request = (HttpRequest) response.getRequest();
+
+            synchronized (request) {
+                if (!response.isCommitted() && !response.isAutoCommitting()
+                        && response.getHttpCall().startAsync()) {
+                    request.setAdapter(this);
+                    suspended = true;
+                } else {
+                    response.setCommitted(true);
+                }
+            }
+        }
+
+        if (!suspended) {
+            commit(response);
+        }
+    }
+
     /**
      * Converts a low-level HTTP call into a high-level uniform request.
      * 
@@ -501,6 +501,19 @@ public abstract class ServerCall extends Call {
                 && !response.getEntity().hasKnownSize();
     }
 
+    /**
+     * Attempts to switch the call into asynchronous mode, releasing the current
+     * connector thread while the response is still being prepared. In this
+     * mode, the response will be committed later on by another thread, then
+     * the call will be completed via {@link #complete()}. Returns false by
+     * default.
+     * 
+     * @return True if the call was switched into asynchronous mode.
+     */
+    public boolean startAsync() {
+        return false;
+    }
+
     /**
      * Effectively writes the response body. The entity to write is guaranteed
      * to be non null. Attempts to write the entity on the response channel or
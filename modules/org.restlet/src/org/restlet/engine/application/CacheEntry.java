@@ -0,0 +1,452 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+package org.restlet.engine.application;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.restlet.Request;
+import org.restlet.data.CacheDirective;
+import org.restlet.data.Dimension;
+import org.restlet.data.Reference;
+import org.restlet.data.Status;
+import org.restlet.data.Tag;
+import org.restlet.engine.header.HeaderConstants;
+import org.restlet.representation.ByteArrayRepresentation;
+import org.restlet.representation.Representation;
+
+// [excludes gwt]
+/**
+ * Response stored by the {@link CacheFilter}. It retains the status, the cache
+ * directives, the entity content and metadata of a response, as well as the
+ * values of the request preferences that selected this variant of the
+ * resource.
+ * 
+ * @author Jerome Louvel
+ */
+public class CacheEntry {
+
+    /**
+     * Computes the freshness lifetime of a response from its cache directives
+     * and from the expiration date of its entity.
+     * 
+     * @param cacheDirectives
+     *            The cache directives of the response.
+     * @param date
+     *            The date of the response.
+     * @param entity
+     *            The entity of the response or null.
+     * @param now
+     *            The current time in milliseconds.
+     * @return The freshness lifetime in seconds.
+     */
+    public static long computeFreshnessLifetime(
+            List<CacheDirective> cacheDirectives, Date date,
+            Representation entity, long now) {
+        long result = getDirectiveValue(cacheDirectives,
+                HeaderConstants.CACHE_SHARED_MAX_AGE);
+
+        if (result == -1) {
+            result = getDirectiveValue(cacheDirectives,
+                    HeaderConstants.CACHE_MAX_AGE);
+        }
+
+        if ((result == -1) && (entity != null)
+                && (entity.getExpirationDate() != null)) {
+            long origin = (date == null) ? now : date.getTime();
+            result = (entity.getExpirationDate().getTime() - origin) / 1000L;
+        }
+
+        if (hasDirective(cacheDirectives, HeaderConstants.CACHE_NO_CACHE)) {
+            // Always revalidate
+            result = 0;
+        }
+
+        return Math.max(0, result);
+    }
+
+    /**
+     * Copies the metadata of a representation into another one.
+     * 
+     * @param source
+     *            The source representation.
+     * @param target
+     *            The target representation.
+     */
+    public static void copyMetadata(Representation source,
+            Representation target) {
+        target.setCharacterSet(source.getCharacterSet());
+        target.setDigest(source.getDigest());
+        target.setDisposition(source.getDisposition());
+        target.setEncodings(source.getEncodings());
+        target.setExpirationDate(source.getExpirationDate());
+        target.setLanguages(source.getLanguages());
+        target.setLocationRef(source.getLocationRef());
+        target.setModificationDate(source.getModificationDate());
+        target.setTag(source.getTag());
+    }
+
+    /**
+     * Returns the value of a numeric cache directive or -1 if it isn't
+     * present.
+     * 
+     * @param directives
+     *            The cache directives.
+     * @param name
+     *            The name of the directive.
+     * @return The value of the directive or -1.
+     */
+    public static int getDirectiveValue(List<CacheDirective> directives,
+            String name) {
+        int result = -1;
+
+        for (CacheDirective directive : directives) {
+            if (name.equals(directive.getName())
+                    && (directive.getValue() != null)) {
+                try {
+                    result = Integer.parseInt(directive.getValue());
+                } catch (NumberFormatException nfe) {
+                    result = -1;
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the value of the request preference matching a content
+     * negotiation dimension, or null if the dimension prevents caching.
+     * 
+     * @param request
+     *            The request.
+     * @param dimension
+     *            The dimension.
+     * @return The value of the request preference or null.
+     */
+    public static String getDimensionValue(Request request, Dimension dimension) {
+        String result = null;
+
+        switch (dimension) {
+        case CHARACTER_SET:
+            result = request.getClientInfo().getAcceptedCharacterSets()
+                    .toString();
+            break;
+        case CLIENT_AGENT:
+            result = String.valueOf(request.getClientInfo().getAgent());
+            break;
+        case ENCODING:
+            result = request.getClientInfo().getAcceptedEncodings().toString();
+            break;
+        case LANGUAGE:
+            result = request.getClientInfo().getAcceptedLanguages().toString();
+            break;
+        case MEDIA_TYPE:
+            result = request.getClientInfo().getAcceptedMediaTypes()
+                    .toString();
+            break;
+        default:
+            // Authorization, client address, time or unspecified dimensions
+            // can't be matched by the cache
+            break;
+        }
+
+        return result;
+    }
+
+    /**
+     * Indicates if a cache directive is present.
+     * 
+     * @param directives
+     *            The cache directives.
+     * @param name
+     *            The name of the directive.
+     * @return True if the directive is present.
+     */
+    public static boolean hasDirective(List<CacheDirective> directives,
+            String name) {
+        boolean result = false;
+
+        for (CacheDirective directive : directives) {
+            result = result || name.equals(directive.getName());
+        }
+
+        return result;
+    }
+
+    /** The cache directives of the response. */
+    private volatile List<CacheDirective> cacheDirectives;
+
+    /** The entity content or null. */
+    private final byte[] content;
+
+    /** The content negotiation dimensions of the response. */
+    private final Set<Dimension> dimensions;
+
+    /** The entity used as a template for the served entities or null. */
+    private final Representation entity;
+
+    /** The freshness lifetime in seconds. */
+    private volatile long freshnessLifetime;
+
+    /** The age of the response when it was stored, in seconds. */
+    private volatile int initialAge;
+
+    /** The location reference of the response. */
+    private final Reference locationRef;
+
+    /** The status of the response. */
+    private final Status status;
+
+    /** The time when the response was stored or revalidated. */
+    private volatile long storageTime;
+
+    /** The request preferences that selected this variant. */
+    private final Map<Dimension, String> varyValues;
+
+    /**
+     * Constructor.
+     * 
+     * @param status
+     *            The status of the response.
+     * @param content
+     *            The entity content or null.
+     * @param entity
+     *            The original entity or null.
+     * @param locationRef
+     *            The location reference of the response.
+     * @param dimensions
+     *            The content negotiation dimensions of the response.
+     * @param varyValues
+     *            The request preferences that selected this variant.
+     */
+    public CacheEntry(Status status, byte[] content, Representation entity,
+            Reference locationRef, Set<Dimension> dimensions,
+            Map<Dimension, String> varyValues) {
+        this.content = content;
+        this.dimensions = dimensions;
+        this.locationRef = locationRef;
+        this.status = status;
+        this.varyValues = varyValues;
+
+        if (entity == null) {
+            this.entity = null;
+        } else {
+            this.entity = new ByteArrayRepresentation(content,
+                    entity.getMediaType());
+            copyMetadata(entity, this.entity);
+        }
+    }
+
+    /**
+     * Creates a new entity with the stored content and metadata.
+     * 
+     * @return A new entity or null.
+     */
+    public Representation createEntity() {
+        Representation result = null;
+
+        if (this.entity != null) {
+            result = new ByteArrayRepresentation(this.content,
+                    this.entity.getMediaType());
+            copyMetadata(this.entity, result);
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the current age in seconds.
+     * 
+     * @param now
+     *            The current time in milliseconds.
+     * @return The current age in seconds.
+     */
+    public int getAge(long now) {
+        return this.initialAge
+                + (int) (Math.max(0, now - this.storageTime) / 1000L);
+    }
+
+    /**
+     * Returns the cache directives of the response.
+     * 
+     * @return The cache directives of the response.
+     */
+    public List<CacheDirective> getCacheDirectives() {
+        return cacheDirectives;
+    }
+
+    /**
+     * Returns the content negotiation dimensions of the response.
+     * 
+     * @return The content negotiation dimensions of the response.
+     */
+    public Set<Dimension> getDimensions() {
+        return dimensions;
+    }
+
+    /**
+     * Returns the freshness lifetime in seconds.
+     * 
+     * @return The freshness lifetime in seconds.
+     */
+    public long getFreshnessLifetime() {
+        return freshnessLifetime;
+    }
+
+    /**
+     * Returns the location reference of the response.
+     * 
+     * @return The location reference of the response.
+     */
+    public Reference getLocationRef() {
+        return locationRef;
+    }
+
+    /**
+     * Returns the modification date of the entity.
+     * 
+     * @return The modification date of the entity.
+     */
+    public Date getModificationDate() {
+        return (this.entity == null) ? null : this.entity
+                .getModificationDate();
+    }
+
+    /**
+     * Returns the size of the stored content in bytes.
+     * 
+     * @return The size of the stored content in bytes.
+     */
+    public int getSize() {
+        return (this.content == null) ? 0 : this.content.length;
+    }
+
+    /**
+     * Returns the status of the response.
+     * 
+     * @return The status of the response.
+     */
+    public Status getStatus() {
+        return status;
+    }
+
+    /**
+     * Returns the tag of the entity.
+     * 
+     * @return The tag of the entity.
+     */
+    public Tag getTag() {
+        return (this.entity == null) ? null : this.entity.getTag();
+    }
+
+    /**
+     * Returns the request preferences that selected this variant.
+     * 
+     * @return The request preferences that selected this variant.
+     */
+    public Map<Dimension, String> getVaryValues() {
+        return varyValues;
+    }
+
+    /**
+     * Indicates if the entity has a tag or a modification date allowing the
+     * revalidation of the entry.
+     * 
+     * @return True if the entry can be revalidated.
+     */
+    public boolean hasValidators() {
+        return (getTag() != null) || (getModificationDate() != null);
+    }
+
+    /**
+     * Indicates if the entry can be served without revalidation.
+     * 
+     * @param now
+     *            The current time in milliseconds.
+     * @param maxAge
+     *            The maximum age accepted by the client in seconds or -1.
+     * @return True if the entry can be served without revalidation.
+     */
+    public boolean isFresh(long now, int maxAge) {
+        int age = getAge(now);
+        return (age < getFreshnessLifetime())
+                && ((maxAge == -1) || (age <= maxAge));
+    }
+
+    /**
+     * Indicates if this variant was selected by the same preferences as the
+     * given request.
+     * 
+     * @param request
+     *            The request.
+     * @return True if this variant matches the request.
+     */
+    public boolean matches(Request request) {
+        boolean result = true;
+
+        for (Map.Entry<Dimension, String> varyValue : this.varyValues
+                .entrySet()) {
+            result = result
+                    && varyValue.getValue().equals(
+                            getDimensionValue(request, varyValue.getKey()));
+        }
+
+        return result;
+    }
+
+    /**
+     * Updates the freshness information, after a revalidation or when the
+     * entry is stored.
+     * 
+     * @param cacheDirectives
+     *            The cache directives of the response.
+     * @param date
+     *            The date of the response.
+     * @param age
+     *            The age of the response in seconds.
+     * @param now
+     *            The current time in milliseconds.
+     */
+    public void refresh(List<CacheDirective> cacheDirectives, Date date,
+            int age, long now) {
+        this.cacheDirectives = cacheDirectives;
+        this.initialAge = Math.max(0, age);
+        this.storageTime = now;
+        this.freshnessLifetime = computeFreshnessLifetime(cacheDirectives,
+                date, this.entity, now);
+    }
+
+}
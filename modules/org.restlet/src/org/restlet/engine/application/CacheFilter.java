@@ -0,0 +1,634 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+package org.restlet.engine.application;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.logging.Level;
+
+import org.restlet.Context;
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.data.CacheDirective;
+import org.restlet.data.Conditions;
+import org.restlet.data.Dimension;
+import org.restlet.data.Method;
+import org.restlet.data.Status;
+import org.restlet.data.Tag;
+import org.restlet.engine.header.HeaderConstants;
+import org.restlet.engine.io.IoUtils;
+import org.restlet.representation.InputRepresentation;
+import org.restlet.representation.Representation;
+import org.restlet.routing.Filter;
+import org.restlet.service.CacheService;
+
+// [excludes gwt]
+/**
+ * Filter caching the responses to GET requests in memory. Entries are keyed by
+ * the resource URI and by the request preferences listed in the response
+ * dimensions (the "Vary" header). Fresh entries are served directly, including
+ * "304 Not Modified" responses to conditional requests, while stale entries
+ * are revalidated with their tag or modification date. Concurrent misses for
+ * the same URI are coalesced so that only one call reaches the resource.
+ * 
+ * @author Jerome Louvel
+ * @see CacheService
+ */
+public class CacheFilter extends Filter {
+
+    /** The statuses of responses that can be stored. */
+    private static final List<Status> CACHEABLE_STATUSES = Arrays.asList(
+            Status.SUCCESS_OK, Status.SUCCESS_NON_AUTHORITATIVE,
+            Status.REDIRECTION_MULTIPLE_CHOICES,
+            Status.REDIRECTION_PERMANENT, Status.CLIENT_ERROR_NOT_FOUND,
+            Status.CLIENT_ERROR_GONE);
+
+    /** The parent cache service. */
+    private final CacheService cacheService;
+
+    /** The variants stored for each URI, in least recently used order. */
+    private final LinkedHashMap<String, List<CacheEntry>> entries;
+
+    /** The number of stored entries. */
+    private int entryCount;
+
+    /** The calls reaching the resource for a URI not yet stored. */
+    private final ConcurrentMap<String, CountDownLatch> pendingCalls;
+
+    /** The total size of the stored contents in bytes. */
+    private long size;
+
+    /**
+     * Constructor.
+     * 
+     * @param context
+     *            The context.
+     * @param cacheService
+     *            The parent cache service.
+     */
+    public CacheFilter(Context context, CacheService cacheService) {
+        super(context);
+        this.cacheService = cacheService;
+        this.entries = new LinkedHashMap<String, List<CacheEntry>>(16, 0.75f,
+                true);
+        this.pendingCalls = new ConcurrentHashMap<String, CountDownLatch>();
+    }
+
+    /**
+     * Removes all the stored entries.
+     */
+    public synchronized void clear() {
+        this.entries.clear();
+        this.entryCount = 0;
+        this.size = 0;
+    }
+
+    /**
+     * Creates a new entry for a response if it can be stored. The storability
+     * is decided from the status and headers first, then at most
+     * {@link CacheService#getMaxEntrySize()} bytes of the entity are buffered.
+     * When the entry is created, the response entity is replaced by a copy.
+     * 
+     * @param request
+     *            The request.
+     * @param response
+     *            The response.
+     * @param now
+     *            The current time in milliseconds.
+     * @return The new entry or null.
+     * @throws IOException
+     */
+    protected CacheEntry createEntry(Request request, Response response,
+            long now) throws IOException {
+        CacheEntry result = null;
+        List<CacheDirective> directives = response.getCacheDirectives();
+        boolean storable = Method.GET.equals(request.getMethod())
+                && CACHEABLE_STATUSES.contains(response.getStatus())
+                && response.isAutoCommitting()
+                && response.getCookieSettings().isEmpty()
+                && !CacheEntry.hasDirective(directives,
+                        HeaderConstants.CACHE_NO_STORE)
+                && !CacheEntry.hasDirective(directives,
+                        HeaderConstants.CACHE_PRIVATE);
+
+        if (storable && isPersonal(request)) {
+            // Personal responses are shared only if explicitly allowed
+            storable = CacheEntry.hasDirective(directives,
+                    HeaderConstants.CACHE_PUBLIC)
+                    || CacheEntry.hasDirective(directives,
+                            HeaderConstants.CACHE_SHARED_MAX_AGE);
+        }
+
+        Map<Dimension, String> varyValues = new HashMap<Dimension, String>();
+
+        for (Iterator<Dimension> iter = response.getDimensions().iterator(); storable
+                && iter.hasNext();) {
+            Dimension dimension = iter.next();
+            String value = CacheEntry.getDimensionValue(request, dimension);
+            storable = (value != null);
+            varyValues.put(dimension, value);
+        }
+
+        Representation entity = response.isEntityAvailable() ? response
+                .getEntity() : null;
+
+        if (storable) {
+            // Useless entries can neither be served nor revalidated
+            storable = (CacheEntry.computeFreshnessLifetime(directives,
+                    response.getDate(), entity, now) > 0)
+                    || ((entity != null) && ((entity.getTag() != null) || (entity
+                            .getModificationDate() != null)));
+        }
+
+        if (storable && (entity != null) && entity.hasKnownSize()) {
+            storable = (entity.getSize() <= getCacheService()
+                    .getMaxEntrySize());
+        }
+
+        byte[] content = null;
+
+        if (storable && (entity != null)) {
+            content = readContent(response, entity);
+            storable = (content != null);
+        }
+
+        if (storable) {
+            result = new CacheEntry(response.getStatus(), content, entity,
+                    response.getLocationRef(), new HashSet<Dimension>(
+                            response.getDimensions()), varyValues);
+            result.refresh(new ArrayList<CacheDirective>(directives),
+                    response.getDate(), response.getAge(), now);
+            response.setEntity(result.createEntity());
+        }
+
+        return result;
+    }
+
+    @Override
+    protected int doHandle(Request request, Response response) {
+        int result = CONTINUE;
+
+        if (!getCacheService().isEnabled()) {
+            result = super.doHandle(request, response);
+        } else if (Method.GET.equals(request.getMethod())
+                || Method.HEAD.equals(request.getMethod())) {
+            result = handleRead(request, response);
+        } else {
+            result = super.doHandle(request, response);
+
+            if (!request.getMethod().isSafe()
+                    && (response.getStatus().isSuccess() || response
+                            .getStatus().isRedirection())) {
+                // The stored representations may be obsolete
+                remove(getKey(request));
+
+                if (response.getLocationRef() != null) {
+                    remove(response.getLocationRef().getTargetRef()
+                            .toString(true, false));
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Calls the next Restlet, revalidating a stale entry if possible, then
+     * stores the response if allowed.
+     * 
+     * @param key
+     *            The cache key.
+     * @param entry
+     *            The stale entry or null.
+     * @param request
+     *            The request.
+     * @param response
+     *            The response.
+     * @return The continuation status.
+     */
+    private int fetch(String key, CacheEntry entry, Request request,
+            Response response) {
+        int result = CONTINUE;
+        Conditions conditions = request.getConditions();
+        boolean revalidating = (entry != null) && entry.hasValidators()
+                && !conditions.hasSome();
+
+        if (revalidating) {
+            Conditions validators = new Conditions();
+
+            if (entry.getTag() != null) {
+                validators.setNoneMatch(new ArrayList<Tag>(Arrays.asList(entry
+                        .getTag())));
+            } else {
+                validators.setModifiedSince(entry.getModificationDate());
+            }
+
+            request.setConditions(validators);
+        }
+
+        try {
+            result = super.doHandle(request, response);
+        } finally {
+            request.setConditions(conditions);
+        }
+
+        long now = System.currentTimeMillis();
+
+        if (revalidating
+                && Status.REDIRECTION_NOT_MODIFIED.equals(response.getStatus())) {
+            if (response.getEntity() != null) {
+                response.getEntity().release();
+            }
+
+            if (!response.getCacheDirectives().isEmpty()) {
+                entry.refresh(new ArrayList<CacheDirective>(response
+                        .getCacheDirectives()), response.getDate(),
+                        response.getAge(), now);
+            } else {
+                entry.refresh(entry.getCacheDirectives(), response.getDate(),
+                        response.getAge(), now);
+            }
+
+            serve(entry, request, response, now);
+        } else {
+            try {
+                CacheEntry created = createEntry(request, response, now);
+
+                if (created != null) {
+                    put(key, created);
+                } else if (revalidating) {
+                    remove(key);
+                }
+            } catch (IOException ioe) {
+                getLogger().log(Level.WARNING,
+                        "Unable to store the response entity", ioe);
+                response.setStatus(Status.SERVER_ERROR_INTERNAL, ioe);
+                response.setEntity(null);
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the stored variant matching a request.
+     * 
+     * @param key
+     *            The cache key.
+     * @param request
+     *            The request.
+     * @return The stored variant or null.
+     */
+    protected synchronized CacheEntry get(String key, Request request) {
+        CacheEntry result = null;
+        List<CacheEntry> variants = this.entries.get(key);
+
+        if (variants != null) {
+            for (Iterator<CacheEntry> iter = variants.iterator(); (result == null)
+                    && iter.hasNext();) {
+                CacheEntry variant = iter.next();
+
+                if (variant.matches(request)) {
+                    result = variant;
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the parent cache service.
+     * 
+     * @return The parent cache service.
+     */
+    public CacheService getCacheService() {
+        return cacheService;
+    }
+
+    /**
+     * Returns the number of stored entries.
+     * 
+     * @return The number of stored entries.
+     */
+    public synchronized int getEntryCount() {
+        return this.entryCount;
+    }
+
+    /**
+     * Returns the cache key of a request.
+     * 
+     * @param request
+     *            The request.
+     * @return The cache key.
+     */
+    protected String getKey(Request request) {
+        return request.getResourceRef().getTargetRef().toString(true, false);
+    }
+
+    /**
+     * Returns the total size of the stored contents in bytes.
+     * 
+     * @return The total size of the stored contents in bytes.
+     */
+    public synchronized long getSize() {
+        return this.size;
+    }
+
+    /**
+     * Handles a GET or HEAD request, serving it from the cache when possible.
+     * 
+     * @param request
+     *            The request.
+     * @param response
+     *            The response.
+     * @return The continuation status.
+     */
+    private int handleRead(Request request, Response response) {
+        int result = CONTINUE;
+        List<CacheDirective> directives = request.getCacheDirectives();
+
+        if (CacheEntry.hasDirective(directives, HeaderConstants.CACHE_NO_STORE)) {
+            result = super.doHandle(request, response);
+        } else {
+            String key = getKey(request);
+            int maxAge = CacheEntry.hasDirective(directives,
+                    HeaderConstants.CACHE_NO_CACHE) ? 0 : CacheEntry
+                    .getDirectiveValue(directives,
+                            HeaderConstants.CACHE_MAX_AGE);
+            boolean coalescing = true;
+            boolean done = false;
+
+            while (!done) {
+                long now = System.currentTimeMillis();
+                CacheEntry entry = get(key, request);
+
+                if ((entry != null) && entry.isFresh(now, maxAge)) {
+                    serve(entry, request, response, now);
+                    done = true;
+                } else if (CacheEntry.hasDirective(directives,
+                        HeaderConstants.CACHE_ONLY_IF_CACHED)) {
+                    response.setStatus(Status.SERVER_ERROR_GATEWAY_TIMEOUT);
+                    done = true;
+                } else if (Method.HEAD.equals(request.getMethod())) {
+                    // Only GET responses are stored
+                    result = super.doHandle(request, response);
+                    done = true;
+                } else if (!coalescing) {
+                    result = fetch(key, entry, request, response);
+                    done = true;
+                } else {
+                    CountDownLatch latch = new CountDownLatch(1);
+                    CountDownLatch pending = this.pendingCalls.putIfAbsent(
+                            key, latch);
+
+                    if (pending == null) {
+                        try {
+                            result = fetch(key, entry, request, response);
+                        } finally {
+                            this.pendingCalls.remove(key);
+                            latch.countDown();
+                        }
+
+                        done = true;
+                    } else {
+                        // Wait for the concurrent call then look up again,
+                        // only once as the response may not be storable
+                        try {
+                            pending.await();
+                        } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
+                        }
+
+                        coalescing = false;
+                    }
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Indicates if a request carries credentials or a session, via a
+     * challenge response, an "Authorization" header or cookies. The responses
+     * to such requests might be personal, even if the authentication happens
+     * after this filter.
+     * 
+     * @param request
+     *            The request.
+     * @return True if the request carries credentials or a session.
+     */
+    protected boolean isPersonal(Request request) {
+        return (request.getChallengeResponse() != null)
+                || !request.getCookies().isEmpty()
+                || ((request.getHeaders() != null) && (request.getHeaders()
+                        .getFirst(HeaderConstants.HEADER_AUTHORIZATION, true) != null));
+    }
+
+    /**
+     * Stores an entry, replacing the variant selected by the same
+     * preferences and evicting the least recently used URIs if needed.
+     * 
+     * @param key
+     *            The cache key.
+     * @param entry
+     *            The entry to store.
+     */
+    protected synchronized void put(String key, CacheEntry entry) {
+        List<CacheEntry> variants = this.entries.get(key);
+
+        if (variants == null) {
+            variants = new ArrayList<CacheEntry>();
+            this.entries.put(key, variants);
+        }
+
+        for (Iterator<CacheEntry> iter = variants.iterator(); iter.hasNext();) {
+            CacheEntry variant = iter.next();
+
+            if (variant.getVaryValues().equals(entry.getVaryValues())) {
+                iter.remove();
+                this.entryCount--;
+                this.size -= variant.getSize();
+            }
+        }
+
+        variants.add(entry);
+        this.entryCount++;
+        this.size += entry.getSize();
+
+        // Evict the least recently used URIs
+        for (Iterator<Map.Entry<String, List<CacheEntry>>> iter = this.entries
+                .entrySet().iterator(); iter.hasNext()
+                && ((this.entryCount > getCacheService().getMaxEntries()) || (this.size > getCacheService()
+                        .getMaxSize()));) {
+            Map.Entry<String, List<CacheEntry>> eldest = iter.next();
+
+            if (eldest.getValue() != variants) {
+                iter.remove();
+                removed(eldest.getValue());
+            }
+        }
+    }
+
+    /**
+     * Reads the content of an entity if it doesn't exceed the maximum entry
+     * size. Otherwise, the response keeps streaming the whole entity.
+     * 
+     * @param response
+     *            The response.
+     * @param entity
+     *            The response entity.
+     * @return The content or null if it is too large.
+     * @throws IOException
+     */
+    private byte[] readContent(Response response, Representation entity)
+            throws IOException {
+        byte[] result = null;
+        long maxEntrySize = getCacheService().getMaxEntrySize();
+        ByteArrayOutputStream out = new ByteArrayOutputStream(
+                entity.hasKnownSize() ? (int) entity.getSize()
+                        : IoUtils.BUFFER_SIZE);
+        InputStream in = entity.getStream();
+
+        if (in != null) {
+            byte[] buffer = new byte[IoUtils.BUFFER_SIZE];
+            int read = 0;
+
+            // Read one byte more than allowed to detect large entities
+            while ((out.size() <= maxEntrySize)
+                    && ((read = in.read(buffer, 0, (int) Math.min(
+                            buffer.length, maxEntrySize + 1 - out.size()))) != -1)) {
+                out.write(buffer, 0, read);
+            }
+        }
+
+        if (out.size() <= maxEntrySize) {
+            if (in != null) {
+                in.close();
+            }
+
+            entity.release();
+            result = out.toByteArray();
+        } else if (entity.isTransient()) {
+            // Stream the bytes already read, followed by the remaining ones
+            Representation streamed = new InputRepresentation(
+                    new SequenceInputStream(new ByteArrayInputStream(
+                            out.toByteArray()), in), entity.getMediaType());
+            CacheEntry.copyMetadata(entity, streamed);
+            response.setEntity(streamed);
+        } else {
+            // The original entity can be written again
+            in.close();
+        }
+
+        return result;
+    }
+
+    /**
+     * Removes the entries stored for a URI.
+     * 
+     * @param key
+     *            The cache key.
+     */
+    public synchronized void remove(String key) {
+        List<CacheEntry> variants = this.entries.remove(key);
+
+        if (variants != null) {
+            removed(variants);
+        }
+    }
+
+    /**
+     * Updates the counters after the removal of entries.
+     * 
+     * @param variants
+     *            The removed entries.
+     */
+    private void removed(List<CacheEntry> variants) {
+        for (CacheEntry variant : variants) {
+            this.entryCount--;
+            this.size -= variant.getSize();
+        }
+    }
+
+    /**
+     * Serves a stored entry, answering conditional requests directly.
+     * 
+     * @param entry
+     *            The stored entry.
+     * @param request
+     *            The request.
+     * @param response
+     *            The response.
+     * @param now
+     *            The current time in milliseconds.
+     */
+    protected void serve(CacheEntry entry, Request request, Response response,
+            long now) {
+        Status status = null;
+
+        if (entry.getStatus().isSuccess()
+                && request.getConditions().hasSome()) {
+            status = request.getConditions().getStatus(request.getMethod(),
+                    true, entry.getTag(), entry.getModificationDate());
+        }
+
+        response.setStatus((status == null) ? entry.getStatus() : status);
+        response.setAge(entry.getAge(now));
+        response.setCacheDirectives(entry.getCacheDirectives());
+        response.setDimensions(entry.getDimensions());
+        response.setEntity(entry.createEntity());
+        response.setLocationRef(entry.getLocationRef());
+
+        if (getLogger().isLoggable(Level.FINE)) {
+            getLogger().fine(
+                    "Response served from the cache: " + response.getStatus());
+        }
+    }
+
+}
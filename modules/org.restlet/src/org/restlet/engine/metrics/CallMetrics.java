@@ -0,0 +1,162 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.engine.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Metrics aggregated for a set of calls, such as the calls handled by a given
+ * route or answered with a given status. It combines a latency histogram with
+ * striped counters of the entity bytes received and sent.<br>
+ * <br>
+ * Concurrency note: instances of this class can be updated and read by several
+ * threads at the same time.
+ * 
+ * @author Jerome Louvel
+ */
+public class CallMetrics {
+
+    /** The number of slots per stripe, padded to a cache line. */
+    private static final int STRIDE = 8;
+
+    /** The bytes received and sent, by stripe. */
+    private final AtomicLongArray bytes;
+
+    /** The latency histogram. */
+    private final LatencyHistogram latency;
+
+    /** The mask selecting a stripe from a thread identifier. */
+    private final int stripeMask;
+
+    /**
+     * Default constructor, using {@link LatencyHistogram#DEFAULT_STRIPES}
+     * stripes.
+     */
+    public CallMetrics() {
+        this(LatencyHistogram.DEFAULT_STRIPES);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param stripes
+     *            The number of stripes, rounded down to a power of two.
+     */
+    public CallMetrics(int stripes) {
+        int count = Integer.highestOneBit(Math.max(1, stripes));
+        this.bytes = new AtomicLongArray(count * STRIDE);
+        this.latency = new LatencyHistogram(count);
+        this.stripeMask = count - 1;
+    }
+
+    /**
+     * Returns the number of entity bytes received.
+     * 
+     * @return The number of entity bytes received.
+     */
+    public long getBytesIn() {
+        return sumBytes(0);
+    }
+
+    /**
+     * Returns the number of entity bytes sent.
+     * 
+     * @return The number of entity bytes sent.
+     */
+    public long getBytesOut() {
+        return sumBytes(1);
+    }
+
+    /**
+     * Returns the number of recorded calls.
+     * 
+     * @return The number of recorded calls.
+     */
+    public long getCount() {
+        return getLatency().getCount();
+    }
+
+    /**
+     * Returns the latency histogram.
+     * 
+     * @return The latency histogram.
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    /**
+     * Records a call.
+     * 
+     * @param durationNanos
+     *            The call duration in nanoseconds.
+     * @param bytesIn
+     *            The number of entity bytes received or -1 if unknown.
+     * @param bytesOut
+     *            The number of entity bytes sent or -1 if unknown.
+     */
+    public void record(long durationNanos, long bytesIn, long bytesOut) {
+        int offset = ((int) Thread.currentThread().getId() & this.stripeMask)
+                * STRIDE;
+
+        if (bytesIn > 0) {
+            this.bytes.addAndGet(offset, bytesIn);
+        }
+
+        if (bytesOut > 0) {
+            this.bytes.addAndGet(offset + 1, bytesOut);
+        }
+
+        getLatency().record(durationNanos);
+    }
+
+    /**
+     * Sums a byte counter over all the stripes.
+     * 
+     * @param slot
+     *            The slot of the counter in a stripe.
+     * @return The sum.
+     */
+    private long sumBytes(int slot) {
+        long result = 0;
+
+        for (int i = slot; i < this.bytes.length(); i += STRIDE) {
+            result += this.bytes.get(i);
+        }
+
+        return result;
+    }
+
+}
@@ -0,0 +1,76 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.engine.metrics;
+
+/**
+ * Gauges exposed by a server connector to the metrics service. Connector
+ * helpers register an implementation in the context of their server with
+ * {@link MetricsUtils#addConnector(org.restlet.Context, ConnectorMetrics)} so
+ * that the metrics services of the parent component and of its applications
+ * can report it.
+ * 
+ * @author Jerome Louvel
+ */
+public interface ConnectorMetrics {
+
+    /**
+     * Returns the number of worker threads actively handling calls.
+     * 
+     * @return The number of busy worker threads.
+     */
+    int getActiveCount();
+
+    /**
+     * Returns the number of open connections.
+     * 
+     * @return The number of open connections.
+     */
+    int getConnectionCount();
+
+    /**
+     * Returns the name of the connector, such as "HTTP/1.1:8182".
+     * 
+     * @return The name of the connector.
+     */
+    String getName();
+
+    /**
+     * Returns the number of messages waiting to be handled.
+     * 
+     * @return The number of messages waiting to be handled.
+     */
+    int getQueueDepth();
+
+}
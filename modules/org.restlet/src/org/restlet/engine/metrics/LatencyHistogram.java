@@ -0,0 +1,295 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.engine.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free histogram of call latencies. Values are tracked with a microsecond
+ * resolution in log-linear buckets, each power of two being divided into 16
+ * sub-buckets, which bounds the relative error of the reported percentiles to
+ * about 6% while keeping the memory footprint constant.<br>
+ * <br>
+ * In order to limit the contention between worker threads, the counters are
+ * striped: each thread updates the stripe selected by its identifier and the
+ * stripes are only summed when the histogram is read.<br>
+ * <br>
+ * Concurrency note: instances of this class can be updated and read by several
+ * threads at the same time.
+ * 
+ * @author Jerome Louvel
+ */
+public class LatencyHistogram {
+
+    /** The number of bits used to index the sub-buckets. */
+    private static final int SUB_BUCKET_BITS = 4;
+
+    /** The number of sub-buckets per power of two. */
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+
+    /** The highest tracked power of two, about 19 hours in microseconds. */
+    private static final int MAX_MAGNITUDE = 36;
+
+    /** The highest tracked value in microseconds. */
+    private static final long MAX_VALUE = (1L << (MAX_MAGNITUDE + 1)) - 1;
+
+    /** The number of buckets per stripe. */
+    public static final int BUCKET_COUNT = (MAX_MAGNITUDE - SUB_BUCKET_BITS + 2)
+            * SUB_BUCKET_COUNT;
+
+    /** The default number of stripes. */
+    public static final int DEFAULT_STRIPES = Math.min(4,
+            Integer.highestOneBit(Runtime.getRuntime().availableProcessors()));
+
+    /** The number of statistics slots per stripe, padded to a cache line. */
+    private static final int STATS_STRIDE = 8;
+
+    /**
+     * Returns the index of the bucket tracking a given value.
+     * 
+     * @param micros
+     *            The value in microseconds.
+     * @return The bucket index.
+     */
+    static int getBucketIndex(long micros) {
+        int result;
+        long value = Math.min(Math.max(micros, 0), MAX_VALUE);
+
+        if (value < SUB_BUCKET_COUNT) {
+            result = (int) value;
+        } else {
+            int magnitude = 63 - Long.numberOfLeadingZeros(value);
+            result = (magnitude - SUB_BUCKET_BITS + 1) * SUB_BUCKET_COUNT
+                    + (int) ((value >>> (magnitude - SUB_BUCKET_BITS)) & (SUB_BUCKET_COUNT - 1));
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the highest value tracked by a given bucket.
+     * 
+     * @param index
+     *            The bucket index.
+     * @return The highest value in microseconds.
+     */
+    static long getBucketValue(int index) {
+        long result;
+
+        if (index < SUB_BUCKET_COUNT) {
+            result = index;
+        } else {
+            int group = index / SUB_BUCKET_COUNT;
+            int subBucket = index & (SUB_BUCKET_COUNT - 1);
+            result = ((SUB_BUCKET_COUNT + subBucket + 1L) << (group - 1)) - 1;
+        }
+
+        return result;
+    }
+
+    /** The bucket counters, grouped by stripe. */
+    private final AtomicLongArray buckets;
+
+    /** The count, sum and maximum of the recorded values, by stripe. */
+    private final AtomicLongArray stats;
+
+    /** The mask selecting a stripe from a thread identifier. */
+    private final int stripeMask;
+
+    /**
+     * Default constructor, using {@link #DEFAULT_STRIPES} stripes.
+     */
+    public LatencyHistogram() {
+        this(DEFAULT_STRIPES);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param stripes
+     *            The number of stripes, rounded down to a power of two.
+     */
+    public LatencyHistogram(int stripes) {
+        int count = Integer.highestOneBit(Math.max(1, stripes));
+        this.buckets = new AtomicLongArray(count * BUCKET_COUNT);
+        this.stats = new AtomicLongArray(count * STATS_STRIDE);
+        this.stripeMask = count - 1;
+    }
+
+    /**
+     * Returns the number of recorded values.
+     * 
+     * @return The number of recorded values.
+     */
+    public long getCount() {
+        return sumStats(0);
+    }
+
+    /**
+     * Returns the highest recorded value.
+     * 
+     * @return The highest recorded value in nanoseconds.
+     */
+    public long getMax() {
+        long result = 0;
+
+        for (int i = 2; i < this.stats.length(); i += STATS_STRIDE) {
+            result = Math.max(result, this.stats.get(i));
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the mean of the recorded values.
+     * 
+     * @return The mean of the recorded values in nanoseconds.
+     */
+    public double getMean() {
+        long count = getCount();
+        return (count == 0) ? 0 : (double) getSum() / count;
+    }
+
+    /**
+     * Returns the index of the stripe updated by the current thread.
+     * 
+     * @return The index of the stripe.
+     */
+    private int getStripe() {
+        return (int) Thread.currentThread().getId() & this.stripeMask;
+    }
+
+    /**
+     * Returns the sum of the recorded values.
+     * 
+     * @return The sum of the recorded values in nanoseconds.
+     */
+    public long getSum() {
+        return sumStats(1);
+    }
+
+    /**
+     * Returns the value below which a given percentage of the recorded values
+     * fall.
+     * 
+     * @param percentile
+     *            The percentile, between 0 and 100.
+     * @return The value at the given percentile in nanoseconds.
+     */
+    public long getValueAtPercentile(double percentile) {
+        return getValuesAtPercentiles(percentile)[0];
+    }
+
+    /**
+     * Returns the values below which given percentages of the recorded values
+     * fall. The buckets are only summed once for all the percentiles.
+     * 
+     * @param percentiles
+     *            The percentiles, between 0 and 100, in ascending order.
+     * @return The values at the given percentiles in nanoseconds.
+     */
+    public long[] getValuesAtPercentiles(double... percentiles) {
+        long[] result = new long[percentiles.length];
+        long[] counts = new long[BUCKET_COUNT];
+        long total = 0;
+
+        for (int i = 0; i < this.buckets.length(); i++) {
+            long count = this.buckets.get(i);
+            counts[i % BUCKET_COUNT] += count;
+            total += count;
+        }
+
+        if (total > 0) {
+            long max = getMax();
+            long seen = 0;
+            int index = 0;
+
+            for (int i = 0; (i < BUCKET_COUNT)
+                    && (index < percentiles.length); i++) {
+                seen += counts[i];
+
+                while ((index < percentiles.length)
+                        && (seen > 0)
+                        && (seen >= Math.ceil(total
+                                * Math.min(100, percentiles[index]) / 100))) {
+                    result[index++] = Math.min(max, getBucketValue(i) * 1000);
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Records a value.
+     * 
+     * @param nanos
+     *            The value to record in nanoseconds.
+     */
+    public void record(long nanos) {
+        long value = Math.max(nanos, 0);
+        int stripe = getStripe();
+        int offset = stripe * STATS_STRIDE;
+        this.buckets.incrementAndGet(stripe * BUCKET_COUNT
+                + getBucketIndex(value / 1000));
+        this.stats.incrementAndGet(offset);
+        this.stats.addAndGet(offset + 1, value);
+
+        long max = this.stats.get(offset + 2);
+
+        while ((value > max)
+                && !this.stats.compareAndSet(offset + 2, max, value)) {
+            max = this.stats.get(offset + 2);
+        }
+    }
+
+    /**
+     * Sums a statistic over all the stripes.
+     * 
+     * @param slot
+     *            The slot of the statistic in a stripe.
+     * @return The sum.
+     */
+    private long sumStats(int slot) {
+        long result = 0;
+
+        for (int i = slot; i < this.stats.length(); i += STATS_STRIDE) {
+            result += this.stats.get(i);
+        }
+
+        return result;
+    }
+
+}
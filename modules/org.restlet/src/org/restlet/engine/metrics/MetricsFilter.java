@@ -0,0 +1,121 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.engine.metrics;
+
+import org.restlet.Context;
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.data.Status;
+import org.restlet.representation.Representation;
+import org.restlet.routing.Filter;
+import org.restlet.service.MetricsService;
+
+/**
+ * Filter recording the metrics of all calls handled by the target Restlet. The
+ * patterns of the traversed routes are collected in a request attribute
+ * updated by the template routes.<br>
+ * <br>
+ * Concurrency note: instances of this class or its subclasses can be invoked by
+ * several threads at the same time and therefore must be thread-safe. You
+ * should be especially careful when storing state in member variables.
+ * 
+ * @author Jerome Louvel
+ */
+public class MetricsFilter extends Filter {
+
+    /**
+     * Returns the size of an entity.
+     * 
+     * @param entity
+     *            The entity.
+     * @return The size of the entity or -1 if unknown.
+     */
+    private static long getSize(Representation entity) {
+        return (entity == null) ? -1 : entity.getSize();
+    }
+
+    /** The metrics service. */
+    protected volatile MetricsService metricsService;
+
+    /**
+     * Constructor.
+     * 
+     * @param context
+     *            The context.
+     * @param metricsService
+     *            The metrics service.
+     */
+    public MetricsFilter(Context context, MetricsService metricsService) {
+        super(context);
+        this.metricsService = metricsService;
+    }
+
+    /**
+     * Handles the call by the next Restlet and records its metrics, even if
+     * the next Restlet failed with an exception, in which case the call is
+     * recorded with an internal error status.
+     * 
+     * @param request
+     *            The request to handle.
+     * @param response
+     *            The response to update.
+     * @return The continuation status.
+     */
+    @Override
+    protected int doHandle(Request request, Response response) {
+        int result = STOP;
+        boolean failed = true;
+        StringBuilder route = new StringBuilder();
+        request.getAttributes().put(MetricsUtils.ROUTE_ATTRIBUTE, route);
+        this.metricsService.onCallStarted();
+        long startTime = System.nanoTime();
+
+        try {
+            result = super.doHandle(request, response);
+            failed = false;
+        } finally {
+            long duration = System.nanoTime() - startTime;
+            request.getAttributes().remove(MetricsUtils.ROUTE_ATTRIBUTE);
+            this.metricsService.onCallCompleted(route.toString(),
+                    failed ? Status.SERVER_ERROR_INTERNAL : response
+                            .getStatus(), duration,
+                    getSize(request.getEntity()),
+                    getSize(response.getEntity()));
+        }
+
+        return result;
+    }
+
+}
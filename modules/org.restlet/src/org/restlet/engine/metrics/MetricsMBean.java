@@ -0,0 +1,341 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.engine.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+import org.restlet.service.MetricsService;
+
+/**
+ * Read-only JMX MBean exposing the metrics collected by a metrics service. The
+ * attributes are computed dynamically: besides the "InFlight" attribute, each
+ * route, status and connector exposes one attribute per statistic, named like
+ * "route /users/{id} p99Ms" or "connector HTTP/1.1:8182 queueDepth".
+ * 
+ * @author Jerome Louvel
+ */
+public class MetricsMBean implements DynamicMBean {
+
+    /** The statistics exposed for each set of call metrics. */
+    private static final String[] CALL_STATS = { "count", "meanMs", "maxMs",
+            "p50Ms", "p90Ms", "p99Ms", "bytesIn", "bytesOut" };
+
+    /** The statistics exposed for each connector. */
+    private static final String[] CONNECTOR_STATS = { "connections",
+            "queueDepth", "activeWorkers" };
+
+    /** The number of nanoseconds per millisecond. */
+    private static final double NANOS_PER_MILLI = 1000000D;
+
+    /** The metrics service. */
+    private final MetricsService metricsService;
+
+    /** The registered object name. */
+    private volatile ObjectName objectName;
+
+    /**
+     * Constructor.
+     * 
+     * @param metricsService
+     *            The metrics service.
+     */
+    public MetricsMBean(MetricsService metricsService) {
+        this.metricsService = metricsService;
+    }
+
+    /**
+     * Adds the attribute descriptors of a dimension.
+     * 
+     * @param attributes
+     *            The target list.
+     * @param dimension
+     *            The dimension name.
+     * @param keys
+     *            The keys of the dimension.
+     * @param stats
+     *            The statistic names.
+     * @param type
+     *            The class name of the statistics.
+     */
+    private void addAttributeInfos(List<MBeanAttributeInfo> attributes,
+            String dimension, Iterable<String> keys, String[] stats,
+            String type) {
+        for (String key : keys) {
+            for (String stat : stats) {
+                String name = dimension + " " + key + " " + stat;
+                attributes.add(new MBeanAttributeInfo(name, type, stat
+                        + " of the " + dimension + " " + key, true, false,
+                        false));
+            }
+        }
+    }
+
+    @Override
+    public Object getAttribute(String attribute)
+            throws AttributeNotFoundException {
+        Object result = null;
+
+        if ("InFlight".equals(attribute)) {
+            result = getMetricsService().getInFlight();
+        } else {
+            int first = attribute.indexOf(' ');
+            int last = attribute.lastIndexOf(' ');
+
+            if ((first > 0) && (last > first)) {
+                String dimension = attribute.substring(0, first);
+                String key = attribute.substring(first + 1, last);
+                String stat = attribute.substring(last + 1);
+
+                if ("route".equals(dimension)) {
+                    result = getCallStat(
+                            getMetricsService().getRoutes().get(key), stat);
+                } else if ("status".equals(dimension)) {
+                    try {
+                        result = getCallStat(getMetricsService()
+                                .getStatuses().get(Integer.valueOf(key)),
+                                stat);
+                    } catch (NumberFormatException e) {
+                        // Unknown status
+                    }
+                } else if ("connector".equals(dimension)) {
+                    result = getConnectorStat(getConnectors().get(key), stat);
+                }
+            }
+        }
+
+        if (result == null) {
+            throw new AttributeNotFoundException(attribute);
+        }
+
+        return result;
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] attributes) {
+        AttributeList result = new AttributeList();
+
+        for (String attribute : attributes) {
+            try {
+                result.add(new Attribute(attribute, getAttribute(attribute)));
+            } catch (AttributeNotFoundException e) {
+                // Skip the attributes that disappeared
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns a statistic of a set of call metrics.
+     * 
+     * @param metrics
+     *            The call metrics.
+     * @param stat
+     *            The statistic name.
+     * @return The statistic value or null if unknown.
+     */
+    private Object getCallStat(CallMetrics metrics, String stat) {
+        Object result = null;
+
+        if (metrics != null) {
+            LatencyHistogram latency = metrics.getLatency();
+
+            if ("count".equals(stat)) {
+                result = metrics.getCount();
+            } else if ("meanMs".equals(stat)) {
+                result = latency.getMean() / NANOS_PER_MILLI;
+            } else if ("maxMs".equals(stat)) {
+                result = latency.getMax() / NANOS_PER_MILLI;
+            } else if ("p50Ms".equals(stat)) {
+                result = latency.getValueAtPercentile(50) / NANOS_PER_MILLI;
+            } else if ("p90Ms".equals(stat)) {
+                result = latency.getValueAtPercentile(90) / NANOS_PER_MILLI;
+            } else if ("p99Ms".equals(stat)) {
+                result = latency.getValueAtPercentile(99) / NANOS_PER_MILLI;
+            } else if ("bytesIn".equals(stat)) {
+                result = metrics.getBytesIn();
+            } else if ("bytesOut".equals(stat)) {
+                result = metrics.getBytesOut();
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the registered connectors, by name.
+     * 
+     * @return The registered connectors, by name.
+     */
+    private Map<String, ConnectorMetrics> getConnectors() {
+        Map<String, ConnectorMetrics> result = new TreeMap<String, ConnectorMetrics>();
+
+        for (ConnectorMetrics connector : getMetricsService().getConnectors()) {
+            result.put(connector.getName(), connector);
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns a statistic of a connector.
+     * 
+     * @param connector
+     *            The connector metrics.
+     * @param stat
+     *            The statistic name.
+     * @return The statistic value or null if unknown.
+     */
+    private Object getConnectorStat(ConnectorMetrics connector, String stat) {
+        Object result = null;
+
+        if (connector != null) {
+            if ("connections".equals(stat)) {
+                result = connector.getConnectionCount();
+            } else if ("queueDepth".equals(stat)) {
+                result = connector.getQueueDepth();
+            } else if ("activeWorkers".equals(stat)) {
+                result = connector.getActiveCount();
+            }
+        }
+
+        return result;
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        List<MBeanAttributeInfo> attributes = new ArrayList<MBeanAttributeInfo>();
+        attributes.add(new MBeanAttributeInfo("InFlight", "int",
+                "Calls being handled", true, false, false));
+        addAttributeInfos(attributes, "route", new TreeMap<String, Object>(
+                getMetricsService().getRoutes()).keySet(), CALL_STATS,
+                "java.lang.Number");
+
+        List<String> statuses = new ArrayList<String>();
+
+        for (Integer status : new TreeMap<Integer, Object>(getMetricsService()
+                .getStatuses()).keySet()) {
+            statuses.add(status.toString());
+        }
+
+        addAttributeInfos(attributes, "status", statuses, CALL_STATS,
+                "java.lang.Number");
+        addAttributeInfos(attributes, "connector", getConnectors().keySet(),
+                CONNECTOR_STATS, "int");
+        return new MBeanInfo(getClass().getName(),
+                "Metrics of the Restlet calls",
+                attributes.toArray(new MBeanAttributeInfo[attributes.size()]),
+                null, new MBeanOperationInfo[0], null);
+    }
+
+    /**
+     * Returns the metrics service.
+     * 
+     * @return The metrics service.
+     */
+    public MetricsService getMetricsService() {
+        return metricsService;
+    }
+
+    /**
+     * Returns the registered object name.
+     * 
+     * @return The registered object name or null.
+     */
+    public ObjectName getObjectName() {
+        return objectName;
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature)
+            throws ReflectionException {
+        throw new ReflectionException(new NoSuchMethodException(actionName));
+    }
+
+    /**
+     * Registers the MBean in the platform MBean server.
+     * 
+     * @param name
+     *            The name identifying the metrics service.
+     * @throws JMException
+     */
+    public void register(String name) throws JMException {
+        this.objectName = new ObjectName("org.restlet:type=MetricsService,name="
+                + ObjectName.quote(name));
+        ManagementFactory.getPlatformMBeanServer().registerMBean(this,
+                this.objectName);
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute)
+            throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("Read-only attribute: "
+                + attribute.getName());
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    /**
+     * Unregisters the MBean from the platform MBean server.
+     * 
+     * @throws JMException
+     */
+    public void unregister() throws JMException {
+        if (this.objectName != null) {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(
+                    this.objectName);
+            this.objectName = null;
+        }
+    }
+
+}
@@ -0,0 +1,184 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.engine.metrics;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.restlet.Context;
+import org.restlet.Request;
+import org.restlet.engine.util.ChildContext;
+
+/**
+ * Metrics related utilities.
+ * 
+ * @author Jerome Louvel
+ */
+public class MetricsUtils {
+
+    /**
+     * The name of the context attribute holding the list of
+     * {@link ConnectorMetrics} registered by the server connectors.
+     */
+    public static final String CONNECTORS_ATTRIBUTE = "org.restlet.engine.metrics.connectors";
+
+    /**
+     * The name of the request attribute collecting the patterns of the routes
+     * traversed by a call. It is only set when a metrics service is enabled.
+     */
+    public static final String ROUTE_ATTRIBUTE = "org.restlet.engine.metrics.route";
+
+    /**
+     * Registers the metrics of a server connector in a context and in its
+     * parent contexts, so that the metrics services of the parent component
+     * and of its applications can report it.
+     * 
+     * @param context
+     *            The context of the server.
+     * @param connector
+     *            The connector metrics to register.
+     */
+    @SuppressWarnings("unchecked")
+    public static void addConnector(Context context, ConnectorMetrics connector) {
+        for (Context current = context; (current != null)
+                && (connector != null); current = getParentContext(current)) {
+            ConcurrentMap<String, Object> attributes = current.getAttributes();
+            List<ConnectorMetrics> connectors = (List<ConnectorMetrics>) attributes
+                    .get(CONNECTORS_ATTRIBUTE);
+
+            if (connectors == null) {
+                connectors = new CopyOnWriteArrayList<ConnectorMetrics>();
+                List<ConnectorMetrics> existing = (List<ConnectorMetrics>) attributes
+                        .putIfAbsent(CONNECTORS_ATTRIBUTE, connectors);
+
+                if (existing != null) {
+                    connectors = existing;
+                }
+            }
+
+            connectors.add(connector);
+        }
+    }
+
+    /**
+     * Appends the pattern of a traversed route to the route collected for a
+     * call, if a metrics service is collecting it.
+     * 
+     * @param request
+     *            The request being routed.
+     * @param pattern
+     *            The pattern of the traversed route.
+     */
+    public static void appendRoute(Request request, String pattern) {
+        Object route = request.getAttributes().get(ROUTE_ATTRIBUTE);
+
+        if ((route instanceof StringBuilder) && (pattern != null)) {
+            ((StringBuilder) route).append(pattern);
+        }
+    }
+
+    /**
+     * Returns the metrics of the server connectors registered in a context or
+     * in its nearest parent context.
+     * 
+     * @param context
+     *            The context of the metrics service.
+     * @return The list of connector metrics.
+     */
+    @SuppressWarnings("unchecked")
+    public static List<ConnectorMetrics> getConnectors(Context context) {
+        List<ConnectorMetrics> result = null;
+
+        for (Context current = context; (current != null)
+                && (result == null); current = getParentContext(current)) {
+            result = (List<ConnectorMetrics>) current.getAttributes().get(
+                    CONNECTORS_ATTRIBUTE);
+        }
+
+        if (result == null) {
+            result = Collections.emptyList();
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the parent of a context.
+     * 
+     * @param context
+     *            The context.
+     * @return The parent context or null.
+     */
+    private static Context getParentContext(Context context) {
+        return (context instanceof ChildContext) ? ((ChildContext) context)
+                .getParentContext() : null;
+    }
+
+    /**
+     * Unregisters the metrics of a server connector from a context and from
+     * its parent contexts.
+     * 
+     * @param context
+     *            The context of the server.
+     * @param connector
+     *            The connector metrics to unregister.
+     */
+    @SuppressWarnings("unchecked")
+    public static void removeConnector(Context context,
+            ConnectorMetrics connector) {
+        Context current = context;
+
+        while (current != null) {
+            List<ConnectorMetrics> connectors = (List<ConnectorMetrics>) current
+                    .getAttributes().get(CONNECTORS_ATTRIBUTE);
+
+            if (connectors != null) {
+                connectors.remove(connector);
+            }
+
+            current = getParentContext(current);
+        }
+    }
+
+    /**
+     * Private constructor to ensure that the class acts as a true utility
+     * class i.e. it isn't instantiable and extensible.
+     */
+    private MetricsUtils() {
+    }
+
+}
@@ -0,0 +1,296 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.engine.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.restlet.data.CharacterSet;
+import org.restlet.data.MediaType;
+import org.restlet.representation.WriterRepresentation;
+import org.restlet.service.MetricsService;
+
+/**
+ * Representation of the metrics collected by a metrics service, in the
+ * Prometheus text exposition format (version 0.0.4). The latencies are exposed
+ * as summaries with the configured percentiles as quantiles, the entity bytes
+ * as counters and the connector state as gauges.
+ * 
+ * @see <a
+ *      href="https://prometheus.io/docs/instrumenting/exposition_formats/">Prometheus
+ *      exposition formats</a>
+ * @author Jerome Louvel
+ */
+public class PrometheusRepresentation extends WriterRepresentation {
+
+    /** The number of nanoseconds per second. */
+    private static final double NANOS_PER_SECOND = 1000000000D;
+
+    /**
+     * Appends a label value, escaping the backslash, double quote and line
+     * feed characters.
+     * 
+     * @param sb
+     *            The target builder.
+     * @param value
+     *            The label value.
+     */
+    private static void appendLabelValue(StringBuilder sb, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+
+            if (c == '\\') {
+                sb.append("\\\\");
+            } else if (c == '"') {
+                sb.append("\\\"");
+            } else if (c == '\n') {
+                sb.append("\\n");
+            } else {
+                sb.append(c);
+            }
+        }
+    }
+
+    /** The metrics service. */
+    private final MetricsService metricsService;
+
+    /**
+     * Constructor.
+     * 
+     * @param metricsService
+     *            The metrics service.
+     */
+    public PrometheusRepresentation(MetricsService metricsService) {
+        super(MediaType.TEXT_PLAIN);
+        setCharacterSet(CharacterSet.UTF_8);
+        this.metricsService = metricsService;
+    }
+
+    /**
+     * Appends the summary and counters of a set of call metrics.
+     * 
+     * @param sb
+     *            The target builder.
+     * @param name
+     *            The name prefix of the metrics.
+     * @param label
+     *            The name of the label identifying each set.
+     * @param metrics
+     *            The call metrics, by label value.
+     */
+    private void appendCallMetrics(StringBuilder sb, String name,
+            String label, Map<String, CallMetrics> metrics) {
+        double[] percentiles = getMetricsService().getPercentiles();
+        appendType(sb, name + "_duration_seconds", "summary",
+                "Latency of the calls by " + label + ".");
+
+        for (Map.Entry<String, CallMetrics> entry : metrics.entrySet()) {
+            LatencyHistogram latency = entry.getValue().getLatency();
+            long[] values = latency.getValuesAtPercentiles(percentiles);
+
+            for (int i = 0; i < percentiles.length; i++) {
+                appendSample(sb, name + "_duration_seconds", label,
+                        entry.getKey(), "quantile",
+                        Double.toString(percentiles[i] / 100),
+                        Double.toString(values[i] / NANOS_PER_SECOND));
+            }
+
+            appendSample(sb, name + "_duration_seconds_sum", label,
+                    entry.getKey(), null, null,
+                    Double.toString(latency.getSum() / NANOS_PER_SECOND));
+            appendSample(sb, name + "_duration_seconds_count", label,
+                    entry.getKey(), null, null,
+                    Long.toString(latency.getCount()));
+        }
+
+        appendType(sb, name + "_received_bytes_total", "counter",
+                "Entity bytes received by " + label + ".");
+
+        for (Map.Entry<String, CallMetrics> entry : metrics.entrySet()) {
+            appendSample(sb, name + "_received_bytes_total", label,
+                    entry.getKey(), null, null,
+                    Long.toString(entry.getValue().getBytesIn()));
+        }
+
+        appendType(sb, name + "_sent_bytes_total", "counter",
+                "Entity bytes sent by " + label + ".");
+
+        for (Map.Entry<String, CallMetrics> entry : metrics.entrySet()) {
+            appendSample(sb, name + "_sent_bytes_total", label,
+                    entry.getKey(), null, null,
+                    Long.toString(entry.getValue().getBytesOut()));
+        }
+    }
+
+    /**
+     * Appends the gauges of the registered server connectors.
+     * 
+     * @param sb
+     *            The target builder.
+     */
+    private void appendConnectorMetrics(StringBuilder sb) {
+        Map<String, ConnectorMetrics> connectors = new TreeMap<String, ConnectorMetrics>();
+
+        for (ConnectorMetrics connector : getMetricsService().getConnectors()) {
+            connectors.put(connector.getName(), connector);
+        }
+
+        if (!connectors.isEmpty()) {
+            appendType(sb, "restlet_connector_connections", "gauge",
+                    "Open connections by connector.");
+
+            for (ConnectorMetrics connector : connectors.values()) {
+                appendSample(sb, "restlet_connector_connections", "connector",
+                        connector.getName(), null, null,
+                        Integer.toString(connector.getConnectionCount()));
+            }
+
+            appendType(sb, "restlet_connector_queue_depth", "gauge",
+                    "Messages waiting to be handled by connector.");
+
+            for (ConnectorMetrics connector : connectors.values()) {
+                appendSample(sb, "restlet_connector_queue_depth", "connector",
+                        connector.getName(), null, null,
+                        Integer.toString(connector.getQueueDepth()));
+            }
+
+            appendType(sb, "restlet_connector_active_workers", "gauge",
+                    "Worker threads handling calls by connector.");
+
+            for (ConnectorMetrics connector : connectors.values()) {
+                appendSample(sb, "restlet_connector_active_workers",
+                        "connector", connector.getName(), null, null,
+                        Integer.toString(connector.getActiveCount()));
+            }
+        }
+    }
+
+    /**
+     * Appends a sample line.
+     * 
+     * @param sb
+     *            The target builder.
+     * @param name
+     *            The metric name.
+     * @param label
+     *            The name of the first label or null.
+     * @param labelValue
+     *            The value of the first label.
+     * @param extraLabel
+     *            The name of the second label or null.
+     * @param extraLabelValue
+     *            The value of the second label.
+     * @param value
+     *            The sample value.
+     */
+    private void appendSample(StringBuilder sb, String name, String label,
+            String labelValue, String extraLabel, String extraLabelValue,
+            String value) {
+        sb.append(name);
+
+        if (label != null) {
+            sb.append('{').append(label).append("=\"");
+            appendLabelValue(sb, labelValue);
+            sb.append('"');
+
+            if (extraLabel != null) {
+                sb.append(',').append(extraLabel).append("=\"");
+                appendLabelValue(sb, extraLabelValue);
+                sb.append('"');
+            }
+
+            sb.append('}');
+        }
+
+        sb.append(' ').append(value).append('\n');
+    }
+
+    /**
+     * Appends the help and type lines of a metric.
+     * 
+     * @param sb
+     *            The target builder.
+     * @param name
+     *            The metric name.
+     * @param type
+     *            The metric type.
+     * @param help
+     *            The help text.
+     */
+    private void appendType(StringBuilder sb, String name, String type,
+            String help) {
+        sb.append("# HELP ").append(name).append(' ').append(help)
+                .append('\n');
+        sb.append("# TYPE ").append(name).append(' ').append(type)
+                .append('\n');
+    }
+
+    /**
+     * Returns the metrics service.
+     * 
+     * @return The metrics service.
+     */
+    public MetricsService getMetricsService() {
+        return metricsService;
+    }
+
+    @Override
+    public void write(Writer writer) throws IOException {
+        StringBuilder sb = new StringBuilder();
+        appendType(sb, "restlet_calls_in_flight", "gauge",
+                "Calls being handled.");
+        appendSample(sb, "restlet_calls_in_flight", null, null, null, null,
+                Integer.toString(getMetricsService().getInFlight()));
+
+        appendCallMetrics(sb, "restlet_route", "route",
+                new TreeMap<String, CallMetrics>(getMetricsService()
+                        .getRoutes()));
+
+        Map<String, CallMetrics> statuses = new TreeMap<String, CallMetrics>();
+
+        for (Map.Entry<Integer, CallMetrics> entry : getMetricsService()
+                .getStatuses().entrySet()) {
+            statuses.put(entry.getKey().toString(), entry.getValue());
+        }
+
+        appendCallMetrics(sb, "restlet_status", "status", statuses);
+        appendConnectorMetrics(sb);
+        writer.write(sb.toString());
+        writer.flush();
+    }
+
+}
@@ -83,7 +83,7 @@ public class ChildContext extends Context {
      * 
      * @return The parent context.
      */
-    protected Context getParentContext() {
+    public Context getParentContext() {
         return this.parentContext;
     }
 
@@ -0,0 +1,278 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.engine.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.restlet.routing.Template;
+import org.restlet.routing.Variable;
+
+/**
+ * Matches user agent names against a list of templates such as the ones
+ * defined in the "agent.properties" file. The templates are compiled once and
+ * the literal parts of each template are used as a cheap pre-filter so that
+ * most templates are discarded without evaluating their regular expression.
+ * The templates are tried in order and the first one matching wins.<br>
+ * <br>
+ * The attributes parsed are kept in a bounded LRU cache indexed by the raw
+ * user agent name, so that recurring agents only cost a hash lookup.
+ * 
+ * @author Jerome Louvel
+ */
+public class UserAgentMatcher {
+
+    /** The default maximum number of user agents cached. */
+    public static final int DEFAULT_CACHE_SIZE = 512;
+
+    /**
+     * Returns the literal parts of a template pattern, in order. The first
+     * part is the literal prefix and the last one the literal suffix, both
+     * possibly empty.
+     * 
+     * @param pattern
+     *            The template pattern.
+     * @return The literal parts.
+     */
+    private static String[] getLiterals(String pattern) {
+        List<String> result = new ArrayList<String>();
+        int start = 0;
+        int open = pattern.indexOf('{');
+
+        while (open != -1) {
+            result.add(pattern.substring(start, open));
+            int close = pattern.indexOf('}', open);
+            start = (close == -1) ? pattern.length() : close + 1;
+            open = pattern.indexOf('{', start);
+        }
+
+        result.add(pattern.substring(start));
+        return result.toArray(new String[result.size()]);
+    }
+
+    /** The maximum number of user agents cached. */
+    private final int cacheSize;
+
+    /** The cache of parsed attributes indexed by user agent name. */
+    private final Map<String, Map<String, String>> cache;
+
+    /** The literal parts of each template. */
+    private final String[][] literals;
+
+    /** The compiled templates. */
+    private final Template[] templates;
+
+    /**
+     * Constructor.
+     * 
+     * @param patterns
+     *            The ordered list of template patterns.
+     */
+    public UserAgentMatcher(List<String> patterns) {
+        this(patterns, DEFAULT_CACHE_SIZE);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param patterns
+     *            The ordered list of template patterns.
+     * @param cacheSize
+     *            The maximum number of user agents cached.
+     */
+    public UserAgentMatcher(List<String> patterns, int cacheSize) {
+        this.cacheSize = cacheSize;
+        this.cache = new LinkedHashMap<String, Map<String, String>>(16, 0.75f,
+                true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(
+                    Map.Entry<String, Map<String, String>> eldest) {
+                return size() > getCacheSize();
+            }
+        };
+
+        // Predefined variables, shared by all the templates
+        Variable agentName = new Variable(Variable.TYPE_TOKEN);
+        Variable agentVersion = new Variable(Variable.TYPE_TOKEN);
+        Variable agentComment = new Variable(Variable.TYPE_COMMENT);
+        Variable agentCommentAttribute = new Variable(
+                Variable.TYPE_COMMENT_ATTRIBUTE);
+        Variable facultativeData = new Variable(Variable.TYPE_ALL, null,
+                false, false);
+
+        int size = (patterns == null) ? 0 : patterns.size();
+        this.literals = new String[size][];
+        this.templates = new Template[size];
+
+        for (int i = 0; i < size; i++) {
+            String pattern = patterns.get(i);
+            Template template = new Template(pattern, Template.MODE_EQUALS);
+            template.getVariables().put("agentName", agentName);
+            template.getVariables().put("agentVersion", agentVersion);
+            template.getVariables().put("agentComment", agentComment);
+            template.getVariables().put("agentOs", agentCommentAttribute);
+            template.getVariables().put("commentAttribute",
+                    agentCommentAttribute);
+            template.getVariables().put("facultativeData", facultativeData);
+
+            this.literals[i] = getLiterals(pattern);
+            this.templates[i] = template;
+        }
+    }
+
+    /**
+     * Indicates if the literal parts of a template are found in order in the
+     * given user agent name. This is a necessary condition for the template
+     * to match.
+     * 
+     * @param agent
+     *            The user agent name.
+     * @param parts
+     *            The literal parts of the template.
+     * @return True if the template may match.
+     */
+    private boolean accept(String agent, String[] parts) {
+        boolean result = agent.startsWith(parts[0]);
+        int last = parts.length - 1;
+
+        if (result && (last > 0)) {
+            int index = parts[0].length();
+
+            for (int i = 1; result && (i < last); i++) {
+                index = agent.indexOf(parts[i], index);
+
+                if (index == -1) {
+                    result = false;
+                } else {
+                    index += parts[i].length();
+                }
+            }
+
+            result = result && (agent.length() - parts[last].length() >= index)
+                    && agent.endsWith(parts[last]);
+        }
+
+        return result;
+    }
+
+    /**
+     * Clears the cache of parsed attributes.
+     */
+    public void clear() {
+        synchronized (this.cache) {
+            this.cache.clear();
+        }
+    }
+
+    /**
+     * Returns the maximum number of user agents cached.
+     * 
+     * @return The maximum number of user agents cached.
+     */
+    public int getCacheSize() {
+        return cacheSize;
+    }
+
+    /**
+     * Returns the attributes parsed from the given user agent name, using the
+     * first matching template. An empty map is returned if no template
+     * matches.
+     * 
+     * @param agent
+     *            The user agent name.
+     * @return The unmodifiable map of attributes.
+     */
+    public Map<String, String> match(String agent) {
+        Map<String, String> result = null;
+
+        if (agent == null) {
+            result = Collections.emptyMap();
+        } else {
+            synchronized (this.cache) {
+                result = this.cache.get(agent);
+            }
+
+            if (result == null) {
+                result = parse(agent);
+
+                if (getCacheSize() > 0) {
+                    synchronized (this.cache) {
+                        this.cache.put(agent, result);
+                    }
+                }
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Parses the attributes of a user agent name without using the cache.
+     * 
+     * @param agent
+     *            The user agent name.
+     * @return The unmodifiable map of attributes.
+     */
+    protected Map<String, String> parse(String agent) {
+        Map<String, String> result = Collections.emptyMap();
+        Map<String, Object> variables = new TreeMap<String, Object>();
+
+        for (int i = 0; i < this.templates.length; i++) {
+            if (accept(agent, this.literals[i])
+                    && (this.templates[i].parse(agent, variables, false) > -1)) {
+                Map<String, String> attributes = new TreeMap<String, String>();
+
+                for (Map.Entry<String, Object> entry : variables.entrySet()) {
+                    if (entry.getValue() != null) {
+                        attributes.put(entry.getKey(),
+                                (String) entry.getValue());
+                    }
+                }
+
+                result = Collections.unmodifiableMap(attributes);
+                break;
+            }
+        }
+
+        return result;
+    }
+
+}
@@ -561,6 +561,54 @@ public class ClientResource extends Resource {
         return new Request(getRequest());
     }
 
+    // [ifndef gwt] method
+    /**
+     * Creates a new request by cloning the one wrapped by this class, setting
+     * the method and an object entity automatically serialized using the
+     * {@link org.restlet.service.ConverterService}.
+     * 
+     * @param method
+     *            The request method to use.
+     * @param entity
+     *            The object entity to send or null.
+     * @param resultClass
+     *            The class of the response entity.
+     * @return The new request.
+     * @throws ResourceException
+     */
+    protected Request createRequest(Method method, Object entity,
+            Class<?> resultClass) throws ResourceException {
+        org.restlet.service.ConverterService cs = getConverterService();
+        ClientInfo clientInfo = getClientInfo();
+
+        if (clientInfo.getAcceptedMediaTypes().isEmpty()) {
+            cs.updatePreferences(clientInfo.getAcceptedMediaTypes(),
+                    resultClass);
+        }
+
+        // Prepare the request by cloning the prototype request
+        Request result = createRequest();
+        result.setMethod(method);
+        result.setClientInfo(clientInfo);
+
+        if (entity != null) {
+            List<? extends Variant> entityVariants;
+            try {
+                entityVariants = cs.getVariants(entity.getClass(), null);
+                result.setEntity(toRepresentation(
+                        entity,
+                        getConnegService().getPreferredVariant(entityVariants,
+                                result, getMetadataService())));
+            } catch (IOException e) {
+                throw new ResourceException(e);
+            }
+        } else {
+            result.setEntity(null);
+        }
+
+        return result;
+    }
+
     /**
      * Creates a new response for the given request.
      * 
@@ -619,6 +667,24 @@ public class ClientResource extends Resource {
         return handle(Method.DELETE, mediaType);
     }
 
+    // [ifndef gwt] method
+    /**
+     * Asynchronously deletes the target resource and all its representations.
+     * See {@link #handleAsync(Method, Object, Class)} for details.
+     * 
+     * @param <T>
+     *            The expected type for the response entity.
+     * @param resultClass
+     *            The expected class for the response entity object.
+     * @return The future response entity object.
+     * @see <a
+     *      href="http://www.w3.org/Protocols/rfc2616/rfc2616-sec9.html#sec9.7">HTTP
+     *      DELETE method</a>
+     */
+    public <T> ResultFuture<T> deleteAsync(Class<T> resultClass) {
+        return handleAsync(Method.DELETE, null, resultClass);
+    }
+
     /**
      * By default, it throws a new resource exception. This can be overridden to
      * provide a different behavior.
@@ -717,6 +783,24 @@ public class ClientResource extends Resource {
         return handle(Method.GET, mediaType);
     }
 
+    // [ifndef gwt] method
+    /**
+     * Asynchronously represents the resource in the given object class. See
+     * {@link #handleAsync(Method, Object, Class)} for details.
+     * 
+     * @param <T>
+     *            The expected type for the response entity.
+     * @param resultClass
+     *            The expected class for the response entity object.
+     * @return The future response entity object.
+     * @see <a
+     *      href="http://www.w3.org/Protocols/rfc2616/rfc2616-sec9.html#sec9.3">HTTP
+     *      GET method</a>
+     */
+    public <T> ResultFuture<T> getAsync(Class<T> resultClass) {
+        return handleAsync(Method.GET, null, resultClass);
+    }
+
     /**
      * Returns the attribute value by looking up the given name in the response
      * attributes maps. The toString() method is then invoked on the attribute
@@ -1019,33 +1103,7 @@ public class ClientResource extends Resource {
      */
     protected <T> T handle(Method method, Object entity, Class<T> resultClass)
             throws ResourceException {
-        org.restlet.service.ConverterService cs = getConverterService();
-        ClientInfo clientInfo = getClientInfo();
-
-        if (clientInfo.getAcceptedMediaTypes().isEmpty()) {
-            cs.updatePreferences(clientInfo.getAcceptedMediaTypes(),
-                    resultClass);
-        }
-
-        // Prepare the request by cloning the prototype request
-        Request request = createRequest();
-        request.setMethod(method);
-        request.setClientInfo(clientInfo);
-
-        if (entity != null) {
-            List<? extends Variant> entityVariants;
-            try {
-                entityVariants = cs.getVariants(entity.getClass(), null);
-                request.setEntity(toRepresentation(
-                        entity,
-                        getConnegService().getPreferredVariant(entityVariants,
-                                request, getMetadataService())));
-            } catch (IOException e) {
-                throw new ResourceException(e);
-            }
-        } else {
-            request.setEntity(null);
-        }
+        Request request = createRequest(method, entity, resultClass);
 
         // Actually handle the call
         Response response = handleOutbound(request);
@@ -1189,6 +1247,70 @@ public class ClientResource extends Resource {
         }
     }
 
+    // [ifndef gwt] method
+    /**
+     * Asynchronously handles an object entity. The request is prepared like
+     * for {@link #handle(Method, Object, Class)}, then sent with a response
+     * callback that completes the returned future with the converted response
+     * entity, or with a {@link ResourceException} if an error status is
+     * received.<br>
+     * <br>
+     * With a non-blocking client connector such as the NIO one, this method
+     * returns as soon as the request is queued, so that many calls can be
+     * issued in parallel without blocking a thread for each of them. With a
+     * blocking connector, the call is completed by the current thread before
+     * this method returns. In both cases, the next Restlet must support
+     * asynchronous calls, like client connectors do, and the future is
+     * completed by the first final response received, so redirections aren't
+     * followed.
+     * 
+     * @param <T>
+     *            The expected type for the response entity.
+     * @param method
+     *            The request method to use.
+     * @param entity
+     *            The object entity to send or null.
+     * @param resultClass
+     *            The class of the response entity.
+     * @return The future response entity object.
+     */
+    protected <T> ResultFuture<T> handleAsync(Method method, Object entity,
+            final Class<T> resultClass) {
+        final ResultFuture<T> result = new ResultFuture<T>();
+
+        try {
+            Request request = createRequest(method, entity, resultClass);
+            request.setOnResponse(new Uniform() {
+                public void handle(Request request, Response response) {
+                    // Provisional responses are followed by a final one
+                    if (response.getStatus().isError()) {
+                        result.onFailure(new ResourceException(response
+                                .getStatus()));
+                    } else if (!response.getStatus().isInformational()) {
+                        try {
+                            result.onSuccess(toObject(response.getEntity(),
+                                    resultClass));
+                        } catch (Exception e) {
+                            result.onFailure(e);
+                        }
+                    }
+                }
+            });
+
+            if (getNext() == null) {
+                result.onFailure(new ResourceException(
+                        Status.CONNECTOR_ERROR_INTERNAL,
+                        "No next Restlet has been provided"));
+            } else {
+                handleOutbound(request);
+            }
+        } catch (Exception e) {
+            result.onFailure(e);
+        }
+
+        return result;
+    }
+
     /**
      * Handles the inbound call. Note that only synchronous calls are processed.
      * 
@@ -1544,6 +1666,27 @@ public class ClientResource extends Resource {
         return handle(Method.POST, entity);
     }
 
+    // [ifndef gwt] method
+    /**
+     * Asynchronously posts an object entity. Automatically serializes the
+     * object using the {@link org.restlet.service.ConverterService}. See
+     * {@link #handleAsync(Method, Object, Class)} for details.
+     * 
+     * @param <T>
+     *            The expected type for the response entity.
+     * @param entity
+     *            The object entity to post.
+     * @param resultClass
+     *            The class of the response entity.
+     * @return The future response object entity.
+     * @see <a
+     *      href="http://www.w3.org/Protocols/rfc2616/rfc2616-sec9.html#sec9.5">HTTP
+     *      POST method</a>
+     */
+    public <T> ResultFuture<T> postAsync(Object entity, Class<T> resultClass) {
+        return handleAsync(Method.POST, entity, resultClass);
+    }
+
     /**
      * Puts an object entity. Automatically serializes the object using the
      * {@link org.restlet.service.ConverterService}.
@@ -1624,6 +1767,27 @@ public class ClientResource extends Resource {
         return handle(Method.PUT, entity);
     }
 
+    // [ifndef gwt] method
+    /**
+     * Asynchronously puts an object entity. Automatically serializes the
+     * object using the {@link org.restlet.service.ConverterService}. See
+     * {@link #handleAsync(Method, Object, Class)} for details.
+     * 
+     * @param <T>
+     *            The expected type for the response entity.
+     * @param entity
+     *            The object entity to put.
+     * @param resultClass
+     *            The class of the response entity.
+     * @return The future response object entity.
+     * @see <a
+     *      href="http://www.w3.org/Protocols/rfc2616/rfc2616-sec9.html#sec9.6">HTTP
+     *      PUT method</a>
+     */
+    public <T> ResultFuture<T> putAsync(Object entity, Class<T> resultClass) {
+        return handleAsync(Method.PUT, entity, resultClass);
+    }
+
     /**
      * Effectively redirects a client call. By default, it checks for infinite
      * loops and unavailable entities, the references list is updated and the
@@ -34,6 +34,7 @@
 package org.restlet.resource;
 
 import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -57,6 +58,11 @@ import org.restlet.data.Status;
  * Once the call is handled, the {@link ServerResource#release()} method is
  * invoked to permit clean-up actions.<br>
  * <br>
+ * The default constructor of the target class is looked up once and reused
+ * for the next calls. When the target resources don't keep any call specific
+ * state in their own member variables, they can also be reused across calls by
+ * enabling the {@link #setReusingResources(boolean)} property.<br>
+ * <br>
  * Concurrency note: instances of this class or its subclasses can be invoked by
  * several threads at the same time and therefore must be thread-safe. You
  * should be especially careful when storing state in member variables.
@@ -101,6 +107,15 @@ public class Finder extends Restlet {
         return result;
     }
 
+    /** The cached default constructor of the last class instantiated. */
+    private volatile Constructor<? extends ServerResource> constructor;
+
+    /** The resource available for reuse by the current thread. */
+    private final ThreadLocal<ServerResource> idleResource;
+
+    /** Indicates if the target resources are reused across calls. */
+    private volatile boolean reusingResources;
+
     /** Target {@link ServerResource} subclass. */
     private volatile Class<? extends ServerResource> targetClass;
 
@@ -118,8 +133,7 @@ public class Finder extends Restlet {
      *            The context.
      */
     public Finder(Context context) {
-        super(context);
-        this.targetClass = null;
+        this(context, null);
     }
 
     /**
@@ -132,15 +146,19 @@ public class Finder extends Restlet {
      */
     public Finder(Context context, Class<? extends ServerResource> targetClass) {
         super(context);
+        this.idleResource = new ThreadLocal<ServerResource>();
+        this.reusingResources = false;
         this.targetClass = targetClass;
     }
 
     /**
-     * Creates a new instance of a given {@link ServerResource} subclass. Note
-     * that {@link Error} and {@link RuntimeException} thrown by
-     * {@link ServerResource} constructors are re-thrown by this method. Other
-     * exception are caught and logged.
+     * Creates a new instance of a given {@link ServerResource} subclass. The
+     * default behavior is to invoke the {@link #newInstance(Class)} method.
+     * When resources are reused, the resource left idle by the previous call
+     * of the current thread is returned instead if it has the same class.
      * 
+     * @param targetClass
+     *            The target class to instantiate.
      * @param request
      *            The request to handle.
      * @param response
@@ -151,18 +169,20 @@ public class Finder extends Restlet {
             Request request, Response response) {
         ServerResource result = null;
 
-        if (targetClass != null) {
-            try {
-                // Invoke the default constructor
-                result = targetClass.newInstance();
-            } catch (Exception e) {
-                getLogger()
-                        .log(Level.WARNING,
-                                "Exception while instantiating the target server resource.",
-                                e);
+        if (isReusingResources()) {
+            // Take the idle resource so that nested calls can't use it
+            result = this.idleResource.get();
+            this.idleResource.remove();
+
+            if ((result != null) && (result.getClass() != targetClass)) {
+                result = null;
             }
         }
 
+        if (result == null) {
+            result = newInstance(targetClass);
+        }
+
         return result;
     }
 
@@ -251,8 +271,105 @@ public class Finder extends Restlet {
                 }
 
                 targetResource.release();
+
+                // A response committed later may still use the resource
+                if (isReusingResources()
+                        && targetResource.isRecyclable()
+                        && ((response == null)
+                                || response.isAutoCommitting() || response
+                                    .isCommitted())) {
+                    targetResource.recycle();
+                    this.idleResource.set(targetResource);
+                }
+            }
+        }
+    }
+
+    /**
+     * Indicates if the target resources are reused across calls. When enabled,
+     * each thread keeps the resource it last used and returns it from
+     * {@link #create(Class, Request, Response)} for the next call it handles,
+     * instead of creating a new resource. Only the resources instantiated by
+     * {@link #newInstance(Class)} are reused, after their call specific state
+     * was reset. Resources whose response is committed later, after
+     * {@link Response#setAutoCommitting(boolean)} was set to false, are never
+     * reused. This requires resources that don't keep call specific state in
+     * their own member variables. False by default.
+     * 
+     * @return True if the target resources are reused across calls.
+     */
+    public boolean isReusingResources() {
+        return reusingResources;
+    }
+
+    /**
+     * Creates a new instance of a given {@link ServerResource} subclass by
+     * invoking its default constructor. This constructor is looked up once
+     * and cached for the next calls. Note that {@link Error} thrown by
+     * {@link ServerResource} constructors are re-thrown by this method. Other
+     * exception are caught and logged.
+     * 
+     * @param targetClass
+     *            The target class to instantiate.
+     * @return The created resource or null.
+     */
+    protected ServerResource newInstance(
+            Class<? extends ServerResource> targetClass) {
+        ServerResource result = null;
+
+        if (targetClass != null) {
+            try {
+                Constructor<? extends ServerResource> constructor = this.constructor;
+
+                if ((constructor == null)
+                        || (constructor.getDeclaringClass() != targetClass)) {
+                    constructor = targetClass.getDeclaredConstructor();
+
+                    try {
+                        constructor.setAccessible(true);
+                    } catch (SecurityException se) {
+                        // Only public constructors can be invoked
+                    }
+
+                    this.constructor = constructor;
+                }
+
+                // Invoke the default constructor
+                result = constructor.newInstance();
+                result.markRecyclable();
+            } catch (InvocationTargetException e) {
+                if (e.getCause() instanceof Error) {
+                    throw (Error) e.getCause();
+                }
+
+                getLogger()
+                        .log(Level.WARNING,
+                                "Exception while instantiating the target server resource.",
+                                e.getCause());
+            } catch (Exception e) {
+                getLogger()
+                        .log(Level.WARNING,
+                                "Exception while instantiating the target server resource.",
+                                e);
             }
         }
+
+        return result;
+    }
+
+    /**
+     * Indicates if the target resources are reused across calls.
+     * 
+     * @param reusingResources
+     *            True if the target resources are reused across calls.
+     * @see #isReusingResources()
+     */
+    public void setReusingResources(boolean reusingResources) {
+        this.reusingResources = reusingResources;
+
+        if (!reusingResources) {
+            this.idleResource.remove();
+        }
     }
 
     /**
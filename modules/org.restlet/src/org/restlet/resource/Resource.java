@@ -738,6 +738,19 @@ public abstract class Resource {
         return getRequest() == null ? null : getRequest().isLoggable();
     }
 
+    /**
+     * Forgets the call previously handled so that the resource can be reused
+     * for another call.
+     * 
+     * @see Finder#setReusingResources(boolean)
+     */
+    void recycle() {
+        this.application = null;
+        this.context = null;
+        this.request = null;
+        this.response = null;
+    }
+
     /**
      * Releases the resource by calling {@link #doRelease()}.
      */
@@ -0,0 +1,328 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.resource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+
+import org.restlet.Context;
+
+/**
+ * Future result of an asynchronous task. It is completed once, either by
+ * {@link #onSuccess(Object)} or by {@link #onFailure(Throwable)}, and later
+ * calls are ignored. The result can then be waited for with the
+ * {@link Future} methods or received by the callbacks registered with
+ * {@link #addResult(Result)}, which allows several asynchronous calls to be
+ * composed without blocking a thread for each of them.
+ * 
+ * @param <T>
+ *            The class of the result object returned in case of success.
+ * @author Jerome Louvel
+ */
+public class ResultFuture<T> implements Future<T>, Result<T> {
+
+    /** Indicates if the task was cancelled. */
+    private volatile boolean cancelled;
+
+    /** Indicates if the task is completed. */
+    private volatile boolean done;
+
+    /** The exception or error caught in case of failure. */
+    private volatile Throwable failure;
+
+    /** The latch released upon completion. */
+    private final CountDownLatch latch;
+
+    /** The callbacks to notify upon completion. */
+    private final List<Result<? super T>> results;
+
+    /** The result object in case of success. */
+    private volatile T value;
+
+    /**
+     * Constructor.
+     */
+    public ResultFuture() {
+        this.latch = new CountDownLatch(1);
+        this.results = new ArrayList<Result<? super T>>();
+    }
+
+    /**
+     * Adds a callback to notify upon completion. If the task is already
+     * completed, the callback is immediately notified in the current thread.
+     * Otherwise, it is notified in the thread completing the task.
+     * 
+     * @param result
+     *            The callback to notify.
+     */
+    public void addResult(Result<? super T> result) {
+        boolean completed;
+
+        synchronized (this.results) {
+            completed = isDone();
+
+            if (!completed) {
+                this.results.add(result);
+            }
+        }
+
+        if (completed) {
+            notify(result);
+        }
+    }
+
+    /**
+     * Cancels the task by completing it with a {@link CancellationException}.
+     * Note that the underlying call isn't aborted, its result will just be
+     * ignored.
+     * 
+     * @param mayInterruptIfRunning
+     *            Ignored.
+     * @return True if the task wasn't completed yet.
+     */
+    public boolean cancel(boolean mayInterruptIfRunning) {
+        return complete(null, new CancellationException(
+                "The task was cancelled"), true);
+    }
+
+    /**
+     * Completes the task, unless it was already completed, and notifies the
+     * callbacks.
+     * 
+     * @param value
+     *            The result object in case of success.
+     * @param failure
+     *            The exception or error caught in case of failure.
+     * @param cancelled
+     *            Indicates if the task was cancelled.
+     * @return True if the task was completed by this call.
+     */
+    private boolean complete(T value, Throwable failure, boolean cancelled) {
+        List<Result<? super T>> toNotify = null;
+
+        synchronized (this.results) {
+            if (!isDone()) {
+                this.value = value;
+                this.failure = failure;
+                this.cancelled = cancelled;
+                this.done = true;
+                toNotify = new ArrayList<Result<? super T>>(this.results);
+                this.results.clear();
+            }
+        }
+
+        if (toNotify != null) {
+            this.latch.countDown();
+
+            for (Result<? super T> result : toNotify) {
+                notify(result);
+            }
+        }
+
+        return toNotify != null;
+    }
+
+    /**
+     * Waits for the completion of the task and returns its result.
+     * 
+     * @return The result object.
+     * @throws CancellationException
+     *             If the task was cancelled.
+     * @throws ExecutionException
+     *             If the task failed, wrapping the exception caught.
+     * @throws InterruptedException
+     *             If the current thread was interrupted while waiting.
+     */
+    public T get() throws InterruptedException, ExecutionException {
+        this.latch.await();
+        return getValue();
+    }
+
+    /**
+     * Waits at most the given time for the completion of the task and returns
+     * its result.
+     * 
+     * @param timeout
+     *            The maximum time to wait.
+     * @param unit
+     *            The unit of the timeout argument.
+     * @return The result object.
+     * @throws CancellationException
+     *             If the task was cancelled.
+     * @throws ExecutionException
+     *             If the task failed, wrapping the exception caught.
+     * @throws InterruptedException
+     *             If the current thread was interrupted while waiting.
+     * @throws TimeoutException
+     *             If the task wasn't completed in time.
+     */
+    public T get(long timeout, TimeUnit unit) throws InterruptedException,
+            ExecutionException, TimeoutException {
+        if (!this.latch.await(timeout, unit)) {
+            throw new TimeoutException("No result available after " + timeout
+                    + " " + unit.toString().toLowerCase());
+        }
+
+        return getValue();
+    }
+
+    /**
+     * Returns the result of the completed task.
+     * 
+     * @return The result object.
+     * @throws ExecutionException
+     *             If the task failed, wrapping the exception caught.
+     */
+    private T getValue() throws ExecutionException {
+        if (this.cancelled) {
+            throw (CancellationException) this.failure;
+        } else if (this.failure != null) {
+            throw new ExecutionException(this.failure);
+        }
+
+        return this.value;
+    }
+
+    /**
+     * Indicates if the task was cancelled.
+     * 
+     * @return True if the task was cancelled.
+     */
+    public boolean isCancelled() {
+        return this.cancelled;
+    }
+
+    /**
+     * Indicates if the task is completed, either successfully, by a failure
+     * or by a cancellation.
+     * 
+     * @return True if the task is completed.
+     */
+    public boolean isDone() {
+        return this.done;
+    }
+
+    /**
+     * Notifies a callback of the completion of the task.
+     * 
+     * @param result
+     *            The callback to notify.
+     */
+    private void notify(Result<? super T> result) {
+        try {
+            if (this.failure != null) {
+                result.onFailure(this.failure);
+            } else {
+                result.onSuccess(this.value);
+            }
+        } catch (Throwable t) {
+            Context.getCurrentLogger().log(Level.WARNING,
+                    "Unexpected error or exception inside the result callback",
+                    t);
+        }
+    }
+
+    /**
+     * Completes the task with a failure. Ignored if the task is already
+     * completed.
+     * 
+     * @param caught
+     *            The exception or error caught.
+     */
+    public void onFailure(Throwable caught) {
+        complete(null, caught, false);
+    }
+
+    /**
+     * Completes the task successfully. Ignored if the task is already
+     * completed.
+     * 
+     * @param result
+     *            The result object.
+     */
+    public void onSuccess(T result) {
+        complete(result, null, false);
+    }
+
+    /**
+     * Fails the task with a {@link TimeoutException} if it isn't completed
+     * after the given delay. Contrary to {@link #get(long, TimeUnit)}, no
+     * thread is blocked while waiting and the callbacks are notified of the
+     * timeout. The underlying call isn't aborted, its result will just be
+     * ignored.
+     * 
+     * @param timeout
+     *            The maximum delay.
+     * @param unit
+     *            The unit of the timeout argument.
+     * @param scheduler
+     *            The scheduler of the timeout, such as the application's
+     *            {@link org.restlet.service.TaskService}.
+     * @return This future.
+     */
+    public ResultFuture<T> timeout(final long timeout, final TimeUnit unit,
+            ScheduledExecutorService scheduler) {
+        if (!isDone()) {
+            final ScheduledFuture<?> task = scheduler.schedule(new Runnable() {
+                public void run() {
+                    onFailure(new TimeoutException("No result available after "
+                            + timeout + " " + unit.toString().toLowerCase()));
+                }
+            }, timeout, unit);
+
+            addResult(new Result<T>() {
+                public void onFailure(Throwable caught) {
+                    task.cancel(false);
+                }
+
+                public void onSuccess(T result) {
+                    task.cancel(false);
+                }
+            });
+        }
+
+        return this;
+    }
+
+}
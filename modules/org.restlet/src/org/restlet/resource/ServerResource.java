@@ -109,6 +109,12 @@ public abstract class ServerResource extends Resource {
     /** Indicates if conditional handling is enabled. */
     private volatile boolean conditional;
 
+    /**
+     * The annotated, conditional and negotiated flags set at construction
+     * time, or null if the resource can't be recycled.
+     */
+    private volatile boolean[] initialFlags;
+
     /** Indicates if the identified resource exists. */
     private volatile boolean existing;
 
@@ -1163,6 +1169,27 @@ public abstract class ServerResource extends Resource {
         return this.negotiated;
     }
 
+    /**
+     * Indicates if the resource can be recycled by its finder.
+     * 
+     * @return True if the resource can be recycled by its finder.
+     * @see #markRecyclable()
+     */
+    boolean isRecyclable() {
+        return this.initialFlags != null;
+    }
+
+    /**
+     * Remembers the flags set at construction time so that the resource can be
+     * recycled by its finder.
+     * 
+     * @see #recycle()
+     */
+    void markRecyclable() {
+        this.initialFlags = new boolean[] { this.annotated, this.conditional,
+                this.negotiated };
+    }
+
     /**
      * Indicates the communication options available for this resource. This
      * method is only invoked if content negotiation has been disabled as
@@ -1411,6 +1438,21 @@ public abstract class ServerResource extends Resource {
         return result;
     }
 
+    @Override
+    void recycle() {
+        super.recycle();
+        boolean[] flags = this.initialFlags;
+
+        if (flags != null) {
+            this.annotated = flags[0];
+            this.conditional = flags[1];
+            this.negotiated = flags[2];
+        }
+
+        this.existing = true;
+        this.variants = null;
+    }
+
     /**
      * Permanently redirects the client to a target URI. The client is expected
      * to reuse the same method for the new request.
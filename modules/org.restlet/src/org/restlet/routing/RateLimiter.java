@@ -0,0 +1,482 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.routing;
+
+import java.util.Date;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+
+import org.restlet.Context;
+import org.restlet.Request;
+import org.restlet.Response;
+import org.restlet.Restlet;
+import org.restlet.data.Status;
+
+/**
+ * Filter limiting the rate of calls per client. Each client is identified by a
+ * key formatted from the call, by default its upstream address, and is
+ * granted a token bucket refilled at a given rate up to a given burst. Calls
+ * exceeding the limit are answered with a 429 "Too Many Requests" status and a
+ * Retry-After date.<br>
+ * <br>
+ * The key format is a {@link Template} pattern resolved against the call, for
+ * example "{ciua}" for the client upstream address, "{cri}" for the identifier
+ * of the authenticated user or "{ciua} {m}" to limit each method separately.
+ * For other kinds of keys, the {@link #getKey(Request, Response)} method can
+ * be overridden.<br>
+ * <br>
+ * Each bucket is implemented as a single atomic "theoretical arrival time"
+ * (the Generic Cell Rate Algorithm, equivalent to a token bucket), updated
+ * with a compare-and-set loop. The buckets are spread over independent
+ * stripes that are incrementally swept: a bucket idle long enough to be full
+ * again is indistinguishable from a missing one and is evicted, which keeps
+ * the memory bounded even with millions of distinct keys.<br>
+ * <br>
+ * Concurrency note: instances of this class or its subclasses can be invoked by
+ * several threads at the same time and therefore must be thread-safe. You
+ * should be especially careful when storing state in member variables.
+ * 
+ * @author Jerome Louvel
+ */
+public class RateLimiter extends Filter {
+
+    /** A stripe of the bucket table. */
+    private static final class Stripe {
+        /** The buckets, each holding a theoretical arrival time. */
+        private final ConcurrentMap<String, AtomicLong> buckets;
+
+        /** The time of the last sweep. */
+        private final AtomicLong lastSweep;
+
+        /** Indicates if the stripe is being swept. */
+        private final AtomicBoolean sweeping;
+
+        /**
+         * Constructor.
+         * 
+         * @param now
+         *            The current time in nanoseconds.
+         */
+        public Stripe(long now) {
+            this.buckets = new ConcurrentHashMap<String, AtomicLong>();
+            this.lastSweep = new AtomicLong(now);
+            this.sweeping = new AtomicBoolean();
+        }
+    }
+
+    /** The default number of stripes. */
+    public static final int DEFAULT_STRIPES = 64;
+
+    /** The state of a bucket being evicted. */
+    private static final long EVICTED = Long.MIN_VALUE;
+
+    /** The maximum number of calls allowed at once. */
+    private volatile int burst;
+
+    /** The template formatting the key of a call. */
+    private volatile Template keyTemplate;
+
+    /** The minimum idle time before evicting a full bucket. */
+    private volatile long maxIdleTimeMs;
+
+    /** The number of calls allowed per second on average. */
+    private volatile double rate;
+
+    /** The stripes of the bucket table. */
+    private final Stripe[] stripes;
+
+    /**
+     * Constructor. Allows 10 calls per second with bursts of 20 calls.
+     */
+    public RateLimiter() {
+        this(null);
+    }
+
+    /**
+     * Constructor. Allows 10 calls per second with bursts of 20 calls.
+     * 
+     * @param context
+     *            The context.
+     */
+    public RateLimiter(Context context) {
+        this(context, null);
+    }
+
+    /**
+     * Constructor. Allows 10 calls per second with bursts of 20 calls.
+     * 
+     * @param context
+     *            The context.
+     * @param next
+     *            The next Restlet.
+     */
+    public RateLimiter(Context context, Restlet next) {
+        this(context, next, 10, 20);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param context
+     *            The context.
+     * @param next
+     *            The next Restlet.
+     * @param rate
+     *            The number of calls allowed per second on average.
+     * @param burst
+     *            The maximum number of calls allowed at once.
+     */
+    public RateLimiter(Context context, Restlet next, double rate, int burst) {
+        this(context, next, rate, burst, DEFAULT_STRIPES);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param context
+     *            The context.
+     * @param next
+     *            The next Restlet.
+     * @param rate
+     *            The number of calls allowed per second on average.
+     * @param burst
+     *            The maximum number of calls allowed at once.
+     * @param stripes
+     *            The number of stripes of the bucket table, rounded up to a
+     *            power of two.
+     */
+    public RateLimiter(Context context, Restlet next, double rate, int burst,
+            int stripes) {
+        super(context, next);
+        this.burst = burst;
+        this.keyTemplate = new Template("{ciua}");
+        this.maxIdleTimeMs = 10000;
+        this.rate = rate;
+
+        int count = 1;
+
+        while (count < stripes) {
+            count <<= 1;
+        }
+
+        this.stripes = new Stripe[count];
+        long now = getTime();
+
+        for (int i = 0; i < this.stripes.length; i++) {
+            this.stripes[i] = new Stripe(now);
+        }
+    }
+
+    /**
+     * Limits the rate of calls per key. Calls exceeding the limit are
+     * rejected with the {@link #reject(Request, Response, long)} method.
+     * 
+     * @param request
+     *            The request to filter.
+     * @param response
+     *            The response to filter.
+     * @return The continuation status.
+     */
+    @Override
+    protected int beforeHandle(Request request, Response response) {
+        int result = CONTINUE;
+        String key = getKey(request, response);
+
+        if ((key != null) && (key.length() > 0)) {
+            long waitTime = tryAcquire(key);
+
+            if (waitTime > 0) {
+                reject(request, response, waitTime);
+                result = STOP;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the maximum number of calls allowed at once.
+     * 
+     * @return The maximum number of calls allowed at once.
+     */
+    public int getBurst() {
+        return burst;
+    }
+
+    /**
+     * Returns the key identifying the client of a call. By default, it formats
+     * the key template against the call.
+     * 
+     * @param request
+     *            The request.
+     * @param response
+     *            The response.
+     * @return The key identifying the client or null to skip the limitation.
+     */
+    protected String getKey(Request request, Response response) {
+        Template template = getKeyTemplate();
+        return (template == null) ? null : template.format(request, response);
+    }
+
+    /**
+     * Returns the template formatting the key of a call. Default format is
+     * "{ciua}", the client upstream address.
+     * 
+     * @return The template formatting the key of a call.
+     */
+    public Template getKeyTemplate() {
+        return keyTemplate;
+    }
+
+    /**
+     * Returns the minimum idle time before evicting a full bucket. It is also
+     * the interval between the sweeps of each stripe. Default value is 10
+     * seconds.
+     * 
+     * @return The minimum idle time before evicting a full bucket.
+     */
+    public long getMaxIdleTimeMs() {
+        return maxIdleTimeMs;
+    }
+
+    /**
+     * Returns the number of calls allowed per second on average.
+     * 
+     * @return The number of calls allowed per second on average.
+     */
+    public double getRate() {
+        return rate;
+    }
+
+    /**
+     * Returns the number of keys currently tracked.
+     * 
+     * @return The number of keys currently tracked.
+     */
+    public int getSize() {
+        int result = 0;
+
+        for (Stripe stripe : this.stripes) {
+            result += stripe.buckets.size();
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the current time in nanoseconds, based on
+     * {@link System#nanoTime()} by default.
+     * 
+     * @return The current time in nanoseconds.
+     */
+    protected long getTime() {
+        return System.nanoTime();
+    }
+
+    /**
+     * Rejects a call exceeding the rate limit. By default, it sets the
+     * {@link Status#CLIENT_ERROR_TOO_MANY_REQUESTS} status and the retry
+     * date, rounded up to the next second.
+     * 
+     * @param request
+     *            The request to reject.
+     * @param response
+     *            The response to update.
+     * @param waitTime
+     *            The time to wait before a new call is allowed, in
+     *            nanoseconds.
+     */
+    protected void reject(Request request, Response response, long waitTime) {
+        long waitSeconds = (waitTime + TimeUnit.SECONDS.toNanos(1) - 1)
+                / TimeUnit.SECONDS.toNanos(1);
+        response.setStatus(Status.CLIENT_ERROR_TOO_MANY_REQUESTS);
+        response.setRetryAfter(new Date(System.currentTimeMillis()
+                + TimeUnit.SECONDS.toMillis(waitSeconds)));
+
+        if (request.isLoggable() && getLogger().isLoggable(Level.FINE)) {
+            getLogger().fine(
+                    "Rate limit exceeded, retry after " + waitSeconds
+                            + " second(s)");
+        }
+    }
+
+    /**
+     * Sets the maximum number of calls allowed at once.
+     * 
+     * @param burst
+     *            The maximum number of calls allowed at once.
+     */
+    public void setBurst(int burst) {
+        this.burst = burst;
+    }
+
+    /**
+     * Sets the format of the key of a call, as a {@link Template} pattern.
+     * 
+     * @param keyFormat
+     *            The format of the key of a call.
+     */
+    public void setKeyFormat(String keyFormat) {
+        setKeyTemplate((keyFormat == null) ? null : new Template(keyFormat));
+    }
+
+    /**
+     * Sets the template formatting the key of a call.
+     * 
+     * @param keyTemplate
+     *            The template formatting the key of a call.
+     */
+    public void setKeyTemplate(Template keyTemplate) {
+        this.keyTemplate = keyTemplate;
+    }
+
+    /**
+     * Sets the minimum idle time before evicting a full bucket.
+     * 
+     * @param maxIdleTimeMs
+     *            The minimum idle time before evicting a full bucket.
+     */
+    public void setMaxIdleTimeMs(long maxIdleTimeMs) {
+        this.maxIdleTimeMs = maxIdleTimeMs;
+    }
+
+    /**
+     * Sets the number of calls allowed per second on average.
+     * 
+     * @param rate
+     *            The number of calls allowed per second on average.
+     */
+    public void setRate(double rate) {
+        this.rate = rate;
+    }
+
+    /**
+     * Evicts the full buckets of a stripe that were idle for at least the
+     * maximum idle time. A bucket is first marked as evicted so that
+     * concurrent updates retry with a new bucket.
+     * 
+     * @param stripe
+     *            The stripe to sweep.
+     * @param now
+     *            The current time in nanoseconds.
+     */
+    private void sweep(Stripe stripe, long now) {
+        long threshold = now - TimeUnit.MILLISECONDS.toNanos(getMaxIdleTimeMs());
+
+        for (Iterator<Map.Entry<String, AtomicLong>> iter = stripe.buckets
+                .entrySet().iterator(); iter.hasNext();) {
+            Map.Entry<String, AtomicLong> entry = iter.next();
+            long arrival = entry.getValue().get();
+
+            if ((arrival != EVICTED) && (arrival - threshold <= 0)
+                    && entry.getValue().compareAndSet(arrival, EVICTED)) {
+                stripe.buckets.remove(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Tries to consume a token from the bucket of a key.
+     * 
+     * @param key
+     *            The key identifying the client.
+     * @return 0 if the call is allowed, otherwise the time to wait before a
+     *         new call is allowed, in nanoseconds.
+     */
+    public long tryAcquire(String key) {
+        long result = 0;
+        long now = getTime();
+        int hash = key.hashCode();
+        hash ^= (hash >>> 16);
+        Stripe stripe = this.stripes[hash & (this.stripes.length - 1)];
+        long interval = (long) (TimeUnit.SECONDS.toNanos(1) / getRate());
+        long tolerance = interval * getBurst();
+        boolean done = false;
+
+        while (!done) {
+            AtomicLong bucket = stripe.buckets.get(key);
+
+            if (bucket == null) {
+                AtomicLong created = new AtomicLong(now + interval);
+                bucket = stripe.buckets.putIfAbsent(key, created);
+
+                if (bucket == null) {
+                    // New full bucket, the first token is consumed
+                    done = true;
+                }
+            }
+
+            if (!done) {
+                long arrival = bucket.get();
+
+                if (arrival == EVICTED) {
+                    // Concurrently evicted, retry with a new bucket
+                    stripe.buckets.remove(key, bucket);
+                } else {
+                    long next = Math.max(arrival, now) + interval;
+
+                    if (next - now > tolerance) {
+                        result = next - now - tolerance;
+                        done = true;
+                    } else if (bucket.compareAndSet(arrival, next)) {
+                        done = true;
+                    }
+                }
+            }
+        }
+
+        long lastSweep = stripe.lastSweep.get();
+
+        if ((now - lastSweep >= TimeUnit.MILLISECONDS
+                .toNanos(getMaxIdleTimeMs()))
+                && stripe.lastSweep.compareAndSet(lastSweep, now)
+                && stripe.sweeping.compareAndSet(false, true)) {
+            try {
+                sweep(stripe, now);
+            } finally {
+                stripe.sweeping.set(false);
+            }
+        }
+
+        return result;
+    }
+
+}
@@ -0,0 +1,159 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+package org.restlet.service;
+
+import org.restlet.Context;
+import org.restlet.engine.application.CacheFilter;
+import org.restlet.routing.Filter;
+
+/**
+ * Application service caching the responses to GET requests in memory. It
+ * honors the "Cache-Control" directives of requests and responses ("max-age",
+ * "s-maxage", "no-cache", "no-store", "private", "only-if-cached"), the
+ * expiration date of entities and the content negotiation dimensions of the
+ * responses. Stale entries are revalidated using their tag or modification
+ * date and conditional requests are answered with "304 Not Modified" directly
+ * from the cache.<br>
+ * <br>
+ * As the cache is shared by all the clients of the application, this service
+ * is disabled by default. Responses setting cookies are never stored. As the
+ * cache filter runs before the application's authenticators, responses to
+ * requests carrying credentials, an "Authorization" header or cookies are only
+ * stored when marked as "public" or with a "s-maxage" directive. Entities
+ * larger than the maximum entry size are streamed without being stored.
+ * 
+ * @author Jerome Louvel
+ */
+public class CacheService extends Service {
+
+    /** The default maximum number of stored entries. */
+    public static final int DEFAULT_MAX_ENTRIES = 1000;
+
+    /** The default maximum size of a stored entity in bytes. */
+    public static final long DEFAULT_MAX_ENTRY_SIZE = 1024L * 1024L;
+
+    /** The default maximum size of all the stored entities in bytes. */
+    public static final long DEFAULT_MAX_SIZE = 16L * 1024L * 1024L;
+
+    /** The maximum number of stored entries. */
+    private volatile int maxEntries;
+
+    /** The maximum size of a stored entity in bytes. */
+    private volatile long maxEntrySize;
+
+    /** The maximum size of all the stored entities in bytes. */
+    private volatile long maxSize;
+
+    /**
+     * Constructor.
+     */
+    public CacheService() {
+        this(true);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param enabled
+     *            True if the service has been enabled.
+     */
+    public CacheService(boolean enabled) {
+        super(enabled);
+        this.maxEntries = DEFAULT_MAX_ENTRIES;
+        this.maxEntrySize = DEFAULT_MAX_ENTRY_SIZE;
+        this.maxSize = DEFAULT_MAX_SIZE;
+    }
+
+    @Override
+    public Filter createInboundFilter(Context context) {
+        return new CacheFilter(context, this);
+    }
+
+    /**
+     * Returns the maximum number of stored entries.
+     * 
+     * @return The maximum number of stored entries.
+     */
+    public int getMaxEntries() {
+        return maxEntries;
+    }
+
+    /**
+     * Returns the maximum size of a stored entity in bytes.
+     * 
+     * @return The maximum size of a stored entity in bytes.
+     */
+    public long getMaxEntrySize() {
+        return maxEntrySize;
+    }
+
+    /**
+     * Returns the maximum size of all the stored entities in bytes.
+     * 
+     * @return The maximum size of all the stored entities in bytes.
+     */
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Sets the maximum number of stored entries.
+     * 
+     * @param maxEntries
+     *            The maximum number of stored entries.
+     */
+    public void setMaxEntries(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    /**
+     * Sets the maximum size of a stored entity in bytes.
+     * 
+     * @param maxEntrySize
+     *            The maximum size of a stored entity in bytes.
+     */
+    public void setMaxEntrySize(long maxEntrySize) {
+        this.maxEntrySize = maxEntrySize;
+    }
+
+    /**
+     * Sets the maximum size of all the stored entities in bytes.
+     * 
+     * @param maxSize
+     *            The maximum size of all the stored entities in bytes.
+     */
+    public void setMaxSize(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+}
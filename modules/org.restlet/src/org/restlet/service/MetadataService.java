@@ -34,7 +34,11 @@
 package org.restlet.service;
 
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.restlet.data.CharacterSet;
@@ -50,10 +54,89 @@ import org.restlet.engine.application.MetadataExtension;
  * {@link #addCommonExtensions()} method.<br>
  * <br>
  * Internally, the mappings are stored as a list of "extension, metadata" pairs.
+ * An immutable index by extension name and by metadata is rebuilt each time
+ * the mappings are modified so that lookups don't need to scan the list and
+ * always see a consistent snapshot.
  * 
  * @author Jerome Louvel
  */
 public class MetadataService extends Service {
+
+    /**
+     * Immutable snapshot of the mappings, indexed by extension name and by
+     * metadata.
+     */
+    private static final class Index {
+
+        /** The ordered extension names mapped to character sets. */
+        private final Set<String> characterSetNames;
+
+        /** The ordered extension names mapped to encodings. */
+        private final Set<String> encodingNames;
+
+        /** The first extension name mapped to each metadata. */
+        private final Map<Metadata, String> extensions;
+
+        /** The ordered extension names mapped to languages. */
+        private final Set<String> languageNames;
+
+        /** The ordered extension names mapped to media types. */
+        private final Set<String> mediaTypeNames;
+
+        /** The ordered list of metadata mapped to each extension name. */
+        private final Map<String, List<Metadata>> metadata;
+
+        /** The ordered extension names. */
+        private final Set<String> names;
+
+        /**
+         * Constructor.
+         * 
+         * @param mappings
+         *            The ordered list of mappings to index.
+         */
+        private Index(List<MetadataExtension> mappings) {
+            this.characterSetNames = new LinkedHashSet<String>();
+            this.encodingNames = new LinkedHashSet<String>();
+            this.extensions = new HashMap<Metadata, String>();
+            this.languageNames = new LinkedHashSet<String>();
+            this.mediaTypeNames = new LinkedHashSet<String>();
+            this.metadata = new HashMap<String, List<Metadata>>();
+            this.names = new LinkedHashSet<String>();
+
+            for (MetadataExtension mapping : mappings) {
+                String name = mapping.getName();
+                Metadata md = mapping.getMetadata();
+                this.names.add(name);
+
+                if (md instanceof CharacterSet) {
+                    this.characterSetNames.add(name);
+                } else if (md instanceof Encoding) {
+                    this.encodingNames.add(name);
+                } else if (md instanceof Language) {
+                    this.languageNames.add(name);
+                } else if (md instanceof MediaType) {
+                    this.mediaTypeNames.add(name);
+                }
+
+                if ((md != null) && !this.extensions.containsKey(md)) {
+                    this.extensions.put(md, name);
+                }
+
+                if (name != null) {
+                    List<Metadata> list = this.metadata.get(name);
+
+                    if (list == null) {
+                        list = new ArrayList<Metadata>(1);
+                        this.metadata.put(name, list);
+                    }
+
+                    list.add(md);
+                }
+            }
+        }
+    }
+
     /** The default character set for textual representations. */
     private volatile CharacterSet defaultCharacterSet;
 
@@ -66,6 +149,9 @@ public class MetadataService extends Service {
     /** The default media type for representations. */
     private volatile MediaType defaultMediaType;
 
+    /** The index of the mappings. */
+    private volatile Index index;
+
     /** The list of mappings between extension names and metadata. */
     private final List<MetadataExtension> mappings;
 
@@ -84,6 +170,7 @@ public class MetadataService extends Service {
         // [ifdef gwt] instruction uncomment
         // this.defaultMediaType = MediaType.APPLICATION_JSON;
         this.mappings = new CopyOnWriteArrayList<MetadataExtension>();
+        updateIndex();
         addCommonExtensions();
     }
 
@@ -373,7 +460,10 @@ public class MetadataService extends Service {
         ext(dm, "xml", MediaType.APPLICATION_XML);
 
         // Add all those mappings
-        this.mappings.addAll(dm);
+        synchronized (this.mappings) {
+            this.mappings.addAll(dm);
+            updateIndex();
+        }
     }
 
     /**
@@ -402,12 +492,17 @@ public class MetadataService extends Service {
      */
     public void addExtension(String extension, Metadata metadata,
             boolean preferred) {
-        if (preferred) {
-            // Add the mapping at the beginning of the list
-            this.mappings.add(0, new MetadataExtension(extension, metadata));
-        } else {
-            // Add the mapping at the end of the list
-            this.mappings.add(new MetadataExtension(extension, metadata));
+        synchronized (this.mappings) {
+            if (preferred) {
+                // Add the mapping at the beginning of the list
+                this.mappings.add(0,
+                        new MetadataExtension(extension, metadata));
+            } else {
+                // Add the mapping at the end of the list
+                this.mappings.add(new MetadataExtension(extension, metadata));
+            }
+
+            updateIndex();
         }
     }
 
@@ -415,7 +510,10 @@ public class MetadataService extends Service {
      * clears the mappings for all extensions.
      */
     public void clearExtensions() {
-        this.mappings.clear();
+        synchronized (this.mappings) {
+            this.mappings.clear();
+            updateIndex();
+        }
     }
 
     /**
@@ -466,16 +564,7 @@ public class MetadataService extends Service {
      * @return The ordered list of extension names mapped to character set.
      */
     public List<String> getAllCharacterSetExtensionNames() {
-        List<String> result = new ArrayList<String>();
-
-        for (MetadataExtension mapping : this.mappings) {
-            if ((mapping.getMetadata() instanceof CharacterSet)
-                    && !result.contains(mapping.getName())) {
-                result.add(mapping.getName());
-            }
-        }
-
-        return result;
+        return new ArrayList<String>(this.index.characterSetNames);
     }
 
     /**
@@ -488,17 +577,17 @@ public class MetadataService extends Service {
      */
     public List<CharacterSet> getAllCharacterSets(String extension) {
         List<CharacterSet> result = null;
+        List<Metadata> list = (extension == null) ? null : this.index.metadata
+                .get(extension);
 
-        if (extension != null) {
-            // Look for all registered convenient mapping.
-            for (MetadataExtension metadataExtension : this.mappings) {
-                if (extension.equals(metadataExtension.getName())
-                        && (metadataExtension.getMetadata() instanceof CharacterSet)) {
+        if (list != null) {
+            for (Metadata metadata : list) {
+                if (metadata instanceof CharacterSet) {
                     if (result == null) {
                         result = new ArrayList<CharacterSet>();
                     }
 
-                    result.add(metadataExtension.getCharacterSet());
+                    result.add((CharacterSet) metadata);
                 }
             }
         }
@@ -512,16 +601,7 @@ public class MetadataService extends Service {
      * @return The ordered list of extension names mapped to encodings.
      */
     public List<String> getAllEncodingExtensionNames() {
-        List<String> result = new ArrayList<String>();
-
-        for (MetadataExtension mapping : this.mappings) {
-            if ((mapping.getMetadata() instanceof Encoding)
-                    && !result.contains(mapping.getName())) {
-                result.add(mapping.getName());
-            }
-        }
-
-        return result;
+        return new ArrayList<String>(this.index.encodingNames);
     }
 
     /**
@@ -530,15 +610,7 @@ public class MetadataService extends Service {
      * @return The ordered list of extension names.
      */
     public List<String> getAllExtensionNames() {
-        List<String> result = new ArrayList<String>();
-
-        for (MetadataExtension mapping : this.mappings) {
-            if (!result.contains(mapping.getName())) {
-                result.add(mapping.getName());
-            }
-        }
-
-        return result;
+        return new ArrayList<String>(this.index.names);
     }
 
     /**
@@ -547,16 +619,7 @@ public class MetadataService extends Service {
      * @return The ordered list of extension names mapped to languages.
      */
     public List<String> getAllLanguageExtensionNames() {
-        List<String> result = new ArrayList<String>();
-
-        for (MetadataExtension mapping : this.mappings) {
-            if ((mapping.getMetadata() instanceof Language)
-                    && !result.contains(mapping.getName())) {
-                result.add(mapping.getName());
-            }
-        }
-
-        return result;
+        return new ArrayList<String>(this.index.languageNames);
     }
 
     /**
@@ -569,17 +632,17 @@ public class MetadataService extends Service {
      */
     public List<Language> getAllLanguages(String extension) {
         List<Language> result = null;
+        List<Metadata> list = (extension == null) ? null : this.index.metadata
+                .get(extension);
 
-        if (extension != null) {
-            // Look for all registered convenient mapping.
-            for (MetadataExtension metadataExtension : this.mappings) {
-                if (extension.equals(metadataExtension.getName())
-                        && (metadataExtension.getMetadata() instanceof Language)) {
+        if (list != null) {
+            for (Metadata metadata : list) {
+                if (metadata instanceof Language) {
                     if (result == null) {
                         result = new ArrayList<Language>();
                     }
 
-                    result.add(metadataExtension.getLanguage());
+                    result.add((Language) metadata);
                 }
             }
         }
@@ -593,16 +656,7 @@ public class MetadataService extends Service {
      * @return The ordered list of extension names mapped to media types.
      */
     public List<String> getAllMediaTypeExtensionNames() {
-        List<String> result = new ArrayList<String>();
-
-        for (MetadataExtension mapping : this.mappings) {
-            if ((mapping.getMetadata() instanceof MediaType)
-                    && !result.contains(mapping.getName())) {
-                result.add(mapping.getName());
-            }
-        }
-
-        return result;
+        return new ArrayList<String>(this.index.mediaTypeNames);
     }
 
     /**
@@ -615,17 +669,17 @@ public class MetadataService extends Service {
      */
     public List<MediaType> getAllMediaTypes(String extension) {
         List<MediaType> result = null;
+        List<Metadata> list = (extension == null) ? null : this.index.metadata
+                .get(extension);
 
-        if (extension != null) {
-            // Look for all registered convenient mapping.
-            for (MetadataExtension metadataExtension : this.mappings) {
-                if (extension.equals(metadataExtension.getName())
-                        && (metadataExtension.getMetadata() instanceof MediaType)) {
+        if (list != null) {
+            for (Metadata metadata : list) {
+                if (metadata instanceof MediaType) {
                     if (result == null) {
                         result = new ArrayList<MediaType>();
                     }
 
-                    result.add(metadataExtension.getMediaType());
+                    result.add((MediaType) metadata);
                 }
             }
         }
@@ -643,18 +697,11 @@ public class MetadataService extends Service {
      */
     public List<Metadata> getAllMetadata(String extension) {
         List<Metadata> result = null;
+        List<Metadata> list = (extension == null) ? null : this.index.metadata
+                .get(extension);
 
-        if (extension != null) {
-            // Look for all registered convenient mapping.
-            for (MetadataExtension metadataExtension : this.mappings) {
-                if (extension.equals(metadataExtension.getName())) {
-                    if (result == null) {
-                        result = new ArrayList<Metadata>();
-                    }
-
-                    result.add(metadataExtension.getMetadata());
-                }
-            }
+        if (list != null) {
+            result = new ArrayList<Metadata>(list);
         }
 
         return result;
@@ -751,15 +798,7 @@ public class MetadataService extends Service {
      * @return The first extension mapping to this metadata.
      */
     public String getExtension(Metadata metadata) {
-        if (metadata != null) {
-            // Look for the first registered convenient mapping.
-            for (final MetadataExtension metadataExtension : this.mappings) {
-                if (metadata.equals(metadataExtension.getMetadata())) {
-                    return metadataExtension.getName();
-                }
-            }
-        }
-        return null;
+        return (metadata == null) ? null : this.index.extensions.get(metadata);
     }
 
     /**
@@ -821,16 +860,16 @@ public class MetadataService extends Service {
      * @return The metadata associated to this extension.
      */
     public Metadata getMetadata(String extension) {
-        if (extension != null) {
-            // Look for the first registered convenient mapping.
-            for (final MetadataExtension metadataExtension : this.mappings) {
-                if (extension.equals(metadataExtension.getName())) {
-                    return metadataExtension.getMetadata();
-                }
-            }
+        Metadata result = null;
+        List<Metadata> list = (extension == null) ? null : this.index.metadata
+                .get(extension);
+
+        if (list != null) {
+            // Return the first registered convenient mapping.
+            result = list.get(0);
         }
 
-        return null;
+        return result;
     }
 
     // [ifndef gwt] method
@@ -897,4 +936,12 @@ public class MetadataService extends Service {
         this.defaultMediaType = defaultMediaType;
     }
 
+    /**
+     * Rebuilds the index of the mappings. Must be called while synchronized
+     * on the mappings list.
+     */
+    private void updateIndex() {
+        this.index = new Index(this.mappings);
+    }
+
 }
@@ -0,0 +1,408 @@
+/**
+ * Copyright 2005-2014 Restlet
+ * 
+ * The contents of this file are subject to the terms of one of the following
+ * open source licenses: Apache 2.0 or LGPL 3.0 or LGPL 2.1 or CDDL 1.0 or EPL
+ * 1.0 (the "Licenses"). You can select the license that you prefer but you may
+ * not use this file except in compliance with one of these Licenses.
+ * 
+ * You can obtain a copy of the Apache 2.0 license at
+ * http://www.opensource.org/licenses/apache-2.0
+ * 
+ * You can obtain a copy of the LGPL 3.0 license at
+ * http://www.opensource.org/licenses/lgpl-3.0
+ * 
+ * You can obtain a copy of the LGPL 2.1 license at
+ * http://www.opensource.org/licenses/lgpl-2.1
+ * 
+ * You can obtain a copy of the CDDL 1.0 license at
+ * http://www.opensource.org/licenses/cddl1
+ * 
+ * You can obtain a copy of the EPL 1.0 license at
+ * http://www.opensource.org/licenses/eclipse-1.0
+ * 
+ * See the Licenses for the specific language governing permissions and
+ * limitations under the Licenses.
+ * 
+ * Alternatively, you can obtain a royalty free commercial license with less
+ * limitations, transferable or non-transferable, directly at
+ * http://restlet.com/products/restlet-framework
+ * 
+ * Restlet is a registered trademark of Restlet S.A.S.
+ */
+
+
+package org.restlet.service;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+
+import org.restlet.Context;
+import org.restlet.data.Status;
+import org.restlet.engine.metrics.CallMetrics;
+import org.restlet.engine.metrics.ConnectorMetrics;
+import org.restlet.engine.metrics.LatencyHistogram;
+import org.restlet.engine.metrics.MetricsFilter;
+import org.restlet.engine.metrics.MetricsRestlet;
+import org.restlet.engine.metrics.MetricsUtils;
+import org.restlet.routing.Filter;
+
+/**
+ * Service collecting the latency and throughput metrics of the handled calls.
+ * The metrics are aggregated by route, using the patterns of the traversed
+ * {@link org.restlet.routing.TemplateRoute} instances such as
+ * "/users/{id}", and by response status. For each aggregate, a lock-free
+ * latency histogram and counters of the entity bytes received and sent are
+ * maintained. The number of calls being handled and the state of the server
+ * connectors, such as their number of open connections and their queue depth,
+ * are also reported.<br>
+ * <br>
+ * The metrics can be exposed in the Prometheus text format by attaching a
+ * {@link MetricsRestlet} to a router and, where JMX is available, are also
+ * exposed by a read-only MBean named
+ * "org.restlet:type=MetricsService,name=..." while the service is started.<br>
+ * <br>
+ * Note that the bytes are only counted for entities with a known size and that
+ * the latency of asynchronous calls is measured until the synchronous handling
+ * returns. In order to bound the memory usage, the routes beyond the maximum
+ * number of routes tracked are aggregated under the "other" route. This
+ * service is disabled by default.
+ * 
+ * @author Jerome Louvel
+ */
+public class MetricsService extends Service {
+
+    /** The default percentiles reported. */
+    private static final double[] DEFAULT_PERCENTILES = { 50, 90, 99, 99.9 };
+
+    /** The route of the calls that didn't traverse any template route. */
+    public static final String NO_ROUTE = "none";
+
+    /** The route aggregating the routes beyond the maximum number tracked. */
+    public static final String OTHER_ROUTE = "other";
+
+    /** The number of calls being handled. */
+    private final AtomicInteger inFlight;
+
+    /** Indicates if the metrics should be exposed as a JMX MBean. */
+    private volatile boolean jmxEnabled;
+
+    /** The maximum number of routes tracked. */
+    private volatile int maxRoutes;
+
+    // [ifndef android,gae] member
+    /** The JMX MBean registered while the service is started. */
+    private volatile org.restlet.engine.metrics.MetricsMBean mbean;
+
+    /** The name identifying the service in JMX. */
+    private volatile String name;
+
+    /** The percentiles reported. */
+    private volatile double[] percentiles;
+
+    /** The metrics by route. */
+    private final ConcurrentMap<String, CallMetrics> routes;
+
+    /** The metrics by status code. */
+    private final ConcurrentMap<Integer, CallMetrics> statuses;
+
+    /** The number of stripes of the recorders. */
+    private volatile int stripes;
+
+    /**
+     * Constructor. The service is disabled by default.
+     */
+    public MetricsService() {
+        this(false);
+    }
+
+    /**
+     * Constructor.
+     * 
+     * @param enabled
+     *            True if the service has been enabled.
+     */
+    public MetricsService(boolean enabled) {
+        super(enabled);
+        this.inFlight = new AtomicInteger();
+        this.jmxEnabled = true;
+        this.maxRoutes = 1000;
+        this.name = null;
+        this.percentiles = DEFAULT_PERCENTILES;
+        this.routes = new ConcurrentHashMap<String, CallMetrics>();
+        this.statuses = new ConcurrentHashMap<Integer, CallMetrics>();
+        this.stripes = LatencyHistogram.DEFAULT_STRIPES;
+    }
+
+    @Override
+    public Filter createInboundFilter(Context context) {
+        return new MetricsFilter(context, this);
+    }
+
+    /**
+     * Returns the metrics of the server connectors registered in the context
+     * of the service or in its parent contexts.
+     * 
+     * @return The metrics of the server connectors.
+     */
+    public List<ConnectorMetrics> getConnectors() {
+        return MetricsUtils.getConnectors(getContext());
+    }
+
+    /**
+     * Returns the number of calls being handled.
+     * 
+     * @return The number of calls being handled.
+     */
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * Returns the maximum number of routes tracked. Beyond, the calls are
+     * aggregated under the {@link #OTHER_ROUTE} route. Default value is 1000.
+     * 
+     * @return The maximum number of routes tracked.
+     */
+    public int getMaxRoutes() {
+        return maxRoutes;
+    }
+
+    /**
+     * Returns the name identifying the service in JMX. By default, it is based
+     * on the name of the context logger.
+     * 
+     * @return The name identifying the service in JMX.
+     */
+    public String getName() {
+        String result = this.name;
+
+        if (result == null) {
+            result = ((getContext() == null) ? "default" : getContext()
+                    .getLogger().getName())
+                    + "@"
+                    + Integer.toHexString(System.identityHashCode(this));
+        }
+
+        return result;
+    }
+
+    /**
+     * Returns the percentiles reported, between 0 and 100 in ascending order.
+     * Default values are 50, 90, 99 and 99.9.
+     * 
+     * @return The percentiles reported.
+     */
+    public double[] getPercentiles() {
+        return percentiles;
+    }
+
+    /**
+     * Returns the metrics by route.
+     * 
+     * @return The metrics by route.
+     */
+    public Map<String, CallMetrics> getRoutes() {
+        return Collections.unmodifiableMap(routes);
+    }
+
+    /**
+     * Returns the metrics by status code.
+     * 
+     * @return The metrics by status code.
+     */
+    public Map<Integer, CallMetrics> getStatuses() {
+        return Collections.unmodifiableMap(statuses);
+    }
+
+    /**
+     * Returns the number of stripes of the recorders, limiting the contention
+     * between concurrent threads. Defaults to the number of processors, up to
+     * 4.
+     * 
+     * @return The number of stripes of the recorders.
+     */
+    public int getStripes() {
+        return stripes;
+    }
+
+    /**
+     * Indicates if the metrics should be exposed as a JMX MBean. Default value
+     * is true.
+     * 
+     * @return True if the metrics should be exposed as a JMX MBean.
+     */
+    public boolean isJmxEnabled() {
+        return jmxEnabled;
+    }
+
+    /**
+     * Records a handled call.
+     * 
+     * @param route
+     *            The patterns of the traversed routes or null.
+     * @param status
+     *            The response status.
+     * @param durationNanos
+     *            The call duration in nanoseconds.
+     * @param bytesIn
+     *            The size of the request entity or -1 if unknown.
+     * @param bytesOut
+     *            The size of the response entity or -1 if unknown.
+     */
+    public void onCallCompleted(String route, Status status,
+            long durationNanos, long bytesIn, long bytesOut) {
+        this.inFlight.decrementAndGet();
+        String key = ((route == null) || (route.length() == 0)) ? NO_ROUTE
+                : route;
+        CallMetrics metrics = this.routes.get(key);
+
+        if (metrics == null) {
+            if (this.routes.size() >= getMaxRoutes()) {
+                key = OTHER_ROUTE;
+            }
+
+            metrics = register(this.routes, key);
+        }
+
+        metrics.record(durationNanos, bytesIn, bytesOut);
+
+        if (status != null) {
+            Integer code = Integer.valueOf(status.getCode());
+            metrics = this.statuses.get(code);
+
+            if (metrics == null) {
+                metrics = register(this.statuses, code);
+            }
+
+            metrics.record(durationNanos, bytesIn, bytesOut);
+        }
+    }
+
+    /**
+     * Notifies that the handling of a call started.
+     */
+    public void onCallStarted() {
+        this.inFlight.incrementAndGet();
+    }
+
+    /**
+     * Returns the metrics registered for a key, registering new metrics if
+     * needed.
+     * 
+     * @param map
+     *            The metrics by key.
+     * @param key
+     *            The key.
+     * @return The metrics registered for the key.
+     */
+    private <K> CallMetrics register(ConcurrentMap<K, CallMetrics> map, K key) {
+        CallMetrics result = map.get(key);
+
+        if (result == null) {
+            result = new CallMetrics(getStripes());
+            CallMetrics existing = map.putIfAbsent(key, result);
+
+            if (existing != null) {
+                result = existing;
+            }
+        }
+
+        return result;
+    }
+
+    /**
+     * Indicates if the metrics should be exposed as a JMX MBean.
+     * 
+     * @param jmxEnabled
+     *            True if the metrics should be exposed as a JMX MBean.
+     */
+    public void setJmxEnabled(boolean jmxEnabled) {
+        this.jmxEnabled = jmxEnabled;
+    }
+
+    /**
+     * Sets the maximum number of routes tracked.
+     * 
+     * @param maxRoutes
+     *            The maximum number of routes tracked.
+     */
+    public void setMaxRoutes(int maxRoutes) {
+        this.maxRoutes = maxRoutes;
+    }
+
+    /**
+     * Sets the name identifying the service in JMX.
+     * 
+     * @param name
+     *            The name identifying the service in JMX.
+     */
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Sets the percentiles reported, between 0 and 100 in ascending order.
+     * 
+     * @param percentiles
+     *            The percentiles reported.
+     */
+    public void setPercentiles(double... percentiles) {
+        this.percentiles = percentiles;
+    }
+
+    /**
+     * Sets the number of stripes of the recorders. Only affects the metrics
+     * registered afterwards.
+     * 
+     * @param stripes
+     *            The number of stripes of the recorders.
+     */
+    public void setStripes(int stripes) {
+        this.stripes = stripes;
+    }
+
+    @Override
+    public synchronized void start() throws Exception {
+        super.start();
+
+        // [ifndef android,gae]
+        if (isStarted() && isJmxEnabled() && (this.mbean == null)) {
+            org.restlet.engine.metrics.MetricsMBean mbean = new org.restlet.engine.metrics.MetricsMBean(
+                    this);
+
+            try {
+                mbean.register(getName());
+                this.mbean = mbean;
+            } catch (Exception e) {
+                Context.getCurrentLogger().log(Level.WARNING,
+                        "Unable to register the metrics MBean", e);
+            }
+        }
+        // [enddef]
+    }
+
+    @Override
+    public synchronized void stop() throws Exception {
+        super.stop();
+
+        // [ifndef android,gae]
+        if (this.mbean != null) {
+            try {
+                this.mbean.unregister();
+            } catch (Exception e) {
+                Context.getCurrentLogger().log(Level.WARNING,
+                        "Unable to unregister the metrics MBean", e);
+            } finally {
+                this.mbean = null;
+            }
+        }
+        // [enddef]
+    }
+
+}